@@ -714,24 +714,37 @@ public class ArrowConverter {
         List<FieldVector> ret = new ArrayList<>(schema.numColumns());
 
         for(int i = 0; i < schema.numColumns(); i++) {
-            switch (schema.getType(i)) {
-                case Integer: ret.add(intVectorOf(bufferAllocator,schema.getName(i),numRows)); break;
-                case Long: ret.add(longVectorOf(bufferAllocator,schema.getName(i),numRows)); break;
-                case Double: ret.add(doubleVectorOf(bufferAllocator,schema.getName(i),numRows)); break;
-                case Float: ret.add(floatVectorOf(bufferAllocator,schema.getName(i),numRows)); break;
-                case Boolean: ret.add(booleanVectorOf(bufferAllocator,schema.getName(i),numRows)); break;
-                case String: ret.add(stringVectorOf(bufferAllocator,schema.getName(i),numRows)); break;
-                case Categorical: ret.add(stringVectorOf(bufferAllocator,schema.getName(i),numRows)); break;
-                case Time: ret.add(timeVectorOf(bufferAllocator,schema.getName(i),numRows)); break;
-                case NDArray: ret.add(ndarrayVectorOf(bufferAllocator,schema.getName(i),numRows)); break;
-                default: throw new IllegalArgumentException("Illegal type found for creation of field vectors" + schema.getType(i));
-
-            }
+            ret.add(createFieldVector(bufferAllocator,schema.getName(i),schema.getType(i),numRows));
         }
 
         return ret;
     }
 
+    /**
+     * Create an empty field vector
+     * for the given column type
+     * @param bufferAllocator the buffer allocator to use
+     * @param name the name of the vector
+     * @param columnType the type of the column
+     * @param numRows the number of rows in the vector
+     * @return the created vector
+     */
+    public static FieldVector createFieldVector(BufferAllocator bufferAllocator,String name,ColumnType columnType,int numRows) {
+        switch (columnType) {
+            case Integer: return intVectorOf(bufferAllocator,name,numRows);
+            case Long: return longVectorOf(bufferAllocator,name,numRows);
+            case Double: return doubleVectorOf(bufferAllocator,name,numRows);
+            case Float: return floatVectorOf(bufferAllocator,name,numRows);
+            case Boolean: return booleanVectorOf(bufferAllocator,name,numRows);
+            case String: return stringVectorOf(bufferAllocator,name,numRows);
+            case Categorical: return stringVectorOf(bufferAllocator,name,numRows);
+            case Time: return timeVectorOf(bufferAllocator,name,numRows);
+            case NDArray: return ndarrayVectorOf(bufferAllocator,name,numRows);
+            default: throw new IllegalArgumentException("Illegal type found for creation of field vectors" + columnType);
+
+        }
+    }
+
     /**
      * Set the value of the specified column vector
      * at the specified row based on the given value.
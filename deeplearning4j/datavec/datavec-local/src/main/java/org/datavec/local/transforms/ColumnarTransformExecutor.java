@@ -0,0 +1,526 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.datavec.local.transforms;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.*;
+import org.datavec.api.transform.ColumnType;
+import org.datavec.api.transform.DataAction;
+import org.datavec.api.transform.MathOp;
+import org.datavec.api.transform.Transform;
+import org.datavec.api.transform.TransformProcess;
+import org.datavec.api.transform.condition.Condition;
+import org.datavec.api.transform.condition.column.DoubleColumnCondition;
+import org.datavec.api.transform.condition.column.FloatColumnCondition;
+import org.datavec.api.transform.condition.column.IntegerColumnCondition;
+import org.datavec.api.transform.condition.column.LongColumnCondition;
+import org.datavec.api.transform.filter.ConditionFilter;
+import org.datavec.api.transform.filter.Filter;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.transform.schema.SequenceSchema;
+import org.datavec.api.transform.transform.BaseColumnTransform;
+import org.datavec.api.transform.transform.column.RemoveAllColumnsExceptForTransform;
+import org.datavec.api.transform.transform.column.RemoveColumnsTransform;
+import org.datavec.api.transform.transform.column.RenameColumnsTransform;
+import org.datavec.api.transform.transform.column.ReorderColumnsTransform;
+import org.datavec.api.transform.transform.doubletransform.DoubleMathOpTransform;
+import org.datavec.api.transform.transform.floattransform.FloatMathOpTransform;
+import org.datavec.api.transform.transform.integer.IntegerMathOpTransform;
+import org.datavec.api.transform.transform.longtransform.LongMathOpTransform;
+import org.datavec.api.writable.NullWritable;
+import org.datavec.api.writable.Writable;
+import org.datavec.arrow.ArrowConverter;
+import org.datavec.arrow.recordreader.ArrowWritableRecordBatch;
+
+import java.util.*;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Columnar transform executor.<br>
+ * Instead of applying each step to every {@code List<Writable>} record, data is kept as Arrow column vectors
+ * (see {@link ArrowWritableRecordBatch}) for the whole TransformProcess:
+ * <ul>
+ *     <li>Math ops with a scalar on double, float, integer and long columns run as primitive loops over the vector</li>
+ *     <li>Filters on a single numeric column condition are evaluated over the vector, and only narrow the selection
+ *     of rows - no data is copied until the end of the process</li>
+ *     <li>Removing, renaming and reordering columns only rearranges vectors</li>
+ *     <li>Any other single column transform is applied to that column alone, without materializing records</li>
+ *     <li>Remaining transforms and filters fall back to records for that step only</li>
+ * </ul>
+ * Steps that can't be executed on a batch of independent records (conversion to sequences, reductions,
+ * sorted rank) are passed, together with all steps after them, to {@link LocalTransformExecutor}.<br>
+ * Output has the same content and order as {@link LocalTransformExecutor#execute(List, TransformProcess)}.
+ * <p>
+ * Note: only TransformProcesses that start and end with non-sequence data are supported
+ */
+@Slf4j
+public class ColumnarTransformExecutor {
+
+    private static BufferAllocator bufferAllocator = new RootAllocator(Long.MAX_VALUE);
+
+    /**
+     * Execute the specified TransformProcess with the given input data
+     *
+     * @param inputWritables   Input data to process
+     * @param transformProcess TransformProcess to execute
+     * @return Processed data, backed by Arrow vectors
+     */
+    public static List<List<Writable>> execute(@NonNull List<List<Writable>> inputWritables,
+                                               @NonNull TransformProcess transformProcess) {
+        validate(transformProcess);
+
+        Schema schema = transformProcess.getInitialSchema();
+        List<List<Writable>> filtered = inputWritables.stream()
+                .filter(input -> input.size() == schema.numColumns()).collect(toList());
+        if (filtered.size() != inputWritables.size()) {
+            log.warn("Filtered out " + (inputWritables.size() - filtered.size()) + " values");
+        }
+
+        if (filtered.isEmpty())
+            return new ArrayList<>();
+
+        Columns columns = new Columns(ArrowConverter.toArrowColumns(bufferAllocator, schema, filtered), schema, filtered.size());
+        // vectors were created here, so they can be modified in place
+        columns.owned.addAll(columns.vectors);
+        return execute(columns, transformProcess);
+    }
+
+    /**
+     * Execute the specified TransformProcess on the given batch.
+     * Input vectors are never modified.
+     *
+     * @param batch            Input data to process
+     * @param transformProcess TransformProcess to execute
+     * @return Processed data
+     */
+    public static ArrowWritableRecordBatch execute(@NonNull ArrowWritableRecordBatch batch,
+                                                   @NonNull TransformProcess transformProcess) {
+        validate(transformProcess);
+
+        Columns columns = new Columns(batch.getList(), transformProcess.getInitialSchema(), batch.getOffset() + batch.size());
+        if (batch.getOffset() != 0) {
+            columns.selection = new int[batch.size()];
+            for (int i = 0; i < batch.size(); i++)
+                columns.selection[i] = batch.getOffset() + i;
+        }
+
+        return execute(columns, transformProcess);
+    }
+
+    protected static void validate(TransformProcess transformProcess) {
+        if (transformProcess.getInitialSchema() instanceof SequenceSchema)
+            throw new IllegalStateException("Cannot process sequence data with columnar executor");
+
+        if (transformProcess.getFinalSchema() instanceof SequenceSchema)
+            throw new IllegalStateException("Cannot return sequence data with this method");
+    }
+
+    protected static ArrowWritableRecordBatch execute(Columns columns, TransformProcess transformProcess) {
+        List<DataAction> actions = transformProcess.getActionList();
+        for (int i = 0; i < actions.size(); i++) {
+            DataAction d = actions.get(i);
+            if (d.getTransform() != null) {
+                applyTransform(columns, d.getTransform());
+            } else if (d.getFilter() != null) {
+                applyFilter(columns, d.getFilter());
+            } else {
+                // this step and everything after it is executed over records
+                List<List<Writable>> records = columns.toRecords();
+                columns.close();
+
+                Schema finalSchema = transformProcess.getFinalSchema();
+                if (records.isEmpty())
+                    return new ArrowWritableRecordBatch(ArrowConverter.toArrowColumns(bufferAllocator, finalSchema, records), finalSchema);
+
+                TransformProcess remaining = new TransformProcess(columns.schema, new ArrayList<>(actions.subList(i, actions.size())));
+                List<List<Writable>> result = LocalTransformExecutor.execute(records, remaining);
+                if (result instanceof ArrowWritableRecordBatch)
+                    return (ArrowWritableRecordBatch) result;
+
+                return new ArrowWritableRecordBatch(ArrowConverter.toArrowColumns(bufferAllocator, finalSchema, result), finalSchema);
+            }
+        }
+
+        return columns.compact();
+    }
+
+    protected static void applyTransform(Columns columns, Transform transform) {
+        Schema inputSchema = columns.schema;
+        Schema outputSchema = transform.transform(inputSchema);
+
+        if (transform instanceof RenameColumnsTransform) {
+            columns.schema = outputSchema;
+        } else if (transform instanceof RemoveColumnsTransform || transform instanceof RemoveAllColumnsExceptForTransform
+                || transform instanceof ReorderColumnsTransform) {
+            List<FieldVector> projected = new ArrayList<>(outputSchema.numColumns());
+            for (String name : outputSchema.getColumnNames())
+                projected.add(columns.vectors.get(inputSchema.getIndexOfColumn(name)));
+
+            for (FieldVector vector : columns.vectors)
+                if (!projected.contains(vector))
+                    columns.release(vector);
+
+            columns.vectors = projected;
+            columns.schema = outputSchema;
+        } else if (transform instanceof BaseColumnTransform && outputSchema.numColumns() == inputSchema.numColumns()) {
+            BaseColumnTransform columnTransform = (BaseColumnTransform) transform;
+            int column = inputSchema.getIndexOfColumn(columnTransform.columnName());
+            if (!applyMathOp(columns, columnTransform, column))
+                applyColumnTransform(columns, columnTransform, column, outputSchema.getType(column));
+            columns.schema = outputSchema;
+        } else {
+            // generic case: records are materialized for this step only
+            List<List<Writable>> records = columns.toRecords();
+            List<List<Writable>> mapped = new ArrayList<>(records.size());
+            for (List<Writable> record : records)
+                mapped.add(transform.map(record));
+
+            columns.close();
+            columns.vectors = ArrowConverter.toArrowColumns(bufferAllocator, outputSchema, mapped);
+            columns.owned.addAll(columns.vectors);
+            columns.schema = outputSchema;
+            columns.numRows = mapped.size();
+            columns.selection = null;
+        }
+    }
+
+    /**
+     * Vectorized math ops with a scalar. Returns false if the column can't be processed this way
+     */
+    protected static boolean applyMathOp(Columns columns, BaseColumnTransform transform, int column) {
+        FieldVector input = columns.vectors.get(column);
+        if (columns.hasNulls(input))
+            return false;
+
+        int count = columns.count();
+        if (transform instanceof DoubleMathOpTransform && input instanceof Float8Vector) {
+            DoubleMathOpTransform t = (DoubleMathOpTransform) transform;
+            Float8Vector in = (Float8Vector) input;
+            Float8Vector out = (Float8Vector) columns.writable(column, ColumnType.Double);
+            for (int i = 0; i < count; i++) {
+                int r = columns.row(i);
+                out.set(r, doOp(t.getMathOp(), in.get(r), t.getScalar()));
+            }
+        } else if (transform instanceof FloatMathOpTransform && input instanceof Float4Vector) {
+            FloatMathOpTransform t = (FloatMathOpTransform) transform;
+            Float4Vector in = (Float4Vector) input;
+            Float4Vector out = (Float4Vector) columns.writable(column, ColumnType.Float);
+            for (int i = 0; i < count; i++) {
+                int r = columns.row(i);
+                // for these ops, rounding the double result gives the same value as float arithmetic
+                out.set(r, (float) doOp(t.getMathOp(), in.get(r), t.getScalar()));
+            }
+        } else if (transform instanceof IntegerMathOpTransform && input instanceof IntVector) {
+            IntegerMathOpTransform t = (IntegerMathOpTransform) transform;
+            IntVector in = (IntVector) input;
+            IntVector out = (IntVector) columns.writable(column, ColumnType.Integer);
+            for (int i = 0; i < count; i++) {
+                int r = columns.row(i);
+                // int overflow semantics are preserved by the narrowing cast
+                out.set(r, (int) doOp(t.getMathOp(), (long) in.get(r), (long) t.getScalar()));
+            }
+        } else if (transform instanceof LongMathOpTransform && input instanceof BigIntVector) {
+            LongMathOpTransform t = (LongMathOpTransform) transform;
+            BigIntVector in = (BigIntVector) input;
+            BigIntVector out = (BigIntVector) columns.writable(column, ColumnType.Long);
+            for (int i = 0; i < count; i++) {
+                int r = columns.row(i);
+                out.set(r, doOp(t.getMathOp(), in.get(r), t.getScalar()));
+            }
+        } else {
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Applies single column transform to the column values only, no records are created
+     */
+    protected static void applyColumnTransform(Columns columns, BaseColumnTransform transform, int column, ColumnType outputType) {
+        FieldVector input = columns.vectors.get(column);
+        ColumnType inputType = columns.schema.getType(column);
+        FieldVector output = ArrowConverter.createFieldVector(bufferAllocator, input.getField().getName(), outputType, columns.numRows);
+
+        int count = columns.count();
+        for (int i = 0; i < count; i++) {
+            int r = columns.row(i);
+            Writable value = input.isNull(r) ? NullWritable.INSTANCE : ArrowConverter.fromEntry(r, input, inputType);
+            ArrowConverter.setValue(outputType, output, transform.map(value), r);
+        }
+        output.setValueCount(columns.numRows);
+
+        columns.replace(column, output);
+    }
+
+    protected static void applyFilter(Columns columns, Filter filter) {
+        int[] selection = filter instanceof ConditionFilter ? selectVectorized(columns, ((ConditionFilter) filter).getCondition()) : null;
+
+        if (selection == null) {
+            int count = columns.count();
+            selection = new int[count];
+            int kept = 0;
+            for (int i = 0; i < count; i++) {
+                int r = columns.row(i);
+                if (!filter.removeExample(columns.record(r)))
+                    selection[kept++] = r;
+            }
+            selection = Arrays.copyOf(selection, kept);
+        }
+
+        columns.selection = selection;
+    }
+
+    /**
+     * Returns rows that are NOT matching the condition, or null if condition can't be evaluated over the vector
+     */
+    protected static int[] selectVectorized(Columns columns, Condition condition) {
+        String columnName;
+        if (condition instanceof DoubleColumnCondition || condition instanceof FloatColumnCondition
+                || condition instanceof IntegerColumnCondition || condition instanceof LongColumnCondition) {
+            columnName = condition.outputColumnName();
+        } else {
+            return null;
+        }
+
+        FieldVector vector = columns.vectors.get(columns.schema.getIndexOfColumn(columnName));
+        if (columns.hasNulls(vector))
+            return null;
+
+        int count = columns.count();
+        int[] selection = new int[count];
+        int kept = 0;
+        if (condition instanceof DoubleColumnCondition && vector instanceof Float8Vector) {
+            DoubleColumnCondition c = (DoubleColumnCondition) condition;
+            Float8Vector v = (Float8Vector) vector;
+            double value = c.getValue() == null ? Double.NaN : c.getValue();
+            for (int i = 0; i < count; i++) {
+                int r = columns.row(i);
+                if (!c.getOp().apply(v.get(r), value, c.getSet()))
+                    selection[kept++] = r;
+            }
+        } else if (condition instanceof FloatColumnCondition && vector instanceof Float4Vector) {
+            FloatColumnCondition c = (FloatColumnCondition) condition;
+            Float4Vector v = (Float4Vector) vector;
+            float value = c.getValue() == null ? Float.NaN : c.getValue();
+            for (int i = 0; i < count; i++) {
+                int r = columns.row(i);
+                if (!c.getOp().apply(v.get(r), value, c.getSet()))
+                    selection[kept++] = r;
+            }
+        } else if (condition instanceof IntegerColumnCondition && vector instanceof IntVector) {
+            IntegerColumnCondition c = (IntegerColumnCondition) condition;
+            IntVector v = (IntVector) vector;
+            int value = c.getValue() == null ? 0 : c.getValue();
+            for (int i = 0; i < count; i++) {
+                int r = columns.row(i);
+                if (!c.getOp().apply(v.get(r), value, c.getSet()))
+                    selection[kept++] = r;
+            }
+        } else if (condition instanceof LongColumnCondition && vector instanceof BigIntVector) {
+            LongColumnCondition c = (LongColumnCondition) condition;
+            BigIntVector v = (BigIntVector) vector;
+            long value = c.getValue() == null ? 0 : c.getValue();
+            for (int i = 0; i < count; i++) {
+                int r = columns.row(i);
+                if (!c.getOp().apply(v.get(r), value, c.getSet()))
+                    selection[kept++] = r;
+            }
+        } else {
+            return null;
+        }
+
+        return Arrays.copyOf(selection, kept);
+    }
+
+    protected static double doOp(MathOp mathOp, double input, double scalar) {
+        switch (mathOp) {
+            case Add:
+                return input + scalar;
+            case Subtract:
+                return input - scalar;
+            case Multiply:
+                return input * scalar;
+            case Divide:
+                return input / scalar;
+            case Modulus:
+                return input % scalar;
+            case ReverseSubtract:
+                return scalar - input;
+            case ReverseDivide:
+                return scalar / input;
+            case ScalarMin:
+                return Math.min(input, scalar);
+            case ScalarMax:
+                return Math.max(input, scalar);
+            default:
+                throw new IllegalStateException("Unknown or not implemented math op: " + mathOp);
+        }
+    }
+
+    protected static long doOp(MathOp mathOp, long input, long scalar) {
+        switch (mathOp) {
+            case Add:
+                return input + scalar;
+            case Subtract:
+                return input - scalar;
+            case Multiply:
+                return input * scalar;
+            case Divide:
+                return input / scalar;
+            case Modulus:
+                return input % scalar;
+            case ReverseSubtract:
+                return scalar - input;
+            case ReverseDivide:
+                return scalar / input;
+            case ScalarMin:
+                return Math.min(input, scalar);
+            case ScalarMax:
+                return Math.max(input, scalar);
+            default:
+                throw new IllegalStateException("Unknown or not implemented math op: " + mathOp);
+        }
+    }
+
+    /**
+     * Column vectors, plus selection of rows that passed all filters so far
+     */
+    protected static class Columns {
+        protected List<FieldVector> vectors;
+        protected Schema schema;
+        // physical length of vectors
+        protected int numRows;
+        // indices of selected rows, null if all rows are selected
+        protected int[] selection;
+        // vectors created by executor, that can be modified in place and have to be released
+        protected final Set<FieldVector> owned = Collections.newSetFromMap(new IdentityHashMap<FieldVector, Boolean>());
+
+        protected Columns(List<FieldVector> vectors, Schema schema, int numRows) {
+            this.vectors = new ArrayList<>(vectors);
+            this.schema = schema;
+            this.numRows = numRows;
+        }
+
+        protected int count() {
+            return selection == null ? numRows : selection.length;
+        }
+
+        protected int row(int i) {
+            return selection == null ? i : selection[i];
+        }
+
+        protected boolean hasNulls(FieldVector vector) {
+            if (vector.getNullCount() == 0)
+                return false;
+
+            int count = count();
+            for (int i = 0; i < count; i++)
+                if (vector.isNull(row(i)))
+                    return true;
+
+            return false;
+        }
+
+        /**
+         * Returns vector that can be written at given column, creating new one if current vector doesn't belong to executor
+         */
+        protected FieldVector writable(int column, ColumnType type) {
+            FieldVector vector = vectors.get(column);
+            if (owned.contains(vector))
+                return vector;
+
+            FieldVector copy = ArrowConverter.createFieldVector(bufferAllocator, vector.getField().getName(), type, numRows);
+            replace(column, copy);
+            return copy;
+        }
+
+        protected void replace(int column, FieldVector vector) {
+            release(vectors.get(column));
+            vectors.set(column, vector);
+            owned.add(vector);
+        }
+
+        protected void release(FieldVector vector) {
+            if (owned.remove(vector))
+                vector.close();
+        }
+
+        protected List<Writable> record(int row) {
+            List<Writable> record = new ArrayList<>(vectors.size());
+            for (int c = 0; c < vectors.size(); c++) {
+                FieldVector vector = vectors.get(c);
+                record.add(vector.isNull(row) ? NullWritable.INSTANCE : ArrowConverter.fromEntry(row, vector, schema.getType(c)));
+            }
+            return record;
+        }
+
+        protected List<List<Writable>> toRecords() {
+            int count = count();
+            List<List<Writable>> records = new ArrayList<>(count);
+            for (int i = 0; i < count; i++)
+                records.add(record(row(i)));
+            return records;
+        }
+
+        protected void close() {
+            for (FieldVector vector : vectors)
+                release(vector);
+        }
+
+        /**
+         * Copies selected rows into new dense vectors
+         */
+        protected ArrowWritableRecordBatch compact() {
+            if (selection == null)
+                return new ArrowWritableRecordBatch(vectors, schema, 0, numRows);
+
+            int count = selection.length;
+            List<FieldVector> result = new ArrayList<>(vectors.size());
+            for (int c = 0; c < vectors.size(); c++) {
+                FieldVector vector = vectors.get(c);
+                ColumnType type = schema.getType(c);
+                FieldVector out = ArrowConverter.createFieldVector(bufferAllocator, vector.getField().getName(), type, count);
+                for (int i = 0; i < count; i++) {
+                    int r = selection[i];
+                    if (vector.isNull(r))
+                        continue;
+
+                    if (vector instanceof Float8Vector && out instanceof Float8Vector)
+                        ((Float8Vector) out).set(i, ((Float8Vector) vector).get(r));
+                    else if (vector instanceof Float4Vector && out instanceof Float4Vector)
+                        ((Float4Vector) out).set(i, ((Float4Vector) vector).get(r));
+                    else if (vector instanceof IntVector && out instanceof IntVector)
+                        ((IntVector) out).set(i, ((IntVector) vector).get(r));
+                    else if (vector instanceof BigIntVector && out instanceof BigIntVector)
+                        ((BigIntVector) out).set(i, ((BigIntVector) vector).get(r));
+                    else
+                        ArrowConverter.setValue(type, out, ArrowConverter.fromEntry(r, vector, type), i);
+                }
+                out.setValueCount(count);
+                result.add(out);
+            }
+
+            close();
+            return new ArrowWritableRecordBatch(result, schema, 0, count);
+        }
+    }
+}
@@ -58,7 +58,8 @@ import java.util.stream.Collectors;
 import static java.util.stream.Collectors.toList;
 
 /**
- * Local transform executor
+ * Local transform executor.<br>
+ * All data is kept in memory; for inputs that don't fit into heap see {@link StreamingTransformExecutor}
  */
 @Slf4j
 public class LocalTransformExecutor {
@@ -301,7 +302,7 @@ public class LocalTransformExecutor {
         return Boolean.getBoolean(LOG_ERROR_PROPERTY);
     }
 
-    private static Pair<List<List<Writable>>, List<List<List<Writable>>>> execute(
+    static Pair<List<List<Writable>>, List<List<List<Writable>>>> execute(
             List<List<Writable>> inputWritables, List<List<List<Writable>>> inputSequence,
             TransformProcess sequence) {
         List<List<Writable>> currentWritables = inputWritables;
@@ -0,0 +1,399 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.datavec.local.transforms;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.datavec.api.records.reader.RecordReader;
+import org.datavec.api.records.writer.RecordWriter;
+import org.datavec.api.transform.DataAction;
+import org.datavec.api.transform.TransformProcess;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.transform.schema.SequenceSchema;
+import org.datavec.api.transform.sequence.ConvertToSequence;
+import org.datavec.api.writable.Writable;
+import org.datavec.local.transforms.functions.EmptyRecordFunction;
+import org.datavec.local.transforms.sequence.ConvertToSequenceLengthOne;
+import org.datavec.local.transforms.sequence.LocalSequenceFilterFunction;
+import org.datavec.local.transforms.sequence.LocalSequenceTransformFunction;
+import org.datavec.local.transforms.transform.LocalTransformFunction;
+import org.datavec.local.transforms.transform.filter.LocalFilterFunction;
+import org.nd4j.linalg.primitives.Pair;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Streaming counterpart of {@link LocalTransformExecutor}.<br>
+ * Consecutive row-wise steps of the TransformProcess (transforms, filters, conversions to and from
+ * single step sequences, sequence splits) are fused into a single function, which is applied to input
+ * in chunks of {@code chunkSize} records on a pool of {@code numWorkers} threads. Only a bounded number
+ * of chunks is in flight at any time, so memory use doesn't depend on the size of the input.<br>
+ * Steps that need the whole data set - reductions, grouping into sequences by key, and sorted rank calculation -
+ * act as barriers: records reaching such a step are collected and passed to {@link LocalTransformExecutor},
+ * and streaming resumes on its output.<br>
+ * Output order is the same as input order for row-wise steps.
+ * <p>
+ * Note: unlike {@link LocalTransformExecutor}, row-wise output isn't round-tripped through Arrow,
+ * so writables are returned exactly as produced by the transforms.
+ */
+@Slf4j
+public class StreamingTransformExecutor {
+    public static final int DEFAULT_CHUNK_SIZE = 1024;
+
+    @Getter
+    private final TransformProcess transformProcess;
+    @Getter
+    private final int numWorkers;
+    @Getter
+    private final int chunkSize;
+
+    private final List<Stage> stages = new ArrayList<>();
+
+    /**
+     * Create executor using all available processors, and default chunk size
+     *
+     * @param transformProcess TransformProcess to execute
+     */
+    public StreamingTransformExecutor(@NonNull TransformProcess transformProcess) {
+        this(transformProcess, Runtime.getRuntime().availableProcessors(), DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param transformProcess TransformProcess to execute
+     * @param numWorkers       Number of threads used for row-wise steps
+     * @param chunkSize        Number of records (or sequences) processed by a worker at once
+     */
+    public StreamingTransformExecutor(@NonNull TransformProcess transformProcess, int numWorkers, int chunkSize) {
+        if (numWorkers < 1)
+            throw new IllegalStateException("Number of workers should be positive value");
+
+        if (chunkSize < 1)
+            throw new IllegalStateException("Chunk size should be positive value");
+
+        this.transformProcess = transformProcess;
+        this.numWorkers = numWorkers;
+        this.chunkSize = chunkSize;
+
+        Schema initialSchema = transformProcess.getInitialSchema();
+        boolean sequence = initialSchema instanceof SequenceSchema;
+
+        // first stage is always row-wise, so input validation happens on workers
+        FusedStage current = new FusedStage(sequence, sequence ? -1 : initialSchema.numColumns());
+        stages.add(current);
+        for (DataAction d : transformProcess.getActionList()) {
+            if (isBarrier(d)) {
+                Schema inputSchema = d.getReducer() != null ? d.getReducer().getInputSchema()
+                        : d.getConvertToSequence() != null ? d.getConvertToSequence().getInputSchema()
+                        : d.getCalculateSortedRank().getInputSchema();
+
+                TransformProcess barrierProcess = new TransformProcess(inputSchema, Collections.singletonList(d));
+                stages.add(new BarrierStage(barrierProcess));
+
+                sequence = barrierProcess.getFinalSchema() instanceof SequenceSchema;
+                current = null;
+            } else {
+                if (current == null) {
+                    current = new FusedStage(sequence, -1);
+                    stages.add(current);
+                }
+
+                current.actions.add(d);
+                if (d.getConvertToSequence() != null)
+                    sequence = true;
+                else if (d.getConvertFromSequence() != null)
+                    sequence = false;
+            }
+        }
+    }
+
+    /**
+     * Returns true if given step needs all records at once, and can't be applied to chunks independently
+     */
+    protected static boolean isBarrier(DataAction d) {
+        ConvertToSequence cts = d.getConvertToSequence();
+        return d.getReducer() != null || d.getCalculateSortedRank() != null
+                || (cts != null && !cts.isSingleStepSequencesMode());
+    }
+
+    /**
+     * Execute the TransformProcess, reading records from the RecordReader, and writing results to the RecordWriter.
+     * Note: this method can only be used if the TransformProcess starts and ends with non-sequence data
+     *
+     * @param reader Source of the records
+     * @param writer Destination for processed records
+     * @return Number of records written
+     */
+    public long execute(@NonNull final RecordReader reader, @NonNull final RecordWriter writer) throws IOException {
+        final AtomicLong counter = new AtomicLong(0);
+        try {
+            execute(new Iterator<List<Writable>>() {
+                @Override
+                public boolean hasNext() {
+                    return reader.hasNext();
+                }
+
+                @Override
+                public List<Writable> next() {
+                    return reader.next();
+                }
+            }, record -> {
+                try {
+                    writer.write(record);
+                    counter.incrementAndGet();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return counter.get();
+    }
+
+    /**
+     * Execute the TransformProcess on non-sequence input, producing non-sequence output
+     *
+     * @param input  Input records
+     * @param output Consumer of processed records, called from the calling thread in input order
+     */
+    public void execute(@NonNull Iterator<List<Writable>> input, @NonNull Consumer<List<Writable>> output) {
+        validate(false, false);
+        run(input, output);
+    }
+
+    /**
+     * Execute the TransformProcess on non-sequence input, producing sequences
+     *
+     * @param input  Input records
+     * @param output Consumer of processed sequences, called from the calling thread
+     */
+    public void executeToSequence(@NonNull Iterator<List<Writable>> input, @NonNull Consumer<List<List<Writable>>> output) {
+        validate(false, true);
+        run(input, output);
+    }
+
+    /**
+     * Execute the TransformProcess on sequence input, producing non-sequence output
+     *
+     * @param input  Input sequences
+     * @param output Consumer of processed records, called from the calling thread
+     */
+    public void executeSequenceToSeparate(@NonNull Iterator<List<List<Writable>>> input, @NonNull Consumer<List<Writable>> output) {
+        validate(true, false);
+        run(input, output);
+    }
+
+    /**
+     * Execute the TransformProcess on sequence input, producing sequences
+     *
+     * @param input  Input sequences
+     * @param output Consumer of processed sequences, called from the calling thread
+     */
+    public void executeSequenceToSequence(@NonNull Iterator<List<List<Writable>>> input, @NonNull Consumer<List<List<Writable>>> output) {
+        validate(true, true);
+        run(input, output);
+    }
+
+    protected void validate(boolean sequenceInput, boolean sequenceOutput) {
+        if ((transformProcess.getInitialSchema() instanceof SequenceSchema) != sequenceInput)
+            throw new IllegalStateException(sequenceInput ? "Cannot process sequence data: initial schema isn't a sequence schema"
+                    : "Cannot process non-sequence data: initial schema is a sequence schema");
+
+        if ((transformProcess.getFinalSchema() instanceof SequenceSchema) != sequenceOutput)
+            throw new IllegalStateException(sequenceOutput ? "Cannot return sequence data with this method"
+                    : "Cannot return non-sequence data with this method");
+    }
+
+    @SuppressWarnings("unchecked")
+    protected <T> void run(Iterator<?> input, Consumer<T> output) {
+        ExecutorService service = Executors.newFixedThreadPool(numWorkers, r -> {
+            Thread t = new Thread(r, "StreamingTransformExecutor worker");
+            t.setDaemon(true);
+            return t;
+        });
+
+        AtomicLong rejected = new AtomicLong(0);
+        try {
+            Iterator<Object> iterator = (Iterator<Object>) input;
+            for (Stage stage : stages)
+                iterator = stage.apply(iterator, service, rejected);
+
+            while (iterator.hasNext())
+                output.accept((T) iterator.next());
+        } finally {
+            service.shutdownNow();
+        }
+
+        if (rejected.get() > 0)
+            log.warn("Filtered out " + rejected.get() + " values");
+    }
+
+    protected interface Stage {
+        Iterator<Object> apply(Iterator<Object> input, ExecutorService service, AtomicLong rejected);
+    }
+
+    /**
+     * Sequence of row-wise steps, applied in a single pass over each element
+     */
+    protected class FusedStage implements Stage {
+        private final List<DataAction> actions = new ArrayList<>();
+        private final boolean sequenceInput;
+        private final int expectedColumns;
+
+        protected FusedStage(boolean sequenceInput, int expectedColumns) {
+            this.sequenceInput = sequenceInput;
+            this.expectedColumns = expectedColumns;
+        }
+
+        @Override
+        public Iterator<Object> apply(final Iterator<Object> input, final ExecutorService service, final AtomicLong rejected) {
+            final int maxInFlight = numWorkers * 2;
+            final boolean tryCatch = LocalTransformExecutor.isTryCatch();
+
+            return new Iterator<Object>() {
+                private final Deque<Future<List<Object>>> pending = new ArrayDeque<>();
+                private Iterator<Object> current = Collections.emptyIterator();
+
+                @Override
+                public boolean hasNext() {
+                    while (!current.hasNext()) {
+                        while (pending.size() < maxInFlight && input.hasNext()) {
+                            final List<Object> chunk = new ArrayList<>(chunkSize);
+                            while (chunk.size() < chunkSize && input.hasNext())
+                                chunk.add(input.next());
+
+                            pending.addLast(service.submit(() -> process(chunk, tryCatch, rejected)));
+                        }
+
+                        if (pending.isEmpty())
+                            return false;
+
+                        try {
+                            current = pending.pollFirst().get().iterator();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new RuntimeException(e);
+                        } catch (ExecutionException e) {
+                            Throwable cause = e.getCause();
+                            throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+                        }
+                    }
+                    return true;
+                }
+
+                @Override
+                public Object next() {
+                    if (!hasNext())
+                        throw new NoSuchElementException();
+
+                    return current.next();
+                }
+            };
+        }
+
+        protected List<Object> process(List<Object> chunk, boolean tryCatch, AtomicLong rejected) {
+            List<Object> result = new ArrayList<>(chunk.size());
+            for (Object element : chunk) {
+                if (expectedColumns >= 0 && ((List<?>) element).size() != expectedColumns) {
+                    rejected.incrementAndGet();
+                    continue;
+                }
+
+                apply(element, sequenceInput, 0, tryCatch, result);
+            }
+            return result;
+        }
+
+        @SuppressWarnings("unchecked")
+        protected void apply(Object element, boolean sequence, int step, boolean tryCatch, List<Object> result) {
+            for (int i = step; i < actions.size(); i++) {
+                DataAction d = actions.get(i);
+                if (d.getTransform() != null) {
+                    if (sequence) {
+                        List<List<Writable>> seq = new LocalSequenceTransformFunction(d.getTransform()).apply((List<List<Writable>>) element);
+                        if (tryCatch && new SequenceEmptyRecordFunction().apply(seq))
+                            return;
+                        element = seq;
+                    } else {
+                        List<Writable> record = new LocalTransformFunction(d.getTransform()).apply((List<Writable>) element);
+                        if (tryCatch && new EmptyRecordFunction().apply(record))
+                            return;
+                        element = record;
+                    }
+                } else if (d.getFilter() != null) {
+                    boolean keep = sequence ? new LocalSequenceFilterFunction(d.getFilter()).apply((List<List<Writable>>) element)
+                            : new LocalFilterFunction(d.getFilter()).apply((List<Writable>) element);
+                    if (!keep)
+                        return;
+                } else if (d.getConvertToSequence() != null) {
+                    element = new ConvertToSequenceLengthOne().apply((List<Writable>) element);
+                    sequence = true;
+                } else if (d.getConvertFromSequence() != null) {
+                    if (!sequence)
+                        throw new IllegalStateException("Cannot execute ConvertFromSequence operation: current data isn't a sequence");
+
+                    for (List<Writable> record : (List<List<Writable>>) element)
+                        apply(record, false, i + 1, tryCatch, result);
+                    return;
+                } else if (d.getSequenceSplit() != null) {
+                    if (!sequence)
+                        throw new IllegalStateException("Error during execution of SequenceSplit: current data isn't a sequence");
+
+                    for (List<List<Writable>> split : d.getSequenceSplit().split((List<List<Writable>>) element))
+                        apply(split, true, i + 1, tryCatch, result);
+                    return;
+                } else {
+                    throw new IllegalStateException("Unsupported row-wise action: " + d);
+                }
+            }
+
+            result.add(element);
+        }
+    }
+
+    /**
+     * Single step that needs the whole data set. Input is materialized and passed to LocalTransformExecutor
+     */
+    protected static class BarrierStage implements Stage {
+        private final TransformProcess process;
+
+        protected BarrierStage(TransformProcess process) {
+            this.process = process;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Iterator<Object> apply(Iterator<Object> input, ExecutorService service, AtomicLong rejected) {
+            List<List<Writable>> records = new ArrayList<>();
+            while (input.hasNext())
+                records.add((List<Writable>) input.next());
+
+            if (records.isEmpty())
+                return Collections.emptyIterator();
+
+            Pair<List<List<Writable>>, List<List<List<Writable>>>> result = LocalTransformExecutor.execute(records, null, process);
+            List<?> output = result.getFirst() != null ? result.getFirst() : result.getSecond();
+            return ((List<Object>) output).iterator();
+        }
+    }
+}
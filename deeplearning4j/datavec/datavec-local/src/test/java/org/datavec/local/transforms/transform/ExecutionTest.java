@@ -23,13 +23,16 @@ import org.datavec.api.transform.ReduceOp;
 import org.datavec.api.transform.TransformProcess;
 import org.datavec.api.transform.condition.ConditionOp;
 import org.datavec.api.transform.condition.column.DoubleColumnCondition;
+import org.datavec.api.transform.condition.column.IntegerColumnCondition;
 import org.datavec.api.transform.reduce.Reducer;
 import org.datavec.api.transform.schema.Schema;
 import org.datavec.api.transform.schema.SequenceSchema;
 import org.datavec.api.writable.*;
 import org.datavec.python.PythonTransform;
 
+import org.datavec.local.transforms.ColumnarTransformExecutor;
 import org.datavec.local.transforms.LocalTransformExecutor;
+import org.datavec.local.transforms.StreamingTransformExecutor;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.nd4j.linalg.api.ndarray.INDArray;
@@ -247,6 +250,140 @@ public class ExecutionTest  {
         assertEquals(expOut, out);
     }
 
+    @Test
+    public void testStreamingExecution() {
+        Schema schema = new Schema.Builder().addColumnInteger("col0")
+                .addColumnCategorical("col1", "state0", "state1", "state2").addColumnDouble("col2").build();
+
+        TransformProcess tp = new TransformProcess.Builder(schema).categoricalToInteger("col1")
+                .filter(new DoubleColumnCondition("col2", ConditionOp.LessThan, 10.0))
+                .doubleMathOp("col2", MathOp.Add, 10.0).build();
+
+        List<List<Writable>> inputData = new ArrayList<>();
+        List<List<Writable>> expected = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            inputData.add(Arrays.<Writable>asList(new IntWritable(i), new Text("state" + (i % 3)), new DoubleWritable(i / 2.0)));
+            if (i / 2.0 >= 10.0)
+                expected.add(Arrays.<Writable>asList(new IntWritable(i), new IntWritable(i % 3), new DoubleWritable(i / 2.0 + 10.0)));
+        }
+        //Record with wrong number of columns should be skipped, as in LocalTransformExecutor
+        inputData.add(Arrays.<Writable>asList(new IntWritable(100), new Text("state0")));
+
+        StreamingTransformExecutor executor = new StreamingTransformExecutor(tp, 3, 7);
+        List<List<Writable>> out = new ArrayList<>();
+        executor.execute(inputData.iterator(), out::add);
+
+        //Order is preserved for row-wise steps
+        assertEquals(expected, out);
+    }
+
+    @Test
+    public void testStreamingExecutionReduction() {
+        Schema s = new Schema.Builder()
+                .addColumnInteger("intCol")
+                .addColumnString("textCol")
+                .addColumnDouble("doubleCol")
+                .build();
+
+        TransformProcess tp = new TransformProcess.Builder(s)
+                .doubleMathOp("doubleCol", MathOp.Multiply, 2.0)
+                .reduce(new Reducer.Builder(ReduceOp.TakeFirst)
+                        .keyColumns("intCol")
+                        .takeFirstColumns("textCol")
+                        .meanColumns("doubleCol").build())
+                .build();
+
+        List<List<Writable>> in = new ArrayList<>();
+        for (int i = 0; i < 50; i++)
+            in.add(Arrays.<Writable>asList(new IntWritable(i % 5), new Text("t" + i), new DoubleWritable(i)));
+
+        Comparator<List<Writable>> comparator = new Comparator<List<Writable>>() {
+            @Override
+            public int compare(List<Writable> o1, List<Writable> o2) {
+                return Integer.compare(o1.get(0).toInt(), o2.get(0).toInt());
+            }
+        };
+
+        List<List<Writable>> expected = new ArrayList<>(LocalTransformExecutor.execute(in, tp));
+        Collections.sort(expected, comparator);
+
+        List<List<Writable>> out = new ArrayList<>();
+        new StreamingTransformExecutor(tp, 2, 4).execute(in.iterator(), out::add);
+        Collections.sort(out, comparator);
+
+        assertEquals(5, out.size());
+        assertEquals(expected, out);
+    }
+
+    @Test
+    public void testColumnarExecution() {
+        Schema schema = new Schema.Builder().addColumnInteger("col0")
+                .addColumnCategorical("col1", "state0", "state1", "state2").addColumnDouble("col2")
+                .addColumnFloat("col3").addColumnLong("col4").build();
+
+        TransformProcess tp = new TransformProcess.Builder(schema)
+                .categoricalToInteger("col1")
+                .doubleMathOp("col2", MathOp.Multiply, 2.0)
+                .filter(new DoubleColumnCondition("col2", ConditionOp.LessThan, 20.0))
+                .floatMathOp("col3", MathOp.Add, 5f)
+                .integerMathOp("col0", MathOp.ReverseSubtract, 100)
+                .longMathOp("col4", MathOp.ScalarMax, 30L)
+                .doubleMathFunction("col2", MathFunction.SQRT)
+                .removeColumns("col3")
+                .renameColumn("col4", "renamed")
+                .build();
+
+        List<List<Writable>> inputData = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            inputData.add(Arrays.<Writable>asList(new IntWritable(i), new Text("state" + (i % 3)),
+                    new DoubleWritable(i / 2.0), new FloatWritable(i * 0.5f), new LongWritable(i)));
+        }
+
+        List<List<Writable>> expected = new ArrayList<>(LocalTransformExecutor.execute(inputData, tp));
+        List<List<Writable>> out = new ArrayList<>(ColumnarTransformExecutor.execute(inputData, tp));
+
+        assertEquals(30, out.size());
+        assertEquals(expected, out);
+    }
+
+    @Test
+    public void testColumnarExecutionReduction() {
+        Schema s = new Schema.Builder()
+                .addColumnInteger("intCol")
+                .addColumnString("textCol")
+                .addColumnDouble("doubleCol")
+                .build();
+
+        TransformProcess tp = new TransformProcess.Builder(s)
+                .doubleMathOp("doubleCol", MathOp.Add, 1.0)
+                .filter(new IntegerColumnCondition("intCol", ConditionOp.Equal, 3))
+                .reduce(new Reducer.Builder(ReduceOp.TakeFirst)
+                        .keyColumns("intCol")
+                        .takeFirstColumns("textCol")
+                        .meanColumns("doubleCol").build())
+                .build();
+
+        List<List<Writable>> in = new ArrayList<>();
+        for (int i = 0; i < 40; i++)
+            in.add(Arrays.<Writable>asList(new IntWritable(i % 4), new Text("t" + i), new DoubleWritable(i)));
+
+        Comparator<List<Writable>> comparator = new Comparator<List<Writable>>() {
+            @Override
+            public int compare(List<Writable> o1, List<Writable> o2) {
+                return Integer.compare(o1.get(0).toInt(), o2.get(0).toInt());
+            }
+        };
+
+        List<List<Writable>> expected = new ArrayList<>(LocalTransformExecutor.execute(in, tp));
+        Collections.sort(expected, comparator);
+
+        List<List<Writable>> out = new ArrayList<>(ColumnarTransformExecutor.execute(in, tp));
+        Collections.sort(out, comparator);
+
+        assertEquals(3, out.size());
+        assertEquals(expected, out);
+    }
+
     @Test(timeout = 60000L)
     @Ignore("AB 2019/05/21 - Fine locally, timeouts on CI - Issue #7657 and #7771")
     public void testPythonExecutionNdarray()throws Exception{
@@ -17,11 +17,17 @@
 package org.deeplearning4j.datasets.iterator;
 
 import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.datasets.iterator.file.DataSetShard;
+import org.deeplearning4j.datasets.iterator.file.DataSetShardWriter;
 import org.deeplearning4j.datasets.iterator.file.FileDataSetIterator;
 import org.deeplearning4j.datasets.iterator.file.FileMultiDataSetIterator;
+import org.deeplearning4j.datasets.iterator.file.MappedDataSetIterator;
+import org.deeplearning4j.datasets.iterator.file.MappedMultiDataSetIterator;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.dataset.DataSet;
 import org.nd4j.linalg.dataset.api.MultiDataSet;
 import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
@@ -33,6 +39,8 @@ import java.util.*;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class TestFileIterators extends BaseDL4JTest {
 
@@ -267,4 +275,114 @@ public class TestFileIterators extends BaseDL4JTest {
         assertEquals(2, count); //2x15 = 30 examples
     }
 
+    @Test
+    public void testMappedDataSetIterator() throws Exception {
+        folder.create();
+        File f = folder.newFolder();
+
+        List<DataSet> exp = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            INDArray features = Nd4j.rand(new int[]{4, 3, 5});
+            INDArray labels = Nd4j.rand(new int[]{4, 2, 5});
+            INDArray featuresMask = Nd4j.ones(4, 5);
+            INDArray labelsMask = Nd4j.zeros(4, 5);
+            exp.add(new DataSet(features, labels, featuresMask, labelsMask));
+        }
+        // views and different data types should be supported too
+        exp.add(new DataSet(Nd4j.linspace(1, 20, 20).reshape('f', 4, 5).getColumns(1, 2, 3),
+                Nd4j.linspace(1, 4, 4).reshape(4, 1).castTo(DataType.INT)));
+
+        List<File> shards = DataSetShardWriter.export(new ExistingDataSetIterator(exp), f, 2);
+        assertEquals(3, shards.size());
+
+        MappedDataSetIterator iter = new MappedDataSetIterator(f, null, false);
+        assertEquals(6, iter.numRecords());
+        assertEquals(4, iter.batch());
+
+        List<DataSet> act = new ArrayList<>();
+        while (iter.hasNext()) {
+            act.add(iter.next());
+        }
+        assertEquals(exp, act);
+
+        // detached DataSets should be equal as well, after the iterator was closed
+        iter.close();
+        MappedDataSetIterator detached = new MappedDataSetIterator(f, new Random(12345), true);
+        act.clear();
+        while (detached.hasNext()) {
+            act.add(detached.next());
+        }
+        detached.close();
+        assertEquals(exp.size(), act.size());
+        assertTrue(act.containsAll(exp));
+
+        // modifications of mapped arrays shouldn't be written back to the file
+        iter = new MappedDataSetIterator(f, null, false);
+        iter.next().getFeatures().assign(0);
+        iter.reset();
+        assertEquals(exp.get(0), iter.next());
+        iter.close();
+    }
+
+    @Test
+    public void testMappedMultiDataSetIterator() throws Exception {
+        folder.create();
+        File f = folder.newFolder();
+        File shard = new File(f, "test.shard");
+
+        MultiDataSet d1 = new org.nd4j.linalg.dataset.MultiDataSet(
+                new INDArray[]{Nd4j.rand(3, 4), Nd4j.rand(3, 2)},
+                new INDArray[]{Nd4j.rand(3, 1)},
+                new INDArray[]{null, Nd4j.ones(3, 2)},
+                null);
+        MultiDataSet d2 = new org.nd4j.linalg.dataset.MultiDataSet(
+                new INDArray[]{Nd4j.rand(5, 4), Nd4j.rand(5, 2)},
+                new INDArray[]{Nd4j.rand(5, 1)});
+
+        try (DataSetShardWriter writer = new DataSetShardWriter(shard)) {
+            writer.write(d1);
+            writer.write(d2);
+            assertEquals(2, writer.numRecords());
+        }
+
+        MappedMultiDataSetIterator iter = new MappedMultiDataSetIterator(f, null, false);
+        assertEquals(d1, iter.next());
+        assertEquals(d2, iter.next());
+        assertFalse(iter.hasNext());
+        iter.close();
+    }
+
+    @Test
+    public void testMappedShardLifetime() throws Exception {
+        folder.create();
+        File f = folder.newFolder();
+        File shardFile = new File(f, "test.shard");
+
+        INDArray view = Nd4j.linspace(1, 20, 20).reshape(4, 5).getColumns(1, 2);
+        INDArray labels = Nd4j.rand(4, 1);
+        MultiDataSet ds = new org.nd4j.linalg.dataset.MultiDataSet(new INDArray[]{view}, new INDArray[]{labels});
+        MultiDataSet exp = ds.copy();
+
+        try (DataSetShardWriter writer = new DataSetShardWriter(shardFile)) {
+            writer.write(ds);
+        }
+
+        // writer must not replace arrays of the caller's MultiDataSet with its contiguous copies
+        assertTrue(view == ds.getFeatures(0));
+        assertTrue(labels == ds.getLabels(0));
+
+        DataSetShard shard = DataSetShard.open(shardFile);
+        MultiDataSet act = shard.getMultiDataSet(0, false);
+        shard.close();
+        shard = null;
+
+        // arrays keep mapped region alive on their own
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+
+        assertEquals(exp, act);
+        assertEquals(exp.getFeatures(0).sumNumber().doubleValue(), act.getFeatures(0).sumNumber().doubleValue(), 1e-5);
+    }
 }
@@ -29,11 +29,14 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.learning.config.Adam;
 import org.nd4j.linalg.lossfunctions.LossFunctions;
 import org.nd4j.linalg.primitives.Pair;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
@@ -299,4 +302,104 @@ public class TestCheckpointListener extends BaseDL4JTest {
         assertNotNull(fList);
         assertEquals(2, fList.length);
     }
+
+    @Test
+    public void testAsyncDeltaCheckpoints() throws Exception {
+        for(boolean keepAll : new boolean[]{true, false}) {
+            File f = tempDir.newFolder();
+            MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                    .updater(new Adam(0.01))
+                    .list()
+                    .layer(new OutputLayer.Builder().nIn(4).nOut(3).activation(Activation.SOFTMAX)
+                            .lossFunction(LossFunctions.LossFunction.MCXENT).build())
+                    .build();
+            MultiLayerNetwork net = new MultiLayerNetwork(conf);
+            net.init();
+            DataSetIterator iter = new IrisDataSetIterator(75, 150);
+
+            CheckpointListener.Builder b = new CheckpointListener.Builder(f)
+                    .saveEveryEpoch()
+                    .saveAsync(true)
+                    .deltaCheckpoints(3);
+            CheckpointListener l = (keepAll ? b.keepAll() : b.keepLast(2)).build();
+            net.setListeners(l);
+
+            List<INDArray> params = new ArrayList<>();
+            List<INDArray> updaterStates = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                net.fit(iter);
+                params.add(net.params().dup());
+                updaterStates.add(net.getUpdater().getStateViewArray().dup());
+            }
+            l.waitForPendingCheckpoint();
+
+            //Full checkpoints: 0, 3, 6. Others are deltas relative to the most recent full one
+            List<Checkpoint> available = l.availableCheckpoints();
+            for (Checkpoint c : available) {
+                int num = c.getCheckpointNum();
+                assertEquals(num % 3 != 0, c.isDelta());
+                if (c.isDelta()) {
+                    assertEquals(num - num % 3, (int) c.getBaseCheckpointNum());
+                }
+
+                MultiLayerNetwork n = l.loadCheckpointMLN(c);
+                assertEquals(num, n.getEpochCount());
+                assertEquals(params.get(num), n.params());
+                assertEquals(updaterStates.get(num), n.getUpdater().getStateViewArray());
+            }
+
+            if (keepAll) {
+                assertEquals(8, available.size());
+            } else {
+                //Checkpoint 6 would be retained anyway, as checkpoint 7 depends on it
+                assertEquals(2, available.size());
+                assertEquals(6, available.get(0).getCheckpointNum());
+                assertEquals(7, available.get(1).getCheckpointNum());
+            }
+        }
+    }
+
+    @Test
+    public void testAsyncCheckpointFailure() throws Exception {
+        File f = tempDir.newFolder();
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .updater(new Adam(0.01))
+                .list()
+                .layer(new OutputLayer.Builder().nIn(4).nOut(3).activation(Activation.SOFTMAX)
+                        .lossFunction(LossFunctions.LossFunction.MCXENT).build())
+                .build();
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+        DataSetIterator iter = new IrisDataSetIterator(75, 150);
+
+        //Directory in place of the first checkpoint file: writing checkpoint 0 fails
+        assertTrue(new File(f, "checkpoint_0_MultiLayerNetwork.zip").mkdir());
+
+        CheckpointListener l = new CheckpointListener.Builder(f)
+                .keepAll()
+                .saveEveryEpoch()
+                .saveAsync(true)
+                .deltaCheckpoints(3)
+                .build();
+        net.setListeners(l);
+
+        net.fit(iter);
+        try {
+            l.waitForPendingCheckpoint();
+            fail("Expected exception");
+        } catch (RuntimeException e){
+            //Expected
+        }
+        assertNull(l.lastCheckpoint());
+        assertTrue(l.availableCheckpoints().isEmpty());
+
+        //Failed checkpoint can't be used as base for delta checkpoints
+        net.fit(iter);
+        l.waitForPendingCheckpoint();
+        Checkpoint c = l.lastCheckpoint();
+        assertNotNull(c);
+        assertEquals(1, c.getCheckpointNum());
+        assertFalse(c.isDelta());
+        assertEquals(net.params(), l.loadCheckpointMLN(c).params());
+    }
 }
@@ -33,6 +33,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.buffer.DataType;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.dataset.DataSet;
 import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
@@ -40,6 +41,7 @@ import org.nd4j.linalg.dataset.api.preprocessor.Normalizer;
 import org.nd4j.linalg.dataset.api.preprocessor.NormalizerMinMaxScaler;
 import org.nd4j.linalg.dataset.api.preprocessor.NormalizerStandardize;
 import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.learning.config.Adam;
 import org.nd4j.linalg.learning.config.Sgd;
 import org.nd4j.linalg.lossfunctions.LossFunctions;
 import org.nd4j.linalg.primitives.Pair;
@@ -49,6 +51,8 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import static org.junit.Assert.*;
 
@@ -499,4 +503,62 @@ public class ModelSerializerTest extends BaseDL4JTest {
         ComputationGraph restoredNet = ModelSerializer.restoreComputationGraph(tempFile);
         assertEquals(net.params(), restoredNet.params());
     }
+
+    @Test
+    public void testUncompressedParamsRestore() throws Exception {
+        for (DataType dataType : new DataType[]{DataType.FLOAT, DataType.DOUBLE}) {
+            MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder().seed(12345).dataType(dataType)
+                            .updater(new Adam(0.01)).activation(Activation.TANH).weightInit(WeightInit.XAVIER).list()
+                            .layer(0, new DenseLayer.Builder().nIn(5).nOut(20).build())
+                            .layer(1, new OutputLayer.Builder().lossFunction(LossFunctions.LossFunction.MSE).nIn(20).nOut(6).build())
+                            .build();
+
+            MultiLayerNetwork net = new MultiLayerNetwork(conf);
+            net.init();
+            net.fit(Nd4j.rand(dataType, 8, 5), Nd4j.rand(dataType, 8, 6));
+
+            File compressed = tempDir.newFile();
+            File uncompressed = tempDir.newFile();
+            ModelSerializer.writeModel(net, compressed, true, null, true);
+            ModelSerializer.writeModel(net, uncompressed, true, null, false);
+
+            try (ZipFile zipFile = new ZipFile(uncompressed)) {
+                assertEquals(ZipEntry.STORED, zipFile.getEntry(ModelSerializer.COEFFICIENTS_BIN).getMethod());
+                assertEquals(ZipEntry.STORED, zipFile.getEntry(ModelSerializer.UPDATER_BIN).getMethod());
+            }
+
+            for (File f : new File[]{compressed, uncompressed}) {
+                MultiLayerNetwork restored = ModelSerializer.restoreMultiLayerNetwork(f, true);
+                assertEquals(net.params(), restored.params());
+                assertEquals(net.getUpdater().getStateViewArray(), restored.getUpdater().getStateViewArray());
+
+                // parameters array is used by the network as is, so layer params are views of the restored array
+                restored.params().assign(0);
+                assertEquals(0.0, restored.getLayer(0).getParam("W").sumNumber().doubleValue(), 0.0);
+
+                MultiLayerNetwork inference = ModelSerializer.restoreMultiLayerNetwork(f, false);
+                assertEquals(net.params(), inference.params());
+            }
+        }
+    }
+
+    @Test
+    public void testUncompressedParamsRestoreMultipleChunks() throws Exception {
+        // parameters span a few restore chunks, with a partial chunk at the end
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder().seed(12345).dataType(DataType.FLOAT)
+                        .updater(new Sgd(0.01)).activation(Activation.TANH).weightInit(WeightInit.XAVIER).list()
+                        .layer(0, new DenseLayer.Builder().nIn(1000).nOut(2500).build())
+                        .layer(1, new OutputLayer.Builder().lossFunction(LossFunctions.LossFunction.MSE).nIn(2500).nOut(3).build())
+                        .build();
+
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+        assertTrue(net.params().length() > 2 * 1024 * 1024);
+
+        File uncompressed = tempDir.newFile();
+        ModelSerializer.writeModel(net, uncompressed, false, null, false);
+
+        MultiLayerNetwork restored = ModelSerializer.restoreMultiLayerNetwork(uncompressed, false);
+        assertEquals(net.params(), restored.params());
+    }
 }
@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.datasets.iterator.file;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
+import org.apache.commons.io.FileUtils;
+import org.nd4j.linalg.util.MathUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Base class for iterating over records of memory-mapped shards, created with {@link DataSetShardWriter}.
+ * Unlike {@link BaseFileIterator}, records are returned as they were exported: no splitting or merging happens here.
+ *
+ * @param <T> Type of dataset
+ * @param <P> Type of preprocessor
+ */
+public abstract class BaseShardIterator<T, P> implements Iterator<T> {
+
+    protected final DataSetShard[] shards;
+    protected final Random rng;
+    protected final boolean detach;
+
+    // shard and record index of each record, in order of iteration
+    protected final int[] shardIndices;
+    protected final int[] recordIndices;
+    protected int[] order;
+    protected int position;
+
+    @Getter
+    @Setter
+    protected P preProcessor;
+
+    protected BaseShardIterator(@NonNull File rootDir, Random rng, boolean detach) {
+        this(listShards(rootDir), rng, detach);
+    }
+
+    protected BaseShardIterator(@NonNull List<File> shardFiles, Random rng, boolean detach) {
+        if (shardFiles.isEmpty())
+            throw new IllegalStateException("No shards were provided");
+
+        this.rng = rng;
+        this.detach = detach;
+        this.shards = new DataSetShard[shardFiles.size()];
+
+        int numRecords = 0;
+        try {
+            for (int e = 0; e < shards.length; e++) {
+                shards[e] = DataSetShard.open(shardFiles.get(e));
+                numRecords += shards[e].numRecords();
+            }
+        } catch (IOException e) {
+            close();
+            throw new RuntimeException("Error opening shards", e);
+        }
+
+        shardIndices = new int[numRecords];
+        recordIndices = new int[numRecords];
+        int cnt = 0;
+        for (int s = 0; s < shards.length; s++) {
+            for (int r = 0; r < shards[s].numRecords(); r++) {
+                shardIndices[cnt] = s;
+                recordIndices[cnt] = r;
+                cnt++;
+            }
+        }
+
+        if (rng != null) {
+            order = new int[numRecords];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            MathUtils.shuffleArray(order, rng);
+        }
+    }
+
+    protected static List<File> listShards(File rootDir) {
+        List<File> files = new ArrayList<>(FileUtils.listFiles(rootDir, new String[] {DataSetShard.EXTENSION}, true));
+        if (files.isEmpty())
+            throw new IllegalStateException("Root directory doesn't contain any shards: " + rootDir);
+
+        // file listing order isn't consistent across platforms
+        Collections.sort(files);
+        return files;
+    }
+
+    /**
+     * This method returns total number of records in all shards
+     *
+     * @return
+     */
+    public int numRecords() {
+        return shardIndices.length;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return position < shardIndices.length;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("No next element");
+        }
+
+        int idx = (order != null ? order[position++] : position++);
+        T next = load(shards[shardIndices[idx]], recordIndices[idx]);
+        applyPreprocessor(next);
+        return next;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Not supported");
+    }
+
+    public void reset() {
+        position = 0;
+        if (rng != null) {
+            MathUtils.shuffleArray(order, rng);
+        }
+    }
+
+    public boolean resetSupported() {
+        return true;
+    }
+
+    public boolean asyncSupported() {
+        return true;
+    }
+
+    /**
+     * This method releases all mapped shards. Non-detached arrays returned by this iterator shouldn't be used after this call.
+     */
+    public void close() {
+        for (DataSetShard shard : shards) {
+            if (shard != null)
+                shard.close();
+        }
+    }
+
+    protected abstract T load(DataSetShard shard, int record);
+
+    protected abstract void applyPreprocessor(T toPreProcess);
+}
@@ -0,0 +1,379 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.datasets.iterator.file;
+
+import lombok.NonNull;
+import org.bytedeco.javacpp.BooleanPointer;
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.DoublePointer;
+import org.bytedeco.javacpp.FloatPointer;
+import org.bytedeco.javacpp.IntPointer;
+import org.bytedeco.javacpp.LongPointer;
+import org.bytedeco.javacpp.Pointer;
+import org.bytedeco.javacpp.ShortPointer;
+import org.bytedeco.javacpp.indexer.*;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.MultiDataSet;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Memory-mapped shard of DataSet/MultiDataSet records, written by {@link DataSetShardWriter}.<br>
+ * Shard layout is:<br>
+ * - fixed size header: magic, version, byte order, number of records, offset and length of the index<br>
+ * - data blocks of all arrays, each one aligned to {@link #ALIGNMENT} bytes<br>
+ * - index: for each record, groups of features, labels, features masks and labels masks, with data type, order, shape
+ * and offset of each array<br>
+ * <br>
+ * Shard file is mapped into memory once, and arrays are created directly on top of the mapped data blocks, so no
+ * deserialization or copying happens when record is accessed. File is mapped in private (copy-on-write) mode, so
+ * in-place modifications (i.e. normalization via preprocessors) are allowed and never written back to the file.<br>
+ * <br>
+ * Each array keeps a reference to the mapped region it was created on, so mapping is released only once this shard is
+ * closed and all arrays created on top of it became unreachable.
+ *
+ * @see DataSetShardWriter
+ * @see MappedDataSetIterator
+ * @see MappedMultiDataSetIterator
+ */
+public class DataSetShard implements Closeable {
+    public static final String EXTENSION = "shard";
+    public static final int VERSION = 1;
+    public static final int ALIGNMENT = 64;
+    public static final int HEADER_LENGTH = 64;
+    public static final long MAX_SHARD_LENGTH = Integer.MAX_VALUE;
+
+    protected static final byte[] MAGIC = {'D', 'L', '4', 'J', 'S', 'H', 'R', 'D'};
+    protected static final int LITTLE_ENDIAN = 1;
+    protected static final int BIG_ENDIAN = 2;
+
+    // record groups
+    protected static final int FEATURES = 0;
+    protected static final int LABELS = 1;
+    protected static final int FEATURES_MASKS = 2;
+    protected static final int LABELS_MASKS = 3;
+    protected static final int NUM_GROUPS = 4;
+
+    protected final File file;
+    protected volatile ByteBuffer mapped;
+    // [record][group][array], group is null if absent, array is null if absent
+    protected final ArrayEntry[][][] records;
+
+    protected static class ArrayEntry {
+        protected DataType dataType;
+        protected char order;
+        protected long[] shape;
+        protected long offset;
+        protected long length;
+
+        protected long byteLength() {
+            return length * dataType.width();
+        }
+    }
+
+    protected DataSetShard(@NonNull File file, @NonNull ByteBuffer mapped, @NonNull ArrayEntry[][][] records) {
+        this.file = file;
+        this.mapped = mapped;
+        this.records = records;
+    }
+
+    /**
+     * This method maps given shard file into memory, and reads its index
+     *
+     * @param file shard file, created with DataSetShardWriter
+     * @return
+     * @throws IOException
+     */
+    public static DataSetShard open(@NonNull File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_LENGTH)
+                throw new IOException("File is too small to be a shard: " + file);
+
+            if (size > MAX_SHARD_LENGTH)
+                throw new IOException("Shard file is too large to be mapped: " + file + ", " + size + " bytes");
+
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.PRIVATE, 0, size);
+
+            byte[] magic = new byte[MAGIC.length];
+            mapped.get(magic);
+            if (!Arrays.equals(MAGIC, magic))
+                throw new IOException("Not a shard file: " + file);
+
+            // header is always little endian, index and data blocks use byte order of the writer
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+            int version = mapped.getInt();
+            int byteOrder = mapped.getInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported shard version: " + version);
+
+            ByteOrder order = byteOrder == LITTLE_ENDIAN ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+            if (order != ByteOrder.nativeOrder())
+                throw new IOException("Shard " + file + " was written with " + order
+                                + " byte order, and can't be mapped on this platform");
+
+            int numRecords = mapped.getInt();
+            mapped.getInt();
+            long indexOffset = mapped.getLong();
+            long indexLength = mapped.getLong();
+            if (numRecords < 0 || indexOffset < HEADER_LENGTH || indexOffset + indexLength > size)
+                throw new IOException("Corrupt shard header: " + file);
+
+            ByteBuffer index = mapped.duplicate().order(order);
+            index.position((int) indexOffset);
+            index.limit((int) (indexOffset + indexLength));
+
+            ArrayEntry[][][] records = new ArrayEntry[numRecords][][];
+            for (int r = 0; r < numRecords; r++) {
+                records[r] = new ArrayEntry[NUM_GROUPS][];
+                for (int g = 0; g < NUM_GROUPS; g++) {
+                    int numArrays = index.getInt();
+                    if (numArrays < 0)
+                        continue;
+
+                    records[r][g] = new ArrayEntry[numArrays];
+                    for (int a = 0; a < numArrays; a++)
+                        records[r][g][a] = readEntry(index, size, file);
+                }
+            }
+
+            return new DataSetShard(file, mapped, records);
+        }
+    }
+
+    protected static ArrayEntry readEntry(ByteBuffer index, long fileSize, File file) throws IOException {
+        int rank = index.getInt();
+        if (rank < 0)
+            return null;
+
+        int typeIdx = index.getInt();
+        if (typeIdx < 0 || typeIdx >= DataType.values().length)
+            throw new IOException("Corrupt shard index, unknown data type: " + file);
+
+        ArrayEntry entry = new ArrayEntry();
+        entry.dataType = DataType.values()[typeIdx];
+        entry.order = index.getChar();
+        entry.shape = new long[rank];
+        entry.length = 1;
+        for (int e = 0; e < rank; e++) {
+            entry.shape[e] = index.getLong();
+            entry.length *= entry.shape[e];
+        }
+        entry.offset = index.getLong();
+
+        if (entry.offset < HEADER_LENGTH || entry.offset + entry.byteLength() > fileSize)
+            throw new IOException("Corrupt shard index, array is out of file bounds: " + file);
+
+        return entry;
+    }
+
+    /**
+     * This method returns number of records stored in this shard
+     *
+     * @return
+     */
+    public int numRecords() {
+        return records.length;
+    }
+
+    /**
+     * This method returns number of examples in given record, as defined by first features array
+     *
+     * @param record
+     * @return
+     */
+    public long numExamples(int record) {
+        ArrayEntry[] features = records[record][FEATURES];
+        if (features == null || features.length == 0 || features[0] == null || features[0].shape.length == 0)
+            return 0;
+
+        return features[0].shape[0];
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * This method returns given record as DataSet. Record should have single features and labels array.
+     *
+     * @param record index of the record
+     * @param detach if true, arrays will be copied out of the mapped file
+     * @return
+     */
+    public DataSet getDataSet(int record, boolean detach) {
+        ArrayEntry[][] groups = records[record];
+        for (int g = 0; g < NUM_GROUPS; g++) {
+            if (groups[g] != null && groups[g].length > 1)
+                throw new IllegalStateException("Record " + record + " of shard " + file
+                                + " has multiple inputs or outputs, use getMultiDataSet() instead");
+        }
+
+        return new DataSet(first(groups[FEATURES], detach), first(groups[LABELS], detach),
+                        first(groups[FEATURES_MASKS], detach), first(groups[LABELS_MASKS], detach));
+    }
+
+    /**
+     * This method returns given record as MultiDataSet
+     *
+     * @param record index of the record
+     * @param detach if true, arrays will be copied out of the mapped file
+     * @return
+     */
+    public MultiDataSet getMultiDataSet(int record, boolean detach) {
+        ArrayEntry[][] groups = records[record];
+        return new org.nd4j.linalg.dataset.MultiDataSet(all(groups[FEATURES], detach), all(groups[LABELS], detach),
+                        all(groups[FEATURES_MASKS], detach), all(groups[LABELS_MASKS], detach));
+    }
+
+    protected INDArray first(ArrayEntry[] group, boolean detach) {
+        return group == null || group.length == 0 ? null : toArray(group[0], detach);
+    }
+
+    protected INDArray[] all(ArrayEntry[] group, boolean detach) {
+        if (group == null)
+            return null;
+
+        INDArray[] result = new INDArray[group.length];
+        for (int e = 0; e < group.length; e++)
+            result[e] = toArray(group[e], detach);
+
+        return result;
+    }
+
+    protected INDArray toArray(ArrayEntry entry, boolean detach) {
+        if (entry == null)
+            return null;
+
+        ByteBuffer buffer = mapped;
+        if (buffer == null)
+            throw new IllegalStateException("Shard was already closed: " + file);
+
+        if (entry.length == 0)
+            return Nd4j.create(entry.dataType, entry.shape);
+
+        ByteBuffer slice = buffer.duplicate();
+        slice.position((int) entry.offset);
+        slice.limit((int) (entry.offset + entry.byteLength()));
+        slice = slice.slice().order(ByteOrder.nativeOrder());
+
+        // no copy here: data buffer points straight to the mapped region
+        DataBuffer data = mappedBuffer(slice, entry.length, entry.dataType);
+        INDArray array = Nd4j.create(data, entry.shape, Nd4j.getStrides(entry.shape, entry.order), 0, entry.order, entry.dataType);
+
+        return detach ? array.dup(entry.order) : array;
+    }
+
+    /**
+     * This method creates DataBuffer on top of the given slice of mapped file.<br>
+     * Mapping is unmapped once its ByteBuffer is garbage collected, and raw pointer doesn't prevent that. So typed pointer
+     * created here holds a reference to the slice, and DataBuffer holds a reference to that pointer: mapping stays alive for
+     * as long as any buffer (or array) created on top of it.
+     *
+     * @param slice  slice of the mapped file, in native byte order
+     * @param length number of elements
+     * @param dataType data type of elements
+     * @return
+     */
+    protected static DataBuffer mappedBuffer(final ByteBuffer slice, long length, DataType dataType) {
+        Pointer address = new Pointer(slice);
+        Pointer pointer;
+        Indexer indexer;
+        switch (dataType) {
+            case UINT64:
+            case LONG:
+                pointer = new LongPointer(address) {
+                    private final ByteBuffer mapping = slice;
+                };
+                indexer = LongIndexer.create((LongPointer) pointer);
+                break;
+            case UINT32:
+            case INT:
+                pointer = new IntPointer(address) {
+                    private final ByteBuffer mapping = slice;
+                };
+                indexer = IntIndexer.create((IntPointer) pointer);
+                break;
+            case UINT16:
+            case SHORT:
+            case BFLOAT16:
+            case HALF:
+                pointer = new ShortPointer(address) {
+                    private final ByteBuffer mapping = slice;
+                };
+                if (dataType == DataType.UINT16)
+                    indexer = UShortIndexer.create((ShortPointer) pointer);
+                else if (dataType == DataType.SHORT)
+                    indexer = ShortIndexer.create((ShortPointer) pointer);
+                else if (dataType == DataType.BFLOAT16)
+                    indexer = Bfloat16Indexer.create((ShortPointer) pointer);
+                else
+                    indexer = HalfIndexer.create((ShortPointer) pointer);
+                break;
+            case BYTE:
+            case UBYTE:
+                pointer = new BytePointer(address) {
+                    private final ByteBuffer mapping = slice;
+                };
+                indexer = dataType == DataType.BYTE ? ByteIndexer.create((BytePointer) pointer) : UByteIndexer.create((BytePointer) pointer);
+                break;
+            case BOOL:
+                pointer = new BooleanPointer(address) {
+                    private final ByteBuffer mapping = slice;
+                };
+                indexer = BooleanIndexer.create((BooleanPointer) pointer);
+                break;
+            case FLOAT:
+                pointer = new FloatPointer(address) {
+                    private final ByteBuffer mapping = slice;
+                };
+                indexer = FloatIndexer.create((FloatPointer) pointer);
+                break;
+            case DOUBLE:
+                pointer = new DoublePointer(address) {
+                    private final ByteBuffer mapping = slice;
+                };
+                indexer = DoubleIndexer.create((DoublePointer) pointer);
+                break;
+            default:
+                throw new UnsupportedOperationException("Unsupported data type: " + dataType);
+        }
+
+        return Nd4j.createBuffer(pointer, dataType, length, indexer);
+    }
+
+    /**
+     * This method releases shard's own reference to the mapped file. Arrays of non-detached records stay valid after this
+     * call, mapping is released once they're garbage collected.
+     */
+    @Override
+    public void close() {
+        mapped = null;
+    }
+}
@@ -0,0 +1,360 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.datasets.iterator.file;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.datasets.iterator.file.DataSetShard.ArrayEntry;
+import org.nd4j.linalg.api.concurrency.AffinityManager;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.api.DataSet;
+import org.nd4j.linalg.dataset.api.MultiDataSet;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.dataset.api.iterator.MultiDataSetIterator;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class writes DataSet/MultiDataSet records into shard files, that can be memory-mapped by {@link DataSetShard}.
+ * See {@link DataSetShard} for file layout.<br>
+ * Static export methods allow to convert any DataSetIterator or MultiDataSetIterator into directory of shards, suitable
+ * for {@link MappedDataSetIterator} and {@link MappedMultiDataSetIterator}.<br>
+ * <br>
+ * PLEASE NOTE: shard file can't exceed {@link DataSetShard#MAX_SHARD_LENGTH} bytes
+ */
+@Slf4j
+public class DataSetShardWriter implements Closeable {
+    public static final int DEFAULT_RECORDS_PER_SHARD = 64;
+
+    protected final File file;
+    protected final FileChannel channel;
+    protected final List<ArrayEntry[][]> records = new ArrayList<>();
+    protected long position = DataSetShard.HEADER_LENGTH;
+    protected long indexLength = 0;
+    protected boolean closed = false;
+
+    public DataSetShardWriter(@NonNull File file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * This method appends DataSet as new record
+     *
+     * @param dataSet
+     * @throws IOException
+     */
+    public void write(@NonNull DataSet dataSet) throws IOException {
+        write(new INDArray[][] {single(dataSet.getFeatures()), single(dataSet.getLabels()),
+                        single(dataSet.getFeaturesMaskArray()), single(dataSet.getLabelsMaskArray())});
+    }
+
+    /**
+     * This method appends MultiDataSet as new record
+     *
+     * @param dataSet
+     * @throws IOException
+     */
+    public void write(@NonNull MultiDataSet dataSet) throws IOException {
+        write(new INDArray[][] {dataSet.getFeatures(), dataSet.getLabels(), dataSet.getFeaturesMaskArrays(),
+                        dataSet.getLabelsMaskArrays()});
+    }
+
+    protected static INDArray[] single(INDArray array) {
+        return array == null ? null : new INDArray[] {array};
+    }
+
+    protected void write(INDArray[][] groups) throws IOException {
+        if (closed)
+            throw new IllegalStateException("Shard writer was already closed");
+
+        // making sure all arrays are contiguous and available on host
+        Nd4j.getExecutioner().commit();
+
+        // groups reference arrays of the caller's DataSet, so contiguous copies are kept separately
+        ArrayEntry[][] entries = new ArrayEntry[groups.length][];
+        INDArray[][] prepared = new INDArray[groups.length][];
+        long offset = position;
+        for (int g = 0; g < groups.length; g++) {
+            if (groups[g] == null)
+                continue;
+
+            entries[g] = new ArrayEntry[groups[g].length];
+            prepared[g] = new INDArray[groups[g].length];
+            for (int e = 0; e < groups[g].length; e++) {
+                if (groups[g][e] == null)
+                    continue;
+
+                INDArray array = prepare(groups[g][e]);
+                prepared[g][e] = array;
+
+                ArrayEntry entry = new ArrayEntry();
+                entry.dataType = array.dataType();
+                entry.order = array.ordering();
+                entry.shape = array.shape();
+                entry.length = array.length();
+                entry.offset = offset;
+                entries[g][e] = entry;
+
+                offset += align(entry.byteLength());
+            }
+        }
+
+        long recordIndexLength = recordIndexLength(entries);
+        if (offset + indexLength + recordIndexLength > DataSetShard.MAX_SHARD_LENGTH)
+            throw new IllegalStateException("Record doesn't fit into shard " + file + ", shard is limited to "
+                            + DataSetShard.MAX_SHARD_LENGTH + " bytes");
+
+        for (int g = 0; g < groups.length; g++) {
+            if (groups[g] == null)
+                continue;
+
+            for (int e = 0; e < groups[g].length; e++) {
+                ArrayEntry entry = entries[g][e];
+                if (entry == null || entry.length == 0)
+                    continue;
+
+                INDArray array = prepared[g][e];
+                Nd4j.getAffinityManager().ensureLocation(array, AffinityManager.Location.HOST);
+                ByteBuffer data = array.data().pointer().asByteBuffer().order(ByteOrder.nativeOrder());
+                data.limit((int) entry.byteLength());
+                writeFully(data, entry.offset);
+            }
+        }
+
+        position = offset;
+        indexLength += recordIndexLength;
+        records.add(entries);
+    }
+
+    protected static INDArray prepare(INDArray array) {
+        INDArray arr = array;
+        if (arr.isCompressed())
+            arr = Nd4j.getCompressor().decompress(arr);
+
+        // views and arrays with non-standard strides are stored as contiguous copies
+        if (arr.isView() || arr.data().length() != arr.length())
+            arr = arr.dup(arr.ordering());
+
+        return arr;
+    }
+
+    protected static long align(long length) {
+        return (length + DataSetShard.ALIGNMENT - 1) / DataSetShard.ALIGNMENT * DataSetShard.ALIGNMENT;
+    }
+
+    protected static long entryLength(ArrayEntry entry) {
+        return entry == null ? 4 : entryLengthLimit(entry.shape.length);
+    }
+
+    /**
+     * Index entry: rank, data type, order, shape, offset
+     */
+    protected static long entryLengthLimit(int rank) {
+        return 4 + 4 + 2 + rank * 8L + 8;
+    }
+
+    protected static long recordIndexLength(ArrayEntry[][] record) {
+        long length = DataSetShard.NUM_GROUPS * 4;
+        for (ArrayEntry[] group : record) {
+            if (group == null)
+                continue;
+            for (ArrayEntry entry : group)
+                length += entryLength(entry);
+        }
+        return length;
+    }
+
+    protected void writeFully(ByteBuffer buffer, long position) throws IOException {
+        long pos = position;
+        while (buffer.hasRemaining())
+            pos += channel.write(buffer, pos);
+    }
+
+    /**
+     * This method returns number of records written so far
+     *
+     * @return
+     */
+    public int numRecords() {
+        return records.size();
+    }
+
+    /**
+     * This method returns number of bytes written so far, including index
+     *
+     * @return
+     */
+    public long bytesWritten() {
+        return position + indexLength;
+    }
+
+    /**
+     * This method writes index and header, and closes the file
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+
+        closed = true;
+        try {
+            ByteBuffer index = ByteBuffer.allocate((int) indexLength).order(ByteOrder.nativeOrder());
+            for (ArrayEntry[][] record : records) {
+                for (ArrayEntry[] group : record) {
+                    if (group == null) {
+                        index.putInt(-1);
+                        continue;
+                    }
+
+                    index.putInt(group.length);
+                    for (ArrayEntry entry : group) {
+                        if (entry == null) {
+                            index.putInt(-1);
+                            continue;
+                        }
+
+                        index.putInt(entry.shape.length);
+                        index.putInt(entry.dataType.ordinal());
+                        index.putChar(entry.order);
+                        for (long s : entry.shape)
+                            index.putLong(s);
+                        index.putLong(entry.offset);
+                    }
+                }
+            }
+            index.flip();
+            writeFully(index, position);
+
+            ByteBuffer header = ByteBuffer.allocate(DataSetShard.HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+            header.put(DataSetShard.MAGIC);
+            header.putInt(DataSetShard.VERSION);
+            header.putInt(ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN ? DataSetShard.LITTLE_ENDIAN : DataSetShard.BIG_ENDIAN);
+            header.putInt(records.size());
+            header.putInt(0);
+            header.putLong(position);
+            header.putLong(indexLength);
+            header.position(0);
+            writeFully(header, 0);
+
+            channel.force(false);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * This method exports all DataSets provided by given iterator into shards within given directory
+     *
+     * @param iterator         source iterator. PLEASE NOTE: DataSets are stored after preprocessing, if iterator has preprocessor
+     * @param directory        target directory, will be created if doesn't exist
+     * @param recordsPerShard  max number of DataSets per shard
+     * @return list of created shard files
+     * @throws IOException
+     */
+    public static List<File> export(@NonNull DataSetIterator iterator, @NonNull File directory, int recordsPerShard) throws IOException {
+        List<File> shards = new ArrayList<>();
+        DataSetShardWriter writer = null;
+        try {
+            while (iterator.hasNext()) {
+                DataSet dataSet = iterator.next();
+                writer = nextWriter(writer, directory, shards, recordsPerShard, sizeOf(dataSet.getFeatures(),
+                                dataSet.getLabels(), dataSet.getFeaturesMaskArray(), dataSet.getLabelsMaskArray()));
+                writer.write(dataSet);
+            }
+        } finally {
+            if (writer != null)
+                writer.close();
+        }
+
+        log.info("Exported {} shards into {}", shards.size(), directory);
+        return shards;
+    }
+
+    /**
+     * This method exports all MultiDataSets provided by given iterator into shards within given directory
+     *
+     * @param iterator         source iterator. PLEASE NOTE: MultiDataSets are stored after preprocessing, if iterator has preprocessor
+     * @param directory        target directory, will be created if doesn't exist
+     * @param recordsPerShard  max number of MultiDataSets per shard
+     * @return list of created shard files
+     * @throws IOException
+     */
+    public static List<File> export(@NonNull MultiDataSetIterator iterator, @NonNull File directory, int recordsPerShard) throws IOException {
+        List<File> shards = new ArrayList<>();
+        DataSetShardWriter writer = null;
+        try {
+            while (iterator.hasNext()) {
+                MultiDataSet dataSet = iterator.next();
+                long size = sizeOf(dataSet.getFeatures()) + sizeOf(dataSet.getLabels())
+                                + sizeOf(dataSet.getFeaturesMaskArrays()) + sizeOf(dataSet.getLabelsMaskArrays());
+                writer = nextWriter(writer, directory, shards, recordsPerShard, size);
+                writer.write(dataSet);
+            }
+        } finally {
+            if (writer != null)
+                writer.close();
+        }
+
+        log.info("Exported {} shards into {}", shards.size(), directory);
+        return shards;
+    }
+
+    protected static long sizeOf(INDArray... arrays) {
+        if (arrays == null)
+            return 0;
+
+        long size = 0;
+        for (INDArray array : arrays) {
+            if (array != null)
+                size += align(array.length() * array.dataType().width()) + entryLengthLimit(array.rank());
+        }
+        return size;
+    }
+
+    /**
+     * This method returns writer for the next record, starting new shard if current one is full
+     */
+    protected static DataSetShardWriter nextWriter(DataSetShardWriter writer, File directory, List<File> shards,
+                    int recordsPerShard, long recordSize) throws IOException {
+        if (writer != null && writer.numRecords() < recordsPerShard
+                        && writer.bytesWritten() + recordSize + DataSetShard.NUM_GROUPS * 4 <= DataSetShard.MAX_SHARD_LENGTH)
+            return writer;
+
+        if (writer != null)
+            writer.close();
+
+        if (!directory.exists() && !directory.mkdirs())
+            throw new IOException("Can't create directory: " + directory);
+
+        File file = new File(directory, String.format("shard_%06d.%s", shards.size(), DataSetShard.EXTENSION));
+        shards.add(file);
+        return new DataSetShardWriter(file);
+    }
+}
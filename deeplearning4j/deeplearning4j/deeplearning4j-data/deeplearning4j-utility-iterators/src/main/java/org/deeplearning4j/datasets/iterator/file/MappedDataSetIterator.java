@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.datasets.iterator.file;
+
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+
+import java.io.File;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Iterate over DataSets stored in memory-mapped shards, that have previously been exported with
+ * {@link DataSetShardWriter#export(DataSetIterator, File, int)}.<br>
+ * Arrays of returned DataSets are created directly on top of mapped shard files, so there's no deserialization or
+ * copying involved, and OS page cache is used instead of heap/off-heap buffers.<br>
+ * <br>
+ * PLEASE NOTE: if detach is false, returned DataSets are valid only until {@link #close()} is called, or iterator becomes
+ * unreachable. Use detach = true if DataSets should outlive this iterator.
+ */
+public class MappedDataSetIterator extends BaseShardIterator<DataSet, DataSetPreProcessor> implements DataSetIterator {
+
+    /**
+     * Create a MappedDataSetIterator over all shards within given directory (including subdirectories),
+     * with randomized order of DataSets and without detaching
+     *
+     * @param rootDir Root directory containing the shards
+     */
+    public MappedDataSetIterator(File rootDir) {
+        this(rootDir, new Random(), false);
+    }
+
+    /**
+     * Create a MappedDataSetIterator over all shards within given directory (including subdirectories)
+     *
+     * @param rootDir Root directory containing the shards
+     * @param rng     May be null. If non-null, use this to randomize order
+     * @param detach  If true, arrays are copied out of mapped files
+     */
+    public MappedDataSetIterator(File rootDir, Random rng, boolean detach) {
+        super(rootDir, rng, detach);
+    }
+
+    /**
+     * Create a MappedDataSetIterator over given shards
+     *
+     * @param shards Shard files
+     * @param rng    May be null. If non-null, use this to randomize order
+     * @param detach If true, arrays are copied out of mapped files
+     */
+    public MappedDataSetIterator(List<File> shards, Random rng, boolean detach) {
+        super(shards, rng, detach);
+    }
+
+    @Override
+    protected DataSet load(DataSetShard shard, int record) {
+        return shard.getDataSet(record, detach);
+    }
+
+    @Override
+    protected void applyPreprocessor(DataSet toPreProcess) {
+        if (preProcessor != null) {
+            preProcessor.preProcess(toPreProcess);
+        }
+    }
+
+    @Override
+    public DataSet next(int num) {
+        throw new UnsupportedOperationException("Not supported for this iterator");
+    }
+
+    @Override
+    public int inputColumns() {
+        throw new UnsupportedOperationException("Not supported for this iterator");
+    }
+
+    @Override
+    public int totalOutcomes() {
+        throw new UnsupportedOperationException("Not supported for this iterator");
+    }
+
+    @Override
+    public int batch() {
+        // records are returned as they were exported
+        return numRecords() == 0 ? 0 : (int) shards[shardIndices[0]].numExamples(recordIndices[0]);
+    }
+
+    @Override
+    public List<String> getLabels() {
+        return null;
+    }
+}
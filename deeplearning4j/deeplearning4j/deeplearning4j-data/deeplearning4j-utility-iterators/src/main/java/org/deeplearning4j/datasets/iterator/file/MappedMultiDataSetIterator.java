@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.datasets.iterator.file;
+
+import org.nd4j.linalg.dataset.api.MultiDataSet;
+import org.nd4j.linalg.dataset.api.MultiDataSetPreProcessor;
+import org.nd4j.linalg.dataset.api.iterator.MultiDataSetIterator;
+
+import java.io.File;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Iterate over MultiDataSets stored in memory-mapped shards, that have previously been exported with
+ * {@link DataSetShardWriter#export(MultiDataSetIterator, File, int)}.<br>
+ * Arrays of returned MultiDataSets are created directly on top of mapped shard files, so there's no deserialization or
+ * copying involved, and OS page cache is used instead of heap/off-heap buffers.<br>
+ * <br>
+ * PLEASE NOTE: if detach is false, returned MultiDataSets are valid only until {@link #close()} is called, or iterator
+ * becomes unreachable. Use detach = true if MultiDataSets should outlive this iterator.
+ */
+public class MappedMultiDataSetIterator extends BaseShardIterator<MultiDataSet, MultiDataSetPreProcessor> implements MultiDataSetIterator {
+
+    /**
+     * Create a MappedMultiDataSetIterator over all shards within given directory (including subdirectories),
+     * with randomized order of MultiDataSets and without detaching
+     *
+     * @param rootDir Root directory containing the shards
+     */
+    public MappedMultiDataSetIterator(File rootDir) {
+        this(rootDir, new Random(), false);
+    }
+
+    /**
+     * Create a MappedMultiDataSetIterator over all shards within given directory (including subdirectories)
+     *
+     * @param rootDir Root directory containing the shards
+     * @param rng     May be null. If non-null, use this to randomize order
+     * @param detach  If true, arrays are copied out of mapped files
+     */
+    public MappedMultiDataSetIterator(File rootDir, Random rng, boolean detach) {
+        super(rootDir, rng, detach);
+    }
+
+    /**
+     * Create a MappedMultiDataSetIterator over given shards
+     *
+     * @param shards Shard files
+     * @param rng    May be null. If non-null, use this to randomize order
+     * @param detach If true, arrays are copied out of mapped files
+     */
+    public MappedMultiDataSetIterator(List<File> shards, Random rng, boolean detach) {
+        super(shards, rng, detach);
+    }
+
+    @Override
+    protected MultiDataSet load(DataSetShard shard, int record) {
+        return shard.getMultiDataSet(record, detach);
+    }
+
+    @Override
+    protected void applyPreprocessor(MultiDataSet toPreProcess) {
+        if (preProcessor != null) {
+            preProcessor.preProcess(toPreProcess);
+        }
+    }
+
+    @Override
+    public MultiDataSet next(int num) {
+        throw new UnsupportedOperationException("Not supported for this iterator");
+    }
+}
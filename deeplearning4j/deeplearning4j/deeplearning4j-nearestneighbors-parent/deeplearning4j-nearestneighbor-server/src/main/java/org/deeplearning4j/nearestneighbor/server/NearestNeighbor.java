@@ -19,7 +19,7 @@ package org.deeplearning4j.nearestneighbor.server;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import org.deeplearning4j.clustering.sptree.DataPoint;
-import org.deeplearning4j.clustering.vptree.VPTree;
+import org.deeplearning4j.clustering.util.NearestNeighborsSearch;
 import org.deeplearning4j.nearestneighbor.model.NearestNeighborRequest;
 import org.deeplearning4j.nearestneighbor.model.NearestNeighborsResult;
 import org.nd4j.linalg.api.ndarray.INDArray;
@@ -34,7 +34,7 @@ import java.util.List;
 @Builder
 public class NearestNeighbor {
     private NearestNeighborRequest record;
-    private VPTree tree;
+    private NearestNeighborsSearch tree;
     private INDArray points;
 
     public List<NearestNeighborsResult> search() {
@@ -21,7 +21,9 @@ import com.beust.jcommander.Parameter;
 import com.beust.jcommander.ParameterException;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FileUtils;
+import org.deeplearning4j.clustering.hnsw.HnswIndex;
 import org.deeplearning4j.clustering.sptree.DataPoint;
+import org.deeplearning4j.clustering.util.NearestNeighborsSearch;
 import org.deeplearning4j.clustering.vptree.VPTree;
 import org.deeplearning4j.clustering.vptree.VPTreeFillSearch;
 import org.deeplearning4j.exception.DL4JInvalidInputException;
@@ -48,7 +50,7 @@ import static play.mvc.Results.*;
 
 /**
  * A rest server for using an
- * {@link VPTree} based on loading an ndarray containing
+ * {@link VPTree} (or {@link HnswIndex}, with --index hnsw) based on loading an ndarray containing
  * the data points for the path
  * The input values are an {@link CSVRecord}
  * which (based on the input schema) will automatically
@@ -68,6 +70,14 @@ public class NearestNeighborsServer {
     private String similarityFunction = "euclidean";
     @Parameter(names = {"--invert"}, arity = 1)
     private boolean invert = false;
+    @Parameter(names = {"--index"}, arity = 1, description = "Index type: vptree (exact search) or hnsw (approximate search)")
+    private String index = "vptree";
+    @Parameter(names = {"--hnswM"}, arity = 1)
+    private int hnswM = HnswIndex.DEFAULT_M;
+    @Parameter(names = {"--hnswEfConstruction"}, arity = 1)
+    private int hnswEfConstruction = HnswIndex.DEFAULT_EF_CONSTRUCTION;
+    @Parameter(names = {"--hnswEf"}, arity = 1)
+    private int hnswEf = HnswIndex.DEFAULT_EF;
 
     private Server server;
 
@@ -149,7 +159,19 @@ public class NearestNeighborsServer {
             System.gc();
         }
 
-        VPTree tree = new VPTree(points, similarityFunction, invert);
+        final NearestNeighborsSearch tree;
+        if ("hnsw".equalsIgnoreCase(index)) {
+            long time = System.currentTimeMillis();
+            HnswIndex hnsw = HnswIndex.builder(cols).m(hnswM).efConstruction(hnswEfConstruction).ef(hnswEf)
+                            .similarityFunction(similarityFunction).invert(invert).capacity(rows).build();
+            hnsw.addAll(points, Runtime.getRuntime().availableProcessors());
+            log.info("HNSW index was built in {} ms", System.currentTimeMillis() - time);
+            tree = hnsw;
+        } else if ("vptree".equalsIgnoreCase(index)) {
+            tree = new VPTree(points, similarityFunction, invert);
+        } else {
+            throw new DL4JInvalidInputException("Unknown index type: [" + index + "], should be vptree or hnsw");
+        }
 
         //Set play secret key, if required
         //http://www.playframework.com/documentation/latest/ApplicationSecret
@@ -167,7 +189,7 @@ public class NearestNeighborsServer {
         server = Server.forRouter(Mode.PROD, port, b -> createRouter(tree, labels, points, b));
     }
 
-    protected Router createRouter(VPTree tree, List<String> labels, INDArray points, BuiltInComponents builtInComponents){
+    protected Router createRouter(NearestNeighborsSearch tree, List<String> labels, INDArray points, BuiltInComponents builtInComponents){
         RoutingDsl routingDsl = RoutingDsl.fromComponents(builtInComponents);
         //return the host information for a given id
         routingDsl.POST("/knn").routingTo(request -> {
@@ -202,8 +224,9 @@ public class NearestNeighborsServer {
                 List<DataPoint> results;
                 List<Double> distances;
 
-                if (record.isForceFillK()) {
-                    VPTreeFillSearch vpTreeFillSearch = new VPTreeFillSearch(tree, record.getK(), arr);
+                // HNSW search always returns min(k, number of points) results, so filling is required for VPTree only
+                if (record.isForceFillK() && tree instanceof VPTree) {
+                    VPTreeFillSearch vpTreeFillSearch = new VPTreeFillSearch((VPTree) tree, record.getK(), arr);
                     vpTreeFillSearch.search();
                     results = vpTreeFillSearch.getResults();
                     distances = vpTreeFillSearch.getDistances();
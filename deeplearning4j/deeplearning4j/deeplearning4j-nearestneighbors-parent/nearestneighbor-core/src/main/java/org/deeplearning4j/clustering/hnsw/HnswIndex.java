@@ -0,0 +1,1002 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.clustering.hnsw;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.deeplearning4j.clustering.algorithm.Distance;
+import org.deeplearning4j.clustering.sptree.DataPoint;
+import org.deeplearning4j.clustering.util.NearestNeighborsSearch;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.exception.ND4JIllegalStateException;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Hierarchical Navigable Small World graph index for approximate k-nearest neighbors search.
+ * See Malkov &amp; Yashunin, "Efficient and robust approximate nearest neighbor search using
+ * Hierarchical Navigable Small World graphs"
+ *
+ * Points are stored as float arrays on heap, and distances are computed in plain java, so search doesn't
+ * involve any ops execution. Index supports incremental inserts, including concurrent inserts and searches.
+ *
+ * Recall/speed trade-off is controlled by:
+ * - m: number of links per node on upper layers (2 * m on bottom layer). Higher values give better recall, at the cost of memory and build time
+ * - efConstruction: size of candidates list during inserts. Higher values give better graph quality, at the cost of build time
+ * - ef: size of candidates list during search. Can be changed at any moment
+ *
+ * Distances have the same meaning as in {@link org.deeplearning4j.clustering.vptree.VPTree}: lower is nearer,
+ * so similarity functions (cosinesimilarity, dot) should be used with invert = true.
+ */
+public class HnswIndex implements NearestNeighborsSearch, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final int DEFAULT_M = 16;
+    public static final int DEFAULT_EF_CONSTRUCTION = 200;
+    public static final int DEFAULT_EF = 64;
+
+    private static final int MAGIC = 0x484E5357;
+    private static final int VERSION = 1;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final ThreadLocal<VisitedList> visitedLists = new ThreadLocal<>();
+
+    @Getter
+    private final int dimensions;
+    @Getter
+    private final int m;
+    private final int maxM0;
+    @Getter
+    private final int efConstruction;
+    @Getter
+    private volatile int ef;
+    @Getter
+    private final String similarityFunction;
+    @Getter
+    private final boolean invert;
+    private final Distance distance;
+    private final double levelMultiplier;
+    private final Random random;
+
+    // storage, guarded by storageLock: individual entries are published via node locks or entryLock
+    private float[][] vectors;
+    private float[] norms;
+    private int[][][] links;
+    private int size;
+
+    // guarded by entryLock
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    private final ReentrantReadWriteLock storageLock = new ReentrantReadWriteLock();
+    private final ReentrantLock entryLock = new ReentrantLock();
+
+    protected HnswIndex(int dimensions, int m, int efConstruction, int ef, String similarityFunction, boolean invert, long seed, int capacity) {
+        if (dimensions < 1)
+            throw new ND4JIllegalStateException("Number of dimensions should be positive value");
+
+        if (m < 2)
+            throw new ND4JIllegalStateException("M should be at least 2");
+
+        if (efConstruction < 1 || ef < 1)
+            throw new ND4JIllegalStateException("efConstruction and ef should be positive values");
+
+        this.dimensions = dimensions;
+        this.m = m;
+        this.maxM0 = 2 * m;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.ef = ef;
+        this.similarityFunction = similarityFunction;
+        this.invert = invert;
+        this.distance = distanceFor(similarityFunction);
+        this.levelMultiplier = 1.0 / Math.log(m);
+        this.random = new Random(seed);
+
+        capacity = Math.max(1, capacity);
+        this.vectors = new float[capacity][];
+        this.norms = new float[capacity];
+        this.links = new int[capacity][][];
+    }
+
+    public static Builder builder(int dimensions) {
+        return new Builder(dimensions);
+    }
+
+    protected static Distance distanceFor(@NonNull String similarityFunction) {
+        for (Distance d : Distance.values()) {
+            if (d.toString().equals(similarityFunction)) {
+                switch (d) {
+                    case EUCLIDEAN:
+                    case MANHATTAN:
+                    case COSINE_DISTANCE:
+                    case COSINE_SIMILARITY:
+                    case DOT:
+                        return d;
+                    default:
+                        throw new ND4JIllegalStateException("Similarity function [" + similarityFunction + "] isn't supported by HNSW index");
+                }
+            }
+        }
+        throw new ND4JIllegalStateException("Unknown similarity function: [" + similarityFunction + "]");
+    }
+
+    /**
+     * This method changes size of candidates list used during search. Higher values give better recall
+     *
+     * @param ef
+     */
+    public void setEf(int ef) {
+        if (ef < 1)
+            throw new ND4JIllegalStateException("ef should be positive value");
+
+        this.ef = ef;
+    }
+
+    /**
+     * This method returns number of points added to this index
+     *
+     * @return
+     */
+    public int size() {
+        storageLock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            storageLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * This method adds single point to the index
+     *
+     * @param point vector of length equal to index dimensions
+     * @return index of the added point
+     */
+    public int add(@NonNull INDArray point) {
+        return add(toVector(point));
+    }
+
+    /**
+     * This method adds single point to the index
+     *
+     * @param point vector of length equal to index dimensions
+     * @return index of the added point
+     */
+    public int add(@NonNull float[] point) {
+        if (point.length != dimensions)
+            throw new ND4JIllegalStateException("Point should have length of " + dimensions + " but got " + point.length + " instead");
+
+        int id = reserve(1);
+        insert(id, point.clone());
+        return id;
+    }
+
+    /**
+     * This method adds all rows of the given matrix to the index. Rows get consecutive indices, in order.
+     *
+     * @param points matrix with one point per row
+     * @return index of the first added point
+     */
+    public int addAll(@NonNull INDArray points) {
+        return addAll(points, 1);
+    }
+
+    /**
+     * This method adds all rows of the given matrix to the index, using multiple threads.
+     * Rows get consecutive indices, in order.
+     *
+     * @param points  matrix with one point per row
+     * @param workers number of threads to use
+     * @return index of the first added point
+     */
+    public int addAll(@NonNull final INDArray points, int workers) {
+        if (points.rank() != 2 || points.columns() != dimensions)
+            throw new ND4JIllegalStateException("Points should have shape of [N, " + dimensions + "] but got "
+                    + Arrays.toString(points.shape()) + " instead");
+
+        final int rows = (int) points.rows();
+        final int first = reserve(rows);
+        if (rows == 0)
+            return first;
+
+        if (workers <= 1) {
+            for (int r = 0; r < rows; r++)
+                insert(first + r, points.getRow(r).toFloatVector());
+            return first;
+        }
+
+        final AtomicInteger position = new AtomicInteger(0);
+        final AtomicReference<Throwable> throwable = new AtomicReference<>();
+        Thread[] threads = new Thread[workers];
+        for (int t = 0; t < workers; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        int r;
+                        while ((r = position.getAndIncrement()) < rows && throwable.get() == null) {
+                            float[] vector;
+                            // INDArray access isn't guaranteed to be thread-safe for the same array
+                            synchronized (points) {
+                                vector = points.getRow(r).toFloatVector();
+                            }
+                            insert(first + r, vector);
+                        }
+                    } catch (Throwable e) {
+                        throwable.compareAndSet(null, e);
+                    }
+                }
+            }, "HnswIndex builder thread " + t);
+            threads[t].setDaemon(true);
+            threads[t].start();
+        }
+
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+
+        if (throwable.get() != null)
+            throw new RuntimeException(throwable.get());
+
+        return first;
+    }
+
+    /**
+     * This method returns copy of the point with given index
+     *
+     * @param index
+     * @return
+     */
+    public float[] getPoint(int index) {
+        storageLock.readLock().lock();
+        try {
+            if (index < 0 || index >= size)
+                throw new ND4JIllegalStateException("Index " + index + " is out of bounds [0, " + size + ")");
+
+            int[][] node = links[index];
+            if (node == null)
+                throw new ND4JIllegalStateException("Point " + index + " wasn't added yet");
+
+            synchronized (node) {
+                return vectors[index].clone();
+            }
+        } finally {
+            storageLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void search(@NonNull INDArray target, int k, List<DataPoint> results, List<Double> distances) {
+        results.clear();
+        distances.clear();
+
+        int[] indices = new int[k];
+        float[] dist = new float[k];
+        int found = search(toVector(target), k, indices, dist);
+        for (int e = 0; e < found; e++) {
+            results.add(new DataPoint(indices[e], Nd4j.create(getPoint(indices[e]))));
+            distances.add((double) dist[e]);
+        }
+    }
+
+    /**
+     * This method finds approximate k nearest neighbors of the query point
+     *
+     * @param query     vector of length equal to index dimensions
+     * @param k         number of neighbors to find
+     * @param indices   array of length k or more, will be filled with indices of neighbors, nearest first
+     * @param distances array of length k or more, will be filled with distances to neighbors. Optional
+     * @return number of neighbors found, can be less than k only if index has less than k points
+     */
+    public int search(@NonNull float[] query, int k, @NonNull int[] indices, float[] distances) {
+        if (query.length != dimensions)
+            throw new ND4JIllegalStateException("Query should have length of " + dimensions + " but got " + query.length + " instead");
+
+        if (k < 1)
+            return 0;
+
+        storageLock.readLock().lock();
+        try {
+            int ep;
+            int top;
+            entryLock.lock();
+            try {
+                ep = entryPoint;
+                top = maxLevel;
+            } finally {
+                entryLock.unlock();
+            }
+
+            if (ep < 0)
+                return 0;
+
+            float queryNorm = norm(query);
+            float epDist = distance(query, queryNorm, ep);
+            int[] buffer = new int[maxM0 + 1];
+            for (int level = top; level > 0; level--) {
+                boolean changed = true;
+                while (changed) {
+                    changed = false;
+                    int count = readLinks(ep, level, buffer);
+                    for (int e = 1; e <= count; e++) {
+                        float d = distance(query, queryNorm, buffer[e]);
+                        if (d < epDist) {
+                            epDist = d;
+                            ep = buffer[e];
+                            changed = true;
+                        }
+                    }
+                }
+            }
+
+            Heap results = searchLayer(query, queryNorm, ep, epDist, Math.max(ef, k), 0);
+            while (results.size() > k)
+                results.pop();
+
+            int found = results.size();
+            for (int e = found - 1; e >= 0; e--) {
+                indices[e] = results.topId();
+                if (distances != null)
+                    distances[e] = results.topKey();
+                results.pop();
+            }
+            return found;
+        } finally {
+            storageLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * This method reserves ids for new points, growing storage if needed
+     */
+    protected int reserve(int count) {
+        storageLock.writeLock().lock();
+        try {
+            int first = size;
+            int required = size + count;
+            if (required > vectors.length) {
+                int capacity = Math.max(required, Math.max(INITIAL_CAPACITY, vectors.length + (vectors.length >> 1)));
+                vectors = Arrays.copyOf(vectors, capacity);
+                norms = Arrays.copyOf(norms, capacity);
+                links = Arrays.copyOf(links, capacity);
+            }
+            size = required;
+            return first;
+        } finally {
+            storageLock.writeLock().unlock();
+        }
+    }
+
+    protected int randomLevel() {
+        return (int) (-Math.log(1.0 - random.nextDouble()) * levelMultiplier);
+    }
+
+    protected void insert(int id, float[] vector) {
+        storageLock.readLock().lock();
+        try {
+            int level = randomLevel();
+            int[][] node = new int[level + 1][];
+            for (int l = 0; l <= level; l++)
+                node[l] = new int[1 + (l == 0 ? maxM0 : m)];
+
+            // all other threads will see this node only via entryLock or locks of its neighbors, acquired below
+            synchronized (node) {
+                vectors[id] = vector;
+                norms[id] = norm(vector);
+                links[id] = node;
+            }
+
+            entryLock.lock();
+            boolean locked = true;
+            try {
+                int ep = entryPoint;
+                int top = maxLevel;
+                if (ep < 0) {
+                    entryPoint = id;
+                    maxLevel = level;
+                    return;
+                }
+
+                // entry point stays the same, so other inserts can proceed
+                if (level <= top) {
+                    entryLock.unlock();
+                    locked = false;
+                }
+
+                float norm = norms[id];
+                float epDist = distance(vector, norm, ep);
+                int[] buffer = new int[maxM0 + 1];
+                for (int l = top; l > level; l--) {
+                    boolean changed = true;
+                    while (changed) {
+                        changed = false;
+                        int count = readLinks(ep, l, buffer);
+                        for (int e = 1; e <= count; e++) {
+                            float d = distance(vector, norm, buffer[e]);
+                            if (d < epDist) {
+                                epDist = d;
+                                ep = buffer[e];
+                                changed = true;
+                            }
+                        }
+                    }
+                }
+
+                for (int l = Math.min(level, top); l >= 0; l--) {
+                    Heap candidates = searchLayer(vector, norm, ep, epDist, efConstruction, l);
+
+                    int count = candidates.size();
+                    int[] ids = new int[count];
+                    float[] dists = new float[count];
+                    for (int e = count - 1; e >= 0; e--) {
+                        ids[e] = candidates.topId();
+                        dists[e] = candidates.topKey();
+                        candidates.pop();
+                    }
+
+                    int[] selected = selectNeighbors(id, ids, dists, count, m);
+                    synchronized (node) {
+                        int[] list = node[l];
+                        list[0] = selected.length;
+                        System.arraycopy(selected, 0, list, 1, selected.length);
+                    }
+
+                    for (int neighbor : selected)
+                        connect(neighbor, id, l);
+
+                    if (count > 0 && ids[0] != id) {
+                        ep = ids[0];
+                        epDist = dists[0];
+                    }
+                }
+
+                if (level > top) {
+                    entryPoint = id;
+                    maxLevel = level;
+                }
+            } finally {
+                if (locked)
+                    entryLock.unlock();
+            }
+        } finally {
+            storageLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * This method adds link from node to target, shrinking node links if there's no space left
+     */
+    protected void connect(int node, int target, int level) {
+        int[][] nodeLinks = links[node];
+        synchronized (nodeLinks) {
+            int[] list = nodeLinks[level];
+            int count = list[0];
+            int maxLinks = list.length - 1;
+            for (int e = 1; e <= count; e++)
+                if (list[e] == target)
+                    return;
+
+            if (count < maxLinks) {
+                list[count + 1] = target;
+                list[0] = count + 1;
+                return;
+            }
+
+            // no space left: existing links plus new one compete for slots
+            int[] ids = new int[count + 1];
+            float[] dists = new float[count + 1];
+            for (int e = 0; e < count; e++) {
+                ids[e] = list[e + 1];
+                dists[e] = distance(node, ids[e]);
+            }
+            ids[count] = target;
+            dists[count] = distance(node, target);
+            sort(ids, dists, count + 1);
+
+            int[] selected = selectNeighbors(node, ids, dists, count + 1, maxLinks);
+            list[0] = selected.length;
+            System.arraycopy(selected, 0, list, 1, selected.length);
+        }
+    }
+
+    /**
+     * Neighbors selection heuristic: candidate is kept only if it's closer to the base point than to any of already
+     * selected neighbors. Candidates should be sorted by distance to the base point
+     */
+    protected int[] selectNeighbors(int base, int[] ids, float[] dists, int count, int max) {
+        int[] selected = new int[Math.min(count, max)];
+        int numSelected = 0;
+        for (int e = 0; e < count && numSelected < selected.length; e++) {
+            int candidate = ids[e];
+            if (candidate == base)
+                continue;
+
+            boolean good = true;
+            for (int s = 0; s < numSelected; s++) {
+                if (distance(candidate, selected[s]) < dists[e]) {
+                    good = false;
+                    break;
+                }
+            }
+
+            if (good)
+                selected[numSelected++] = candidate;
+        }
+        return numSelected == selected.length ? selected : Arrays.copyOf(selected, numSelected);
+    }
+
+    /**
+     * Beam search within single layer. Returns max-heap of up to ef nearest points found
+     */
+    protected Heap searchLayer(float[] query, float queryNorm, int ep, float epDist, int ef, int level) {
+        VisitedList visited = visitedLists.get();
+        if (visited == null) {
+            visited = new VisitedList();
+            visitedLists.set(visited);
+        }
+        int tag = visited.next(vectors.length);
+        int[] marks = visited.marks;
+
+        Heap candidates = new Heap(false, ef + 1);
+        Heap results = new Heap(true, ef + 1);
+        int[] buffer = new int[maxM0 + 1];
+
+        marks[ep] = tag;
+        candidates.push(epDist, ep);
+        results.push(epDist, ep);
+
+        while (candidates.size() > 0) {
+            float currentDist = candidates.topKey();
+            int current = candidates.topId();
+            if (currentDist > results.topKey() && results.size() >= ef)
+                break;
+
+            candidates.pop();
+            int count = readLinks(current, level, buffer);
+            for (int e = 1; e <= count; e++) {
+                int neighbor = buffer[e];
+                if (marks[neighbor] == tag)
+                    continue;
+
+                marks[neighbor] = tag;
+                float d = distance(query, queryNorm, neighbor);
+                if (results.size() < ef || d < results.topKey()) {
+                    candidates.push(d, neighbor);
+                    results.push(d, neighbor);
+                    if (results.size() > ef)
+                        results.pop();
+                }
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * This method copies links of the node at given level into buffer. buffer[0] is number of links
+     */
+    protected int readLinks(int node, int level, int[] buffer) {
+        int[][] nodeLinks = links[node];
+        synchronized (nodeLinks) {
+            int[] list = nodeLinks[level];
+            int count = list[0];
+            System.arraycopy(list, 0, buffer, 0, count + 1);
+            return count;
+        }
+    }
+
+    protected float distance(int a, int b) {
+        return distance(vectors[a], norms[a], b);
+    }
+
+    protected float distance(float[] query, float queryNorm, int node) {
+        float[] point = vectors[node];
+        float result;
+        switch (distance) {
+            case EUCLIDEAN: {
+                float sum = 0.0f;
+                for (int e = 0; e < dimensions; e++) {
+                    float diff = query[e] - point[e];
+                    sum += diff * diff;
+                }
+                result = (float) Math.sqrt(sum);
+                break;
+            }
+            case MANHATTAN: {
+                float sum = 0.0f;
+                for (int e = 0; e < dimensions; e++)
+                    sum += Math.abs(query[e] - point[e]);
+                result = sum;
+                break;
+            }
+            case DOT:
+                result = dot(query, point);
+                break;
+            case COSINE_SIMILARITY:
+            case COSINE_DISTANCE: {
+                float denominator = queryNorm * norms[node];
+                float similarity = denominator == 0.0f ? 0.0f : dot(query, point) / denominator;
+                result = distance == Distance.COSINE_SIMILARITY ? similarity : 1.0f - similarity;
+                break;
+            }
+            default:
+                throw new IllegalStateException("Unsupported distance: " + distance);
+        }
+        return invert ? -result : result;
+    }
+
+    protected float dot(float[] a, float[] b) {
+        float sum = 0.0f;
+        for (int e = 0; e < dimensions; e++)
+            sum += a[e] * b[e];
+        return sum;
+    }
+
+    protected static float norm(float[] vector) {
+        float sum = 0.0f;
+        for (float v : vector)
+            sum += v * v;
+        return (float) Math.sqrt(sum);
+    }
+
+    protected static void sort(int[] ids, float[] dists, int count) {
+        // insertion sort, lists here are short
+        for (int i = 1; i < count; i++) {
+            int id = ids[i];
+            float d = dists[i];
+            int j = i - 1;
+            while (j >= 0 && dists[j] > d) {
+                ids[j + 1] = ids[j];
+                dists[j + 1] = dists[j];
+                j--;
+            }
+            ids[j + 1] = id;
+            dists[j + 1] = d;
+        }
+    }
+
+    protected float[] toVector(INDArray point) {
+        if (!point.isVectorOrScalar() || point.length() != dimensions)
+            throw new ND4JIllegalStateException("Point should be vector of length " + dimensions + " but got "
+                    + Arrays.toString(point.shape()) + " instead");
+
+        return point.toFloatVector();
+    }
+
+    /**
+     * This method writes index to the given stream, in compact binary format
+     *
+     * @param stream
+     * @throws IOException
+     */
+    public void save(@NonNull OutputStream stream) throws IOException {
+        storageLock.writeLock().lock();
+        entryLock.lock();
+        try {
+            DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(stream));
+            dos.writeInt(MAGIC);
+            dos.writeInt(VERSION);
+            dos.writeInt(dimensions);
+            dos.writeInt(m);
+            dos.writeInt(efConstruction);
+            dos.writeInt(ef);
+            dos.writeUTF(similarityFunction);
+            dos.writeBoolean(invert);
+            dos.writeInt(size);
+            dos.writeInt(entryPoint);
+            dos.writeInt(maxLevel);
+
+            for (int id = 0; id < size; id++) {
+                int[][] node = links[id];
+                if (node == null)
+                    throw new IllegalStateException("Point " + id + " wasn't added yet");
+
+                for (float v : vectors[id])
+                    dos.writeFloat(v);
+
+                dos.writeInt(node.length);
+                for (int[] list : node) {
+                    dos.writeInt(list[0]);
+                    for (int e = 1; e <= list[0]; e++)
+                        dos.writeInt(list[e]);
+                }
+            }
+            dos.flush();
+        } finally {
+            entryLock.unlock();
+            storageLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * This method writes index to the given file
+     *
+     * @param file
+     * @throws IOException
+     */
+    public void save(@NonNull File file) throws IOException {
+        try (OutputStream os = new FileOutputStream(file)) {
+            save(os);
+        }
+    }
+
+    /**
+     * This method restores index previously written with {@link #save(OutputStream)}
+     *
+     * @param stream
+     * @return
+     * @throws IOException
+     */
+    public static HnswIndex load(@NonNull InputStream stream) throws IOException {
+        DataInputStream dis = new DataInputStream(new BufferedInputStream(stream));
+        if (dis.readInt() != MAGIC)
+            throw new IOException("Stream doesn't contain HNSW index");
+
+        int version = dis.readInt();
+        if (version != VERSION)
+            throw new IOException("Unsupported HNSW index version: " + version);
+
+        int dimensions = dis.readInt();
+        int m = dis.readInt();
+        int efConstruction = dis.readInt();
+        int ef = dis.readInt();
+        String similarityFunction = dis.readUTF();
+        boolean invert = dis.readBoolean();
+        int size = dis.readInt();
+
+        HnswIndex index = new HnswIndex(dimensions, m, efConstruction, ef, similarityFunction, invert, System.currentTimeMillis(), size);
+        index.entryPoint = dis.readInt();
+        index.maxLevel = dis.readInt();
+        index.size = size;
+
+        for (int id = 0; id < size; id++) {
+            float[] vector = new float[dimensions];
+            for (int e = 0; e < dimensions; e++)
+                vector[e] = dis.readFloat();
+
+            int levels = dis.readInt();
+            int[][] node = new int[levels][];
+            for (int l = 0; l < levels; l++) {
+                int count = dis.readInt();
+                int[] list = new int[1 + (l == 0 ? index.maxM0 : m)];
+                if (count > list.length - 1)
+                    throw new IOException("Corrupt HNSW index: node " + id + " has " + count + " links at level " + l);
+
+                list[0] = count;
+                for (int e = 1; e <= count; e++)
+                    list[e] = dis.readInt();
+                node[l] = list;
+            }
+
+            index.vectors[id] = vector;
+            index.norms[id] = norm(vector);
+            index.links[id] = node;
+        }
+
+        return index;
+    }
+
+    /**
+     * This method restores index previously written with {@link #save(File)}
+     *
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    public static HnswIndex load(@NonNull File file) throws IOException {
+        try (InputStream is = new FileInputStream(file)) {
+            return load(is);
+        }
+    }
+
+    /**
+     * Binary heap over (distance, id) pairs, without boxing
+     */
+    protected static class Heap {
+        private final boolean max;
+        private float[] keys;
+        private int[] ids;
+        private int size;
+
+        protected Heap(boolean max, int capacity) {
+            this.max = max;
+            this.keys = new float[Math.max(capacity, 2)];
+            this.ids = new int[keys.length];
+        }
+
+        protected int size() {
+            return size;
+        }
+
+        protected float topKey() {
+            return keys[0];
+        }
+
+        protected int topId() {
+            return ids[0];
+        }
+
+        private boolean above(float a, float b) {
+            return max ? a > b : a < b;
+        }
+
+        protected void push(float key, int id) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >> 1;
+                if (!above(key, keys[parent]))
+                    break;
+
+                keys[i] = keys[parent];
+                ids[i] = ids[parent];
+                i = parent;
+            }
+            keys[i] = key;
+            ids[i] = id;
+        }
+
+        protected void pop() {
+            if (--size == 0)
+                return;
+
+            float key = keys[size];
+            int id = ids[size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size)
+                    break;
+
+                if (child + 1 < size && above(keys[child + 1], keys[child]))
+                    child++;
+
+                if (!above(keys[child], key))
+                    break;
+
+                keys[i] = keys[child];
+                ids[i] = ids[child];
+                i = child;
+            }
+            keys[i] = key;
+            ids[i] = id;
+        }
+    }
+
+    /**
+     * Per-thread visited marks, reused between searches
+     */
+    protected static class VisitedList {
+        private int[] marks = new int[0];
+        private int tag;
+
+        protected int next(int capacity) {
+            if (marks.length < capacity) {
+                marks = new int[capacity];
+                tag = 0;
+            }
+
+            if (++tag == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                tag = 1;
+            }
+            return tag;
+        }
+    }
+
+    public static class Builder {
+        private final int dimensions;
+        private int m = DEFAULT_M;
+        private int efConstruction = DEFAULT_EF_CONSTRUCTION;
+        private int ef = DEFAULT_EF;
+        private String similarityFunction = Distance.EUCLIDEAN.toString();
+        private boolean invert = false;
+        private long seed = System.currentTimeMillis();
+        private int capacity = INITIAL_CAPACITY;
+
+        public Builder(int dimensions) {
+            this.dimensions = dimensions;
+        }
+
+        /**
+         * Number of links per node on upper layers. Bottom layer uses 2 * m links
+         *
+         * Default value: 16
+         */
+        public Builder m(int m) {
+            this.m = m;
+            return this;
+        }
+
+        /**
+         * Size of candidates list used for inserts
+         *
+         * Default value: 200
+         */
+        public Builder efConstruction(int efConstruction) {
+            this.efConstruction = efConstruction;
+            return this;
+        }
+
+        /**
+         * Size of candidates list used for search
+         *
+         * Default value: 64
+         */
+        public Builder ef(int ef) {
+            this.ef = ef;
+            return this;
+        }
+
+        /**
+         * Similarity function: euclidean, manhattan, cosinedistance, cosinesimilarity or dot
+         *
+         * Default value: euclidean
+         */
+        public Builder similarityFunction(@NonNull String similarityFunction) {
+            this.similarityFunction = similarityFunction;
+            return this;
+        }
+
+        public Builder similarityFunction(@NonNull Distance distance) {
+            return similarityFunction(distance.toString());
+        }
+
+        /**
+         * Whether distances should be negated, should be true for similarity functions
+         */
+        public Builder invert(boolean invert) {
+            this.invert = invert;
+            return this;
+        }
+
+        /**
+         * Seed for levels generation
+         */
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * Expected number of points. Storage grows automatically, so this is optional
+         */
+        public Builder capacity(int capacity) {
+            this.capacity = capacity;
+            return this;
+        }
+
+        public HnswIndex build() {
+            return new HnswIndex(dimensions, m, efConstruction, ef, similarityFunction, invert, seed, capacity);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.clustering.util;
+
+import org.deeplearning4j.clustering.sptree.DataPoint;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.util.List;
+
+/**
+ * Common interface for k-nearest neighbors indices, such as
+ * {@link org.deeplearning4j.clustering.vptree.VPTree} and {@link org.deeplearning4j.clustering.hnsw.HnswIndex}
+ */
+public interface NearestNeighborsSearch {
+
+    /**
+     * Find k nearest neighbors of the target point
+     *
+     * @param target    the point to search neighbors for
+     * @param k         number of neighbors to find
+     * @param results   list that will be filled with found points, nearest first
+     * @param distances list that will be filled with distances to found points
+     */
+    void search(INDArray target, int k, List<DataPoint> results, List<Double> distances);
+}
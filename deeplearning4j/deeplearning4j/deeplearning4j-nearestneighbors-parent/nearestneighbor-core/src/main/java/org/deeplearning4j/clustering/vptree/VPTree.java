@@ -21,6 +21,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.deeplearning4j.clustering.sptree.DataPoint;
 import org.deeplearning4j.clustering.sptree.HeapObject;
 import org.deeplearning4j.clustering.util.MathUtils;
+import org.deeplearning4j.clustering.util.NearestNeighborsSearch;
 import org.nd4j.linalg.api.memory.MemoryWorkspace;
 import org.nd4j.linalg.api.memory.conf.WorkspaceConfiguration;
 import org.nd4j.linalg.api.memory.enums.*;
@@ -43,7 +44,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 @Slf4j
 @Builder
 @AllArgsConstructor
-public class VPTree implements Serializable {
+public class VPTree implements NearestNeighborsSearch, Serializable {
     private static final long serialVersionUID = 1L;
 
     public static final String EUCLIDEAN = "euclidean";
@@ -470,6 +471,7 @@ public class VPTree implements Serializable {
         return ret;
     }
 
+    @Override
     public void search(@NonNull INDArray target, int k, List<DataPoint> results, List<Double> distances) {
         search(target, k, results, distances, true);
     }
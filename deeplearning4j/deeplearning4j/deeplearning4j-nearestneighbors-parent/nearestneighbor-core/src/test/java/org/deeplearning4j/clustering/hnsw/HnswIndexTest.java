@@ -0,0 +1,198 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.clustering.hnsw;
+
+import org.deeplearning4j.clustering.BaseDL4JTest;
+import org.deeplearning4j.clustering.sptree.DataPoint;
+import org.deeplearning4j.clustering.vptree.VPTree;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class HnswIndexTest extends BaseDL4JTest {
+
+    @Rule
+    public TemporaryFolder testDir = new TemporaryFolder();
+
+    private static int[] bruteForce(INDArray points, float[] query, int k) {
+        final int rows = (int) points.rows();
+        final float[] dists = new float[rows];
+        Integer[] order = new Integer[rows];
+        for (int r = 0; r < rows; r++) {
+            float[] point = points.getRow(r).toFloatVector();
+            float sum = 0.0f;
+            for (int e = 0; e < query.length; e++)
+                sum += (query[e] - point[e]) * (query[e] - point[e]);
+            dists[r] = sum;
+            order[r] = r;
+        }
+
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return Float.compare(dists[o1], dists[o2]);
+            }
+        });
+
+        int[] result = new int[k];
+        for (int e = 0; e < k; e++)
+            result[e] = order[e];
+        return result;
+    }
+
+    private static double recall(HnswIndex index, INDArray points, INDArray queries, int k) {
+        int hits = 0;
+        int[] indices = new int[k];
+        for (int q = 0; q < queries.rows(); q++) {
+            float[] query = queries.getRow(q).toFloatVector();
+            int[] expected = bruteForce(points, query, k);
+            assertEquals(k, index.search(query, k, indices, null));
+
+            Set<Integer> found = new HashSet<>();
+            for (int i : indices)
+                found.add(i);
+
+            for (int i : expected)
+                if (found.contains(i))
+                    hits++;
+        }
+        return hits / (double) (queries.rows() * k);
+    }
+
+    @Test
+    public void testRecall() {
+        Nd4j.getRandom().setSeed(12345);
+        INDArray points = Nd4j.rand(DataType.FLOAT, 2000, 16);
+        INDArray queries = Nd4j.rand(DataType.FLOAT, 50, 16);
+
+        HnswIndex index = HnswIndex.builder(16).m(12).efConstruction(100).ef(50).seed(12345).build();
+        assertEquals(0, index.addAll(points));
+        assertEquals(2000, index.size());
+
+        double recall = recall(index, points, queries, 10);
+        assertTrue("Recall was " + recall, recall > 0.9);
+    }
+
+    @Test
+    public void testExactPointsFound() {
+        Nd4j.getRandom().setSeed(12345);
+        INDArray points = Nd4j.rand(DataType.FLOAT, 500, 8);
+
+        HnswIndex index = HnswIndex.builder(8).seed(119).build();
+        for (int r = 0; r < points.rows(); r++)
+            assertEquals(r, index.add(points.getRow(r)));
+
+        List<DataPoint> results = new ArrayList<>();
+        List<Double> distances = new ArrayList<>();
+        for (int r = 0; r < points.rows(); r += 50) {
+            index.search(points.getRow(r), 3, results, distances);
+            assertEquals(3, results.size());
+            assertEquals(r, results.get(0).getIndex());
+            assertEquals(0.0, distances.get(0), 1e-5);
+            assertEquals(points.getRow(r), results.get(0).getPoint().reshape(points.getRow(r).shape()));
+            assertTrue(distances.get(0) <= distances.get(1) && distances.get(1) <= distances.get(2));
+        }
+    }
+
+    @Test
+    public void testSameResultsAsVPTree() {
+        Nd4j.getRandom().setSeed(12345);
+        INDArray points = Nd4j.rand(DataType.FLOAT, 300, 10);
+        INDArray query = Nd4j.rand(DataType.FLOAT, 1, 10);
+
+        HnswIndex index = HnswIndex.builder(10).similarityFunction("cosinedistance").ef(300).seed(1).build();
+        index.addAll(points);
+        VPTree tree = new VPTree(points, "cosinedistance");
+
+        List<DataPoint> hnswResults = new ArrayList<>();
+        List<Double> hnswDistances = new ArrayList<>();
+        List<DataPoint> treeResults = new ArrayList<>();
+        List<Double> treeDistances = new ArrayList<>();
+        index.search(query, 5, hnswResults, hnswDistances);
+        tree.search(query, 5, treeResults, treeDistances);
+
+        assertEquals(5, hnswResults.size());
+        for (int e = 0; e < 5; e++) {
+            assertEquals(treeResults.get(e).getIndex(), hnswResults.get(e).getIndex());
+            assertEquals(treeDistances.get(e), hnswDistances.get(e), 1e-4);
+        }
+    }
+
+    @Test
+    public void testParallelBuild() {
+        Nd4j.getRandom().setSeed(12345);
+        INDArray points = Nd4j.rand(DataType.FLOAT, 2000, 16);
+        INDArray queries = Nd4j.rand(DataType.FLOAT, 50, 16);
+
+        HnswIndex index = HnswIndex.builder(16).m(12).efConstruction(100).ef(50).seed(12345).build();
+        index.addAll(points, 4);
+        assertEquals(2000, index.size());
+
+        for (int r = 0; r < points.rows(); r += 100)
+            assertArrayEquals(points.getRow(r).toFloatVector(), index.getPoint(r), 0.0f);
+
+        double recall = recall(index, points, queries, 10);
+        assertTrue("Recall was " + recall, recall > 0.9);
+    }
+
+    @Test
+    public void testSaveLoad() throws Exception {
+        Nd4j.getRandom().setSeed(12345);
+        INDArray points = Nd4j.rand(DataType.FLOAT, 1000, 8);
+        INDArray queries = Nd4j.rand(DataType.FLOAT, 20, 8);
+
+        HnswIndex index = HnswIndex.builder(8).similarityFunction("manhattan").seed(42).build();
+        index.addAll(points);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        index.save(baos);
+        HnswIndex restored = HnswIndex.load(new ByteArrayInputStream(baos.toByteArray()));
+
+        File file = testDir.newFile("index.bin");
+        index.save(file);
+        HnswIndex fromFile = HnswIndex.load(file);
+
+        assertEquals(index.size(), restored.size());
+        assertEquals(index.getSimilarityFunction(), restored.getSimilarityFunction());
+
+        int[] expected = new int[5];
+        float[] expectedDistances = new float[5];
+        int[] actual = new int[5];
+        float[] actualDistances = new float[5];
+        for (int q = 0; q < queries.rows(); q++) {
+            float[] query = queries.getRow(q).toFloatVector();
+            index.search(query, 5, expected, expectedDistances);
+
+            restored.search(query, 5, actual, actualDistances);
+            assertArrayEquals(expected, actual);
+            assertArrayEquals(expectedDistances, actualDistances, 0.0f);
+
+            fromFile.search(query, 5, actual, actualDistances);
+            assertArrayEquals(expected, actual);
+        }
+    }
+}
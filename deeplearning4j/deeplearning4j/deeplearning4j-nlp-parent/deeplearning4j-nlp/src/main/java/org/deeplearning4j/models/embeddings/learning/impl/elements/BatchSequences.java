@@ -59,6 +59,15 @@ public class BatchSequences<T extends SequenceElement> {
         return retVal;
     }
 
+    /**
+     * This method returns max number of items returned by get() call
+     *
+     * @return
+     */
+    public int getBatches() {
+        return batches;
+    }
+
     public int size() {
         return buffer.size();
     }
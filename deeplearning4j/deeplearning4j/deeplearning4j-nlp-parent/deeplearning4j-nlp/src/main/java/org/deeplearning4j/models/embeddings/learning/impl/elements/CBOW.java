@@ -277,6 +277,16 @@ public class CBOW<T extends SequenceElement> implements ElementsLearningAlgorith
     }
 
     public void iterateSample(List<BatchItem<T>> items) {
+        iterateSample(items, workers);
+    }
+
+    /**
+     * This method executes given batch as single CbowRound op
+     *
+     * @param items batch items
+     * @param numWorkers number of threads native op is allowed to use
+     */
+    public void iterateSample(List<BatchItem<T>> items, int numWorkers) {
 
         boolean useHS = configuration.isUseHierarchicSoftmax();
         boolean useNegative = configuration.getNegative() > 0;
@@ -402,7 +412,7 @@ public class CBOW<T extends SequenceElement> implements ElementsLearningAlgorith
                 /*inferenceVector != null ? inferenceVector :*/ Nd4j.empty(syn0.get().dataType()),
                 hasNumLabels ? numLabelsArray : Nd4j.empty(DataType.INT),
                 configuration.isTrainElementsVectors(),
-                workers);
+                numWorkers);
 
         Nd4j.getExecutioner().exec(cbow);
 
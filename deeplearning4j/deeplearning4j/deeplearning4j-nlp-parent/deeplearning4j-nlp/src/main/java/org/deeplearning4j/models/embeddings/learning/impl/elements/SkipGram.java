@@ -427,6 +427,17 @@ public class SkipGram<T extends SequenceElement> implements ElementsLearningAlgo
     }
 
     public double iterateSample(List<BatchItem<T>> items) {
+        return iterateSample(items, workers);
+    }
+
+    /**
+     * This method executes given batch as single SkipGramRound op
+     *
+     * @param items batch items
+     * @param numWorkers number of threads native op is allowed to use
+     * @return
+     */
+    public double iterateSample(List<BatchItem<T>> items, int numWorkers) {
 
         boolean useHS = configuration.isUseHierarchicSoftmax();
         boolean useNegative = configuration.getNegative() > 0;
@@ -529,7 +540,7 @@ public class SkipGram<T extends SequenceElement> implements ElementsLearningAlgo
                 alphasArray, randomValuesArray,
                 /*inferenceVector != null ? inferenceVector :*/ Nd4j.empty(syn0.get().dataType()),
                 configuration.isPreciseMode(),
-                workers);
+                numWorkers);
 
         Nd4j.getExecutioner().exec(sg);
 
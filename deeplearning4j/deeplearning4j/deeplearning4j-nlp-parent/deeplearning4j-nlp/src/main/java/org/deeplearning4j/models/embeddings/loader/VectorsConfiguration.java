@@ -87,6 +87,9 @@ public class VectorsConfiguration implements Serializable {
 
     private boolean preciseMode = false;
 
+    // each worker thread trains its own batches, without coordination with other threads
+    private boolean hogwild = false;
+
     private static ObjectMapper mapper;
     private static final Object lock = new Object();
 
@@ -28,6 +28,7 @@ import org.deeplearning4j.exception.DL4JInvalidInputException;
 import org.deeplearning4j.models.embeddings.WeightLookupTable;
 import org.deeplearning4j.models.embeddings.inmemory.InMemoryLookupTable;
 import org.deeplearning4j.models.embeddings.learning.impl.elements.SkipGram;
+import org.deeplearning4j.models.embeddings.mapped.MappedVectorsStorage;
 import org.deeplearning4j.models.embeddings.reader.impl.BasicModelUtils;
 import org.deeplearning4j.models.embeddings.wordvectors.WordVectors;
 import org.deeplearning4j.models.embeddings.wordvectors.WordVectorsImpl;
@@ -38,6 +39,7 @@ import org.deeplearning4j.models.sequencevectors.SequenceVectors;
 import org.deeplearning4j.models.sequencevectors.interfaces.SequenceElementFactory;
 import org.deeplearning4j.models.sequencevectors.sequence.SequenceElement;
 import org.deeplearning4j.models.sequencevectors.serialization.VocabWordFactory;
+import org.deeplearning4j.models.word2vec.MappedWord2Vec;
 import org.deeplearning4j.models.word2vec.StaticWord2Vec;
 import org.deeplearning4j.models.word2vec.VocabWord;
 import org.deeplearning4j.models.word2vec.Word2Vec;
@@ -45,6 +47,7 @@ import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
 import org.deeplearning4j.models.word2vec.wordstore.VocabularyHolder;
 import org.deeplearning4j.models.word2vec.wordstore.VocabularyWord;
 import org.deeplearning4j.models.word2vec.wordstore.inmemory.AbstractCache;
+import org.deeplearning4j.models.word2vec.wordstore.inmemory.CompactVocabCache;
 import org.deeplearning4j.models.word2vec.wordstore.inmemory.InMemoryLookupCache;
 import org.deeplearning4j.text.documentiterator.LabelsSource;
 import org.deeplearning4j.text.sentenceiterator.BasicLineIterator;
@@ -2018,7 +2021,9 @@ public class WordVectorSerializer {
             throws IOException {
 
         InMemoryLookupTable<VocabWord> lookupTable = (InMemoryLookupTable<VocabWord>) vectors.getLookupTable();
-        AbstractCache<T> vocabCache = (AbstractCache<T>) vectors.getVocab();
+        VocabCache<T> vocabCache = vectors.getVocab();
+        String vocabJson = vocabCache instanceof CompactVocabCache ? ((CompactVocabCache) vocabCache).toJson()
+                : ((AbstractCache<T>) vocabCache).toJson();
 
         try (ZipOutputStream zipfile = new ZipOutputStream(new BufferedOutputStream(new CloseShieldOutputStream(stream)));
              DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(zipfile))) {
@@ -2032,7 +2037,7 @@ public class WordVectorSerializer {
 
             ZipEntry vocab = new ZipEntry(VOCAB_ENTRY);
             zipfile.putNextEntry(vocab);
-            zipfile.write(vocabCache.toJson().getBytes("UTF-8"));
+            zipfile.write(vocabJson.getBytes("UTF-8"));
 
             INDArray syn0Data = lookupTable.getSyn0();
             ZipEntry syn0 = new ZipEntry(SYN0_ENTRY);
@@ -2871,6 +2876,39 @@ public class WordVectorSerializer {
         return word2Vec;
     }
 
+    /**
+     * This method writes word vectors in memory-mapped format: vocabulary hash table followed by aligned float matrix.
+     * Such file can be loaded with {@link #loadMappedModel(File)} in constant time, regardless of model size.
+     *
+     * Typical use is one-time conversion of a model in any format supported by {@link #loadStaticModel(File)}
+     * or {@link #readWord2VecModel(File)}.
+     *
+     * @param vectors WordVectors to be written
+     * @param file    target file
+     * @throws IOException
+     */
+    public static void writeMappedModel(@NonNull WordVectors vectors, @NonNull File file) throws IOException {
+        MappedVectorsStorage.write(vectors, file);
+    }
+
+    /**
+     * This method maps file previously written with {@link #writeMappedModel(WordVectors, File)} into memory.
+     * Nothing is parsed or copied to heap, so this method returns in milliseconds, and mapped pages are shared
+     * between all JVMs that use the same file on this host.
+     *
+     * In return you get read-only MappedWord2Vec model, suited for lookups and inference.
+     *
+     * @param file File
+     * @return
+     */
+    public static MappedWord2Vec loadMappedModel(@NonNull File file) {
+        try {
+            return MappedWord2Vec.open(file);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
 
     protected interface Reader extends AutoCloseable {
         boolean hasNext();
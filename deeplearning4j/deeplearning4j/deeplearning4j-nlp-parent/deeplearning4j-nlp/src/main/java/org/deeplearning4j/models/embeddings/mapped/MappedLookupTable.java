@@ -0,0 +1,179 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.models.embeddings.mapped;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
+import org.deeplearning4j.models.embeddings.WeightLookupTable;
+import org.deeplearning4j.models.sequencevectors.sequence.SequenceElement;
+import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
+import org.deeplearning4j.plot.BarnesHutTsne;
+import org.deeplearning4j.ui.UiConnectionInfo;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-only WeightLookupTable implementation backed by {@link MappedVectorsStorage}.
+ * Suitable for inference only: all methods related to training throw UnsupportedOperationException.
+ */
+public class MappedLookupTable<T extends SequenceElement> implements WeightLookupTable<T> {
+    @Getter
+    private final transient MappedVectorsStorage storage;
+    private final VocabCache<T> vocabCache;
+    @Getter
+    @Setter
+    private Long tableId;
+
+    public MappedLookupTable(@NonNull MappedVectorsStorage storage, @NonNull VocabCache<T> vocabCache) {
+        this.storage = storage;
+        this.vocabCache = vocabCache;
+    }
+
+    @Override
+    public int layerSize() {
+        return storage.getVectorLength();
+    }
+
+    @Override
+    public INDArray vector(String word) {
+        int idx = storage.indexOf(word);
+        return idx < 0 ? null : storage.vector(idx);
+    }
+
+    @Override
+    public Iterator<INDArray> vectors() {
+        return new Iterator<INDArray>() {
+            private int position = 0;
+
+            @Override
+            public boolean hasNext() {
+                return position < storage.getNumWords();
+            }
+
+            @Override
+            public INDArray next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+
+                return storage.vector(position++);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * This method returns copy of the whole matrix on heap.
+     * PLEASE NOTE: Memory use is equal to the size of the model
+     *
+     * @return
+     */
+    @Override
+    public INDArray getWeights() {
+        int numWords = storage.getNumWords();
+        int vectorLength = storage.getVectorLength();
+        if ((long) numWords * vectorLength > Integer.MAX_VALUE)
+            throw new UnsupportedOperationException("Model is too large to be copied into single array");
+
+        float[] data = new float[numWords * vectorLength];
+        float[] row = new float[vectorLength];
+        for (int e = 0; e < numWords; e++) {
+            storage.row(e, row);
+            System.arraycopy(row, 0, data, e * vectorLength, vectorLength);
+        }
+        return Nd4j.create(data, new int[] {numWords, vectorLength}, 'c');
+    }
+
+    @Override
+    public VocabCache<T> getVocabCache() {
+        return vocabCache;
+    }
+
+    @Override
+    public double getGradient(int column, double gradient) {
+        throw new UnsupportedOperationException("MappedLookupTable is read-only");
+    }
+
+    @Override
+    public void resetWeights(boolean reset) {
+        throw new UnsupportedOperationException("MappedLookupTable is read-only");
+    }
+
+    @Override
+    public void resetWeights() {
+        throw new UnsupportedOperationException("MappedLookupTable is read-only");
+    }
+
+    @Override
+    public void plotVocab(BarnesHutTsne tsne, int numWords, UiConnectionInfo connectionInfo) {
+        throw new UnsupportedOperationException("Method isn't implemented. Please use usual Word2Vec implementation");
+    }
+
+    @Override
+    public void plotVocab(BarnesHutTsne tsne, int numWords, File file) {
+        throw new UnsupportedOperationException("Method isn't implemented. Please use usual Word2Vec implementation");
+    }
+
+    @Override
+    public void plotVocab(int numWords, UiConnectionInfo connectionInfo) {
+        throw new UnsupportedOperationException("Method isn't implemented. Please use usual Word2Vec implementation");
+    }
+
+    @Override
+    public void plotVocab(int numWords, File file) {
+        throw new UnsupportedOperationException("Method isn't implemented. Please use usual Word2Vec implementation");
+    }
+
+    @Override
+    public void putCode(int codeIndex, INDArray code) {
+        throw new UnsupportedOperationException("MappedLookupTable is read-only");
+    }
+
+    @Override
+    public INDArray loadCodes(int[] codes) {
+        throw new UnsupportedOperationException("MappedLookupTable doesn't have hierarchic softmax weights");
+    }
+
+    @Override
+    public void iterate(T w1, T w2) {
+        throw new UnsupportedOperationException("MappedLookupTable is read-only");
+    }
+
+    @Override
+    public void iterateSample(T w1, T w2, AtomicLong nextRandom, double alpha) {
+        throw new UnsupportedOperationException("MappedLookupTable is read-only");
+    }
+
+    @Override
+    public void putVector(String word, INDArray vector) {
+        throw new UnsupportedOperationException("MappedLookupTable is read-only");
+    }
+
+    @Override
+    public void setLearningRate(double lr) {
+        throw new UnsupportedOperationException("MappedLookupTable is read-only");
+    }
+}
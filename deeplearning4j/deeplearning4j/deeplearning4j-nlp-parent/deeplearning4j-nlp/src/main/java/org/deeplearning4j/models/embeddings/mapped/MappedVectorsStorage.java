@@ -0,0 +1,353 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.models.embeddings.mapped;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.models.embeddings.wordvectors.WordVectors;
+import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class provides read-only, memory-mapped storage for static word vectors.
+ *
+ * File layout (little endian):
+ * - 64 bytes header: magic, version, number of words, vector length, number of hash slots, section offsets
+ * - UTF-8 bytes of all words, followed by long[numWords + 1] offsets of each word within that section
+ * - open addressing hash table: int[numSlots], each slot holds word index + 1, or 0 if slot is empty
+ * - int[numWords] word frequencies
+ * - float[numWords * vectorLength] matrix, aligned to 64 bytes, one row per word index
+ *
+ * Opening the file doesn't parse anything: words are looked up directly in the mapped hash table, and vectors
+ * are read from the mapped matrix on demand. Pages are shared via OS page cache, so multiple JVMs on the same host
+ * use single copy of the model.
+ *
+ * PLEASE NOTE: This class is thread-safe
+ */
+@Slf4j
+public class MappedVectorsStorage {
+    public static final int MAGIC = 0x444C344D;
+    public static final int VERSION = 1;
+
+    private static final int HEADER_LENGTH = 64;
+    private static final int ALIGNMENT = 64;
+
+    @Getter
+    private final File file;
+    @Getter
+    private final int numWords;
+    @Getter
+    private final int vectorLength;
+    private final int numSlots;
+
+    private final ByteBuffer meta;
+    private final int stringsOffset;
+    private final int offsetsOffset;
+    private final int hashOffset;
+    private final int freqOffset;
+
+    private final FloatBuffer[] segments;
+    private final int rowsPerSegment;
+
+    protected MappedVectorsStorage(@NonNull File file) throws IOException {
+        this.file = file;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(HEADER_LENGTH, channel.size()))
+                            .order(ByteOrder.LITTLE_ENDIAN);
+            if (header.limit() < HEADER_LENGTH || header.getInt(0) != MAGIC)
+                throw new IOException("File [" + file.getAbsolutePath() + "] isn't memory-mapped word vectors file");
+
+            int version = header.getInt(4);
+            if (version != VERSION)
+                throw new IOException("Unsupported memory-mapped word vectors version: " + version);
+
+            numWords = header.getInt(8);
+            vectorLength = header.getInt(12);
+            numSlots = header.getInt(16);
+            long matrixOffset = header.getLong(56);
+            long matrixLength = (long) numWords * vectorLength * 4L;
+
+            if (numWords < 0 || vectorLength < 1 || numSlots < numWords || Integer.bitCount(numSlots) != 1)
+                throw new IOException("Corrupt memory-mapped word vectors header");
+
+            if (matrixOffset > Integer.MAX_VALUE)
+                throw new IOException("Vocabulary section exceeds 2GB limit");
+
+            if (channel.size() < matrixOffset + matrixLength)
+                throw new IOException("File [" + file.getAbsolutePath() + "] is truncated: expected at least "
+                                + (matrixOffset + matrixLength) + " bytes, got " + channel.size());
+
+            stringsOffset = (int) header.getLong(24);
+            offsetsOffset = (int) header.getLong(32);
+            hashOffset = (int) header.getLong(40);
+            freqOffset = (int) header.getLong(48);
+
+            meta = channel.map(FileChannel.MapMode.READ_ONLY, 0, matrixOffset).order(ByteOrder.LITTLE_ENDIAN);
+
+            // single mapping can't exceed 2GB, so matrix is split into segments of whole rows
+            rowsPerSegment = Math.max(1, Integer.MAX_VALUE / (vectorLength * 4));
+            int numSegments = numWords == 0 ? 0 : (numWords - 1) / rowsPerSegment + 1;
+            segments = new FloatBuffer[numSegments];
+            for (int s = 0; s < numSegments; s++) {
+                long firstRow = (long) s * rowsPerSegment;
+                long rows = Math.min(rowsPerSegment, numWords - firstRow);
+                segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, matrixOffset + firstRow * vectorLength * 4L,
+                                rows * vectorLength * 4L).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+            }
+        }
+    }
+
+    /**
+     * This method maps previously written file into memory
+     *
+     * @param file file created with {@link #write(WordVectors, File)}
+     * @return
+     * @throws IOException
+     */
+    public static MappedVectorsStorage open(@NonNull File file) throws IOException {
+        return new MappedVectorsStorage(file);
+    }
+
+    /**
+     * This method returns index of the given word, or -1 if word isn't in vocabulary
+     *
+     * @param word
+     * @return
+     */
+    public int indexOf(String word) {
+        if (word == null || numWords == 0)
+            return -1;
+
+        byte[] bytes = word.getBytes(StandardCharsets.UTF_8);
+        int mask = numSlots - 1;
+        int slot = hash(bytes) & mask;
+        while (true) {
+            int value = meta.getInt(hashOffset + slot * 4);
+            if (value == 0)
+                return -1;
+
+            if (matches(value - 1, bytes))
+                return value - 1;
+
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * This method returns word with the given index
+     *
+     * @param index
+     * @return
+     */
+    public String wordAtIndex(int index) {
+        checkIndex(index);
+        int start = (int) meta.getLong(offsetsOffset + index * 8);
+        int end = (int) meta.getLong(offsetsOffset + (index + 1) * 8);
+
+        byte[] bytes = new byte[end - start];
+        for (int e = 0; e < bytes.length; e++)
+            bytes[e] = meta.get(stringsOffset + start + e);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * This method returns frequency of the word with the given index, as stored at write time
+     *
+     * @param index
+     * @return
+     */
+    public int frequency(int index) {
+        checkIndex(index);
+        return meta.getInt(freqOffset + index * 4);
+    }
+
+    /**
+     * This method copies vector of the word with the given index into target array
+     *
+     * @param index
+     * @param target array of length vectorLength or more
+     */
+    public void row(int index, @NonNull float[] target) {
+        checkIndex(index);
+        FloatBuffer segment = segments[index / rowsPerSegment];
+        int position = (index % rowsPerSegment) * vectorLength;
+
+        // absolute gets only, so buffer position is never touched and concurrent reads are safe
+        for (int e = 0; e < vectorLength; e++)
+            target[e] = segment.get(position + e);
+    }
+
+    /**
+     * This method returns copy of the vector of the word with the given index
+     *
+     * @param index
+     * @return
+     */
+    public float[] row(int index) {
+        float[] result = new float[vectorLength];
+        row(index, result);
+        return result;
+    }
+
+    /**
+     * This method returns vector of the word with the given index, as INDArray
+     *
+     * @param index
+     * @return
+     */
+    public INDArray vector(int index) {
+        return Nd4j.create(row(index));
+    }
+
+    protected boolean matches(int index, byte[] bytes) {
+        int start = (int) meta.getLong(offsetsOffset + index * 8);
+        int end = (int) meta.getLong(offsetsOffset + (index + 1) * 8);
+        if (end - start != bytes.length)
+            return false;
+
+        for (int e = 0; e < bytes.length; e++)
+            if (meta.get(stringsOffset + start + e) != bytes[e])
+                return false;
+
+        return true;
+    }
+
+    protected void checkIndex(int index) {
+        if (index < 0 || index >= numWords)
+            throw new IndexOutOfBoundsException("Index " + index + " is out of bounds [0, " + numWords + ")");
+    }
+
+    protected static int hash(byte[] bytes) {
+        // FNV-1a
+        int h = 0x811C9DC5;
+        for (byte b : bytes) {
+            h ^= (b & 0xFF);
+            h *= 0x01000193;
+        }
+        return h;
+    }
+
+    protected static long align(long value, int alignment) {
+        return (value + alignment - 1) / alignment * alignment;
+    }
+
+    /**
+     * This method writes given word vectors in memory-mapped format. Word indices are preserved.
+     *
+     * @param vectors WordVectors, i.e. model loaded with WordVectorSerializer.readWord2VecModel()
+     * @param file    target file
+     * @throws IOException
+     */
+    public static void write(@NonNull WordVectors vectors, @NonNull File file) throws IOException {
+        VocabCache<?> vocab = vectors.vocab();
+        int numWords = vocab.numWords();
+        int vectorLength = vectors.vectorSize();
+
+        byte[][] words = new byte[numWords][];
+        long stringsLength = 0;
+        for (int e = 0; e < numWords; e++) {
+            String word = vocab.wordAtIndex(e);
+            if (word == null)
+                throw new IllegalStateException("Vocabulary has no word for index " + e);
+
+            words[e] = word.getBytes(StandardCharsets.UTF_8);
+            stringsLength += words[e].length;
+        }
+
+        int numSlots = Integer.highestOneBit(Math.max(16, numWords * 2 - 1)) << 1;
+        int[] slots = new int[numSlots];
+        for (int e = 0; e < numWords; e++) {
+            int slot = hash(words[e]) & (numSlots - 1);
+            while (slots[slot] != 0)
+                slot = (slot + 1) & (numSlots - 1);
+
+            slots[slot] = e + 1;
+        }
+
+        long stringsOffset = HEADER_LENGTH;
+        long offsetsOffset = align(stringsOffset + stringsLength, 8);
+        long hashOffset = offsetsOffset + 8L * (numWords + 1);
+        long freqOffset = hashOffset + 4L * numSlots;
+        long matrixOffset = align(freqOffset + 4L * numWords, ALIGNMENT);
+        if (matrixOffset > Integer.MAX_VALUE)
+            throw new IllegalStateException("Vocabulary section exceeds 2GB limit");
+
+        ByteBuffer meta = ByteBuffer.allocate((int) matrixOffset).order(ByteOrder.LITTLE_ENDIAN);
+        meta.putInt(MAGIC).putInt(VERSION).putInt(numWords).putInt(vectorLength).putInt(numSlots).putInt(0);
+        meta.putLong(stringsOffset).putLong(offsetsOffset).putLong(hashOffset).putLong(freqOffset).putLong(matrixOffset);
+
+        meta.position((int) stringsOffset);
+        for (byte[] word : words)
+            meta.put(word);
+
+        meta.position((int) offsetsOffset);
+        long position = 0;
+        for (int e = 0; e < numWords; e++) {
+            meta.putLong(position);
+            position += words[e].length;
+        }
+        meta.putLong(position);
+
+        for (int slot : slots)
+            meta.putInt(slot);
+
+        for (int e = 0; e < numWords; e++)
+            meta.putInt(vocab.wordFrequency(vocab.wordAtIndex(e)));
+
+        meta.clear();
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+            channel.truncate(0);
+            while (meta.hasRemaining())
+                channel.write(meta);
+
+            // rows are written in chunks of ~1MB
+            int rowsPerChunk = Math.max(1, (1 << 20) / (vectorLength * 4));
+            ByteBuffer chunk = ByteBuffer.allocate(rowsPerChunk * vectorLength * 4).order(ByteOrder.LITTLE_ENDIAN);
+            for (int e = 0; e < numWords; e++) {
+                INDArray vector = vectors.getWordVectorMatrix(vocab.wordAtIndex(e));
+                if (vector == null || vector.length() != vectorLength)
+                    throw new IllegalStateException("Vector for word [" + vocab.wordAtIndex(e) + "] has wrong length");
+
+                for (float v : vector.toFloatVector())
+                    chunk.putFloat(v);
+
+                if (!chunk.hasRemaining() || e == numWords - 1) {
+                    chunk.flip();
+                    while (chunk.hasRemaining())
+                        channel.write(chunk);
+                    chunk.clear();
+                }
+            }
+            channel.force(false);
+        }
+
+        log.info("{} words with vector length {} were written to [{}]", numWords, vectorLength, file.getAbsolutePath());
+    }
+}
@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.models.embeddings.reader.impl;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.clustering.hnsw.HnswIndex;
+import org.deeplearning4j.models.embeddings.WeightLookupTable;
+import org.deeplearning4j.models.embeddings.inmemory.InMemoryLookupTable;
+import org.deeplearning4j.models.sequencevectors.sequence.SequenceElement;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * This is HNSW-based implementation for wordsNearest method: approximate nearest neighbors search,
+ * which is way faster than exhaustive search for large vocabularies.
+ *
+ * Index will be built upon first call to wordsNearest, and takes memory comparable to the lookup table itself.
+ * Use higher ef values for better recall.
+ */
+@Slf4j
+public class HnswModelUtils<T extends SequenceElement> extends TreeModelUtils<T> {
+    protected final int m;
+    protected final int efConstruction;
+    protected final int ef;
+
+    protected volatile HnswIndex index;
+    protected volatile String[] labels;
+
+    public HnswModelUtils() {
+        this(HnswIndex.DEFAULT_M, HnswIndex.DEFAULT_EF_CONSTRUCTION, HnswIndex.DEFAULT_EF);
+    }
+
+    /**
+     * @param m              number of links per node in HNSW graph
+     * @param efConstruction size of candidates list used while building index
+     * @param ef             size of candidates list used for search
+     */
+    public HnswModelUtils(int m, int efConstruction, int ef) {
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.ef = ef;
+    }
+
+    @Override
+    public void init(@NonNull WeightLookupTable<T> lookupTable) {
+        super.init(lookupTable);
+        index = null;
+        labels = null;
+    }
+
+    protected synchronized void checkIndex() {
+        // build new index if it wasn't created before
+        if (index != null)
+            return;
+
+        long time = System.currentTimeMillis();
+        HnswIndex index = HnswIndex.builder(lookupTable.layerSize()).m(m).efConstruction(efConstruction).ef(ef)
+                        .similarityFunction("cosinedistance").capacity(vocabCache.numWords()).build();
+
+        String[] labels = new String[vocabCache.numWords()];
+        if (lookupTable instanceof InMemoryLookupTable) {
+            // rows of syn0 are aligned with vocab indices
+            INDArray syn0 = ((InMemoryLookupTable) lookupTable).getSyn0();
+            index.addAll(syn0, Runtime.getRuntime().availableProcessors());
+            for (int e = 0; e < labels.length; e++)
+                labels[e] = vocabCache.wordAtIndex(e);
+        } else {
+            List<String> words = new ArrayList<>(labels.length);
+            for (int e = 0; e < vocabCache.numWords(); e++) {
+                String word = vocabCache.wordAtIndex(e);
+                if (word == null)
+                    continue;
+
+                index.add(lookupTable.vector(word));
+                words.add(word);
+            }
+            labels = words.toArray(new String[0]);
+        }
+
+        log.info("HNSW index for {} words was built in {} ms", labels.length, System.currentTimeMillis() - time);
+        this.labels = labels;
+        this.index = index;
+    }
+
+    @Override
+    public Collection<String> wordsNearest(INDArray words, int top) {
+        checkIndex();
+        words = adjustRank(words);
+
+        // few extra results, to compensate UNK/STOP removal
+        int k = top + 2;
+        int[] indices = new int[k];
+        int found = index.search(words.toFloatVector(), k, indices, null);
+
+        String[] labels = this.labels;
+        Collection<String> ret = new ArrayList<>();
+        for (int e = 0; e < found && ret.size() < top; e++) {
+            String word = indices[e] < labels.length ? labels[indices[e]] : null;
+            if (word != null && !word.equals("UNK") && !word.equals("STOP"))
+                ret.add(word);
+        }
+
+        return ret;
+    }
+}
@@ -41,6 +41,7 @@ import org.deeplearning4j.models.word2vec.VocabWord;
 import org.deeplearning4j.models.word2vec.Word2Vec;
 import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
 import org.deeplearning4j.models.word2vec.wordstore.inmemory.AbstractCache;
+import org.deeplearning4j.models.word2vec.wordstore.inmemory.CompactVocabCache;
 import org.deeplearning4j.text.documentiterator.*;
 import org.deeplearning4j.text.documentiterator.interoperability.DocumentIteratorConverter;
 import org.deeplearning4j.text.invertedindex.InvertedIndex;
@@ -738,6 +739,8 @@ public class ParagraphVectors extends Word2Vec {
 
         if (this.vocab instanceof AbstractCache) {
             retVal.addProperty(VOCAB_LIST_FIELD, ((AbstractCache<VocabWord>) this.vocab).toJson());
+        } else if (this.vocab instanceof CompactVocabCache) {
+            retVal.addProperty(VOCAB_LIST_FIELD, ((CompactVocabCache) this.vocab).toJson());
         }
 
         return retVal.toString();
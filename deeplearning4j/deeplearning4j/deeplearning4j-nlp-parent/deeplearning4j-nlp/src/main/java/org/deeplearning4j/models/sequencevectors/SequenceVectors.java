@@ -95,7 +95,12 @@ public class SequenceVectors<T extends SequenceElement> extends WordVectorsImpl<
     protected boolean enableScavenger = false;
     protected int vocabLimit = 0;
 
-    private BatchSequences<T> batchSequences;
+    // in hogwild mode each thread aggregates this many batches before calling native op
+    private static final int HOGWILD_BATCH_FACTOR = 8;
+    // in hogwild mode threads update shared words counter once they've processed this many words
+    private static final long HOGWILD_COUNTER_THRESHOLD = 10000;
+
+    protected final transient AtomicLong elementsCounter = new AtomicLong(0);
 
 
     @Setter
@@ -120,6 +125,17 @@ public class SequenceVectors<T extends SequenceElement> extends WordVectorsImpl<
         return scoreSequences.get();
     }
 
+    /**
+     * This method returns number of elements processed during current fit() call
+     *
+     * PLEASE NOTE: in hogwild mode threads update this counter in chunks, so value might lag behind a bit
+     *
+     * @return
+     */
+    public long getElementsProcessed() {
+        return elementsCounter.get();
+    }
+
 
     @Override
     public INDArray getWordVectorMatrix(String word) {
@@ -221,7 +237,8 @@ public class SequenceVectors<T extends SequenceElement> extends WordVectorsImpl<
                 String externalWord = intersectModel.vocab().wordAtIndex(i);
                 int index = this.vocab.indexOf(externalWord);
                 if (index >= 0) {
-                    this.vocab.wordFor(externalWord).setLocked(lockFactor);
+                    T element = this.vocab.wordFor(externalWord);
+                    element.setLocked(lockFactor);
                     indexes.add(index);
                 }
             }
@@ -331,7 +348,14 @@ public class SequenceVectors<T extends SequenceElement> extends WordVectorsImpl<
         if (this.stopWords == null)
             this.stopWords = new ArrayList<>();
 
-        val wordsCounter = new AtomicLong(0);
+        val wordsCounter = elementsCounter;
+        wordsCounter.set(0);
+
+        // in hogwild mode every worker gets its own calculation thread, otherwise parallelism lives within native ops
+        int numThreads = configuration.isHogwild() ? Math.max(1, workers) : 1;
+        if (configuration.isHogwild())
+            log.info("Using hogwild training with {} threads...", numThreads);
+
         for (int currentEpoch = 1; currentEpoch <= numEpochs; currentEpoch++) {
             val linesCounter = new AtomicLong(0);
 
@@ -340,9 +364,13 @@ public class SequenceVectors<T extends SequenceElement> extends WordVectorsImpl<
             sequencer.start();
 
             val timer = new AtomicLong(System.currentTimeMillis());
-            val thread = new VectorCalculationsThread(0, currentEpoch, wordsCounter, vocab.totalWordOccurrences(),
-                    linesCounter, sequencer, timer, numEpochs);
-            thread.start();
+            val threads = new ArrayList<VectorCalculationsThread>(numThreads);
+            for (int t = 0; t < numThreads; t++) {
+                val thread = new VectorCalculationsThread(t, currentEpoch, wordsCounter, vocab.totalWordOccurrences(),
+                        linesCounter, sequencer, timer, numEpochs);
+                thread.start();
+                threads.add(thread);
+            }
 
             try {
                 sequencer.join();
@@ -351,7 +379,8 @@ public class SequenceVectors<T extends SequenceElement> extends WordVectorsImpl<
             }
 
             try {
-               thread.join();
+                for (val thread : threads)
+                    thread.join();
             } catch (Exception e) {
                 throw new RuntimeException(e);
             }
@@ -384,6 +413,11 @@ public class SequenceVectors<T extends SequenceElement> extends WordVectorsImpl<
 
 
     protected void trainSequence(@NonNull Sequence<T> sequence, AtomicLong nextRandom, double alpha) {
+        trainSequence(sequence, nextRandom, alpha, null);
+    }
+
+    protected void trainSequence(@NonNull Sequence<T> sequence, AtomicLong nextRandom, double alpha,
+                    BatchSequences<T> batchSequences) {
 
         if (sequence.getElements().isEmpty())
             return;
@@ -462,6 +496,11 @@ public class SequenceVectors<T extends SequenceElement> extends WordVectorsImpl<
          */
         protected boolean preciseMode = false;
 
+        /**
+         * Experimental field. Switches on lock-free multi-threaded training.
+         */
+        protected boolean hogwild = false;
+
         // defaults values for learning algorithms are set here
         protected ElementsLearningAlgorithm<T> elementsLearningAlgorithm = new SkipGram<>();
         protected SequenceLearningAlgorithm<T> sequenceLearningAlgorithm = new DBOW<>();
@@ -493,6 +532,7 @@ public class SequenceVectors<T extends SequenceElement> extends WordVectorsImpl<
             this.variableWindows = configuration.getVariableWindows();
             this.useHierarchicSoftmax = configuration.isUseHierarchicSoftmax();
             this.preciseMode = configuration.isPreciseMode();
+            this.hogwild = configuration.isHogwild();
 
             if (configuration.getModelUtils() != null && !configuration.getModelUtils().isEmpty()) {
 
@@ -925,6 +965,23 @@ public class SequenceVectors<T extends SequenceElement> extends WordVectorsImpl<
             return this;
         }
 
+        /**
+         * This method enables/disables Hogwild-style training for SkipGram/CBOW:
+         * each of workers threads pulls sequences on its own, keeps its own batch buffers, random state and learning rate
+         * schedule, and flushes large batches to native ops without any coordination with other threads.
+         * Model weights are updated without locks, same as in original word2vec.
+         *
+         * Default value: FALSE
+         *
+         * @param reallyUse
+         * @return
+         */
+        public Builder<T> useHogwild(boolean reallyUse) {
+            this.hogwild = reallyUse;
+            this.configuration.setHogwild(reallyUse);
+            return this;
+        }
+
         /**
          * This method creates new WeightLookupTable<T> and VocabCache<T> if there were none set
          */
@@ -1237,6 +1294,20 @@ public class SequenceVectors<T extends SequenceElement> extends WordVectorsImpl<
                     .build();
             val workspace_id = "sequence_vectors_training_" + java.util.UUID.randomUUID().toString();
 
+            boolean hogwild = configuration.isHogwild();
+            int batchLimit = configuration.getBatchSize();
+
+            // in hogwild mode every thread runs its own native ops single-threaded, so threads don't compete for cores
+            int opWorkers = hogwild ? 1 : workers;
+            if (elementsLearningAlgorithm instanceof SkipGram)
+                ((SkipGram<T>) elementsLearningAlgorithm).setWorkers(opWorkers);
+            else if (elementsLearningAlgorithm instanceof CBOW)
+                ((CBOW<T>) elementsLearningAlgorithm).setWorkers(opWorkers);
+
+            // batch buffers are owned by this thread. In hogwild mode larger batches are aggregated, to amortize op calls
+            BatchSequences<T> batchSequences = new BatchSequences<>(hogwild ? batchLimit * HOGWILD_BATCH_FACTOR : batchLimit);
+            long pendingWords = 0;
+
             Nd4j.getAffinityManager().getDeviceForCurrentThread();
             while (digitizer.hasMoreLines()) {
                 try {
@@ -1259,23 +1330,34 @@ public class SequenceVectors<T extends SequenceElement> extends WordVectorsImpl<
                     // getting back number of iterations
                     for (int i = 0; i < numIterations; i++) {
 
-                        batchSequences = new BatchSequences<>(configuration.getBatchSize());
+                        batchSequences.clear();
                         // we roll over sequences derived from digitizer, it's NOT window loop
                         for (int x = 0; x < sequences.size(); x++) {
                             try (val ws = Nd4j.getWorkspaceManager().getAndActivateWorkspace(conf, workspace_id)) {
                                 Sequence<T> sequence = sequences.get(x);
 
-                                //log.info("LR before: {}; wordsCounter: {}; totalWordsCount: {}", learningRate.get(), this.wordsCounter.get(), this.totalWordsCount);
+                                // words processed by this thread, but not published yet, count towards its own decay
                                 alpha = Math.max(minLearningRate,
-                                        learningRate.get() * (1 - (1.0 * this.wordsCounter.get()
+                                        learningRate.get() * (1 - (1.0 * (this.wordsCounter.get() + pendingWords)
                                                 / ((double) this.totalWordsCount) / (numIterations
                                                 * totalEpochs))));
 
-                                trainSequence(sequence, nextRandom, alpha);
+                                trainSequence(sequence, nextRandom, alpha, batchSequences);
 
                                 // increment processed word count, please note: this affects learningRate decay
                                 totalLines.incrementAndGet();
-                                this.wordsCounter.addAndGet(sequence.getElements().size());
+                                if (hogwild) {
+                                    // shared counter is updated in chunks, to avoid contention over the same cache line
+                                    pendingWords += sequence.getElements().size();
+                                    if (pendingWords >= HOGWILD_COUNTER_THRESHOLD) {
+                                        this.wordsCounter.addAndGet(pendingWords);
+                                        pendingWords = 0;
+                                    }
+
+                                    if (batchLimit > 1 && batchSequences.size() >= batchLimit * HOGWILD_BATCH_FACTOR)
+                                        flushBatches(batchSequences, opWorkers);
+                                } else
+                                    this.wordsCounter.addAndGet(sequence.getElements().size());
 
                                 if (totalLines.get() % 100000 == 0) {
                                     long currentTime = System.currentTimeMillis();
@@ -1302,33 +1384,8 @@ public class SequenceVectors<T extends SequenceElement> extends WordVectorsImpl<
                             }
                         }
 
-                        if (elementsLearningAlgorithm instanceof SkipGram)
-                            ((SkipGram)elementsLearningAlgorithm).setWorkers(workers);
-                        else if (elementsLearningAlgorithm instanceof CBOW)
-                            ((CBOW)elementsLearningAlgorithm).setWorkers(workers);
-
-                        int batchSize = configuration.getBatchSize();
-                        if (batchSize > 1 && batchSequences != null) {
-                            int rest = batchSequences.size() % batchSize;
-                            int chunks = ((batchSequences.size() >= batchSize) ? batchSequences.size() / batchSize : 0) + ((rest > 0)? 1 : 0);
-                            for (int j = 0; j < chunks; ++j) {
-                                if (trainElementsVectors) {
-                                    if (elementsLearningAlgorithm instanceof SkipGram)
-                                        ((SkipGram) elementsLearningAlgorithm).iterateSample(batchSequences.get(j));
-                                    else if (elementsLearningAlgorithm instanceof CBOW)
-                                        ((CBOW) elementsLearningAlgorithm).iterateSample(batchSequences.get(j));
-                                }
-
-                                if (trainSequenceVectors) {
-                                    if (sequenceLearningAlgorithm instanceof DBOW)
-                                        ((SkipGram<T>) sequenceLearningAlgorithm.getElementsLearningAlgorithm()).iterateSample(batchSequences.get(j));
-                                    else if (sequenceLearningAlgorithm instanceof DM)
-                                        ((CBOW<T>) sequenceLearningAlgorithm.getElementsLearningAlgorithm()).iterateSample(batchSequences.get(j));
-                                }
-                            }
-                            batchSequences.clear();
-                            batchSequences = null;
-                        }
+                        if (batchLimit > 1)
+                            flushBatches(batchSequences, opWorkers);
 
                         if (eventListeners != null && !eventListeners.isEmpty()) {
                             for (VectorsListener listener : eventListeners) {
@@ -1344,6 +1401,9 @@ public class SequenceVectors<T extends SequenceElement> extends WordVectorsImpl<
                 }
             }
 
+            if (pendingWords > 0)
+                this.wordsCounter.addAndGet(pendingWords);
+
             if (trainElementsVectors) {
                 elementsLearningAlgorithm.finish();
             }
@@ -1352,5 +1412,30 @@ public class SequenceVectors<T extends SequenceElement> extends WordVectorsImpl<
                 sequenceLearningAlgorithm.finish();
             }
         }
+
+        /**
+         * This method executes everything accumulated in given BatchSequences, and clears it
+         */
+        private void flushBatches(BatchSequences<T> batchSequences, int numWorkers) {
+            int chunkSize = batchSequences.getBatches();
+            int rest = batchSequences.size() % chunkSize;
+            int chunks = ((batchSequences.size() >= chunkSize) ? batchSequences.size() / chunkSize : 0) + ((rest > 0)? 1 : 0);
+            for (int j = 0; j < chunks; ++j) {
+                if (trainElementsVectors) {
+                    if (elementsLearningAlgorithm instanceof SkipGram)
+                        ((SkipGram<T>) elementsLearningAlgorithm).iterateSample(batchSequences.get(j), numWorkers);
+                    else if (elementsLearningAlgorithm instanceof CBOW)
+                        ((CBOW<T>) elementsLearningAlgorithm).iterateSample(batchSequences.get(j), numWorkers);
+                }
+
+                if (trainSequenceVectors) {
+                    if (sequenceLearningAlgorithm instanceof DBOW)
+                        ((SkipGram<T>) sequenceLearningAlgorithm.getElementsLearningAlgorithm()).iterateSample(batchSequences.get(j), numWorkers);
+                    else if (sequenceLearningAlgorithm instanceof DM)
+                        ((CBOW<T>) sequenceLearningAlgorithm.getElementsLearningAlgorithm()).iterateSample(batchSequences.get(j), numWorkers);
+                }
+            }
+            batchSequences.clear();
+        }
     }
 }
@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.models.sequencevectors.listeners;
+
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.models.sequencevectors.SequenceVectors;
+import org.deeplearning4j.models.sequencevectors.enums.ListenerEvent;
+import org.deeplearning4j.models.sequencevectors.interfaces.VectorsListener;
+import org.deeplearning4j.models.sequencevectors.sequence.SequenceElement;
+
+/**
+ * VectorsListener implementation that reports training throughput, in words per second.
+ *
+ * Throughput is measured between consecutive reports, every frequency lines, and at the end of each epoch.
+ * Last measured value is available via getWordsPerSecond(), so it can be exported to external monitoring as well.
+ *
+ * PLEASE NOTE: This class is thread-safe, since in hogwild mode LINE events are fired from multiple threads
+ */
+@Slf4j
+public class WordsPerSecondListener<T extends SequenceElement> implements VectorsListener<T> {
+    private final int frequency;
+    private final boolean logOutput;
+
+    private long startTime;
+    private long startWords;
+    private long lastTime;
+    private long lastWords;
+    private volatile double wordsPerSecond;
+    private volatile double averageWordsPerSecond;
+
+    /**
+     * @param frequency number of lines between reports
+     */
+    public WordsPerSecondListener(int frequency) {
+        this(frequency, true);
+    }
+
+    /**
+     * @param frequency number of lines between reports
+     * @param logOutput if TRUE, each report will be logged
+     */
+    public WordsPerSecondListener(int frequency, boolean logOutput) {
+        if (frequency < 1)
+            throw new IllegalStateException("Frequency should be positive value");
+
+        this.frequency = frequency;
+        this.logOutput = logOutput;
+    }
+
+    @Override
+    public boolean validateEvent(ListenerEvent event, long argument) {
+        return event == ListenerEvent.EPOCH || (event == ListenerEvent.LINE && argument % frequency == 0);
+    }
+
+    @Override
+    public synchronized void processEvent(ListenerEvent event, SequenceVectors<T> sequenceVectors, long argument) {
+        long time = System.nanoTime();
+        long words = sequenceVectors.getElementsProcessed();
+
+        if (startTime == 0 || words < lastWords) {
+            // first event of new fit() call: there's nothing to compare with yet
+            startTime = lastTime = time;
+            startWords = lastWords = words;
+            return;
+        }
+
+        long elapsed = time - lastTime;
+        if (elapsed <= 0)
+            return;
+
+        wordsPerSecond = (words - lastWords) * 1e9 / elapsed;
+        averageWordsPerSecond = (words - startWords) * 1e9 / Math.max(1, time - startTime);
+        lastTime = time;
+        lastWords = words;
+
+        if (logOutput)
+            log.info("{} [{}]: Words/sec: [{}]; Average words/sec: [{}]; Words processed: [{}]", event, argument,
+                            String.format("%.2f", wordsPerSecond), String.format("%.2f", averageWordsPerSecond), words);
+    }
+
+    /**
+     * This method returns throughput measured between last two reports
+     *
+     * @return
+     */
+    public double getWordsPerSecond() {
+        return wordsPerSecond;
+    }
+
+    /**
+     * This method returns throughput averaged since first report of current fit() call
+     *
+     * @return
+     */
+    public double getAverageWordsPerSecond() {
+        return averageWordsPerSecond;
+    }
+}
@@ -18,10 +18,12 @@ package org.deeplearning4j.models.word2vec;
 
 import org.deeplearning4j.models.sequencevectors.sequence.SequenceElement;
 import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
+import org.deeplearning4j.models.word2vec.wordstore.inmemory.CompactVocabCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.stream.IntStream;
 
 
 /**
@@ -32,6 +34,10 @@ import java.util.*;
 public class Huffman {
 
     public final int MAX_CODE_LENGTH;
+
+    // vocabularies larger than this are sorted and coded in parallel
+    private static final int PARALLEL_THRESHOLD = 100000;
+    private static final int CHUNK_SIZE = 16384;
     private volatile boolean buildTrigger = false;
 
     private Logger logger = LoggerFactory.getLogger(Huffman.class);
@@ -49,14 +55,24 @@ public class Huffman {
      */
     public Huffman(Collection<? extends SequenceElement> words, int CODE_LENGTH) {
         this.MAX_CODE_LENGTH = CODE_LENGTH;
-        this.words = new ArrayList<>(words);
-        Collections.sort(this.words, new Comparator<SequenceElement>() {
+        Comparator<SequenceElement> comparator = new Comparator<SequenceElement>() {
             @Override
             public int compare(SequenceElement o1, SequenceElement o2) {
                 return Double.compare(o2.getElementFrequency(), o1.getElementFrequency());
             }
 
-        });
+        };
+
+        if (words.size() >= PARALLEL_THRESHOLD) {
+            // parallel sort is stable as well, so result is the same as with Collections.sort
+            SequenceElement[] array = words.toArray(new SequenceElement[0]);
+            Arrays.parallelSort(array, comparator);
+            this.words = Arrays.asList(array);
+        } else {
+            List<SequenceElement> list = new ArrayList<>(words);
+            Collections.sort(list, comparator);
+            this.words = list;
+        }
     }
 
     private List<? extends SequenceElement> words;
@@ -64,10 +80,8 @@ public class Huffman {
     public void build() {
         buildTrigger = true;
         long[] count = new long[words.size() * 2 + 1];
-        byte[] binary = new byte[words.size() * 2 + 1];
-        byte[] code = new byte[MAX_CODE_LENGTH];
-        int[] point = new int[MAX_CODE_LENGTH];
-        int[] parentNode = new int[words.size() * 2 + 1];
+        final byte[] binary = new byte[words.size() * 2 + 1];
+        final int[] parentNode = new int[words.size() * 2 + 1];
         int a = 0;
 
         while (a < words.size()) {
@@ -122,11 +136,23 @@ public class Huffman {
             parentNode[min2i] = words.size() + a;
             binary[min2i] = 1;
         }
-        // Now assign binary code to each vocabulary word
+
+        // Now assign binary code to each vocabulary word. Each word is coded independently, so large vocabularies are coded in parallel
+        if (words.size() >= PARALLEL_THRESHOLD) {
+            final int numChunks = (words.size() - 1) / CHUNK_SIZE + 1;
+            IntStream.range(0, numChunks).parallel().forEach(chunk -> assignCodes(chunk * CHUNK_SIZE,
+                            Math.min(words.size(), (chunk + 1) * CHUNK_SIZE), binary, parentNode));
+        } else {
+            assignCodes(0, words.size(), binary, parentNode);
+        }
+    }
+
+    private void assignCodes(int from, int to, byte[] binary, int[] parentNode) {
+        byte[] code = new byte[MAX_CODE_LENGTH];
+        int[] point = new int[MAX_CODE_LENGTH];
         int i;
         int b;
-        // Now assign binary code to each vocabulary word
-        for (a = 0; a < words.size(); a++) {
+        for (int a = from; a < to; a++) {
             b = a;
             i = 0;
             do {
@@ -175,6 +201,10 @@ public class Huffman {
             }
 
             words.get(a).setIndex(a);
+
+            // codes & points lists were modified in place, and compact cache doesn't track that
+            if (cache instanceof CompactVocabCache)
+                ((CompactVocabCache) cache).updateElement(words.get(a));
         }
     }
 }
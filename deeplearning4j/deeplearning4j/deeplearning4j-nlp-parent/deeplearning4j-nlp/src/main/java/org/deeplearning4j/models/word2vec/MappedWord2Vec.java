@@ -0,0 +1,365 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.models.word2vec;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.models.embeddings.WeightLookupTable;
+import org.deeplearning4j.models.embeddings.mapped.MappedLookupTable;
+import org.deeplearning4j.models.embeddings.mapped.MappedVectorsStorage;
+import org.deeplearning4j.models.embeddings.reader.ModelUtils;
+import org.deeplearning4j.models.embeddings.wordvectors.WordVectors;
+import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
+import org.deeplearning4j.models.word2vec.wordstore.inmemory.AbstractCache;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.ops.transforms.Transforms;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * This is static Word2Vec implementation, backed by memory-mapped file created with
+ * WordVectorSerializer.writeMappedModel().
+ *
+ * Loading takes constant time regardless of model size, since nothing is parsed or copied at load time:
+ * words are looked up in mapped hash table, and vectors are read from mapped matrix on demand.
+ * Mapped pages are shared between all JVMs on the same host, via OS page cache.
+ *
+ * This implementation is read-only. Methods that require full vocabulary objects (vocab(), lookupTable().getVocabCache())
+ * build them lazily on first call.
+ */
+@Slf4j
+public class MappedWord2Vec implements WordVectors {
+    private static final long serialVersionUID = 1L;
+
+    @Getter
+    private final transient MappedVectorsStorage storage;
+    private transient volatile VocabCache<VocabWord> vocabCache;
+    private String unk = null;
+
+    public MappedWord2Vec(@NonNull MappedVectorsStorage storage) {
+        this.storage = storage;
+    }
+
+    /**
+     * This method maps given file into memory
+     *
+     * @param file file created with WordVectorSerializer.writeMappedModel()
+     * @return
+     * @throws IOException
+     */
+    public static MappedWord2Vec open(@NonNull File file) throws IOException {
+        return new MappedWord2Vec(MappedVectorsStorage.open(file));
+    }
+
+    @Override
+    public String getUNK() {
+        return unk;
+    }
+
+    @Override
+    public void setUNK(String newUNK) {
+        this.unk = newUNK;
+    }
+
+    @Override
+    public boolean hasWord(String word) {
+        return storage.indexOf(word) >= 0;
+    }
+
+    @Override
+    public int indexOf(String word) {
+        return storage.indexOf(word);
+    }
+
+    protected int lookup(String word) {
+        int idx = storage.indexOf(word);
+        if (idx < 0 && unk != null)
+            idx = storage.indexOf(unk);
+        return idx;
+    }
+
+    @Override
+    public double[] getWordVector(String word) {
+        INDArray vector = getWordVectorMatrix(word);
+        return vector == null ? null : vector.toDoubleVector();
+    }
+
+    @Override
+    public INDArray getWordVectorMatrixNormalized(String word) {
+        INDArray vector = getWordVectorMatrix(word);
+        return vector == null ? null : Transforms.unitVec(vector);
+    }
+
+    @Override
+    public INDArray getWordVectorMatrix(String word) {
+        int idx = lookup(word);
+        return idx < 0 ? null : storage.vector(idx);
+    }
+
+    /**
+     * This method returns 2D array, where each row represents corresponding word/label
+     *
+     * @param labels
+     * @return
+     */
+    @Override
+    public INDArray getWordVectors(@NonNull Collection<String> labels) {
+        List<float[]> rows = new ArrayList<>(labels.size());
+        for (String label : labels) {
+            int idx = lookup(label);
+            if (idx >= 0)
+                rows.add(storage.row(idx));
+        }
+
+        INDArray result = Nd4j.create(DataType.FLOAT, rows.size(), storage.getVectorLength());
+        for (int e = 0; e < rows.size(); e++)
+            result.putRow(e, Nd4j.create(rows.get(e)));
+
+        return result;
+    }
+
+    /**
+     * This method returns mean vector, built from words/labels passed in
+     *
+     * @param labels
+     * @return
+     */
+    @Override
+    public INDArray getWordVectorsMean(Collection<String> labels) {
+        return getWordVectors(labels).mean(0);
+    }
+
+    /**
+     * Returns nearest words by cosine similarity. This method scans the whole matrix, so it's suited for occasional calls only
+     *
+     * @param words vector to look nearest words for
+     * @param top   number of words to return
+     * @return
+     */
+    @Override
+    public Collection<String> wordsNearest(@NonNull INDArray words, int top) {
+        return wordsNearest(words.toFloatVector(), top, Collections.<Integer>emptySet());
+    }
+
+    protected Collection<String> wordsNearest(float[] query, int top, Set<Integer> exclude) {
+        int vectorLength = storage.getVectorLength();
+        if (query.length != vectorLength)
+            throw new IllegalStateException("Query length should be " + vectorLength + ", but got " + query.length);
+
+        double queryNorm = 0.0;
+        for (float v : query)
+            queryNorm += v * v;
+        queryNorm = Math.sqrt(queryNorm);
+
+        // min-heap on similarity, so the least similar of current top is evicted first
+        PriorityQueue<double[]> heap = new PriorityQueue<>(Math.max(1, top + 1), new Comparator<double[]>() {
+            @Override
+            public int compare(double[] o1, double[] o2) {
+                return Double.compare(o1[0], o2[0]);
+            }
+        });
+
+        float[] row = new float[vectorLength];
+        for (int idx = 0; idx < storage.getNumWords(); idx++) {
+            if (exclude.contains(idx))
+                continue;
+
+            storage.row(idx, row);
+            double dot = 0.0;
+            double norm = 0.0;
+            for (int e = 0; e < vectorLength; e++) {
+                dot += query[e] * row[e];
+                norm += row[e] * row[e];
+            }
+
+            double denominator = queryNorm * Math.sqrt(norm);
+            double similarity = denominator == 0.0 ? 0.0 : dot / denominator;
+            if (heap.size() < top || similarity > heap.peek()[0]) {
+                heap.add(new double[] {similarity, idx});
+                if (heap.size() > top)
+                    heap.poll();
+            }
+        }
+
+        LinkedList<String> result = new LinkedList<>();
+        while (!heap.isEmpty())
+            result.addFirst(storage.wordAtIndex((int) heap.poll()[1]));
+
+        return result;
+    }
+
+    @Override
+    public Collection<String> wordsNearest(String word, int n) {
+        return wordsNearest(Collections.singletonList(word), Collections.<String>emptyList(), n);
+    }
+
+    @Override
+    public Collection<String> wordsNearest(@NonNull Collection<String> positive, @NonNull Collection<String> negative, int top) {
+        int vectorLength = storage.getVectorLength();
+        float[] mean = new float[vectorLength];
+        float[] row = new float[vectorLength];
+        Set<Integer> exclude = new HashSet<>();
+        for (String word : positive) {
+            int idx = storage.indexOf(word);
+            if (idx < 0)
+                return new ArrayList<>();
+
+            storage.row(idx, row);
+            for (int e = 0; e < vectorLength; e++)
+                mean[e] += row[e];
+            exclude.add(idx);
+        }
+
+        for (String word : negative) {
+            int idx = storage.indexOf(word);
+            if (idx < 0)
+                return new ArrayList<>();
+
+            storage.row(idx, row);
+            for (int e = 0; e < vectorLength; e++)
+                mean[e] -= row[e];
+            exclude.add(idx);
+        }
+
+        return wordsNearest(mean, top, exclude);
+    }
+
+    @Override
+    public Collection<String> wordsNearestSum(INDArray words, int top) {
+        throw new UnsupportedOperationException("Method isn't implemented. Please use usual Word2Vec implementation");
+    }
+
+    @Override
+    public Collection<String> wordsNearestSum(String word, int n) {
+        throw new UnsupportedOperationException("Method isn't implemented. Please use usual Word2Vec implementation");
+    }
+
+    @Override
+    public Collection<String> wordsNearestSum(Collection<String> positive, Collection<String> negative, int top) {
+        throw new UnsupportedOperationException("Method isn't implemented. Please use usual Word2Vec implementation");
+    }
+
+    @Override
+    public Map<String, Double> accuracy(List<String> questions) {
+        throw new UnsupportedOperationException("Method isn't implemented. Please use usual Word2Vec implementation");
+    }
+
+    @Override
+    public List<String> similarWordsInVocabTo(String word, double accuracy) {
+        throw new UnsupportedOperationException("Method isn't implemented. Please use usual Word2Vec implementation");
+    }
+
+    /**
+     * Returns the similarity of 2 words
+     *
+     * @param label1 the first word
+     * @param label2 the second word
+     * @return a normalized similarity (cosine similarity)
+     */
+    @Override
+    public double similarity(String label1, String label2) {
+        INDArray vec1 = label1 == null ? null : getWordVectorMatrix(label1);
+        INDArray vec2 = label2 == null ? null : getWordVectorMatrix(label2);
+        if (vec1 == null || vec2 == null) {
+            log.debug("{}: {}; {}: {}", label1, vec1 == null ? "null" : "exists", label2, vec2 == null ? "null" : "exists");
+            return Double.NaN;
+        }
+
+        if (label1.equals(label2))
+            return 1.0;
+
+        return Transforms.cosineSim(vec1, vec2);
+    }
+
+    /**
+     * Vocab for the vectors.
+     * PLEASE NOTE: VocabCache is built on first call to this method, which takes time and heap proportional to vocabulary size.
+     * Use hasWord()/indexOf() for lookups instead.
+     *
+     * @return
+     */
+    @Override
+    public VocabCache vocab() {
+        if (vocabCache == null) {
+            synchronized (this) {
+                if (vocabCache == null) {
+                    VocabCache<VocabWord> cache = new AbstractCache.Builder<VocabWord>().build();
+                    for (int e = 0; e < storage.getNumWords(); e++) {
+                        VocabWord word = new VocabWord(storage.frequency(e), storage.wordAtIndex(e));
+                        word.setIndex(e);
+                        cache.addToken(word);
+                        cache.addWordToIndex(e, word.getLabel());
+                    }
+                    vocabCache = cache;
+                }
+            }
+        }
+        return vocabCache;
+    }
+
+    /**
+     * Read-only lookup table backed by the same mapped file
+     *
+     * @return
+     */
+    @Override
+    public WeightLookupTable lookupTable() {
+        return new MappedLookupTable<>(storage, (VocabCache<VocabWord>) vocab());
+    }
+
+    /**
+     * Specifies ModelUtils to be used to access model
+     * PLEASE NOTE: This method has no effect in this implementation.
+     *
+     * @param utils
+     */
+    @Override
+    public void setModelUtils(ModelUtils utils) {
+        // no-op
+    }
+
+    @Override
+    public void loadWeightsInto(INDArray array) {
+        for (int e = 0; e < storage.getNumWords(); e++)
+            array.putRow(e, storage.vector(e).castTo(array.dataType()));
+    }
+
+    @Override
+    public long vocabSize() {
+        return storage.getNumWords();
+    }
+
+    @Override
+    public int vectorSize() {
+        return storage.getVectorLength();
+    }
+
+    @Override
+    public boolean jsonSerializable() {
+        return false;
+    }
+
+    @Override
+    public boolean outOfVocabularySupported() {
+        return false;
+    }
+}
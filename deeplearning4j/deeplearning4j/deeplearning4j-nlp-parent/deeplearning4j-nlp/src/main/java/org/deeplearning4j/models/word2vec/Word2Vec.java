@@ -36,6 +36,7 @@ import org.deeplearning4j.models.sequencevectors.sequence.SequenceElement;
 import org.deeplearning4j.models.sequencevectors.transformers.impl.SentenceTransformer;
 import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
 import org.deeplearning4j.models.word2vec.wordstore.inmemory.AbstractCache;
+import org.deeplearning4j.models.word2vec.wordstore.inmemory.CompactVocabCache;
 import org.deeplearning4j.models.word2vec.wordstore.inmemory.InMemoryLookupCache;
 import org.deeplearning4j.text.documentiterator.DocumentIterator;
 import org.deeplearning4j.text.documentiterator.LabelAwareIterator;
@@ -146,6 +147,8 @@ public class Word2Vec extends SequenceVectors<VocabWord> {
 
         if (this.vocab instanceof AbstractCache) {
             retVal.addProperty(VOCAB_LIST_FIELD, ((AbstractCache<VocabWord>) this.vocab).toJson());
+        } else if (this.vocab instanceof CompactVocabCache) {
+            retVal.addProperty(VOCAB_LIST_FIELD, ((CompactVocabCache) this.vocab).toJson());
         }
 
         return retVal.toString();
@@ -620,6 +623,12 @@ public class Word2Vec extends SequenceVectors<VocabWord> {
             return this;
         }
 
+        @Override
+        public Builder useHogwild(boolean reallyUse) {
+            super.useHogwild(reallyUse);
+            return this;
+        }
+
         @Override
         public Builder intersectModel(@NonNull SequenceVectors vectors, boolean isLocked) {
             super.intersectModel(vectors, isLocked);
@@ -710,6 +719,7 @@ public class Word2Vec extends SequenceVectors<VocabWord> {
             this.configuration.setModelUtils(this.modelUtils.getClass().getCanonicalName());
             this.configuration.setAllowParallelTokenization(this.allowParallelTokenization);
             this.configuration.setPreciseMode(this.preciseMode);
+            this.configuration.setHogwild(this.hogwild);
 
             if (tokenizerFactory != null) {
                 this.configuration.setTokenizerFactory(tokenizerFactory.getClass().getCanonicalName());
@@ -0,0 +1,464 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.models.word2vec.wordstore;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.models.sequencevectors.interfaces.SequenceIterator;
+import org.deeplearning4j.models.sequencevectors.sequence.Sequence;
+import org.deeplearning4j.models.sequencevectors.sequence.SequenceElement;
+import org.deeplearning4j.models.word2vec.wordstore.inmemory.AbstractCache;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * This class counts vocabulary elements with multiple threads, without any shared state between counting threads.
+ *
+ * Each worker keeps its own counters, keyed by element storage id (64-bit label hash, same key as used by AbstractCache),
+ * and split into hash partitions. Once input is exhausted, each partition is merged across all workers by a single thread,
+ * so merge and min-frequency pruning run in parallel as well, with no locks involved.
+ *
+ * Counting semantics are the same as VocabConstructor has: element frequency is total number of occurrences,
+ * sequences count is number of sequences element was found in.
+ */
+@Slf4j
+public class ShardedVocabBuilder<T extends SequenceElement> {
+    private static final int BATCH_SIZE = 128;
+    private static final List<?> POISON = new ArrayList<>();
+
+    private final int numWorkers;
+    private final int numPartitions;
+    private final Set<String> stopWords;
+    private final boolean fetchLabels;
+
+    private final List<Shard<T>> shards = new ArrayList<>();
+    private long sequences;
+
+    /**
+     * @param numWorkers  number of counting threads
+     * @param stopWords   elements that should be skipped, optional
+     * @param fetchLabels if TRUE, sequence labels will be added to vocabulary
+     */
+    public ShardedVocabBuilder(int numWorkers, Collection<String> stopWords, boolean fetchLabels) {
+        if (numWorkers < 1)
+            throw new IllegalStateException("Number of workers should be positive value");
+
+        this.numWorkers = numWorkers;
+        this.numPartitions = Integer.highestOneBit(numWorkers * 4 - 1) << 1;
+        this.stopWords = stopWords == null ? Collections.<String>emptySet() : new HashSet<>(stopWords);
+        this.fetchLabels = fetchLabels;
+    }
+
+    /**
+     * This method returns total number of sequences counted so far
+     *
+     * @return
+     */
+    public long getNumberOfSequences() {
+        return sequences;
+    }
+
+    /**
+     * This method reads all sequences from the given iterator, and counts their elements
+     *
+     * @param iterator     SequenceIterator, it will be read from the current position. Iterator is accessed from the calling thread only
+     * @param seqCounter   global sequences counter, optional
+     * @param elemCounter  global elements counter, optional
+     */
+    @SuppressWarnings("unchecked")
+    public void count(@NonNull SequenceIterator<T> iterator, AtomicLong seqCounter, AtomicLong elemCounter) {
+        final BlockingQueue<List<Sequence<T>>> queue = new ArrayBlockingQueue<>(numWorkers * 4);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        final CountDownLatch latch = new CountDownLatch(numWorkers);
+
+        List<Shard<T>> current = new ArrayList<>();
+        for (int w = 0; w < numWorkers; w++) {
+            final Shard<T> shard = new Shard<>(numPartitions, stopWords, fetchLabels);
+            current.add(shard);
+
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        while (true) {
+                            List<Sequence<T>> batch = queue.take();
+                            if (batch == POISON)
+                                break;
+
+                            for (Sequence<T> sequence : batch)
+                                shard.process(sequence);
+                        }
+                    } catch (Throwable e) {
+                        error.compareAndSet(null, e);
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            }, "ShardedVocabBuilder thread " + w);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        long lastTime = System.currentTimeMillis();
+        long lastSequences = 0;
+        long lastElements = 0;
+        long elements = 0;
+        long counted = 0;
+        try {
+            List<Sequence<T>> batch = new ArrayList<>(BATCH_SIZE);
+            while (iterator.hasMoreSequences()) {
+                Sequence<T> sequence = iterator.nextSequence();
+                batch.add(sequence);
+                counted++;
+                elements += sequence.size();
+
+                if (seqCounter != null)
+                    seqCounter.incrementAndGet();
+
+                if (elemCounter != null)
+                    elemCounter.addAndGet(sequence.size());
+
+                if (batch.size() == BATCH_SIZE) {
+                    offer(queue, batch, error);
+                    batch = new ArrayList<>(BATCH_SIZE);
+                }
+
+                if (counted % 100000 == 0) {
+                    long currentTime = System.currentTimeMillis();
+                    double seconds = Math.max(1, currentTime - lastTime) / 1000.0;
+                    log.info("Sequences checked: [{}]; Sequences/sec: {}; Words/sec: {};", counted,
+                                    String.format("%.2f", (counted - lastSequences) / seconds),
+                                    String.format("%.2f", (elements - lastElements) / seconds));
+                    lastTime = currentTime;
+                    lastSequences = counted;
+                    lastElements = elements;
+                }
+            }
+
+            if (!batch.isEmpty())
+                offer(queue, batch, error);
+        } finally {
+            // workers are stopped in any case
+            for (int w = 0; w < numWorkers; w++) {
+                try {
+                    queue.put((List<Sequence<T>>) POISON);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+
+        if (error.get() != null)
+            throw new RuntimeException(error.get());
+
+        shards.addAll(current);
+        sequences += counted;
+    }
+
+    private void offer(BlockingQueue<List<Sequence<T>>> queue, List<Sequence<T>> batch, AtomicReference<Throwable> error) {
+        try {
+            while (!queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                if (error.get() != null)
+                    throw new RuntimeException(error.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * This method merges counters from all workers, and adds elements to the target vocabulary.
+     * Partitions are merged in parallel, and elements with frequency below minWordFrequency are dropped.
+     * Counters are released afterwards, so this builder can be reused for next source.
+     *
+     * @param target           target vocabulary
+     * @param minWordFrequency elements with frequency below this value will be skipped, unless they are labels or special elements
+     */
+    public void mergeInto(@NonNull final AbstractCache<T> target, final int minWordFrequency) {
+        final List<Shard<T>> shards = new ArrayList<>(this.shards);
+        ExecutorService executor = Executors.newFixedThreadPool(numWorkers, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ShardedVocabBuilder merge thread");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        final AtomicLong dropped = new AtomicLong(0);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int p = 0; p < numPartitions; p++) {
+                final int partition = p;
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        Counters<T> merged = new Counters<>();
+                        for (Shard<T> shard : shards) {
+                            merged.mergeFrom(shard.partitions[partition]);
+                            // we don't need this partition anymore
+                            shard.partitions[partition] = null;
+                        }
+
+                        for (int e = 0; e < merged.capacity(); e++) {
+                            T element = merged.element(e);
+                            if (element == null)
+                                continue;
+
+                            boolean label = merged.isLabel(e);
+                            long frequency = merged.frequency(e);
+                            if (minWordFrequency > 0 && frequency < minWordFrequency && !label && !element.isSpecial()
+                                            && !element.isLabel()) {
+                                dropped.incrementAndGet();
+                                continue;
+                            }
+
+                            if (label) {
+                                element.markAsLabel(true);
+                                element.setSpecial(true);
+                            }
+
+                            element.setElementFrequency(frequency);
+                            element.setSequencesCount(merged.sequences(e));
+                            target.addToken(element);
+                        }
+                    }
+                }));
+            }
+
+            for (Future<?> future : futures)
+                future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+
+        target.incrementTotalDocCount(sequences);
+        log.debug("Merged vocabulary: [{}] elements, [{}] elements dropped", target.numWords(), dropped.get());
+
+        this.shards.clear();
+        this.sequences = 0;
+    }
+
+    protected static long mix(long key) {
+        // murmur3 finalizer, so both partition and slot bits are well distributed
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    /**
+     * Counters owned by single worker thread
+     */
+    protected static class Shard<T extends SequenceElement> {
+        private final Counters<T>[] partitions;
+        private final int mask;
+        private final Set<String> stopWords;
+        private final boolean fetchLabels;
+        private long docId = 0;
+
+        @SuppressWarnings("unchecked")
+        protected Shard(int numPartitions, Set<String> stopWords, boolean fetchLabels) {
+            this.partitions = new Counters[numPartitions];
+            for (int p = 0; p < numPartitions; p++)
+                partitions[p] = new Counters<>();
+
+            this.mask = numPartitions - 1;
+            this.stopWords = stopWords;
+            this.fetchLabels = fetchLabels;
+        }
+
+        protected void process(Sequence<T> sequence) {
+            docId++;
+
+            if (fetchLabels && sequence.getSequenceLabels() != null) {
+                for (T label : sequence.getSequenceLabels()) {
+                    long key = label.getStorageId();
+                    partitions[(int) (mix(key) >>> 40) & mask].addLabel(key, label);
+                }
+            }
+
+            for (T element : sequence.getElements()) {
+                String token = element.getLabel();
+                if (token == null || token.isEmpty() || stopWords.contains(token))
+                    continue;
+
+                long key = element.getStorageId();
+                partitions[(int) (mix(key) >>> 40) & mask].addOccurrence(key, element, docId);
+            }
+        }
+    }
+
+    /**
+     * Open addressing hash map from storage id to primitive counters
+     */
+    protected static class Counters<T extends SequenceElement> {
+        private long[] keys;
+        private Object[] elements;
+        private long[] frequencies;
+        private long[] sequences;
+        private long[] lastDocs;
+        private boolean[] labels;
+        private int size;
+
+        protected Counters() {
+            allocate(64);
+        }
+
+        private void allocate(int capacity) {
+            keys = new long[capacity];
+            elements = new Object[capacity];
+            frequencies = new long[capacity];
+            sequences = new long[capacity];
+            lastDocs = new long[capacity];
+            labels = new boolean[capacity];
+        }
+
+        protected int capacity() {
+            return keys.length;
+        }
+
+        @SuppressWarnings("unchecked")
+        protected T element(int slot) {
+            return (T) elements[slot];
+        }
+
+        protected long frequency(int slot) {
+            return frequencies[slot];
+        }
+
+        protected long sequences(int slot) {
+            return sequences[slot];
+        }
+
+        protected boolean isLabel(int slot) {
+            return labels[slot];
+        }
+
+        /**
+         * This method returns slot for the given key, creating new entry if required
+         */
+        protected int slotFor(long key, Object element) {
+            int mask = keys.length - 1;
+            int slot = (int) mix(key) & mask;
+            while (elements[slot] != null) {
+                if (keys[slot] == key)
+                    return slot;
+
+                slot = (slot + 1) & mask;
+            }
+
+            keys[slot] = key;
+            elements[slot] = element;
+            size++;
+
+            if (size * 2 > keys.length) {
+                grow();
+                return slotFor(key, element);
+            }
+            return slot;
+        }
+
+        protected void addOccurrence(long key, T element, long docId) {
+            int slot = slotFor(key, element);
+            frequencies[slot]++;
+            if (lastDocs[slot] != docId) {
+                lastDocs[slot] = docId;
+                sequences[slot]++;
+            }
+        }
+
+        protected void addLabel(long key, T label) {
+            int slot = slotFor(key, label);
+            if (!labels[slot]) {
+                // labels are counted once, the same way VocabConstructor does. If label is also found as regular element,
+                // it's still treated as label, since sequence labels are required by ParagraphVectors
+                labels[slot] = true;
+                elements[slot] = label;
+                frequencies[slot]++;
+            }
+        }
+
+        protected void mergeFrom(Counters<T> other) {
+            for (int e = 0; e < other.keys.length; e++) {
+                if (other.elements[e] == null)
+                    continue;
+
+                int slot = slotFor(other.keys[e], other.elements[e]);
+                if (other.labels[e] && labels[slot]) {
+                    // label was already counted in another shard
+                    frequencies[slot] += other.frequencies[e] - 1;
+                } else {
+                    frequencies[slot] += other.frequencies[e];
+                }
+
+                if (other.labels[e] && !labels[slot]) {
+                    labels[slot] = true;
+                    elements[slot] = other.elements[e];
+                }
+
+                sequences[slot] += other.sequences[e];
+            }
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            Object[] oldElements = elements;
+            long[] oldFrequencies = frequencies;
+            long[] oldSequences = sequences;
+            long[] oldLastDocs = lastDocs;
+            boolean[] oldLabels = labels;
+
+            allocate(oldKeys.length * 2);
+            int mask = keys.length - 1;
+            for (int e = 0; e < oldKeys.length; e++) {
+                if (oldElements[e] == null)
+                    continue;
+
+                int slot = (int) mix(oldKeys[e]) & mask;
+                while (elements[slot] != null)
+                    slot = (slot + 1) & mask;
+
+                keys[slot] = oldKeys[e];
+                elements[slot] = oldElements[e];
+                frequencies[slot] = oldFrequencies[e];
+                sequences[slot] = oldSequences[e];
+                lastDocs[slot] = oldLastDocs[e];
+                labels[slot] = oldLabels[e];
+            }
+        }
+    }
+}
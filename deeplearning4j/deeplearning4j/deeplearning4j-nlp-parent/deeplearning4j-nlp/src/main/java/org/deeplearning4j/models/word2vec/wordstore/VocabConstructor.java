@@ -59,6 +59,7 @@ public class VocabConstructor<T extends SequenceElement> {
     private boolean enableScavenger = false;
     private T unk;
     private boolean allowParallelBuilder = true;
+    private boolean useShardedBuilder = true;
     private boolean lockf = false;
 
     protected static final Logger log = LoggerFactory.getLogger(VocabConstructor.class);
@@ -301,6 +302,20 @@ public class VocabConstructor<T extends SequenceElement> {
 
             AbstractCache<T> tempHolder = new AbstractCache.Builder<T>().build();
 
+            // sharded builder counts elements without shared state, and applies minWordFrequency during parallel merge.
+            // InvertedIndex and scavenger both need shared vocabulary during counting, so they still use the original path
+            if (useShardedBuilder && allowParallelBuilder && index == null && !enableScavenger) {
+                ShardedVocabBuilder<T> builder = new ShardedVocabBuilder<>(Math.max(numProc, 2), stopWords, fetchLabels);
+                builder.count(iterator, seqCount, parsedCount);
+                builder.mergeInto(tempHolder, source.getMinWordFrequency());
+
+                log.debug("Vocab size after truncation: [" + tempHolder.numWords() + "],  NumWords: ["
+                                + tempHolder.totalWordOccurrences() + "], sequences parsed: [" + seqCount.get()
+                                + "], counter: [" + parsedCount.get() + "]");
+                topHolder.importVocabulary(tempHolder);
+                continue;
+            }
+
             int sequences = 0;
             while (iterator.hasMoreSequences()) {
                 Sequence<T> document = iterator.nextSequence();
@@ -469,6 +484,7 @@ public class VocabConstructor<T extends SequenceElement> {
         private boolean enableScavenger = false;
         private T unk;
         private boolean allowParallelBuilder = true;
+        private boolean useShardedBuilder = true;
         private boolean lockf = false;
 
         public Builder() {
@@ -494,6 +510,21 @@ public class VocabConstructor<T extends SequenceElement> {
             return this;
         }
 
+        /**
+         * This method enables sharded vocabulary construction: each thread counts elements in its own hash-partitioned
+         * counters, and partitions are merged and pruned in parallel afterwards. See {@link ShardedVocabBuilder}.
+         *
+         * PLEASE NOTE: Sharded builder is used only if parallel tokenization is allowed, and neither InvertedIndex nor scavenger are set.
+         * Default value: TRUE
+         *
+         * @param reallyUse
+         * @return
+         */
+        public Builder<T> useShardedBuilder(boolean reallyUse) {
+            this.useShardedBuilder = reallyUse;
+            return this;
+        }
+
         /**
          * Defines, if adaptive gradients should be created during vocabulary mastering
          *
@@ -589,6 +620,7 @@ public class VocabConstructor<T extends SequenceElement> {
             constructor.enableScavenger = this.enableScavenger;
             constructor.unk = this.unk;
             constructor.allowParallelBuilder = this.allowParallelBuilder;
+            constructor.useShardedBuilder = this.useShardedBuilder;
             constructor.lockf = this.lockf;
 
             return constructor;
@@ -0,0 +1,1157 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.models.word2vec.wordstore.inmemory;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.models.sequencevectors.sequence.SequenceElement;
+import org.deeplearning4j.models.word2vec.VocabWord;
+import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
+import org.nd4j.shade.jackson.core.JsonProcessingException;
+
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * VocabCache implementation, that keeps vocabulary in primitive arrays instead of object maps.
+ *
+ * Labels are stored as UTF-8 bytes in a single arena, all per-element state (frequency, sequences count, index,
+ * Huffman codes and points) lives in parallel arrays indexed by internal id, and lookups go through
+ * open-addressing tables: label hash -> id, storageId -> id, Huffman index -> id.
+ * For vocabularies with millions of elements this takes a fraction of AbstractCache heap,
+ * and produces almost no garbage for GC to trace.
+ *
+ * PLEASE NOTE: elements returned by this cache are materialized from its state. Setters of returned elements write
+ * changes back to the cache (index, frequency, sequences count, flags, Huffman codes and points), and label or
+ * storageId changes are rejected. In-place modifications of getCodes()/getPoints() lists aren't tracked,
+ * so they have to be written back via updateElement() method, as Huffman does.
+ *
+ * PLEASE NOTE: This class is thread-safe
+ */
+@Slf4j
+public class CompactVocabCache implements VocabCache<VocabWord> {
+    private static final long serialVersionUID = 1L;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MAX_CODE_LENGTH = 64;
+    private static final int VIEWS_CAPACITY = 1 << 14;
+
+    private static final byte FLAG_LABEL = 1;
+    private static final byte FLAG_SPECIAL = 2;
+    private static final byte FLAG_REMOVED = 4;
+    private static final byte FLAG_LOCKED = 8;
+    private static final byte FLAG_INIT = 16;
+
+    // labels arena: label of element with id X is stored in range [labelOffsets[X], labelOffsets[X + 1])
+    private byte[] arena = new byte[INITIAL_CAPACITY * 8];
+    private int[] labelOffsets = new int[INITIAL_CAPACITY + 1];
+
+    // per-element state, indexed by internal id
+    private long[] storageIds = new long[INITIAL_CAPACITY];
+    private double[] frequencies = new double[INITIAL_CAPACITY];
+    private long[] sequences = new long[INITIAL_CAPACITY];
+    private int[] indices = new int[INITIAL_CAPACITY];
+    private byte[] flags = new byte[INITIAL_CAPACITY];
+    private byte[] codeLengths = new byte[INITIAL_CAPACITY];
+    private byte[] codeCounts = new byte[INITIAL_CAPACITY];
+    private long[] codes = new long[INITIAL_CAPACITY];
+    private byte[] pointCounts = new byte[INITIAL_CAPACITY];
+    private int[] pointOffsets = new int[INITIAL_CAPACITY];
+
+    // Huffman points of all elements
+    private int[] pointsArena = new int[INITIAL_CAPACITY * 8];
+    private int pointsSize;
+
+    // number of allocated ids, including removed ones
+    private int size;
+    // number of live elements
+    private int live;
+
+    // label -> id table. Slots hold id + 1, 0 marks empty slot
+    private int[] labelSlots = new int[INITIAL_CAPACITY * 2];
+    private int[] labelHashes = new int[INITIAL_CAPACITY * 2];
+
+    // storageId -> id table. Slots hold id + 1, 0 marks empty slot
+    private long[] storageKeys = new long[INITIAL_CAPACITY * 2];
+    private int[] storageSlots = new int[INITIAL_CAPACITY * 2];
+
+    // Huffman index -> id + 1
+    private int[] indexToId = new int[INITIAL_CAPACITY];
+
+    private long totalWordCount;
+    private long documentsCounter;
+
+    // recently materialized elements, direct-mapped by id. Any modification of the cache invalidates them
+    private transient volatile View[] views;
+    private long version;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public CompactVocabCache() {
+        //
+    }
+
+    @Override
+    public void loadVocab() {
+        // no-op, same as AbstractCache
+    }
+
+    @Override
+    public boolean vocabExists() {
+        return numWords() > 0;
+    }
+
+    @Override
+    public void saveVocab() {
+        // no-op, same as AbstractCache
+    }
+
+    @Override
+    public Collection<String> words() {
+        lock.readLock().lock();
+        try {
+            List<String> result = new ArrayList<>(live);
+            for (int id = 0; id < size; id++) {
+                if (!isRemoved(id))
+                    result.add(label(id));
+            }
+            return Collections.unmodifiableList(result);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void incrementWordCount(String word) {
+        incrementWordCount(word, 1);
+    }
+
+    @Override
+    public void incrementWordCount(String word, int increment) {
+        lockForWrite();
+        try {
+            int id = find(word);
+            if (id >= 0) {
+                frequencies[id] += increment;
+                totalWordCount += increment;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int wordFrequency(@NonNull String word) {
+        lock.readLock().lock();
+        try {
+            int id = find(word);
+            return id >= 0 ? (int) frequencies[id] : 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean containsWord(String word) {
+        lock.readLock().lock();
+        try {
+            return find(word) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public String wordAtIndex(int index) {
+        lock.readLock().lock();
+        try {
+            int id = idAtIndex(index);
+            return id >= 0 ? label(id) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public VocabWord elementAtIndex(int index) {
+        lock.readLock().lock();
+        try {
+            int id = idAtIndex(index);
+            return id >= 0 ? view(id) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int indexOf(String word) {
+        lock.readLock().lock();
+        try {
+            int id = find(word);
+            return id >= 0 ? indices[id] : -2;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Collection<VocabWord> vocabWords() {
+        lock.readLock().lock();
+        try {
+            List<VocabWord> result = new ArrayList<>(live);
+            for (int id = 0; id < size; id++) {
+                if (!isRemoved(id))
+                    result.add(bind(id));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long totalWordOccurrences() {
+        lock.readLock().lock();
+        try {
+            return totalWordCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void setTotalWordOccurences(long value) {
+        lockForWrite();
+        try {
+            totalWordCount = value;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public VocabWord wordFor(@NonNull String word) {
+        lock.readLock().lock();
+        try {
+            int id = find(word);
+            return id >= 0 ? view(id) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public VocabWord wordFor(long id) {
+        lock.readLock().lock();
+        try {
+            int internal = findStorage(id);
+            return internal >= 0 ? view(internal) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void addWordToIndex(int index, String word) {
+        if (index < 0)
+            return;
+
+        lockForWrite();
+        try {
+            int id = find(word);
+            if (id >= 0)
+                assignIndex(id, index);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void addWordToIndex(int index, long elementId) {
+        if (index < 0)
+            return;
+
+        lockForWrite();
+        try {
+            int id = findStorage(elementId);
+            if (id >= 0)
+                assignIndex(id, index);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    @Deprecated
+    public void putVocabWord(String word) {
+        if (!containsWord(word))
+            throw new IllegalStateException("Specified label is not present in vocabulary");
+    }
+
+    @Override
+    public int numWords() {
+        lock.readLock().lock();
+        try {
+            return live;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int docAppearedIn(String word) {
+        lock.readLock().lock();
+        try {
+            int id = find(word);
+            return id >= 0 ? (int) sequences[id] : -1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void incrementDocCount(String word, long howMuch) {
+        lockForWrite();
+        try {
+            int id = find(word);
+            if (id >= 0)
+                sequences[id] += howMuch;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void setCountForDoc(String word, long count) {
+        lockForWrite();
+        try {
+            int id = find(word);
+            if (id >= 0)
+                sequences[id] = count;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public long totalNumberOfDocs() {
+        lock.readLock().lock();
+        try {
+            return documentsCounter;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void incrementTotalDocCount() {
+        incrementTotalDocCount(1);
+    }
+
+    @Override
+    public void incrementTotalDocCount(long by) {
+        lockForWrite();
+        try {
+            documentsCounter += by;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void setTotalDocCount(long by) {
+        lockForWrite();
+        try {
+            documentsCounter = by;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Collection<VocabWord> tokens() {
+        return vocabWords();
+    }
+
+    @Override
+    public boolean addToken(@NonNull VocabWord element) {
+        if (element.getLabel() == null)
+            throw new IllegalStateException("CompactVocabCache requires all elements to have labels");
+
+        lockForWrite();
+        try {
+            int id = findStorage(element.getStorageId());
+            if (id < 0) {
+                // same label under other storageId is still the same element, so it's merged instead of duplicated
+                id = find(element.getLabel());
+            }
+
+            boolean added = false;
+            if (id < 0) {
+                id = allocate(element.getLabel(), element.getStorageId());
+                store(id, element);
+                indices[id] = element.getIndex();
+                added = true;
+            } else {
+                sequences[id] += element.getSequencesCount();
+                frequencies[id] += (int) element.getElementFrequency();
+            }
+            totalWordCount += (long) frequencies[id];
+            return added;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public VocabWord tokenFor(String word) {
+        return wordFor(word);
+    }
+
+    @Override
+    public VocabWord tokenFor(long id) {
+        return wordFor(id);
+    }
+
+    @Override
+    public boolean hasToken(String token) {
+        return containsWord(token);
+    }
+
+    @Override
+    public void importVocabulary(@NonNull VocabCache<VocabWord> vocabCache) {
+        boolean added = false;
+        for (VocabWord element : vocabCache.vocabWords()) {
+            if (addToken(element))
+                added = true;
+        }
+
+        if (added)
+            incrementTotalDocCount(vocabCache.totalNumberOfDocs());
+    }
+
+    @Override
+    public void updateWordsOccurrences() {
+        lockForWrite();
+        try {
+            long total = 0;
+            for (int id = 0; id < size; id++) {
+                long value = (long) frequencies[id];
+                if (!isRemoved(id) && value > 0)
+                    total += value;
+            }
+            totalWordCount = total;
+            log.info("Updated counter: [" + totalWordCount + "]");
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeElement(String label) {
+        lockForWrite();
+        try {
+            int slot = findLabelSlot(label, hash(label));
+            if (slot < 0)
+                throw new IllegalStateException("Can't get label: '" + label + "'");
+
+            int id = labelSlots[slot] - 1;
+            totalWordCount -= (long) frequencies[id];
+
+            int index = indices[id];
+            if (index >= 0 && index < indexToId.length && indexToId[index] == id + 1)
+                indexToId[index] = 0;
+
+            removeLabelSlot(slot);
+            int storageSlot = findStorageSlot(storageIds[id]);
+            if (storageSlot >= 0 && storageSlots[storageSlot] == id + 1)
+                removeStorageSlot(storageSlot);
+
+            flags[id] |= FLAG_REMOVED;
+            live--;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeElement(VocabWord element) {
+        removeElement(element.getLabel());
+    }
+
+    /**
+     * This method writes state of given element back into the cache: frequency, sequences count, flags,
+     * index, Huffman codes and points. Element is matched by label.
+     *
+     * @param element
+     */
+    public void updateElement(@NonNull SequenceElement element) {
+        lockForWrite();
+        try {
+            int id = find(element.getLabel());
+            if (id < 0)
+                throw new IllegalStateException("Can't get label: '" + element.getLabel() + "'");
+
+            store(id, element);
+            if (indices[id] != element.getIndex())
+                assignIndex(id, element.getIndex());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * This method returns JSON representation of this vocabulary, in AbstractCache format.
+     * So it can be restored via AbstractCache.fromJson(), as AbstractCache instance.
+     *
+     * @return
+     */
+    public String toJson() throws JsonProcessingException {
+        AbstractCache<VocabWord> cache = new AbstractCache.Builder<VocabWord>().build();
+        lock.readLock().lock();
+        try {
+            for (int id = 0; id < size; id++) {
+                if (!isRemoved(id))
+                    cache.addToken(materialize(id));
+            }
+            cache.setTotalDocCount(documentsCounter);
+            cache.setTotalWordOccurences(totalWordCount);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return cache.toJson();
+    }
+
+    /**
+     * This method returns number of bytes used by arrays backing this cache
+     *
+     * @return
+     */
+    public long getMemoryFootprint() {
+        lock.readLock().lock();
+        try {
+            long bytes = arena.length + labelOffsets.length * 4L;
+            bytes += (storageIds.length + frequencies.length + sequences.length + codes.length) * 8L;
+            bytes += (indices.length + pointOffsets.length) * 4L;
+            bytes += flags.length + codeLengths.length + codeCounts.length + pointCounts.length;
+            bytes += pointsArena.length * 4L;
+            bytes += (labelSlots.length + labelHashes.length + storageSlots.length) * 4L + storageKeys.length * 8L;
+            bytes += indexToId.length * 4L;
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /*
+        Element state
+     */
+
+    private boolean isRemoved(int id) {
+        return (flags[id] & FLAG_REMOVED) != 0;
+    }
+
+    private String label(int id) {
+        return new String(arena, labelOffsets[id], labelOffsets[id + 1] - labelOffsets[id], UTF8);
+    }
+
+    private int idAtIndex(int index) {
+        if (index < 0 || index >= indexToId.length)
+            return -1;
+
+        return indexToId[index] - 1;
+    }
+
+    private void mapIndex(int index, int id) {
+        if (index >= indexToId.length)
+            indexToId = Arrays.copyOf(indexToId, Math.max(index + 1, indexToId.length * 2));
+
+        indexToId[index] = id + 1;
+    }
+
+    private void assignIndex(int id, int index) {
+        int oldIndex = indices[id];
+        if (oldIndex >= 0 && oldIndex < indexToId.length && indexToId[oldIndex] == id + 1)
+            indexToId[oldIndex] = 0;
+
+        indices[id] = index;
+        if (index >= 0)
+            mapIndex(index, id);
+    }
+
+    private void lockForWrite() {
+        lock.writeLock().lock();
+        version++;
+    }
+
+    /**
+     * This method returns materialized element for given id, reusing previous instance if cache wasn't modified since then.
+     * Caller should hold read lock.
+     */
+    private VocabWord view(int id) {
+        View[] cached = views;
+        if (cached == null) {
+            cached = new View[VIEWS_CAPACITY];
+            views = cached;
+        }
+
+        int slot = id & (VIEWS_CAPACITY - 1);
+        View view = cached[slot];
+        if (view == null || view.id != id || view.version != version) {
+            view = new View(id, version, bind(id));
+            cached[slot] = view;
+        }
+
+        return view.word;
+    }
+
+    private VocabWord materialize(int id) {
+        return fill(id, new VocabWord(frequencies[id], label(id), storageIds[id]));
+    }
+
+    /**
+     * This method returns materialized element, that writes changes back to this cache
+     */
+    private VocabWord bind(int id) {
+        CompactVocabWord word = new CompactVocabWord(this, id, frequencies[id], label(id), storageIds[id]);
+        fill(id, word);
+        word.bound = true;
+        return word;
+    }
+
+    private VocabWord fill(int id, VocabWord word) {
+        word.setSequencesCount(sequences[id]);
+        word.setIndex(indices[id]);
+        word.markAsLabel((flags[id] & FLAG_LABEL) != 0);
+        word.setSpecial((flags[id] & FLAG_SPECIAL) != 0);
+        word.setLocked((flags[id] & FLAG_LOCKED) != 0);
+        word.setInit((flags[id] & FLAG_INIT) != 0);
+
+        int numCodes = codeCounts[id];
+        List<Byte> codeList = new ArrayList<>(numCodes);
+        long bits = codes[id];
+        for (int e = 0; e < numCodes; e++)
+            codeList.add((byte) ((bits >>> e) & 1L));
+
+        int numPoints = pointCounts[id];
+        List<Integer> pointList = new ArrayList<>(numPoints);
+        int offset = pointOffsets[id];
+        for (int e = 0; e < numPoints; e++)
+            pointList.add(pointsArena[offset + e]);
+
+        word.setCodes(codeList);
+        word.setPoints(pointList);
+        word.setCodeLength(codeLengths[id]);
+        return word;
+    }
+
+    private void store(int id, SequenceElement element) {
+        frequencies[id] = element.getElementFrequency();
+        sequences[id] = element.getSequencesCount();
+
+        byte flag = (byte) (flags[id] & FLAG_REMOVED);
+        if (element.isLabel())
+            flag |= FLAG_LABEL;
+        if (element.isSpecial())
+            flag |= FLAG_SPECIAL;
+        if (element.isLocked())
+            flag |= FLAG_LOCKED;
+        if (element.isInit())
+            flag |= FLAG_INIT;
+        flags[id] = flag;
+
+        storeCodes(id, element);
+    }
+
+    private void storeCodes(int id, SequenceElement element) {
+        if (element.getCodeLength() > MAX_CODE_LENGTH)
+            throw new IllegalStateException("Code length can't exceed " + MAX_CODE_LENGTH + ", got " + element.getCodeLength());
+        codeLengths[id] = (byte) element.getCodeLength();
+
+        List<Byte> codeList = element.getCodes();
+        int numCodes = codeList == null ? 0 : codeList.size();
+        if (numCodes > MAX_CODE_LENGTH)
+            throw new IllegalStateException("Number of codes can't exceed " + MAX_CODE_LENGTH + ", got " + numCodes);
+
+        long bits = 0;
+        for (int e = 0; e < numCodes; e++) {
+            byte code = codeList.get(e);
+            if (code != 0 && code != 1)
+                throw new IllegalStateException("Huffman codes should be 0 or 1, got " + code);
+            bits |= ((long) code) << e;
+        }
+        codes[id] = bits;
+        codeCounts[id] = (byte) numCodes;
+
+        List<Integer> pointList = element.getPoints();
+        int numPoints = pointList == null ? 0 : pointList.size();
+        if (numPoints > MAX_CODE_LENGTH + 1)
+            throw new IllegalStateException("Number of points can't exceed " + (MAX_CODE_LENGTH + 1) + ", got " + numPoints);
+
+        // points region is reused if new points fit into it, otherwise we append new region
+        if (numPoints > pointCounts[id]) {
+            ensurePointsCapacity(pointsSize + numPoints);
+            pointOffsets[id] = pointsSize;
+            pointsSize += numPoints;
+        }
+        for (int e = 0; e < numPoints; e++)
+            pointsArena[pointOffsets[id] + e] = pointList.get(e);
+        pointCounts[id] = (byte) numPoints;
+    }
+
+    private int allocate(String label, long storageId) {
+        byte[] bytes = label.getBytes(UTF8);
+        ensureElementsCapacity(size + 1);
+        ensureArenaCapacity(labelOffsets[size] + bytes.length);
+
+        int id = size++;
+        System.arraycopy(bytes, 0, arena, labelOffsets[id], bytes.length);
+        labelOffsets[id + 1] = labelOffsets[id] + bytes.length;
+        storageIds[id] = storageId;
+        indices[id] = -1;
+        pointCounts[id] = 0;
+        live++;
+
+        if ((live + 1) * 2 > labelSlots.length)
+            resizeTables(labelSlots.length * 2);
+
+        int h = hash(label);
+        // callers check label first, so slot is always free here
+        int slot = -(findLabelSlot(label, h) + 1);
+        labelSlots[slot] = id + 1;
+        labelHashes[slot] = h;
+
+        insertStorage(storageId, id);
+        return id;
+    }
+
+    private void ensureElementsCapacity(int required) {
+        if (required <= storageIds.length)
+            return;
+
+        int capacity = Math.max(required, storageIds.length * 2);
+        storageIds = Arrays.copyOf(storageIds, capacity);
+        frequencies = Arrays.copyOf(frequencies, capacity);
+        sequences = Arrays.copyOf(sequences, capacity);
+        indices = Arrays.copyOf(indices, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        codeLengths = Arrays.copyOf(codeLengths, capacity);
+        codeCounts = Arrays.copyOf(codeCounts, capacity);
+        codes = Arrays.copyOf(codes, capacity);
+        pointCounts = Arrays.copyOf(pointCounts, capacity);
+        pointOffsets = Arrays.copyOf(pointOffsets, capacity);
+        labelOffsets = Arrays.copyOf(labelOffsets, capacity + 1);
+    }
+
+    private void ensureArenaCapacity(int required) {
+        if (required > arena.length)
+            arena = Arrays.copyOf(arena, Math.max(required, arena.length * 2));
+    }
+
+    private void ensurePointsCapacity(int required) {
+        if (required > pointsArena.length)
+            pointsArena = Arrays.copyOf(pointsArena, Math.max(required, pointsArena.length * 2));
+    }
+
+    /*
+        Hash tables
+     */
+
+    private static int hash(String label) {
+        // FNV-1a over UTF-16 chars, so lookups don't need to encode label
+        int h = 0x811C9DC5;
+        for (int e = 0; e < label.length(); e++) {
+            h ^= label.charAt(e);
+            h *= 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static int mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    private boolean labelEquals(int id, String label) {
+        int start = labelOffsets[id];
+        int end = labelOffsets[id + 1];
+        int length = label.length();
+
+        // ASCII fast path, compares bytes against chars without decoding
+        int p = start;
+        int c = 0;
+        while (p < end && c < length) {
+            byte b = arena[p];
+            if (b < 0)
+                return new String(arena, start, end - start, UTF8).equals(label);
+
+            if (b != label.charAt(c))
+                return false;
+
+            p++;
+            c++;
+        }
+        return p == end && c == length;
+    }
+
+    private int find(String label) {
+        if (label == null)
+            return -1;
+
+        int slot = findLabelSlot(label, hash(label));
+        return slot >= 0 ? labelSlots[slot] - 1 : -1;
+    }
+
+    /**
+     * Returns slot holding given label, or -(insertion slot + 1) if label isn't present
+     */
+    private int findLabelSlot(String label, int h) {
+        int mask = labelSlots.length - 1;
+        int slot = h & mask;
+        while (labelSlots[slot] != 0) {
+            if (labelHashes[slot] == h && labelEquals(labelSlots[slot] - 1, label))
+                return slot;
+
+            slot = (slot + 1) & mask;
+        }
+        return -(slot + 1);
+    }
+
+    private void removeLabelSlot(int slot) {
+        int mask = labelSlots.length - 1;
+        int hole = slot;
+        labelSlots[hole] = 0;
+
+        // backward shift deletion, so probe chains stay intact without tombstones
+        int next = (hole + 1) & mask;
+        while (labelSlots[next] != 0) {
+            int ideal = labelHashes[next] & mask;
+            if (((next - ideal) & mask) >= ((next - hole) & mask)) {
+                labelSlots[hole] = labelSlots[next];
+                labelHashes[hole] = labelHashes[next];
+                labelSlots[next] = 0;
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+    }
+
+    private int findStorage(long storageId) {
+        int slot = findStorageSlot(storageId);
+        return slot >= 0 ? storageSlots[slot] - 1 : -1;
+    }
+
+    private int findStorageSlot(long storageId) {
+        int mask = storageSlots.length - 1;
+        int slot = mix(storageId) & mask;
+        while (storageSlots[slot] != 0) {
+            if (storageKeys[slot] == storageId)
+                return slot;
+
+            slot = (slot + 1) & mask;
+        }
+        return -(slot + 1);
+    }
+
+    private void insertStorage(long storageId, int id) {
+        int slot = findStorageSlot(storageId);
+        if (slot < 0)
+            slot = -(slot + 1);
+
+        storageKeys[slot] = storageId;
+        storageSlots[slot] = id + 1;
+    }
+
+    private void removeStorageSlot(int slot) {
+        int mask = storageSlots.length - 1;
+        int hole = slot;
+        storageSlots[hole] = 0;
+
+        int next = (hole + 1) & mask;
+        while (storageSlots[next] != 0) {
+            int ideal = mix(storageKeys[next]) & mask;
+            if (((next - ideal) & mask) >= ((next - hole) & mask)) {
+                storageSlots[hole] = storageSlots[next];
+                storageKeys[hole] = storageKeys[next];
+                storageSlots[next] = 0;
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+    }
+
+    private void resizeTables(int capacity) {
+        int[] oldLabelSlots = labelSlots;
+        int[] oldLabelHashes = labelHashes;
+        long[] oldStorageKeys = storageKeys;
+        int[] oldStorageSlots = storageSlots;
+
+        labelSlots = new int[capacity];
+        labelHashes = new int[capacity];
+        storageKeys = new long[capacity];
+        storageSlots = new int[capacity];
+
+        int mask = capacity - 1;
+        for (int e = 0; e < oldLabelSlots.length; e++) {
+            if (oldLabelSlots[e] == 0)
+                continue;
+
+            int slot = oldLabelHashes[e] & mask;
+            while (labelSlots[slot] != 0)
+                slot = (slot + 1) & mask;
+
+            labelSlots[slot] = oldLabelSlots[e];
+            labelHashes[slot] = oldLabelHashes[e];
+        }
+
+        for (int e = 0; e < oldStorageSlots.length; e++) {
+            if (oldStorageSlots[e] == 0)
+                continue;
+
+            int slot = mix(oldStorageKeys[e]) & mask;
+            while (storageSlots[slot] != 0)
+                slot = (slot + 1) & mask;
+
+            storageKeys[slot] = oldStorageKeys[e];
+            storageSlots[slot] = oldStorageSlots[e];
+        }
+    }
+
+    /*
+        Write-through of changes applied to elements handed out by this cache
+     */
+
+    private int boundId(int id) {
+        if (isRemoved(id))
+            throw new IllegalStateException("Element was removed from vocabulary: '" + label(id) + "'");
+        return id;
+    }
+
+    private void writeIndex(int id, int index) {
+        lockForWrite();
+        try {
+            assignIndex(boundId(id), index);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void writeFrequency(int id, double value, boolean increment) {
+        lockForWrite();
+        try {
+            frequencies[boundId(id)] = increment ? frequencies[id] + value : value;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void writeSequences(int id, long value, boolean increment) {
+        lockForWrite();
+        try {
+            sequences[boundId(id)] = increment ? sequences[id] + value : value;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void writeFlag(int id, byte flag, boolean value) {
+        lockForWrite();
+        try {
+            if (value)
+                flags[boundId(id)] |= flag;
+            else
+                flags[boundId(id)] &= ~flag;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void writeCodes(int id, SequenceElement element) {
+        lockForWrite();
+        try {
+            storeCodes(boundId(id), element);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * VocabWord materialized from cache state. Once bound, setters write changes back to the cache.
+     * Serialized as plain VocabWord.
+     */
+    private static final class CompactVocabWord extends VocabWord {
+        private final transient CompactVocabCache cache;
+        private final transient int id;
+        private transient boolean bound;
+
+        private CompactVocabWord(CompactVocabCache cache, int id, double frequency, String label, long storageId) {
+            super(frequency, label, storageId);
+            this.cache = cache;
+            this.id = id;
+        }
+
+        private VocabWord detach() {
+            VocabWord word = new VocabWord(getElementFrequency(), getLabel(), getStorageId());
+            word.setSequencesCount(getSequencesCount());
+            word.setIndex(getIndex());
+            word.markAsLabel(isLabel());
+            word.setSpecial(isSpecial());
+            word.setLocked(isLocked());
+            word.setInit(isInit());
+            word.setCodes(new ArrayList<>(getCodes()));
+            word.setPoints(new ArrayList<>(getPoints()));
+            word.setCodeLength((short) getCodeLength());
+            word.setVocabId(getVocabId());
+            word.setAffinityId(getAffinityId());
+            return word;
+        }
+
+        private Object writeReplace() {
+            return detach();
+        }
+
+        @Override
+        public String toJSON() {
+            return detach().toJSON();
+        }
+
+        @Override
+        public void setWord(String word) {
+            if (bound)
+                throw new UnsupportedOperationException("Label of vocabulary element can't be changed");
+            super.setWord(word);
+        }
+
+        @Override
+        public void setStorageId(Long storageId) {
+            if (bound)
+                throw new UnsupportedOperationException("StorageId of vocabulary element can't be changed");
+            super.setStorageId(storageId);
+        }
+
+        @Override
+        public void setIndex(int index) {
+            super.setIndex(index);
+            if (bound)
+                cache.writeIndex(id, index);
+        }
+
+        @Override
+        public void setElementFrequency(long value) {
+            super.setElementFrequency(value);
+            if (bound)
+                cache.writeFrequency(id, value, false);
+        }
+
+        @Override
+        public void increaseElementFrequency(int by) {
+            super.increaseElementFrequency(by);
+            if (bound)
+                cache.writeFrequency(id, by, true);
+        }
+
+        @Override
+        public void setSequencesCount(long count) {
+            super.setSequencesCount(count);
+            if (bound)
+                cache.writeSequences(id, count, false);
+        }
+
+        @Override
+        public void incrementSequencesCount() {
+            incrementSequencesCount(1);
+        }
+
+        @Override
+        public void incrementSequencesCount(long count) {
+            super.incrementSequencesCount(count);
+            if (bound)
+                cache.writeSequences(id, count, true);
+        }
+
+        @Override
+        public void markAsLabel(boolean isLabel) {
+            super.markAsLabel(isLabel);
+            if (bound)
+                cache.writeFlag(id, FLAG_LABEL, isLabel);
+        }
+
+        @Override
+        public void setSpecial(boolean special) {
+            super.setSpecial(special);
+            if (bound)
+                cache.writeFlag(id, FLAG_SPECIAL, special);
+        }
+
+        @Override
+        public void setLocked(boolean locked) {
+            super.setLocked(locked);
+            if (bound)
+                cache.writeFlag(id, FLAG_LOCKED, locked);
+        }
+
+        @Override
+        public void setInit(boolean init) {
+            super.setInit(init);
+            if (bound)
+                cache.writeFlag(id, FLAG_INIT, init);
+        }
+
+        @Override
+        public void setCodes(List<Byte> codes) {
+            super.setCodes(codes);
+            if (bound)
+                cache.writeCodes(id, this);
+        }
+
+        @Override
+        public void setPoints(List<Integer> points) {
+            super.setPoints(points);
+            if (bound)
+                cache.writeCodes(id, this);
+        }
+
+        @Override
+        public void setPoints(int[] points) {
+            super.setPoints(points);
+            if (bound)
+                cache.writeCodes(id, this);
+        }
+
+        @Override
+        public void setCodeLength(short codeLength) {
+            super.setCodeLength(codeLength);
+            if (bound)
+                cache.writeCodes(id, this);
+        }
+    }
+
+    private static final class View {
+        private final int id;
+        private final long version;
+        private final VocabWord word;
+
+        private View(int id, long version, VocabWord word) {
+            this.id = id;
+            this.version = version;
+            this.word = word;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.models.word2vec;
+
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.models.embeddings.WeightLookupTable;
+import org.deeplearning4j.models.embeddings.loader.WordVectorSerializer;
+import org.deeplearning4j.models.embeddings.wordvectors.WordVectors;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.io.ClassPathResource;
+
+import java.io.File;
+import java.util.Collection;
+
+import static org.junit.Assert.*;
+
+public class MappedWord2VecTest extends BaseDL4JTest {
+
+    @Rule
+    public TemporaryFolder testDir = new TemporaryFolder();
+
+    private WordVectors original;
+    private MappedWord2Vec mapped;
+
+    @Before
+    public void setUp() throws Exception {
+        original = WordVectorSerializer.readWord2VecModel(new ClassPathResource("vec.bin").getFile());
+
+        File file = testDir.newFile("vec.mapped");
+        WordVectorSerializer.writeMappedModel(original, file);
+        mapped = WordVectorSerializer.loadMappedModel(file);
+    }
+
+    @Test
+    public void testVectorsMatch() {
+        assertEquals(original.vocabSize(), mapped.vocabSize());
+        assertEquals(original.vectorSize(), mapped.vectorSize());
+
+        for (int e = 0; e < original.vocab().numWords(); e++) {
+            String word = original.vocab().wordAtIndex(e);
+            assertTrue(mapped.hasWord(word));
+            assertEquals(e, mapped.indexOf(word));
+            assertEquals(word, mapped.getStorage().wordAtIndex(e));
+            assertArrayEquals(original.getWordVectorMatrix(word).toFloatVector(), mapped.getWordVectorMatrix(word).toFloatVector(), 0.0f);
+        }
+
+        assertFalse(mapped.hasWord("definitely_not_a_word"));
+        assertNull(mapped.getWordVectorMatrix("definitely_not_a_word"));
+        assertEquals(-1, mapped.indexOf("definitely_not_a_word"));
+    }
+
+    @Test
+    public void testSimilarityAndNearest() {
+        assertEquals(original.similarity("Adam", "is"), mapped.similarity("Adam", "is"), 1e-5);
+        Collection<String> nearest = mapped.wordsNearest("Adam", 3);
+        assertEquals(3, nearest.size());
+        assertFalse(nearest.contains("Adam"));
+        assertEquals(original.wordsNearest("Adam", 1).iterator().next(), nearest.iterator().next());
+    }
+
+    @Test
+    public void testLookupTableAndVocab() {
+        WeightLookupTable table = mapped.lookupTable();
+        assertEquals(original.vectorSize(), table.layerSize());
+        assertArrayEquals(original.getWordVectorMatrix("Adam").toFloatVector(), table.vector("Adam").toFloatVector(), 0.0f);
+
+        INDArray weights = table.getWeights();
+        assertArrayEquals(new long[] {original.vocabSize(), original.vectorSize()}, weights.shape());
+        assertArrayEquals(original.getWordVectorMatrix("Adam").toFloatVector(),
+                        weights.getRow(mapped.indexOf("Adam")).toFloatVector(), 0.0f);
+
+        assertEquals(original.vocab().numWords(), mapped.vocab().numWords());
+        assertEquals(original.vocab().wordFrequency("Adam"), mapped.vocab().wordFrequency("Adam"));
+        assertEquals(original.vocab().wordAtIndex(0), mapped.vocab().wordAtIndex(0));
+    }
+}
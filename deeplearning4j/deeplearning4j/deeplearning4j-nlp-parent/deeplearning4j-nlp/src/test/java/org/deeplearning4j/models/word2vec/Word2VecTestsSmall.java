@@ -19,6 +19,11 @@ package org.deeplearning4j.models.word2vec;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.models.sequencevectors.SequenceVectors;
+import org.deeplearning4j.models.sequencevectors.serialization.VocabWordFactory;
+import org.deeplearning4j.models.sequencevectors.interfaces.VectorsListener;
+import org.deeplearning4j.models.sequencevectors.listeners.WordsPerSecondListener;
+import org.deeplearning4j.models.word2vec.wordstore.inmemory.CompactVocabCache;
 import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
 import org.deeplearning4j.nn.conf.layers.DenseLayer;
@@ -48,8 +53,9 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.util.Collection;
+import java.util.Collections;
 
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 
 @Slf4j
@@ -119,6 +125,172 @@ public class Word2VecTestsSmall extends BaseDL4JTest {
         WordVectorSerializer.writeWord2VecModel(vec, tmpFile); // NullPointerException was thrown here
     }
 
+    @Test
+    public void testCompactVocabCache_1() throws Exception {
+        val inputFile = Resources.asFile("big/raw_sentences.txt");
+
+        val t = new DefaultTokenizerFactory();
+        t.setTokenPreProcessor(new CommonPreprocessor());
+
+        val reference = new Word2Vec.Builder()
+                .minWordFrequency(5)
+                .epochs(1)
+                .layerSize(100)
+                .windowSize(5)
+                .seed(42)
+                .iterate(new BasicLineIterator(inputFile))
+                .workers(4)
+                .tokenizerFactory(t).build();
+
+        reference.fit();
+
+        val cache = new CompactVocabCache();
+        val vec = new Word2Vec.Builder()
+                .minWordFrequency(5)
+                .epochs(1)
+                .layerSize(100)
+                .windowSize(5)
+                .seed(42)
+                .iterate(new BasicLineIterator(inputFile))
+                .workers(4)
+                .vocabCache(cache)
+                .intersectModel(reference, true)
+                .tokenizerFactory(t).build();
+
+        vec.fit();
+
+        assertSame(cache, vec.vocab());
+        assertEquals(reference.vocab().numWords(), cache.numWords());
+
+        // lock set on intersected words has to survive in compact storage
+        VocabWord day = cache.wordFor("day");
+        assertNotNull(day);
+        assertTrue(day.isLocked());
+        assertEquals(day.getLabel(), cache.wordAtIndex(day.getIndex()));
+
+        INDArray vector = vec.getWordVectorMatrix("day");
+        assertNotNull(vector);
+        assertFalse(Double.isNaN(vector.sumNumber().doubleValue()));
+        assertEquals(10, vec.wordsNearest("day", 10).size());
+    }
+
+    @Test
+    public void testCompactVocabCache_2() throws Exception {
+        val inputFile = Resources.asFile("big/raw_sentences.txt");
+
+        val t = new DefaultTokenizerFactory();
+        t.setTokenPreProcessor(new CommonPreprocessor());
+
+        val vec = new Word2Vec.Builder()
+                .minWordFrequency(5)
+                .epochs(1)
+                .layerSize(100)
+                .windowSize(5)
+                .seed(42)
+                .iterate(new BasicLineIterator(inputFile))
+                .vocabCache(new CompactVocabCache())
+                .tokenizerFactory(t).build();
+
+        vec.fit();
+
+        INDArray day = vec.getWordVectorMatrix("day");
+
+        // SequenceVectors format
+        val baos = new ByteArrayOutputStream();
+        WordVectorSerializer.writeSequenceVectors(vec, new VocabWordFactory(), baos);
+
+        SequenceVectors<VocabWord> restored = WordVectorSerializer.readSequenceVectors(new ByteArrayInputStream(baos.toByteArray()), true);
+        assertEquals(vec.vocab().numWords(), restored.vocab().numWords());
+        assertEquals(vec.vocab().indexOf("day"), restored.vocab().indexOf("day"));
+        assertEquals(day, restored.getWordVectorMatrix("day"));
+
+        // full Word2Vec model
+        val tmpFile = File.createTempFile("compact", "w2v");
+        tmpFile.deleteOnExit();
+
+        WordVectorSerializer.writeWord2VecModel(vec, tmpFile);
+
+        Word2Vec restoredW2v = WordVectorSerializer.readWord2VecModel(tmpFile, true);
+        assertEquals(vec.vocab().numWords(), restoredW2v.vocab().numWords());
+        assertEquals(vec.vocab().indexOf("day"), restoredW2v.vocab().indexOf("day"));
+        assertEquals(day, restoredW2v.getWordVectorMatrix("day"));
+
+        // JSON configuration
+        Word2Vec fromJson = Word2Vec.fromJson(vec.toJson());
+        assertEquals(vec.vocab().numWords(), fromJson.vocab().numWords());
+    }
+
+    private static Word2Vec hogwildModel(File inputFile, TokenizerFactory t, boolean hogwild, VectorsListener<VocabWord> listener) {
+        val builder = new Word2Vec.Builder()
+                .minWordFrequency(5)
+                .epochs(2)
+                .layerSize(100)
+                .windowSize(5)
+                .batchSize(512)
+                .negativeSample(5.0)
+                .useHierarchicSoftmax(false)
+                .seed(42)
+                .iterate(new BasicLineIterator(inputFile))
+                .workers(4)
+                .useHogwild(hogwild)
+                .tokenizerFactory(t);
+
+        if (listener != null)
+            builder.setVectorsListeners(Collections.<VectorsListener<VocabWord>>singletonList(listener));
+
+        return builder.build();
+    }
+
+    @Test
+    public void testHogwild_1() throws Exception {
+        val inputFile = Resources.asFile("big/raw_sentences.txt");
+
+        val t = new DefaultTokenizerFactory();
+        t.setTokenPreProcessor(new CommonPreprocessor());
+
+        val listener = new WordsPerSecondListener<VocabWord>(10000, false);
+
+        val baseline = hogwildModel(inputFile, t, false, null);
+        baseline.fit();
+
+        val vec = hogwildModel(inputFile, t, true, listener);
+        vec.fit();
+
+        assertTrue(listener.getAverageWordsPerSecond() > 0.0);
+
+        // every word of the corpus should be processed once per epoch, all threads publish their counters before finishing
+        long corpusWords = 0;
+        val lines = new BasicLineIterator(inputFile);
+        while (lines.hasNext()) {
+            for (String token : t.create(lines.nextSentence()).getTokens())
+                if (vec.getVocab().containsWord(token))
+                    corpusWords++;
+        }
+        assertEquals(2 * corpusWords, baseline.getElementsProcessed());
+        assertEquals(2 * corpusWords, vec.getElementsProcessed());
+
+        INDArray day = vec.getWordVectorMatrix("day");
+        assertNotNull(day);
+        assertFalse(Double.isNaN(day.sumNumber().doubleValue()));
+
+        // lock-free updates shouldn't degrade model quality
+        double baselineSim = baseline.similarity("day", "night");
+        double sim = vec.similarity("day", "night");
+        log.info("Day/night similarity: baseline [{}], hogwild [{}]", baselineSim, sim);
+        assertTrue(sim > 0.6);
+        assertEquals(baselineSim, sim, 0.15);
+
+        val baselineNearest = baseline.wordsNearest("day", 10);
+        val nearest = vec.wordsNearest("day", 10);
+        assertTrue(nearest.contains("night"));
+
+        int overlap = 0;
+        for (String word : nearest)
+            if (baselineNearest.contains(word))
+                overlap++;
+        assertTrue("Nearest words: baseline " + baselineNearest + ", hogwild " + nearest, overlap >= 4);
+    }
+
     @Test
     public void testLabelAwareIterator_1() throws Exception {
         val resource = new ClassPathResource("/labeled");
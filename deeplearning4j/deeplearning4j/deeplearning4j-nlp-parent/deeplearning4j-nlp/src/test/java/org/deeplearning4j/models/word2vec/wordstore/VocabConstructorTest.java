@@ -448,4 +448,41 @@ public class VocabConstructorTest extends BaseDL4JTest {
 
         constructor.buildJointVocabulary(false, true);
     }
+
+    @Test
+    public void testShardedBuilderMatchesSequential() throws Exception {
+        File inputFile = Resources.asFile("big/raw_sentences.txt");
+
+        VocabCache<VocabWord> sharded = new AbstractCache.Builder<VocabWord>().build();
+        VocabCache<VocabWord> sequential = new AbstractCache.Builder<VocabWord>().build();
+
+        for (boolean useSharded : new boolean[] {true, false}) {
+            SentenceTransformer transformer = new SentenceTransformer.Builder().iterator(new BasicLineIterator(inputFile))
+                            .tokenizerFactory(t).build();
+            AbstractSequenceIterator<VocabWord> sequenceIterator =
+                            new AbstractSequenceIterator.Builder<>(transformer).build();
+
+            VocabConstructor<VocabWord> constructor = new VocabConstructor.Builder<VocabWord>()
+                            .addSource(sequenceIterator, 5)
+                            .setStopWords(Collections.singletonList("the"))
+                            .allowParallelTokenization(useSharded)
+                            .useShardedBuilder(useSharded)
+                            .setTargetVocabCache(useSharded ? sharded : sequential)
+                            .build();
+
+            constructor.buildJointVocabulary(false, true);
+        }
+
+        assertEquals(sequential.numWords(), sharded.numWords());
+        assertEquals(sequential.totalWordOccurrences(), sharded.totalWordOccurrences());
+        assertEquals(sequential.totalNumberOfDocs(), sharded.totalNumberOfDocs());
+        assertFalse(sharded.containsWord("the"));
+
+        for (VocabWord word : sequential.vocabWords()) {
+            VocabWord other = sharded.wordFor(word.getLabel());
+            assertNotNull(word.getLabel(), other);
+            assertEquals(word.getLabel(), word.getElementFrequency(), other.getElementFrequency(), 0.0);
+            assertEquals(word.getLabel(), word.getSequencesCount(), other.getSequencesCount());
+        }
+    }
 }
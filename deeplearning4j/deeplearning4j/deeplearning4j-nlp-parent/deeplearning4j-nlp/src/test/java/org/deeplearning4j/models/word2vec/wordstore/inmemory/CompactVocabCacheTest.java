@@ -0,0 +1,267 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.models.word2vec.wordstore.inmemory;
+
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.models.word2vec.Huffman;
+import org.deeplearning4j.models.word2vec.VocabWord;
+import org.apache.commons.lang3.SerializationUtils;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CompactVocabCacheTest extends BaseDL4JTest {
+
+    @Test
+    public void testBasicOperations() {
+        CompactVocabCache cache = new CompactVocabCache();
+
+        assertTrue(cache.addToken(new VocabWord(1.0, "word")));
+        assertTrue(cache.addToken(new VocabWord(2.0, "test")));
+        assertTrue(cache.addToken(new VocabWord(3.0, "тест")));
+        assertFalse(cache.addToken(new VocabWord(1.0, "word")));
+
+        assertEquals(3, cache.numWords());
+        assertTrue(cache.containsWord("тест"));
+        assertFalse(cache.containsWord("tes"));
+        assertEquals(2, cache.wordFrequency("word"));
+        assertEquals(3, cache.wordFrequency("тест"));
+        assertEquals(-2, cache.indexOf("missing"));
+        assertEquals(-1, cache.docAppearedIn("missing"));
+
+        cache.incrementWordCount("test", 5);
+        assertEquals(7, cache.wordFrequency("test"));
+
+        cache.removeElement("word");
+        assertEquals(2, cache.numWords());
+        assertFalse(cache.containsWord("word"));
+        assertNull(cache.wordFor("word"));
+        assertEquals("test", cache.wordFor("test").getLabel());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRemoveMissing() {
+        CompactVocabCache cache = new CompactVocabCache();
+        cache.addToken(new VocabWord(1.0, "word"));
+        cache.removeElement("test");
+    }
+
+    @Test
+    public void testUpdateElement() {
+        CompactVocabCache cache = new CompactVocabCache();
+        cache.addToken(new VocabWord(1.0, "word"));
+        cache.addToken(new VocabWord(2.0, "test"));
+
+        VocabWord word = cache.wordFor("word");
+        assertFalse(word.isLocked());
+        assertFalse(word.isInit());
+
+        // unchanged cache hands out the same instance
+        assertSame(word, cache.wordFor("word"));
+
+        word.setLocked(true);
+        word.setInit(true);
+        cache.updateElement(word);
+
+        VocabWord updated = cache.wordFor("word");
+        assertNotSame(word, updated);
+        assertTrue(updated.isLocked());
+        assertTrue(updated.isInit());
+        assertFalse(cache.wordFor("test").isLocked());
+    }
+
+    @Test
+    public void testWriteThrough() {
+        CompactVocabCache cache = new CompactVocabCache();
+        cache.addToken(new VocabWord(1.0, "word"));
+        cache.addToken(new VocabWord(2.0, "test"));
+
+        VocabWord word = cache.wordFor("word");
+        word.setIndex(5);
+        word.increaseElementFrequency(3);
+        word.incrementSequencesCount(2);
+        word.setSpecial(true);
+        word.setCodes(Arrays.asList((byte) 1, (byte) 0));
+        word.setPoints(new int[] {7, 3, 1});
+        word.setCodeLength((short) 2);
+
+        // changes applied to handed out element are visible through the cache and its new elements
+        assertEquals("word", cache.wordAtIndex(5));
+        assertEquals(5, cache.indexOf("word"));
+        assertEquals(4, cache.wordFrequency("word"));
+        assertEquals(2, cache.docAppearedIn("word"));
+
+        VocabWord updated = cache.elementAtIndex(5);
+        assertEquals("word", updated.getLabel());
+        assertTrue(updated.isSpecial());
+        assertEquals(2, updated.getCodeLength());
+        assertEquals(Arrays.asList((byte) 1, (byte) 0), updated.getCodes());
+        assertEquals(Arrays.asList(7, 3, 1), updated.getPoints());
+
+        // elements of vocabWords() write back as well
+        for (VocabWord element : cache.vocabWords())
+            element.setElementFrequency(0);
+        assertEquals(0, cache.wordFrequency("test"));
+
+        // index reassignment releases previous index
+        updated.setIndex(1);
+        assertNull(cache.wordAtIndex(5));
+        assertEquals("word", cache.wordAtIndex(1));
+
+        // elements are serialized detached from cache
+        assertEquals(VocabWord.class, SerializationUtils.clone(updated).getClass());
+        assertFalse(updated.toJSON().contains("CompactVocabWord"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testLabelChangeRejected() {
+        CompactVocabCache cache = new CompactVocabCache();
+        cache.addToken(new VocabWord(1.0, "word"));
+        cache.wordFor("word").setWord("test");
+    }
+
+    @Test
+    public void testAddWordToIndexByStorageId() {
+        CompactVocabCache cache = new CompactVocabCache();
+        VocabWord word = new VocabWord(1.0, "word");
+        cache.addToken(word);
+        cache.addToken(new VocabWord(2.0, "test"));
+
+        cache.addWordToIndex(0, word.getStorageId());
+        assertEquals("word", cache.wordAtIndex(0));
+        assertEquals(0, cache.indexOf("word"));
+        assertEquals(0, cache.elementAtIndex(0).getIndex());
+
+        cache.addWordToIndex(1, word.getStorageId());
+        assertNull(cache.wordAtIndex(0));
+        assertEquals("word", cache.wordAtIndex(1));
+        assertEquals(1, cache.wordFor("word").getIndex());
+    }
+
+    @Test
+    public void testToJson() throws Exception {
+        CompactVocabCache cache = new CompactVocabCache();
+        cache.addToken(new VocabWord(1.0, "word"));
+        cache.addToken(new VocabWord(2.0, "test"));
+        cache.addToken(new VocabWord(3.0, "тест"));
+        cache.incrementTotalDocCount(4);
+
+        Huffman huffman = new Huffman(cache.vocabWords());
+        huffman.build();
+        huffman.applyIndexes(cache);
+
+        AbstractCache<VocabWord> restored = AbstractCache.fromJson(cache.toJson());
+        assertEquals(cache.numWords(), restored.numWords());
+        assertEquals(cache.totalWordOccurrences(), restored.totalWordOccurrences());
+        assertEquals(cache.totalNumberOfDocs(), restored.totalNumberOfDocs());
+        for (VocabWord expected : cache.vocabWords()) {
+            VocabWord actual = restored.wordFor(expected.getLabel());
+            assertEquals(VocabWord.class, actual.getClass());
+            assertEquals(expected.getElementFrequency(), actual.getElementFrequency(), 1e-5);
+            assertEquals(expected.getIndex(), actual.getIndex());
+            assertEquals(expected.getCodes(), actual.getCodes());
+            assertEquals(expected.getPoints(), actual.getPoints());
+            assertEquals(expected.getLabel(), restored.wordAtIndex(expected.getIndex()));
+        }
+    }
+
+    @Test
+    public void testDuplicateLabel() {
+        CompactVocabCache cache = new CompactVocabCache();
+        VocabWord first = new VocabWord(1.0, "word");
+        VocabWord second = new VocabWord(2.0, "word", first.getStorageId() + 1);
+
+        assertTrue(cache.addToken(first));
+        assertFalse(cache.addToken(second));
+
+        assertEquals(1, cache.numWords());
+        assertEquals(1, cache.words().size());
+        assertEquals(3, cache.wordFrequency("word"));
+
+        cache.updateWordsOccurrences();
+        assertEquals(3, cache.totalWordOccurrences());
+    }
+
+    @Test
+    public void testHuffman() {
+        CompactVocabCache cache = new CompactVocabCache();
+
+        cache.addToken(new VocabWord(1.0, "word"));
+        cache.addToken(new VocabWord(2.0, "test"));
+        cache.addToken(new VocabWord(3.0, "tester"));
+
+        Huffman huffman = new Huffman(cache.tokens());
+        huffman.build();
+        huffman.applyIndexes(cache);
+
+        assertEquals("tester", cache.wordAtIndex(0));
+        assertEquals("test", cache.wordAtIndex(1));
+        assertEquals("word", cache.wordAtIndex(2));
+
+        VocabWord word = cache.tokenFor("tester");
+        assertEquals(0, word.getIndex());
+        assertEquals(word.getCodeLength(), word.getCodes().size());
+        assertEquals(word.getCodeLength() + 1, word.getPoints().size());
+    }
+
+    @Test
+    public void testMatchesAbstractCache() {
+        AbstractCache<VocabWord> reference = new AbstractCache.Builder<VocabWord>().build();
+        CompactVocabCache cache = new CompactVocabCache();
+
+        Random random = new Random(119);
+        for (int e = 0; e < 20000; e++) {
+            String label = "w" + random.nextInt(5000);
+            reference.addToken(new VocabWord(1.0, label));
+            cache.addToken(new VocabWord(1.0, label));
+        }
+
+        // removals shuffle probe chains around, so lookups should survive them
+        for (int e = 0; e < 1000; e += 3) {
+            String label = "w" + e;
+            if (reference.containsWord(label)) {
+                reference.removeElement(label);
+                cache.removeElement(label);
+            }
+        }
+
+        assertEquals(reference.numWords(), cache.numWords());
+        assertEquals(reference.totalWordOccurrences(), cache.totalWordOccurrences());
+
+        Huffman refHuffman = new Huffman(reference.vocabWords());
+        refHuffman.build();
+        refHuffman.applyIndexes(reference);
+
+        Huffman huffman = new Huffman(cache.vocabWords());
+        huffman.build();
+        huffman.applyIndexes(cache);
+
+        for (VocabWord expected : reference.vocabWords()) {
+            VocabWord actual = cache.wordFor(expected.getLabel());
+            assertNotNull(actual);
+            assertEquals(expected.getElementFrequency(), actual.getElementFrequency(), 1e-5);
+            assertEquals(expected.getCodeLength(), actual.getCodeLength());
+            assertEquals(expected.getLabel(), cache.wordAtIndex(actual.getIndex()));
+            assertEquals(expected.getStorageId(), cache.wordFor(expected.getStorageId()).getStorageId());
+        }
+
+        assertTrue(cache.getMemoryFootprint() > 0);
+    }
+}
@@ -25,6 +25,9 @@ import java.util.Arrays;
 /**
  * A model checkpoint, used with {@link CheckpointListener}
  *
+ * Delta checkpoints store only difference relative to the full checkpoint with number {@link #getBaseCheckpointNum()}.
+ * For full checkpoints base checkpoint number is null.
+ *
  * @author Alex Black
  */
 @AllArgsConstructor
@@ -37,6 +40,18 @@ public class Checkpoint implements Serializable {
     private int epoch;
     private String modelType;
     private String filename;
+    private Integer baseCheckpointNum;
+
+    public Checkpoint(int checkpointNum, long timestamp, int iteration, int epoch, String modelType, String filename) {
+        this(checkpointNum, timestamp, iteration, epoch, modelType, filename, null);
+    }
+
+    /**
+     * @return true if this checkpoint is stored as a difference relative to another (full) checkpoint
+     */
+    public boolean isDelta() {
+        return baseCheckpointNum != null;
+    }
 
     public static String getFileHeader(){
         return "checkpointNum,timestamp,iteration,epoch,modelType,filename";
@@ -44,8 +59,9 @@ public class Checkpoint implements Serializable {
 
     public static Checkpoint fromFileString(String str){
         String[] split = str.split(",");
-        if(split.length != 6){
-            throw new IllegalStateException("Cannot parse checkpoint entry: expected 6 entries, got " + split.length
+        //Optional 7th entry: base checkpoint number, for delta checkpoints only
+        if(split.length != 6 && split.length != 7){
+            throw new IllegalStateException("Cannot parse checkpoint entry: expected 6 or 7 entries, got " + split.length
                     + " - values = " + Arrays.toString(split));
         }
         return new Checkpoint(
@@ -54,10 +70,12 @@ public class Checkpoint implements Serializable {
                 Integer.parseInt(split[2]),
                 Integer.parseInt(split[3]),
                 split[4],
-                split[5]);
+                split[5],
+                split.length == 7 ? Integer.valueOf(split[6]) : null);
     }
 
     public String toFileString(){
-        return checkpointNum + "," + timestamp + "," + iteration + "," + epoch + "," + modelType + "," + filename;
+        String s = checkpointNum + "," + timestamp + "," + iteration + "," + epoch + "," + modelType + "," + filename;
+        return baseCheckpointNum == null ? s : s + "," + baseCheckpointNum;
     }
 }
@@ -21,18 +21,28 @@ import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.IOUtils;
 import org.deeplearning4j.nn.api.Model;
+import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
 import org.deeplearning4j.nn.graph.ComputationGraph;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.deeplearning4j.optimize.api.BaseTrainingListener;
 import org.deeplearning4j.optimize.api.TrainingListener;
 import org.deeplearning4j.util.ModelSerializer;
 import org.nd4j.base.Preconditions;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.memory.MemoryWorkspace;
 import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
 
 import java.io.*;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
 /**
  *
@@ -82,6 +92,17 @@ import java.util.concurrent.TimeUnit;
  * {@code .saveEveryEpoch().saveEvery(15, TimeUnit.MINUTES, true)}<br>
  * Note that is this last example, the <i>sinceLast</i> parameter is true. This means the 15-minute counter will be
  * reset any time a model is saved.<br>
+ * <br>
+ * <b>Asynchronous saving</b>: with {@code .saveAsync(true)} parameters and updater state are copied to staging arrays on
+ * the training thread, and the checkpoint file is written on a background thread. At most one checkpoint is pending at
+ * any time: if the previous checkpoint is still being written, the next one waits for it. Use
+ * {@link #waitForPendingCheckpoint()} once training is done, to make sure the last checkpoint was written.<br>
+ * <br>
+ * <b>Delta checkpoints</b>: with {@code .deltaCheckpoints(n)} only every n-th checkpoint is written in full. Others store
+ * parameters and updater state as a bitwise XOR against the most recent full checkpoint. This is lossless, and compresses well
+ * since consecutive values usually share sign, exponent and leading mantissa bits. Delta checkpoints are restored via
+ * the same load methods. Retention policy is applied as usual, except that a full checkpoint is not deleted while any retained
+ * delta checkpoint depends on it.<br>
  *
  * @author Alex Black
  */
@@ -91,6 +112,12 @@ public class CheckpointListener extends BaseTrainingListener implements Serializ
     private enum KeepMode {ALL, LAST, LAST_AND_EVERY};
     private static final String[] MODEL_TYPES = new String[]{"MultiLayerNetwork", "ComputationGraph", "Model"};
 
+    private static final String DELTA_SUFFIX = "_delta";
+    private static final String DELTA_BASE = "deltaBase.txt";
+    private static final String COEFFICIENTS_DELTA_BIN = "coefficientsDelta.bin";
+    private static final String UPDATER_DELTA_BIN = "updaterStateDelta.bin";
+    private static final int DELTA_CHUNK_SIZE = 1024 * 1024;
+
     private File rootDir;
     private KeepMode keepMode;
     private int keepLast;
@@ -106,10 +133,24 @@ public class CheckpointListener extends BaseTrainingListener implements Serializ
     private Long saveEveryMs;
     private boolean saveEverySinceLast;
 
+    private boolean saveAsync;
+    private Integer fullCheckpointEvery;
+
     private int lastCheckpointNum = -1;
     private File checkpointRecordFile;
 
-    private Checkpoint lastCheckpoint;
+    // staging arrays for checkpoint snapshots, and snapshot of the last full checkpoint for delta checkpoints
+    private transient INDArray stagingParams;
+    private transient INDArray stagingUpdaterState;
+    private transient INDArray baseParams;
+    private transient INDArray baseUpdaterState;
+    private Integer baseCheckpointNum;
+
+    private transient ExecutorService writer;
+    private transient Future<?> pendingCheckpoint;
+
+    // last checkpoint that was written successfully: with saveAsync this is set by the writer thread
+    private volatile Checkpoint lastCheckpoint;
     private long startTime = -1;
     private int startIter = -1;
     private Long lastSaveEveryMsNoSinceLast;
@@ -128,6 +169,8 @@ public class CheckpointListener extends BaseTrainingListener implements Serializ
         this.saveEveryAmount = builder.saveEveryAmount;
         this.saveEveryUnit = builder.saveEveryUnit;
         this.saveEverySinceLast = builder.saveEverySinceLast;
+        this.saveAsync = builder.saveAsync;
+        this.fullCheckpointEvery = builder.fullCheckpointEvery;
 
         if(saveEveryAmount != null){
             saveEveryMs = TimeUnit.MILLISECONDS.convert(saveEveryAmount, saveEveryUnit);
@@ -144,7 +187,8 @@ public class CheckpointListener extends BaseTrainingListener implements Serializ
                 if(files != null && files.length > 0){
                     for(File f : files){
                         String name = f.getName();
-                        if(name.startsWith("checkpoint_") && (name.endsWith("MultiLayerNetwork.zip") || name.endsWith("ComputationGraph.zip"))){
+                        if(name.startsWith("checkpoint_") && (name.endsWith("MultiLayerNetwork.zip") || name.endsWith("ComputationGraph.zip")
+                                || name.endsWith("MultiLayerNetwork" + DELTA_SUFFIX + ".zip") || name.endsWith("ComputationGraph" + DELTA_SUFFIX + ".zip"))){
                             f.delete();
                         }
                     }
@@ -177,7 +221,10 @@ public class CheckpointListener extends BaseTrainingListener implements Serializ
         //Check iterations saving condition:
         if(saveEveryNIterations != null){
             if(saveEveryNIterSinceLast){
-                //Consider last saved model when deciding whether to save
+                //Consider last saved model when deciding whether to save - unless it's still being written
+                if(savePending()){
+                    return;
+                }
                 long lastSaveIter = (lastCheckpoint != null ? lastCheckpoint.getIteration() : startIter);
                 if(iteration - lastSaveIter >= saveEveryNIterations){
                     saveCheckpoint(model);
@@ -196,7 +243,10 @@ public class CheckpointListener extends BaseTrainingListener implements Serializ
         long time = System.currentTimeMillis();
         if(saveEveryUnit != null){
             if(saveEverySinceLast){
-                //Consider last saved when deciding whether to save
+                //Consider last saved when deciding whether to save - unless it's still being written
+                if(savePending()){
+                    return;
+                }
                 long lastSaveTime = (lastCheckpoint != null ? lastCheckpoint.getTimestamp() : startTime);
                 if((time - lastSaveTime) >= saveEveryMs){
                     saveCheckpoint(model);
@@ -223,61 +273,352 @@ public class CheckpointListener extends BaseTrainingListener implements Serializ
     }
 
     private void saveCheckpointHelper(Model model) throws Exception {
+        // previous checkpoint must be written before we can reuse staging arrays
+        waitForPendingCheckpoint();
+
         if(!checkpointRecordFile.exists()){
             checkpointRecordFile.createNewFile();
             write(Checkpoint.getFileHeader() + "\n", checkpointRecordFile);
         }
 
-        Checkpoint c = new Checkpoint(++lastCheckpointNum, System.currentTimeMillis(), getIter(model), getEpoch(model),
+        final Checkpoint c = new Checkpoint(++lastCheckpointNum, System.currentTimeMillis(), getIter(model), getEpoch(model),
                 getModelType(model), null);
+
+        boolean snapshot = (saveAsync || fullCheckpointEvery != null) &&
+                (model.getClass() == MultiLayerNetwork.class || model.getClass() == ComputationGraph.class);
+        if(!snapshot){
+            setFileName(c);
+            ModelSerializer.writeModel(model, new File(rootDir, c.getFilename()), true);
+            checkpointSaved(c);
+            return;
+        }
+
+        //Copy model state, so that training can continue while checkpoint is written
+        final String json = model instanceof MultiLayerNetwork ? ((MultiLayerNetwork) model).getLayerWiseConfigurations().toJson()
+                : ((ComputationGraph) model).getConfiguration().toJson();
+        INDArray updaterState = model instanceof MultiLayerNetwork ? ((MultiLayerNetwork) model).getUpdater().getStateViewArray()
+                : ((ComputationGraph) model).getUpdater().getStateViewArray();
+        stagingParams = snapshot(model.params(), stagingParams);
+        stagingUpdaterState = snapshot(updaterState, stagingUpdaterState);
+
+        final boolean delta = fullCheckpointEvery != null && baseCheckpointNum != null && stagingParams != null
+                && (c.getCheckpointNum() - baseCheckpointNum) % fullCheckpointEvery != 0
+                && compatible(stagingParams, baseParams) && compatible(stagingUpdaterState, baseUpdaterState);
+        if(delta){
+            c.setBaseCheckpointNum(baseCheckpointNum);
+        }
         setFileName(c);
 
-        ModelSerializer.writeModel(model, new File(rootDir, c.getFilename()), true);
+        final INDArray params = stagingParams;
+        final INDArray updater = stagingUpdaterState;
+        if(isBaseCheckpoint(delta)){
+            //Full checkpoint: staging arrays become the base for next delta checkpoints
+            baseParams = params;
+            baseUpdaterState = updater;
+            baseCheckpointNum = c.getCheckpointNum();
+            stagingParams = null;
+            stagingUpdaterState = null;
+        }
+        final INDArray base = baseParams;
+        final INDArray baseUpdater = baseUpdaterState;
+        final boolean isBase = isBaseCheckpoint(delta);
+
+        Callable<Void> task = new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                File f = new File(rootDir, c.getFilename());
+                try {
+                    if (delta) {
+                        writeDelta(f, json, c.getBaseCheckpointNum(), params, base, updater, baseUpdater);
+                    } else {
+                        ModelSerializer.writeModel(json, params, updater, f);
+                    }
+                } catch (Exception e){
+                    //Checkpoint isn't recorded: remove partially written file, and don't use it as base for deltas
+                    f.delete();
+                    if(isBase){
+                        baseCheckpointNum = null;
+                        baseParams = null;
+                        baseUpdaterState = null;
+                    }
+                    throw e;
+                }
+                checkpointSaved(c);
+                return null;
+            }
+        };
+
+        if(saveAsync){
+            if(writer == null){
+                writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "CheckpointListener writer");
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+            }
+            pendingCheckpoint = writer.submit(task);
+        } else {
+            task.call();
+        }
+    }
+
+    private boolean isBaseCheckpoint(boolean delta){
+        return !delta && fullCheckpointEvery != null;
+    }
+
+    private boolean savePending(){
+        return pendingCheckpoint != null && !pendingCheckpoint.isDone();
+    }
+
+    /**
+     * Wait until checkpoint being written asynchronously (if any) is saved. Exception thrown while writing the checkpoint
+     * is rethrown here.
+     */
+    public void waitForPendingCheckpoint() {
+        if(pendingCheckpoint == null){
+            return;
+        }
+
+        try {
+            pendingCheckpoint.get();
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e){
+            throw new RuntimeException("Error saving checkpoint", e.getCause());
+        } finally {
+            pendingCheckpoint = null;
+        }
+    }
+
+    private static INDArray snapshot(INDArray source, INDArray staging){
+        if(source == null){
+            return null;
+        }
+
+        try(MemoryWorkspace ws = Nd4j.getWorkspaceManager().scopeOutOfWorkspaces()){
+            if(staging == null || staging.dataType() != source.dataType() || !Arrays.equals(staging.shape(), source.shape())){
+                return source.dup(source.ordering());
+            }
+            staging.assign(source);
+            return staging;
+        }
+    }
+
+    private static boolean compatible(INDArray current, INDArray base){
+        if(current == null || base == null){
+            return current == base;
+        }
+        return (current.dataType() == DataType.FLOAT || current.dataType() == DataType.DOUBLE)
+                && current.dataType() == base.dataType() && current.length() == base.length();
+    }
 
+    private void checkpointSaved(Checkpoint c){
         String s = c.toFileString();
         write(s + "\n", checkpointRecordFile);
+        this.lastCheckpoint = c;
 
         if(logSaving){
             log.info("Model checkpoint saved: epoch {}, iteration {}, path: {}", c.getEpoch(), c.getIteration(),
                     new File(rootDir, c.getFilename()).getPath() );
         }
-        this.lastCheckpoint = c;
-
 
         //Finally: determine if we should delete some old models...
         if(keepMode == null || keepMode == KeepMode.ALL){
             return;
-        } else if(keepMode == KeepMode.LAST){
-            List<Checkpoint> checkpoints = availableCheckpoints();
-            Iterator<Checkpoint> iter = checkpoints.iterator();
-            while(checkpoints.size() > keepLast){
-                Checkpoint toRemove = iter.next();
-                File f = getFileForCheckpoint(toRemove);
-                f.delete();
-                iter.remove();
+        }
+
+        List<Checkpoint> checkpoints = availableCheckpoints();
+        List<Checkpoint> toRemove = new ArrayList<>();
+        if(keepMode == KeepMode.LAST){
+            for(int i = 0; i < checkpoints.size() - keepLast; i++){
+                toRemove.add(checkpoints.get(i));
             }
         } else {
             //Keep mode: last N and every M
-            for(Checkpoint cp : availableCheckpoints()){
+            for(Checkpoint cp : checkpoints){
                 if(cp.getCheckpointNum() > 0 && (cp.getCheckpointNum()+1) % keepEvery == 0){
                     //One of the "every M to keep" models
                     continue;
-                } else if(cp.getCheckpointNum() > lastCheckpointNum - keepLast ){        //Example: latest is 5, keep last 2 -> keep checkpoints 4 and 5
+                } else if(cp.getCheckpointNum() > c.getCheckpointNum() - keepLast ){        //Example: latest is 5, keep last 2 -> keep checkpoints 4 and 5
                     //One of last N to keep
                     continue;
                 }
                 //Otherwise: delete file
-                File f = getFileForCheckpoint(cp);
-                f.delete();
+                toRemove.add(cp);
+            }
+        }
+
+        //Full checkpoints are kept as long as retained delta checkpoints depend on them
+        Set<Integer> requiredBases = new HashSet<>();
+        for(Checkpoint cp : checkpoints){
+            if(cp.isDelta() && !toRemove.contains(cp)){
+                requiredBases.add(cp.getBaseCheckpointNum());
+            }
+        }
+
+        for(Checkpoint cp : toRemove){
+            if(requiredBases.contains(cp.getCheckpointNum())){
+                continue;
             }
+            File f = getFileForCheckpoint(cp);
+            f.delete();
+        }
+    }
+
+    private static void writeDelta(File f, String json, int baseNum, INDArray params, INDArray baseParams,
+                                   INDArray updaterState, INDArray baseUpdaterState) throws IOException {
+        try(ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(f)))){
+            zip.putNextEntry(new ZipEntry(ModelSerializer.CONFIGURATION_JSON));
+            zip.write(json.getBytes(StandardCharsets.UTF_8));
+
+            zip.putNextEntry(new ZipEntry(DELTA_BASE));
+            zip.write(String.valueOf(baseNum).getBytes(StandardCharsets.UTF_8));
+
+            DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(zip));
+            zip.putNextEntry(new ZipEntry(COEFFICIENTS_DELTA_BIN));
+            writeXor(params, baseParams, dos);
+            dos.flush();
+
+            if(updaterState != null && updaterState.length() > 0){
+                zip.putNextEntry(new ZipEntry(UPDATER_DELTA_BIN));
+                writeXor(updaterState, baseUpdaterState, dos);
+                dos.flush();
+            }
+        }
+    }
+
+    /**
+     * Writes bitwise XOR of current and base values, chunk by chunk
+     */
+    private static void writeXor(INDArray current, INDArray base, DataOutputStream dos) throws IOException {
+        long length = current.length();
+        dos.writeUTF(current.dataType().name());
+        dos.writeLong(length);
+
+        INDArray c = current.reshape(current.ordering(), length);
+        INDArray b = base.reshape(base.ordering(), length);
+        for(long e = 0; e < length; e += DELTA_CHUNK_SIZE){
+            long end = Math.min(length, e + DELTA_CHUNK_SIZE);
+            if(current.dataType() == DataType.DOUBLE){
+                double[] cv = c.get(NDArrayIndex.interval(e, end)).toDoubleVector();
+                double[] bv = b.get(NDArrayIndex.interval(e, end)).toDoubleVector();
+                for(int i = 0; i < cv.length; i++){
+                    dos.writeLong(Double.doubleToRawLongBits(cv[i]) ^ Double.doubleToRawLongBits(bv[i]));
+                }
+            } else {
+                float[] cv = c.get(NDArrayIndex.interval(e, end)).toFloatVector();
+                float[] bv = b.get(NDArrayIndex.interval(e, end)).toFloatVector();
+                for(int i = 0; i < cv.length; i++){
+                    dos.writeInt(Float.floatToRawIntBits(cv[i]) ^ Float.floatToRawIntBits(bv[i]));
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies XOR delta to the base array, in place
+     */
+    private static void applyXor(INDArray base, DataInputStream dis) throws IOException {
+        String type = dis.readUTF();
+        long length = dis.readLong();
+        Preconditions.checkState(type.equals(base.dataType().name()) && length == base.length(),
+                "Delta checkpoint doesn't match base checkpoint: got %s values of type %s, base array has %s values of type %s",
+                length, type, base.length(), base.dataType());
+
+        INDArray b = base.reshape(base.ordering(), length);
+        for(long e = 0; e < length; e += DELTA_CHUNK_SIZE){
+            long end = Math.min(length, e + DELTA_CHUNK_SIZE);
+            INDArray chunk = b.get(NDArrayIndex.interval(e, end));
+            if(base.dataType() == DataType.DOUBLE){
+                double[] bv = chunk.toDoubleVector();
+                for(int i = 0; i < bv.length; i++){
+                    bv[i] = Double.longBitsToDouble(Double.doubleToRawLongBits(bv[i]) ^ dis.readLong());
+                }
+                chunk.assign(Nd4j.createFromArray(bv));
+            } else {
+                float[] bv = chunk.toFloatVector();
+                for(int i = 0; i < bv.length; i++){
+                    bv[i] = Float.intBitsToFloat(Float.floatToRawIntBits(bv[i]) ^ dis.readInt());
+                }
+                chunk.assign(Nd4j.createFromArray(bv));
+            }
+        }
+    }
+
+    private static String readEntry(ZipFile zipFile, String name) throws IOException {
+        ZipEntry entry = zipFile.getEntry(name);
+        Preconditions.checkState(entry != null, "Delta checkpoint %s doesn't contain entry %s", zipFile.getName(), name);
+        try(InputStream is = zipFile.getInputStream(entry)){
+            return IOUtils.toString(is, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static boolean applyXor(ZipFile zipFile, String name, INDArray base) throws IOException {
+        ZipEntry entry = zipFile.getEntry(name);
+        if(entry == null || base == null){
+            return false;
+        }
+        try(DataInputStream dis = new DataInputStream(new BufferedInputStream(zipFile.getInputStream(entry)))){
+            applyXor(base, dis);
+        }
+        return true;
+    }
+
+    private static boolean isDeltaFile(File f){
+        return f.getName().endsWith(DELTA_SUFFIX + ".zip");
+    }
+
+    private static MultiLayerNetwork restoreDeltaMLN(File rootDir, File f) throws IOException {
+        try(ZipFile zipFile = new ZipFile(f)){
+            int baseNum = Integer.parseInt(readEntry(zipFile, DELTA_BASE).trim());
+            MultiLayerNetwork base = ModelSerializer.restoreMultiLayerNetwork(getFileForCheckpoint(rootDir, baseNum), true);
+
+            INDArray params = base.params();
+            INDArray updaterState = base.getUpdater().getStateViewArray();
+            applyXor(zipFile, COEFFICIENTS_DELTA_BIN, params);
+            boolean gotUpdaterState = applyXor(zipFile, UPDATER_DELTA_BIN, updaterState);
+
+            MultiLayerNetwork net = new MultiLayerNetwork(MultiLayerConfiguration.fromJson(readEntry(zipFile, ModelSerializer.CONFIGURATION_JSON)));
+            net.init(params, false);
+            if(gotUpdaterState){
+                net.getUpdater().setStateViewArray(net, updaterState, false);
+            }
+            return net;
+        }
+    }
+
+    private static ComputationGraph restoreDeltaCG(File rootDir, File f) throws IOException {
+        try(ZipFile zipFile = new ZipFile(f)){
+            int baseNum = Integer.parseInt(readEntry(zipFile, DELTA_BASE).trim());
+            ComputationGraph base = ModelSerializer.restoreComputationGraph(getFileForCheckpoint(rootDir, baseNum), true);
+
+            INDArray params = base.params();
+            INDArray updaterState = base.getUpdater().getStateViewArray();
+            applyXor(zipFile, COEFFICIENTS_DELTA_BIN, params);
+            boolean gotUpdaterState = applyXor(zipFile, UPDATER_DELTA_BIN, updaterState);
+
+            ComputationGraph net = new ComputationGraph(ComputationGraphConfiguration.fromJson(readEntry(zipFile, ModelSerializer.CONFIGURATION_JSON)));
+            net.init(params, false);
+            if(gotUpdaterState){
+                net.getUpdater().setStateViewArray(updaterState);
+            }
+            return net;
         }
     }
 
     private static void setFileName(Checkpoint c){
-        String filename = getFileName(c.getCheckpointNum(), c.getModelType());
+        String filename = c.isDelta() ? getDeltaFileName(c.getCheckpointNum(), c.getModelType()) : getFileName(c.getCheckpointNum(), c.getModelType());
         c.setFilename(filename);
     }
 
+    private static String getDeltaFileName(int checkpointNum, String modelType){
+        return "checkpoint_" + checkpointNum + "_" + modelType + DELTA_SUFFIX + ".zip";
+    }
+
     private static String getFileName(int checkpointNum, String modelType){
         return "checkpoint_" + checkpointNum + "_" + modelType + ".zip";
     }
@@ -420,6 +761,10 @@ public class CheckpointListener extends BaseTrainingListener implements Serializ
             if(f.exists()){
                 return f;
             }
+            f = new File(rootDir, getDeltaFileName(checkpointNum, s));
+            if(f.exists()){
+                return f;
+            }
         }
         throw new IllegalStateException("Model file for checkpoint " + checkpointNum + " does not exist");
     }
@@ -465,6 +810,9 @@ public class CheckpointListener extends BaseTrainingListener implements Serializ
     public static MultiLayerNetwork loadCheckpointMLN(File rootDir, int checkpointNum){
         File f = getFileForCheckpoint(rootDir, checkpointNum);
         try {
+            if(isDeltaFile(f)){
+                return restoreDeltaMLN(rootDir, f);
+            }
             return ModelSerializer.restoreMultiLayerNetwork(f, true);
         } catch (IOException e){
             throw new RuntimeException(e);
@@ -521,6 +869,9 @@ public class CheckpointListener extends BaseTrainingListener implements Serializ
     public static ComputationGraph loadCheckpointCG(File rootDir, int checkpointNum){
         File f = getFileForCheckpoint(rootDir, checkpointNum);
         try {
+            if(isDeltaFile(f)){
+                return restoreDeltaCG(rootDir, f);
+            }
             return ModelSerializer.restoreComputationGraph(f, true);
         } catch (IOException e){
             throw new RuntimeException(e);
@@ -552,6 +903,8 @@ public class CheckpointListener extends BaseTrainingListener implements Serializ
         private Long saveEveryAmount;
         private TimeUnit saveEveryUnit;
         private boolean saveEverySinceLast;
+        private boolean saveAsync = false;
+        private Integer fullCheckpointEvery;
 
         /**
          * @param rootDir Root directory to save models to
@@ -689,6 +1042,33 @@ public class CheckpointListener extends BaseTrainingListener implements Serializ
             return this;
         }
 
+        /**
+         * If true, model parameters and updater state are copied to staging arrays on the training thread, and checkpoint
+         * files are written on a background thread. This is disabled by default.<br>
+         * Note that staging arrays require additional memory of the size of parameters and updater state.
+         *
+         * @param saveAsync Whether checkpoints should be written asynchronously
+         */
+        public Builder saveAsync(boolean saveAsync){
+            this.saveAsync = saveAsync;
+            return this;
+        }
+
+        /**
+         * Write only every N-th checkpoint in full, and other checkpoints as deltas relative to the most recent full
+         * checkpoint. Only supported for MultiLayerNetwork and ComputationGraph with FLOAT or DOUBLE parameters.<br>
+         * Note that snapshot of the last full checkpoint is kept in memory.
+         *
+         * @param n Every N-th checkpoint is written in full. Must be > 1
+         */
+        public Builder deltaCheckpoints(int n){
+            if(n <= 1){
+                throw new IllegalArgumentException("Full checkpoint frequency should be > 1 (got: " + n + ")");
+            }
+            this.fullCheckpointEvery = n;
+            return this;
+        }
+
         public CheckpointListener build(){
             if(saveEveryNEpochs == null && saveEveryAmount == null && saveEveryNIterations == null){
                 throw new IllegalStateException("Cannot construct listener: no models will be saved (must use at least" +
@@ -41,10 +41,13 @@ import org.nd4j.linalg.util.AtomicThrowable;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -53,6 +56,15 @@ import java.util.concurrent.locks.ReentrantLock;
 /**
  * This GradientsAccumulator is suited for CUDA backend.
  *
+ * By default, encoding of updates happens on training thread, and all workers are synchronized before updates are applied.
+ * If encoding pipeline is enabled (see {@link Builder#encodingPipelineDepth(int)}), each worker gets dedicated encoding thread:
+ * storeUpdate() only copies gradients into one of pre-allocated staging buffers, and threshold encoding, residual post-processing
+ * and transmission happen in background, overlapping with next iteration. Encoded updates are applied as soon as they arrive,
+ * so updates might be applied with delay of up to pipelineDepth iterations. If encoding thread falls behind, storeUpdate() blocks
+ * till staging buffer is released. Once training round is over, {@link #flushPipeline()} delivers updates still in flight, and
+ * {@link #applyPendingUpdates(StepFunction, INDArray)} lets each worker apply them before {@link #reset()}.
+ * Encoding threads (and their residuals and threshold state) survive reset(), and are stopped via {@link #shutdownPipeline()}.
+ *
  * @author raver119@gmail.com
  */
 @Slf4j
@@ -73,6 +85,7 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
     protected int queueSize = 5;
     protected Double boundary = 1.0;
     protected boolean encodingDebugMode;
+    protected int pipelineDepth = 0;
 
     protected IndexedTail externalSource;
 
@@ -92,6 +105,9 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
 
     protected ThreadLocal<AtomicLong> updatesApplied = new ThreadLocal<>();
 
+    // encoding stages are used only if pipelineDepth > 0. they're bound to worker index, not to training thread
+    protected final Map<Integer, EncodingStage> encodingStages = new ConcurrentHashMap<>();
+
     protected AtomicBoolean externalUpdatesAvailable = new AtomicBoolean(false);
 
     protected WorkspaceConfiguration appliedConfiguration = WorkspaceConfiguration.builder().minSize(5 * 1024 * 1024L)
@@ -108,7 +124,24 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
 
     protected EncodedGradientsAccumulator(int parties, @NonNull MessageHandler handler, long initialMemory,
                     int queueSize, Double boundary, boolean encodingDebugMode) {
+        this(parties, handler, initialMemory, queueSize, boundary, encodingDebugMode, 0);
+    }
+
+    protected EncodedGradientsAccumulator(int parties, @NonNull MessageHandler handler, long initialMemory,
+                    int queueSize, Double boundary, boolean encodingDebugMode, int pipelineDepth) {
+        if (pipelineDepth < 0)
+            throw new DL4JInvalidConfigException("Encoding pipeline depth can't be negative");
+
+        /*
+            Without barrier after broadcast, each worker can receive up to (pipelineDepth + 1) messages from every party
+            between two applyUpdate() calls. If queue can't hold them all, encoding threads would block each other forever.
+         */
+        if (pipelineDepth > 0 && queueSize < parties * (pipelineDepth + 1))
+            throw new DL4JInvalidConfigException("Queue size [" + queueSize + "] is too small for encoding pipeline of depth ["
+                            + pipelineDepth + "] with [" + parties + "] parties, at least [" + parties * (pipelineDepth + 1) + "] is required");
+
         this.parties = parties;
+        this.pipelineDepth = pipelineDepth;
         this.handler = handler;
         this.initialMemory = initialMemory;
         this.queueSize = queueSize;
@@ -136,7 +169,7 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
         int curDev = Nd4j.getAffinityManager().getDeviceForCurrentThread();
 
         for (int i = 0; i < parties; i++) {
-            messages.add(new LinkedBlockingQueue<INDArray>(queueSize));
+            messages.add(new RingBlockingQueue<INDArray>(queueSize));
 
             // we don't want device index to step out of boundaries here
             int cDevice = numDevices > 1 ? i % numDevices : 0;
@@ -178,6 +211,26 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
         return getOptimalBufferSize(model.params().length(), numWorkers, queueSize);
     }
 
+    /**
+     * This method returns minimal queueSize that can be used with encoding pipeline of given depth
+     *
+     * @param numWorkers
+     * @param pipelineDepth
+     * @return
+     */
+    public static int getMinimalQueueSize(int numWorkers, int pipelineDepth) {
+        return numWorkers * (pipelineDepth + 1);
+    }
+
+    /**
+     * This method returns depth of encoding pipeline, 0 if updates are encoded on training threads
+     *
+     * @return
+     */
+    public int getPipelineDepth() {
+        return pipelineDepth;
+    }
+
     @Override
     public void fallbackToSingleConsumerMode(boolean reallyFallback) {
         if (externalSource != null && externalSource instanceof Registerable)
@@ -276,6 +329,35 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
 
     }
 
+    /**
+     * This method decodes all updates delivered to the current worker into given array
+     *
+     * @param updates array to decode updates into, it's zeroed first
+     * @return number of decoded updates
+     */
+    protected int decodeLocalUpdates(INDArray updates) {
+        // nullify given updates first
+        Nd4j.getMemoryManager().memset(updates);
+        //updates.assign(0.0);
+
+        int cnt = 0;
+        while (!messages.get(index.get()).isEmpty()) {
+            INDArray compressed = messages.get(index.get()).poll();
+
+            int encoding = compressed.data().getInt(3);
+            if (encoding == ThresholdCompression.FLEXIBLE_ENCODING)
+                Nd4j.getExecutioner().thresholdDecode(compressed, updates);
+            else if (encoding == ThresholdCompression.BITMAP_ENCODING)
+                Nd4j.getExecutioner().bitmapDecode(compressed, updates);
+            else
+                throw new DL4JInvalidConfigException("Unknown compression header received: " + encoding);
+
+            cnt++;
+        }
+
+        return cnt;
+    }
+
     /**
      * This method applies accumulated updates via given StepFunction
      *
@@ -287,24 +369,7 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
         if (updatesApplied.get() == null)
             updatesApplied.set(new AtomicLong(0));
         try {
-            // nullify given updates first
-            Nd4j.getMemoryManager().memset(updates);
-            //updates.assign(0.0);
-
-            int cnt = 0;
-            while (!messages.get(index.get()).isEmpty()) {
-                INDArray compressed = messages.get(index.get()).poll();
-
-                int encoding = compressed.data().getInt(3);
-                if (encoding == ThresholdCompression.FLEXIBLE_ENCODING)
-                    Nd4j.getExecutioner().thresholdDecode(compressed, updates);
-                else if (encoding == ThresholdCompression.BITMAP_ENCODING)
-                    Nd4j.getExecutioner().bitmapDecode(compressed, updates);
-                else
-                    throw new DL4JInvalidConfigException("Unknown compression header received: " + encoding);
-
-                cnt++;
-            }
+            int cnt = decodeLocalUpdates(updates);
 
             if (cnt > 0 && isDebug)
                 log.info("Local updates to be applied: {}", cnt);
@@ -352,24 +417,7 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
     @Override
     public void applyUpdate(StepFunction function, INDArray params, INDArray updates, double alpha) {
         try {
-            // nullify given updates first
-            Nd4j.getMemoryManager().memset(updates);
-            //updates.assign(0.0);
-
-            int cnt = 0;
-            while (!messages.get(index.get()).isEmpty()) {
-                INDArray compressed = messages.get(index.get()).poll();
-
-                int encoding = compressed.data().getInt(3);
-                if (encoding == ThresholdCompression.FLEXIBLE_ENCODING)
-                    Nd4j.getExecutioner().thresholdDecode(compressed, updates);
-                else if (encoding == ThresholdCompression.BITMAP_ENCODING)
-                    Nd4j.getExecutioner().bitmapDecode(compressed, updates);
-                else
-                    throw new DL4JInvalidConfigException("Unknown compression header received: " + encoding);
-
-                cnt++;
-            }
+            int cnt = decodeLocalUpdates(updates);
 
             if (cnt > 0 && isDebug)
                 log.info("Local updates to be applied: {}", cnt);
@@ -439,6 +487,11 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
      */
     @Override
     public void storeUpdate(INDArray array, int iterationNumber, int epochNumber) {
+        if (pipelineDepth > 0) {
+            storeUpdatePipelined(array, iterationNumber, epochNumber);
+            return;
+        }
+
         try {
             if (accumulator.get() == null) {
                 // we don't want accumulator to be attached to workspaces
@@ -475,6 +528,102 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
         }
     }
 
+    /**
+     * This method hands updates over to encoding thread of the current worker. It only blocks if all staging buffers are still in use.
+     *
+     * @param array
+     */
+    protected void storeUpdatePipelined(INDArray array, int iterationNumber, int epochNumber) {
+        try {
+            // stage is bound to worker index, so the same encoding thread serves this worker after reset()
+            touch();
+            EncodingStage stage = encodingStages.get(index.get());
+            if (stage == null) {
+                stage = new EncodingStage(Nd4j.getAffinityManager().getDeviceForCurrentThread(), pipelineDepth);
+                stage.start();
+
+                encodingStages.put(index.get(), stage);
+            }
+
+            INDArray buffer = stage.acquireBuffer(array);
+            buffer.assign(array);
+
+            // encoding thread uses its own stream, so we must be sure copy is finished here
+            Nd4j.getExecutioner().commit();
+
+            // block until ParallelWrapper sends us message about number of threads in this cycle
+            if (!bypassMode.get())
+                while (!registered.get()) {
+                    ThreadUtils.uncheckedSleep(1);
+                    if (throwable.isTriggered())
+                        throw new RuntimeException(throwable.get());
+                }
+
+            stage.submit(buffer, iterationNumber, epochNumber);
+        } catch (Exception e) {
+            throwable.setIfFirst(e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * This method blocks until all updates handed over to encoding threads are encoded and sent.
+     * No-op if encoding pipeline isn't used.
+     */
+    public void flushPipeline() {
+        for (EncodingStage stage : encodingStages.values())
+            stage.flush();
+    }
+
+    /**
+     * This method applies updates already delivered to the current worker, without synchronization with other workers.
+     * It's meant to be called by each worker after {@link #flushPipeline()}, once training round is over: otherwise updates
+     * that were still in flight after the last iteration would be discarded by {@link #reset()}.
+     *
+     * @param function StepFunction used by the worker model
+     * @param params parameters of the worker model
+     * @return number of applied updates
+     */
+    public int applyPendingUpdates(@NonNull StepFunction function, @NonNull INDArray params) {
+        if (index.get() == null)
+            return 0;
+
+        try {
+            INDArray updates;
+            try (MemoryWorkspace workspace = Nd4j.getMemoryManager().scopeOutOfWorkspaces()) {
+                updates = Nd4j.createUninitialized(params.shape(), params.ordering());
+            }
+
+            int cnt = decodeLocalUpdates(updates);
+            if (cnt > 0) {
+                function.step(params, updates);
+
+                if (updatesApplied.get() == null)
+                    updatesApplied.set(new AtomicLong(0));
+                updatesApplied.get().addAndGet(cnt);
+            }
+
+            return cnt;
+        } catch (Exception e) {
+            throwable.setIfFirst(e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * This method stops encoding threads, pending updates are delivered first. No-op if encoding pipeline isn't used.
+     * PLEASE NOTE: encoding threads will be started again on next storeUpdate() call, but with fresh residuals and threshold state
+     */
+    public void shutdownPipeline() {
+        for (EncodingStage stage : encodingStages.values()) {
+            if (!throwable.isTriggered())
+                stage.flush();
+
+            stage.shutdown();
+        }
+        encodingStages.clear();
+    }
+
     /**
      * This method accepts updates suitable for StepFunction and puts them to the queue, which is used in backpropagation loop
      * <p>
@@ -526,6 +675,10 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
      */
     @Override
     public void reset() {
+        // pending updates are delivered first. encoding threads are kept alive, since EncodingHandler keeps threshold state per thread
+        if (!throwable.isTriggered())
+            flushPipeline();
+
         // just replace accumulator, gc will do the rest
         accumulator = new ThreadLocal<>();
 
@@ -535,10 +688,15 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
         // reset indexes too
         index = new ThreadLocal<>();
 
-        // throw away message queues
+        // throw away message queues. workers are expected to call applyPendingUpdates() before reset, so normally they're empty here
+        int discarded = 0;
         for (int i = 0; i < parties; i++) {
+            discarded += messages.get(i).size();
             messages.get(i).clear();
         }
+
+        if (discarded > 0)
+            log.warn("Discarding {} updates that weren't applied by workers", discarded);
     }
 
     @Override
@@ -555,6 +713,7 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
         protected MessageHandler handler;
         protected Double boundary = null;
         protected boolean encodingDebugMode;
+        protected int pipelineDepth = 0;
 
         /**
          * This
@@ -635,15 +794,152 @@ public class EncodedGradientsAccumulator implements GradientsAccumulator, Regist
             return this;
         }
 
+        /**
+         * This method enables encoding pipeline: updates encoding and transmission will be done by dedicated thread per worker,
+         * in parallel with next iterations. Depth defines how many iterations encoding thread can fall behind training thread.
+         *
+         * PLEASE NOTE: queueSize should be at least parties * (depth + 1), see {@link EncodedGradientsAccumulator#getMinimalQueueSize(int, int)}
+         *
+         * Default value: 0 (encoding on training thread, no pipeline)
+         * @param depth
+         * @return
+         */
+        public Builder encodingPipelineDepth(int depth) {
+            if (depth < 0)
+                throw new DL4JInvalidConfigException("Encoding pipeline depth can't be negative");
+
+            this.pipelineDepth = depth;
+            return this;
+        }
+
         public EncodedGradientsAccumulator build() {
             if (handler == null) {
                 Preconditions.checkNotNull(thresholdAlgorithm, "Both threshold algorithm and handler are null - one or the other must be set");
                 handler = new EncodingHandler(thresholdAlgorithm, residualPostProcessor, boundary, encodingDebugMode);
             }
 
-            EncodedGradientsAccumulator accumulator = new EncodedGradientsAccumulator(parties, handler, initialMemory, queueSize, boundary, encodingDebugMode);
+            EncodedGradientsAccumulator accumulator = new EncodedGradientsAccumulator(parties, handler, initialMemory, queueSize, boundary, encodingDebugMode, pipelineDepth);
 
             return accumulator;
         }
     }
+
+    protected static class StagedUpdate {
+        protected final INDArray buffer;
+        protected final int iteration;
+        protected final int epoch;
+
+        protected StagedUpdate(INDArray buffer, int iteration, int epoch) {
+            this.buffer = buffer;
+            this.iteration = iteration;
+            this.epoch = epoch;
+        }
+    }
+
+    /**
+     * Encoding thread of a single worker. It owns residual array of that worker, and pushes every staged update through
+     * MessageHandler: residual accumulation, threshold encoding, residual post-processing and transmission.
+     *
+     * Since EncodingHandler keeps threshold state per thread, each worker index always uses the same encoding thread, across reset() calls too.
+     */
+    protected class EncodingStage extends Thread {
+        protected final int deviceId;
+        protected final int depth;
+        protected final BlockingQueue<INDArray> freeBuffers;
+        protected final BlockingQueue<StagedUpdate> pending;
+        protected final AtomicInteger inFlight = new AtomicInteger(0);
+        protected final AtomicInteger allocated = new AtomicInteger(0);
+        protected volatile boolean running = true;
+        protected INDArray residual;
+
+        protected EncodingStage(int deviceId, int depth) {
+            this.deviceId = deviceId;
+            this.depth = depth;
+            this.freeBuffers = new ArrayBlockingQueue<>(depth);
+            this.pending = new ArrayBlockingQueue<>(depth);
+
+            setName("EncodingStage thread " + getId());
+            setDaemon(true);
+        }
+
+        /**
+         * This method returns free staging buffer, blocking if all of them are still waiting for encoding
+         */
+        protected INDArray acquireBuffer(INDArray template) throws InterruptedException {
+            INDArray buffer = freeBuffers.poll();
+            if (buffer != null)
+                return buffer;
+
+            if (allocated.get() < depth) {
+                allocated.incrementAndGet();
+                // staging buffers are shared with encoding thread, so they can't be attached to workspaces
+                try (MemoryWorkspace workspace = Nd4j.getMemoryManager().scopeOutOfWorkspaces()) {
+                    return Nd4j.create(template.shape(), template.ordering());
+                }
+            }
+
+            // backpressure: encoding thread is pipelineDepth iterations behind
+            while ((buffer = freeBuffers.poll(1, TimeUnit.MILLISECONDS)) == null) {
+                if (throwable.isTriggered())
+                    throw new RuntimeException(throwable.get());
+            }
+            return buffer;
+        }
+
+        protected void submit(INDArray buffer, int iteration, int epoch) throws InterruptedException {
+            inFlight.incrementAndGet();
+            pending.put(new StagedUpdate(buffer, iteration, epoch));
+        }
+
+        protected void flush() {
+            while (inFlight.get() > 0) {
+                ThreadUtils.uncheckedSleep(1);
+                if (throwable.isTriggered())
+                    throw new RuntimeException(throwable.get());
+            }
+        }
+
+        protected void shutdown() {
+            running = false;
+            interrupt();
+        }
+
+        @Override
+        public void run() {
+            Nd4j.getAffinityManager().unsafeSetDevice(deviceId);
+
+            while (running) {
+                StagedUpdate update;
+                try {
+                    update = pending.poll(100, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    // that's shutdown
+                    break;
+                }
+
+                if (update == null)
+                    continue;
+
+                try {
+                    if (residual == null) {
+                        try (MemoryWorkspace workspace = Nd4j.getMemoryManager().scopeOutOfWorkspaces()) {
+                            residual = Nd4j.create(update.buffer.shape(), update.buffer.ordering());
+                        }
+                    }
+
+                    residual.addi(update.buffer);
+
+                    // propagate changes & modify residual
+                    handler.broadcastUpdates(residual, update.iteration, update.epoch);
+                    Nd4j.getExecutioner().commit();
+                } catch (Exception e) {
+                    log.error("Encoding thread failed", e);
+                    throwable.setIfFirst(e);
+                } finally {
+                    freeBuffers.offer(update.buffer);
+                    inFlight.decrementAndGet();
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,272 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.optimize.solvers.accumulation;
+
+import lombok.NonNull;
+
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This BlockingQueue implementation is lock-free bounded multi-producer/multi-consumer queue, backed by preallocated ring.
+ *
+ * Basic idea: producers claim sequences via CAS and publish them in order, consumers claim sequences the same way and
+ * release consumed slots in order. Slot is cleared as soon as it's consumed, so ring never holds references to consumed
+ * elements, and slot is reused by producers only once it's released. Producers back off (yield, then park) while ring is full.
+ *
+ * PLEASE NOTE: every element is delivered to exactly one consumer. If all consumers should see all elements, use FancyBlockingQueue.
+ * PLEASE NOTE: clear() should not be called concurrently with consumers or producers
+ */
+public class RingBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+    // number of busy spins before we start parking thread
+    protected static final int SPIN_TRIES = 100;
+    protected static final long PARK_NANOS = 50000L;
+
+    protected final int capacity;
+    protected final AtomicReferenceArray<E> buffer;
+
+    // next sequence to be claimed by producers
+    protected final AtomicLong claimSequence = new AtomicLong(0);
+
+    // all sequences below this one are published, and available to consumers
+    protected final AtomicLong publishedSequence = new AtomicLong(0);
+
+    // next sequence to be claimed by consumers
+    protected final AtomicLong consumeSequence = new AtomicLong(0);
+
+    // all sequences below this one are consumed, and their slots can be reused by producers
+    protected final AtomicLong releasedSequence = new AtomicLong(0);
+
+    public RingBlockingQueue(int capacity) {
+        if (capacity < 1)
+            throw new IllegalStateException("Capacity should be positive value");
+
+        this.capacity = capacity;
+        this.buffer = new AtomicReferenceArray<>(capacity);
+    }
+
+    protected static int backoff(int tries) {
+        if (tries < SPIN_TRIES)
+            Thread.yield();
+        else
+            LockSupport.parkNanos(PARK_NANOS);
+
+        return tries + 1;
+    }
+
+    /**
+     * This method advances given sequence from sequence to sequence + 1, once all previous sequences were advanced
+     */
+    protected static void advanceInOrder(AtomicLong target, long sequence) {
+        int tries = 0;
+        while (target.get() != sequence)
+            tries = backoff(tries);
+
+        target.set(sequence + 1);
+    }
+
+    /**
+     * This method tries to claim next sequence for producer
+     *
+     * @return claimed sequence, or -1 if ring is full
+     */
+    protected long tryClaim() {
+        while (true) {
+            long sequence = claimSequence.get();
+            if (sequence - releasedSequence.get() >= capacity)
+                return -1;
+
+            if (claimSequence.compareAndSet(sequence, sequence + 1))
+                return sequence;
+        }
+    }
+
+    protected void publish(long sequence, E element) {
+        buffer.set((int) (sequence % capacity), element);
+
+        // sequences are published strictly in order, so consumers never see gaps
+        advanceInOrder(publishedSequence, sequence);
+    }
+
+    @Override
+    public boolean offer(@NonNull E element) {
+        long sequence = tryClaim();
+        if (sequence < 0)
+            return false;
+
+        publish(sequence, element);
+        return true;
+    }
+
+    @Override
+    public boolean offer(@NonNull E element, long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        int tries = 0;
+        long sequence;
+        while ((sequence = tryClaim()) < 0) {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+
+            if (System.nanoTime() - deadline >= 0)
+                return false;
+
+            tries = backoff(tries);
+        }
+
+        publish(sequence, element);
+        return true;
+    }
+
+    @Override
+    public void put(@NonNull E element) throws InterruptedException {
+        int tries = 0;
+        long sequence;
+        while ((sequence = tryClaim()) < 0) {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+
+            tries = backoff(tries);
+        }
+
+        publish(sequence, element);
+    }
+
+    @Override
+    public E poll() {
+        while (true) {
+            long position = consumeSequence.get();
+            if (position >= publishedSequence.get())
+                return null;
+
+            if (consumeSequence.compareAndSet(position, position + 1)) {
+                // slot can't be overwritten before we release it
+                E element = buffer.getAndSet((int) (position % capacity), null);
+                advanceInOrder(releasedSequence, position);
+                return element;
+            }
+        }
+    }
+
+    @Override
+    public E poll(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        int tries = 0;
+        E element;
+        while ((element = poll()) == null) {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+
+            if (System.nanoTime() - deadline >= 0)
+                return null;
+
+            tries = backoff(tries);
+        }
+
+        return element;
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        int tries = 0;
+        E element;
+        while ((element = poll()) == null) {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+
+            tries = backoff(tries);
+        }
+
+        return element;
+    }
+
+    /**
+     * PLEASE NOTE: this method may return null if head element is being consumed concurrently
+     */
+    @Override
+    public E peek() {
+        long position = consumeSequence.get();
+        if (position >= publishedSequence.get())
+            return null;
+
+        return buffer.get((int) (position % capacity));
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.max(0, publishedSequence.get() - consumeSequence.get());
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return consumeSequence.get() >= publishedSequence.get();
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return (int) Math.max(0, capacity - (claimSequence.get() - releasedSequence.get()));
+    }
+
+    @Override
+    public void clear() {
+        long position = publishedSequence.get();
+        consumeSequence.set(position);
+        releasedSequence.set(position);
+
+        for (int e = 0; e < capacity; e++)
+            buffer.set(e, null);
+    }
+
+    @Override
+    public int drainTo(@NonNull Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(@NonNull Collection<? super E> c, int maxElements) {
+        int drained = 0;
+        E element;
+        while (drained < maxElements && (element = poll()) != null) {
+            c.add(element);
+            drained++;
+        }
+        return drained;
+    }
+
+    /**
+     * This method returns snapshot of elements not yet consumed
+     *
+     * @return
+     */
+    @Override
+    public Iterator<E> iterator() {
+        long position = consumeSequence.get();
+        long published = publishedSequence.get();
+
+        List<E> snapshot = new ArrayList<>();
+        for (long e = position; e < published; e++) {
+            E element = buffer.get((int) (e % capacity));
+            if (element != null)
+                snapshot.add(element);
+        }
+
+        return Collections.unmodifiableList(snapshot).iterator();
+    }
+}
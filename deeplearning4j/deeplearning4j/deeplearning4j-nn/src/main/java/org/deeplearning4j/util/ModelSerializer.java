@@ -21,6 +21,9 @@ import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.bytedeco.javacpp.BytePointer;
 import org.deeplearning4j.config.DL4JSystemProperties;
 import org.deeplearning4j.nn.api.Layer;
 import org.deeplearning4j.nn.api.Model;
@@ -31,7 +34,12 @@ import org.deeplearning4j.nn.graph.ComputationGraph;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.deeplearning4j.nn.updater.graph.ComputationGraphUpdater;
 import org.nd4j.base.Preconditions;
+import org.nd4j.linalg.api.buffer.BaseDataBuffer;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.concurrency.AffinityManager;
 import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.shape.Shape;
 import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
 import org.nd4j.linalg.dataset.api.preprocessor.DataNormalization;
 import org.nd4j.linalg.dataset.api.preprocessor.Normalizer;
@@ -39,11 +47,22 @@ import org.nd4j.linalg.dataset.api.preprocessor.serializer.NormalizerSerializer;
 import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.heartbeat.reports.Task;
 import org.nd4j.linalg.primitives.Pair;
+import org.nd4j.linalg.primitives.Triple;
 
 import java.io.*;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
@@ -63,6 +82,9 @@ public class ModelSerializer {
     public static final String NO_PARAMS_MARKER = "noParams.marker";
     public static final String PREPROCESSOR_BIN = "preprocessor.bin";
 
+    // number of array elements copied at once when restoring coefficients
+    private static final int RESTORE_CHUNK_SIZE = 1024 * 1024;
+
     private ModelSerializer() {}
 
     /**
@@ -87,8 +109,23 @@ public class ModelSerializer {
      * @throws IOException
      */
     public static void writeModel(@NonNull Model model, @NonNull File file, boolean saveUpdater,DataNormalization dataNormalization) throws IOException {
+        writeModel(model, file, saveUpdater, dataNormalization, true);
+    }
+
+    /**
+     * Write a model to a file
+     * @param model the model to write
+     * @param file the file to write to
+     * @param saveUpdater whether to save the updater or not
+     * @param dataNormalization the normalizer to save (optional)
+     * @param compressParams whether to compress parameters and updater state. Uncompressed entries are memory-mapped on restore,
+     *                       instead of being inflated
+     * @throws IOException
+     */
+    public static void writeModel(@NonNull Model model, @NonNull File file, boolean saveUpdater, DataNormalization dataNormalization,
+                                  boolean compressParams) throws IOException {
         try (BufferedOutputStream stream = new BufferedOutputStream(new FileOutputStream(file))) {
-            writeModel(model, stream, saveUpdater,dataNormalization);
+            writeModel(model, stream, saveUpdater, dataNormalization, compressParams);
         }
     }
 
@@ -132,8 +169,21 @@ public class ModelSerializer {
      */
     public static void writeModel(@NonNull Model model, @NonNull OutputStream stream, boolean saveUpdater,DataNormalization dataNormalization)
             throws IOException {
-        ZipOutputStream zipfile = new ZipOutputStream(new CloseShieldOutputStream(stream));
+        writeModel(model, stream, saveUpdater, dataNormalization, true);
+    }
 
+    /**
+     * Write a model to an output stream
+     * @param model the model to save
+     * @param stream the output stream to write to
+     * @param saveUpdater whether to save the updater for the model or not
+     * @param dataNormalization the normalizer ot save (may be null)
+     * @param compressParams whether to compress parameters and updater state. Uncompressed entries are memory-mapped on restore,
+     *                       instead of being inflated
+     * @throws IOException
+     */
+    public static void writeModel(@NonNull Model model, @NonNull OutputStream stream, boolean saveUpdater, DataNormalization dataNormalization,
+                                  boolean compressParams) throws IOException {
         // Save configuration as JSON
         String json = "";
         if (model instanceof MultiLayerNetwork) {
@@ -142,18 +192,51 @@ public class ModelSerializer {
             json = ((ComputationGraph) model).getConfiguration().toJson();
         }
 
+        INDArray updaterState = null;
+        if (saveUpdater) {
+            if (model instanceof MultiLayerNetwork) {
+                updaterState = ((MultiLayerNetwork) model).getUpdater().getStateViewArray();
+            } else if (model instanceof ComputationGraph) {
+                updaterState = ((ComputationGraph) model).getUpdater().getStateViewArray();
+            }
+        }
+
+        writeModel(json, model.params(), updaterState, stream, dataNormalization, compressParams);
+    }
+
+    /**
+     * Write a model snapshot to a file: configuration JSON, parameters and updater state copied from the model earlier.
+     * This allows to save a model on another thread, while original model keeps training
+     *
+     * @param configJson model configuration JSON
+     * @param params model parameters (may be null)
+     * @param updaterState updater state (may be null, if updater shouldn't be saved)
+     * @param file the file to write to
+     * @throws IOException
+     */
+    public static void writeModel(@NonNull String configJson, INDArray params, INDArray updaterState, @NonNull File file) throws IOException {
+        try (BufferedOutputStream stream = new BufferedOutputStream(new FileOutputStream(file))) {
+            writeModel(configJson, params, updaterState, stream, null, true);
+        }
+    }
+
+    private static void writeModel(@NonNull String json, INDArray params, INDArray updaterState, @NonNull OutputStream stream,
+                                   DataNormalization dataNormalization, boolean compressParams) throws IOException {
+        ZipOutputStream zipfile = new ZipOutputStream(new CloseShieldOutputStream(stream));
+
         ZipEntry config = new ZipEntry(CONFIGURATION_JSON);
         zipfile.putNextEntry(config);
         zipfile.write(json.getBytes());
 
         // Save parameters as binary
         ZipEntry coefficients = new ZipEntry(COEFFICIENTS_BIN);
+        if (!compressParams && params != null)
+            prepareStoredEntry(coefficients, params);
         zipfile.putNextEntry(coefficients);
         DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(zipfile));
-        INDArray params = model.params();
         if(params != null) {
             try {
-                Nd4j.write(model.params(), dos);
+                Nd4j.write(params, dos);
             } finally {
                 dos.flush();
             }
@@ -162,23 +245,16 @@ public class ModelSerializer {
             zipfile.putNextEntry(noParamsMarker);
         }
 
-        if (saveUpdater) {
-            INDArray updaterState = null;
-            if (model instanceof MultiLayerNetwork) {
-                updaterState = ((MultiLayerNetwork) model).getUpdater().getStateViewArray();
-            } else if (model instanceof ComputationGraph) {
-                updaterState = ((ComputationGraph) model).getUpdater().getStateViewArray();
-            }
-
-            if (updaterState != null && updaterState.length() > 0) {
-                ZipEntry updater = new ZipEntry(UPDATER_BIN);
-                zipfile.putNextEntry(updater);
+        if (updaterState != null && updaterState.length() > 0) {
+            ZipEntry updater = new ZipEntry(UPDATER_BIN);
+            if (!compressParams)
+                prepareStoredEntry(updater, updaterState);
+            zipfile.putNextEntry(updater);
 
-                try {
-                    Nd4j.write(updaterState, dos);
-                } finally {
-                    dos.flush();
-                }
+            try {
+                Nd4j.write(updaterState, dos);
+            } finally {
+                dos.flush();
             }
         }
 
@@ -209,7 +285,11 @@ public class ModelSerializer {
     /**
      * Load a multi layer network from a file
      *
+     * Coefficients are copied in chunks straight into the array used as network parameters, and uncompressed
+     * coefficients are memory-mapped. Use loadUpdater = false for inference, to skip updater state entirely.
+     *
      * @param file the file to load from
+     * @param loadUpdater whether to restore updater state or not
      * @return the loaded multi layer network
      * @throws IOException
      */
@@ -251,11 +331,7 @@ public class ModelSerializer {
         ZipEntry coefficients = zipFile.getEntry(COEFFICIENTS_BIN);
         if (coefficients != null ) {
             if(coefficients.getSize() > 0) {
-                InputStream stream = zipFile.getInputStream(coefficients);
-                DataInputStream dis = new DataInputStream(new BufferedInputStream(stream));
-                params = Nd4j.read(dis);
-
-                dis.close();
+                params = readArray(zipFile, file, coefficients);
                 gotCoefficients = true;
             } else {
                 ZipEntry noParamsMarker = zipFile.getEntry(NO_PARAMS_MARKER);
@@ -266,11 +342,7 @@ public class ModelSerializer {
         if (loadUpdater) {
             ZipEntry updaterStateEntry = zipFile.getEntry(UPDATER_BIN);
             if (updaterStateEntry != null) {
-                InputStream stream = zipFile.getInputStream(updaterStateEntry);
-                DataInputStream dis = new DataInputStream(new BufferedInputStream(stream));
-                updaterState = Nd4j.read(dis);
-
-                dis.close();
+                updaterState = readArray(zipFile, file, updaterStateEntry);
                 gotUpdaterState = true;
             }
         }
@@ -539,7 +611,12 @@ public class ModelSerializer {
 
     /**
      * Load a computation graph from a file
+     *
+     * Coefficients are copied in chunks straight into the array used as network parameters, and uncompressed
+     * coefficients are memory-mapped. Use loadUpdater = false for inference, to skip updater state entirely.
+     *
      * @param file the file to get the computation graph from
+     * @param loadUpdater whether to restore updater state or not
      * @return the loaded computation graph
      *
      * @throws IOException
@@ -580,11 +657,7 @@ public class ModelSerializer {
         ZipEntry coefficients = zipFile.getEntry(COEFFICIENTS_BIN);
         if (coefficients != null) {
             if(coefficients.getSize() > 0) {
-                InputStream stream = zipFile.getInputStream(coefficients);
-                DataInputStream dis = new DataInputStream(new BufferedInputStream(stream));
-                params = Nd4j.read(dis);
-
-                dis.close();
+                params = readArray(zipFile, file, coefficients);
                 gotCoefficients = true;
             } else {
                 ZipEntry noParamsMarker = zipFile.getEntry(NO_PARAMS_MARKER);
@@ -596,11 +669,7 @@ public class ModelSerializer {
         if (loadUpdater) {
             ZipEntry updaterStateEntry = zipFile.getEntry(UPDATER_BIN);
             if (updaterStateEntry != null) {
-                InputStream stream = zipFile.getInputStream(updaterStateEntry);
-                DataInputStream dis = new DataInputStream(new BufferedInputStream(stream));
-                updaterState = Nd4j.read(dis);
-
-                dis.close();
+                updaterState = readArray(zipFile, file, updaterStateEntry);
                 gotUpdaterState = true;
             }
         }
@@ -662,6 +731,225 @@ public class ModelSerializer {
                     + "], gotCoefficients: [" + gotCoefficients + "], gotUpdater: [" + gotUpdaterState + "]");
     }
 
+    /**
+     * This method sets up STORED (uncompressed) zip entry for the array, as ZipOutputStream requires size and CRC
+     * of such entries in advance. Both are computed by serializing array into null stream, so no extra memory is used
+     */
+    private static void prepareStoredEntry(@NonNull ZipEntry entry, @NonNull INDArray array) throws IOException {
+        CRC32 crc = new CRC32();
+        CountingOutputStream counter = new CountingOutputStream(new CheckedOutputStream(NullOutputStream.NULL_OUTPUT_STREAM, crc));
+        DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(counter));
+        Nd4j.write(array, dos);
+        dos.flush();
+
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(counter.getByteCount());
+        entry.setCompressedSize(counter.getByteCount());
+        entry.setCrc(crc.getValue());
+    }
+
+    /**
+     * This method reads array written via Nd4j.write(). Unlike Nd4j.read(), array data is copied in chunks straight
+     * into the resulting array, instead of element-wise reads. Uncompressed entries are memory-mapped chunk by chunk.
+     * Legacy formats and less common data types are handled by Nd4j.read()
+     */
+    protected static INDArray readArray(@NonNull ZipFile zipFile, @NonNull File file, @NonNull ZipEntry entry) throws IOException {
+        long offset = entry.getMethod() == ZipEntry.STORED ? storedDataOffset(file, entry.getName()) : -1;
+        if (offset >= 0) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                FileChannel channel = raf.getChannel();
+                channel.position(offset);
+
+                // PLEASE NOTE: channel stream isn't buffered, so channel position is exactly at the data once headers are read
+                DataInputStream dis = new DataInputStream(Channels.newInputStream(channel));
+                INDArray array = readArrayHeader(dis);
+                if (array != null) {
+                    long position = channel.position();
+                    int width = array.dataType().width();
+                    for (long e = 0; e < array.length(); e += RESTORE_CHUNK_SIZE) {
+                        int n = (int) Math.min(RESTORE_CHUNK_SIZE, array.length() - e);
+                        ByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, position + e * width, (long) n * width);
+                        try {
+                            assignChunk(array, e, n, chunk.order(ByteOrder.BIG_ENDIAN));
+                        } finally {
+                            unmap(chunk);
+                        }
+                    }
+                    Nd4j.getAffinityManager().tagLocation(array, AffinityManager.Location.HOST);
+                    return array;
+                }
+            }
+        } else {
+            try (DataInputStream dis = new DataInputStream(new BufferedInputStream(zipFile.getInputStream(entry)))) {
+                INDArray array = readArrayHeader(dis);
+                if (array != null) {
+                    int width = array.dataType().width();
+                    byte[] buffer = new byte[(int) Math.min(RESTORE_CHUNK_SIZE, array.length()) * width];
+                    for (long e = 0; e < array.length(); e += RESTORE_CHUNK_SIZE) {
+                        int n = (int) Math.min(RESTORE_CHUNK_SIZE, array.length() - e);
+                        dis.readFully(buffer, 0, n * width);
+                        assignChunk(array, e, n, ByteBuffer.wrap(buffer, 0, n * width).order(ByteOrder.BIG_ENDIAN));
+                    }
+                    Nd4j.getAffinityManager().tagLocation(array, AffinityManager.Location.HOST);
+                    return array;
+                }
+            }
+        }
+
+        // fallback to generic deserialization
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(zipFile.getInputStream(entry)))) {
+            return Nd4j.read(dis);
+        }
+    }
+
+    /**
+     * This method reads array headers, and returns uninitialized array of the stored shape and data type,
+     * or null if stored array can't be read in chunks
+     */
+    private static INDArray readArrayHeader(DataInputStream dis) {
+        Triple<DataBuffer.AllocationMode, Long, DataType> shapeHeader = BaseDataBuffer.readHeader(dis);
+        DataBuffer shapeInformation = Nd4j.createBufferDetached(new long[]{shapeHeader.getMiddle()}, shapeHeader.getRight());
+        shapeInformation.read(dis, shapeHeader.getFirst(), shapeHeader.getMiddle(), shapeHeader.getRight());
+
+        Triple<DataBuffer.AllocationMode, Long, DataType> dataHeader = BaseDataBuffer.readHeader(dis);
+        if (dataHeader.getFirst() != DataBuffer.AllocationMode.MIXED_DATA_TYPES)
+            return null;
+
+        switch (dataHeader.getRight()) {
+            case DOUBLE:
+            case FLOAT:
+            case LONG:
+            case INT:
+                break;
+            default:
+                return null;
+        }
+
+        long[] shapeInfo = shapeInformation.asLong();
+        INDArray array = Nd4j.createUninitialized(dataHeader.getRight(), Shape.shape(shapeInfo), Shape.order(shapeInfo));
+        if (array.length() != dataHeader.getMiddle() || array.length() == 0)
+            return null;
+
+        return array;
+    }
+
+    /**
+     * This method copies n big-endian elements from the chunk straight into the host memory of the array, starting
+     * at element offset. Array is expected to be freshly created, so its buffer is dense and has no offset.
+     */
+    private static void assignChunk(INDArray array, long offset, int n, ByteBuffer chunk) {
+        int width = array.dataType().width();
+        ByteBuffer target = new BytePointer(array.data().pointer()).position(offset * width).limit((offset + n) * width)
+                        .asByteBuffer().order(ByteOrder.nativeOrder());
+
+        switch (array.dataType()) {
+            case DOUBLE:
+                target.asDoubleBuffer().put(chunk.asDoubleBuffer());
+                break;
+            case FLOAT:
+                target.asFloatBuffer().put(chunk.asFloatBuffer());
+                break;
+            case LONG:
+                target.asLongBuffer().put(chunk.asLongBuffer());
+                break;
+            case INT:
+                target.asIntBuffer().put(chunk.asIntBuffer());
+                break;
+            default:
+                throw new IllegalStateException("Unsupported data type: " + array.dataType());
+        }
+    }
+
+    /**
+     * This method releases memory mapping right away, instead of leaving it to GC. Mapped buffer can't be used afterwards
+     */
+    private static void unmap(ByteBuffer buffer) {
+        try {
+            try {
+                // Java 9+
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            } catch (NoSuchMethodException e) {
+                // Java 7 & 8
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null)
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (Exception e) {
+            log.debug("Unable to unmap buffer, mapping will be released by GC: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * This method returns offset of the STORED entry data within zip file, or -1 if it can't be located (i.e. for ZIP64 archives)
+     */
+    private static long storedDataOffset(@NonNull File file, @NonNull String entryName) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            // end of central directory record is located within last 64KB + 22 bytes of the file
+            long fileLength = raf.length();
+            int tailLength = (int) Math.min(fileLength, 0xFFFF + 22);
+            byte[] tail = new byte[tailLength];
+            raf.seek(fileLength - tailLength);
+            raf.readFully(tail);
+            ByteBuffer eocd = ByteBuffer.wrap(tail).order(ByteOrder.LITTLE_ENDIAN);
+
+            int eocdPosition = -1;
+            for (int e = tailLength - 22; e >= 0; e--) {
+                if (eocd.getInt(e) == 0x06054b50) {
+                    eocdPosition = e;
+                    break;
+                }
+            }
+            if (eocdPosition < 0)
+                return -1;
+
+            int numEntries = eocd.getShort(eocdPosition + 10) & 0xFFFF;
+            long directorySize = eocd.getInt(eocdPosition + 12) & 0xFFFFFFFFL;
+            long directoryOffset = eocd.getInt(eocdPosition + 16) & 0xFFFFFFFFL;
+            if (directoryOffset == 0xFFFFFFFFL || directoryOffset + directorySize > fileLength)
+                return -1;
+
+            byte[] directoryBytes = new byte[(int) directorySize];
+            raf.seek(directoryOffset);
+            raf.readFully(directoryBytes);
+            ByteBuffer directory = ByteBuffer.wrap(directoryBytes).order(ByteOrder.LITTLE_ENDIAN);
+
+            byte[] name = entryName.getBytes(StandardCharsets.UTF_8);
+            int position = 0;
+            for (int e = 0; e < numEntries; e++) {
+                if (position + 46 > directoryBytes.length || directory.getInt(position) != 0x02014b50)
+                    return -1;
+
+                int nameLength = directory.getShort(position + 28) & 0xFFFF;
+                int extraLength = directory.getShort(position + 30) & 0xFFFF;
+                int commentLength = directory.getShort(position + 32) & 0xFFFF;
+                long localOffset = directory.getInt(position + 42) & 0xFFFFFFFFL;
+
+                if (nameLength == name.length && Arrays.equals(name, Arrays.copyOfRange(directoryBytes, position + 46, position + 46 + nameLength))) {
+                    if (localOffset == 0xFFFFFFFFL)
+                        return -1;
+
+                    byte[] localHeader = new byte[30];
+                    raf.seek(localOffset);
+                    raf.readFully(localHeader);
+                    ByteBuffer local = ByteBuffer.wrap(localHeader).order(ByteOrder.LITTLE_ENDIAN);
+                    if (local.getInt(0) != 0x04034b50)
+                        return -1;
+
+                    return localOffset + 30 + (local.getShort(26) & 0xFFFF) + (local.getShort(28) & 0xFFFF);
+                }
+
+                position += 46 + nameLength + extraLength + commentLength;
+            }
+            return -1;
+        }
+    }
+
     /**
      *
      * @param model
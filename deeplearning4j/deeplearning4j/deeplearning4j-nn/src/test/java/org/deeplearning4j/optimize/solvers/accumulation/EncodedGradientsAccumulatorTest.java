@@ -19,11 +19,14 @@ package org.deeplearning4j.optimize.solvers.accumulation;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.exception.DL4JInvalidConfigException;
 import org.deeplearning4j.optimize.solvers.accumulation.encoding.threshold.FixedThresholdAlgorithm;
+import org.deeplearning4j.optimize.stepfunctions.GradientStepFunction;
 import org.junit.Test;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -89,6 +92,109 @@ public class EncodedGradientsAccumulatorTest extends BaseDL4JTest {
     }
 
 
+    /**
+     * Here we ensure that updates passed through encoding pipeline are delivered in full, no matter when they're applied
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testPipelinedEncoding1() throws Exception {
+        int numParams = 1000;
+        int numPositives = 10;
+        int numIterations = 20;
+        int depth = 2;
+        int queueSize = EncodedGradientsAccumulator.getMinimalQueueSize(1, depth);
+
+        EncodedGradientsAccumulator accumulator = new EncodedGradientsAccumulator.Builder(1)
+                        .thresholdAlgorithm(new FixedThresholdAlgorithm(1e-3))
+                        .memoryParameters(EncodedGradientsAccumulator.getOptimalBufferSize(numParams, 1, queueSize), queueSize)
+                        .encodingPipelineDepth(depth)
+                        .build();
+
+        accumulator.fallbackToSingleConsumerMode(true);
+        accumulator.touch();
+
+        INDArray params = Nd4j.create(numParams);
+        INDArray updates = Nd4j.create(numParams);
+        for (int e = 0; e < numIterations; e++) {
+            accumulator.storeUpdate(getGradients(numParams, numPositives, 2e-3), e, 0);
+            accumulator.applyUpdate(new GradientStepFunction(), params, updates, true);
+        }
+
+        // anything still in flight should be delivered after flush
+        accumulator.flushPipeline();
+        accumulator.applyUpdate(new GradientStepFunction(), params, updates, true);
+
+        // each iteration shares exactly one threshold step per non-zero element
+        assertEquals(numPositives * numIterations * 1e-3, params.sumNumber().doubleValue(), 1e-4);
+
+        accumulator.reset();
+    }
+
+    /**
+     * Here we ensure that updates still in flight at the end of training round are applied by workers, instead of being
+     * discarded by reset(), and that encoding thread (and its threshold state) survives reset()
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testPipelinedEncodingAcrossReset() throws Exception {
+        int numParams = 1000;
+        int numPositives = 10;
+        int numIterations = 5;
+        int depth = 3;
+        int queueSize = EncodedGradientsAccumulator.getMinimalQueueSize(1, depth);
+
+        EncodedGradientsAccumulator accumulator = new EncodedGradientsAccumulator.Builder(1)
+                        .thresholdAlgorithm(new FixedThresholdAlgorithm(1e-3))
+                        .memoryParameters(EncodedGradientsAccumulator.getOptimalBufferSize(numParams, 1, queueSize), queueSize)
+                        .encodingPipelineDepth(depth)
+                        .build();
+
+        accumulator.fallbackToSingleConsumerMode(true);
+
+        INDArray params = Nd4j.create(numParams);
+        INDArray updates = Nd4j.create(numParams);
+        EncodedGradientsAccumulator.EncodingStage stage = null;
+        for (int round = 0; round < 3; round++) {
+            // new training round, like new fit() call within ParallelWrapper
+            accumulator.touch();
+
+            for (int e = 0; e < numIterations; e++) {
+                accumulator.storeUpdate(getGradients(numParams, numPositives, 2e-3), e, round);
+                accumulator.applyUpdate(new GradientStepFunction(), params, updates, true);
+            }
+
+            // that's what ParallelWrapper and trainers do at the end of each round
+            accumulator.flushPipeline();
+            accumulator.applyPendingUpdates(new GradientStepFunction(), params);
+            assertEquals(0, accumulator.messages.get(0).size());
+            accumulator.reset();
+
+            assertEquals(1, accumulator.encodingStages.size());
+            if (stage == null)
+                stage = accumulator.encodingStages.get(0);
+            else
+                assertTrue(stage == accumulator.encodingStages.get(0));
+
+            assertTrue(stage.isAlive());
+
+            assertEquals(numPositives * numIterations * (round + 1) * 1e-3, params.sumNumber().doubleValue(), 1e-4);
+        }
+
+        accumulator.shutdownPipeline();
+        assertEquals(0, accumulator.encodingStages.size());
+    }
+
+    @Test(expected = DL4JInvalidConfigException.class)
+    public void testPipelinedEncodingQueueSize() {
+        new EncodedGradientsAccumulator.Builder(4)
+                        .thresholdAlgorithm(new FixedThresholdAlgorithm(1e-3))
+                        .memoryParameters(EncodedGradientsAccumulator.DEFAULT_INITIAL_MEMORY, 4)
+                        .encodingPipelineDepth(1)
+                        .build();
+    }
+
     protected INDArray getGradients(int length, int numPositives, double value) {
         INDArray grad = Nd4j.create(length);
 
@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.optimize.solvers.accumulation;
+
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.deeplearning4j.BaseDL4JTest;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+@Slf4j
+public class RingBlockingQueueTest extends BaseDL4JTest {
+
+    @Test
+    public void testSingleConsumer_1() throws Exception {
+        val queue = new RingBlockingQueue<Integer>(4);
+
+        for (int e = 0; e < 4; e++)
+            assertTrue(queue.offer(e));
+
+        // ring is full now
+        assertFalse(queue.offer(4));
+        assertEquals(4, queue.size());
+        assertEquals(0, queue.remainingCapacity());
+
+        assertEquals(0, (int) queue.poll());
+        assertTrue(queue.offer(4));
+
+        for (int e = 1; e < 5; e++)
+            assertEquals(e, (int) queue.take());
+
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void testConsumedSlotsCleared_1() throws Exception {
+        val queue = new RingBlockingQueue<Integer>(4);
+
+        queue.put(0);
+        queue.put(1);
+        queue.put(2);
+
+        assertEquals(0, (int) queue.poll());
+        assertEquals(1, (int) queue.take());
+
+        // ring shouldn't keep references to consumed elements
+        assertNull(queue.buffer.get(0));
+        assertNull(queue.buffer.get(1));
+        assertEquals(2, (int) queue.buffer.get(2));
+        assertEquals(3, queue.remainingCapacity());
+    }
+
+    @Test(timeout = 120000L)
+    public void testMultipleConsumers_1() throws Exception {
+        final int numConsumers = 4;
+        final int numProducers = 3;
+        final int perProducer = 10000;
+        final val queue = new RingBlockingQueue<Integer>(16);
+        final val failures = new AtomicInteger(0);
+        final val consumedTotal = new AtomicInteger(0);
+
+        val threads = new ArrayList<Thread>();
+        for (int p = 0; p < numProducers; p++) {
+            final int producer = p;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int e = 0; e < perProducer; e++)
+                            queue.put(producer * perProducer + e);
+                    } catch (InterruptedException e) {
+                        failures.incrementAndGet();
+                    }
+                }
+            }));
+        }
+
+        final List<List<Integer>> results = new ArrayList<>();
+        for (int c = 0; c < numConsumers; c++) {
+            final List<Integer> consumed = new ArrayList<>();
+            results.add(consumed);
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    int[] last = new int[numProducers];
+                    while (consumedTotal.get() < numProducers * perProducer) {
+                        Integer value = queue.poll();
+                        if (value == null) {
+                            Thread.yield();
+                            continue;
+                        }
+
+                        // elements of each producer should come in order for each consumer
+                        int producer = value / perProducer;
+                        if (value % perProducer < last[producer])
+                            failures.incrementAndGet();
+                        last[producer] = value % perProducer;
+
+                        consumed.add(value);
+                        consumedTotal.incrementAndGet();
+                    }
+                }
+            }));
+        }
+
+        for (val t : threads)
+            t.start();
+
+        for (val t : threads)
+            t.join();
+
+        assertEquals(0, failures.get());
+
+        // every element should be delivered exactly once
+        val all = new ArrayList<Integer>();
+        for (val consumed : results)
+            all.addAll(consumed);
+
+        Collections.sort(all);
+        assertEquals(numProducers * perProducer, all.size());
+        for (int e = 0; e < all.size(); e++)
+            assertEquals(e, (int) all.get(e));
+
+        assertTrue(queue.isEmpty());
+        for (int e = 0; e < 16; e++)
+            assertNull(queue.buffer.get(e));
+    }
+}
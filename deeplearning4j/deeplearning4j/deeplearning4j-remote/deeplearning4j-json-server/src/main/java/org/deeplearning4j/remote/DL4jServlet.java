@@ -29,6 +29,8 @@ import org.nd4j.remote.clients.serde.BinaryDeserializer;
 import org.nd4j.remote.clients.serde.BinarySerializer;
 import org.nd4j.remote.clients.serde.JsonDeserializer;
 import org.nd4j.remote.clients.serde.JsonSerializer;
+import org.nd4j.remote.clients.serde.StreamingBinaryDeserializer;
+import org.nd4j.remote.clients.serde.StreamingBinarySerializer;
 import org.nd4j.remote.serving.SameDiffServlet;
 
 import javax.servlet.http.HttpServletRequest;
@@ -115,63 +117,96 @@ public class DL4jServlet<I,O> extends SameDiffServlet<I,O> {
 
     @Override
     protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
-        String processorReturned = "";
-        MultiDataSet mds = null;
         String path = request.getPathInfo();
         if (path.equals(SERVING_ENDPOINT)) {
-            val contentType = request.getContentType();
-            if (contentType.equals(typeJson)) {
-                if (validateRequest(request, response)) {
-                    val stream = request.getInputStream();
-                    val bufferedReader = new BufferedReader(new InputStreamReader(stream));
-                    char[] charBuffer = new char[128];
-                    int bytesRead = -1;
-                    val buffer = new StringBuilder();
-                    while ((bytesRead = bufferedReader.read(charBuffer)) > 0) {
-                        buffer.append(charBuffer, 0, bytesRead);
-                    }
-                    val requestString = buffer.toString();
-
-                    mds = inferenceAdapter.apply(deserializer.deserialize(requestString));
-                }
-            }
-            else if (contentType.equals(typeBinary)) {
+            MultiDataSet mds = readInput(request, response);
+            if (mds == null)
+                log.error("InferenceAdapter failed");
+            else
+                writeOutput(process(mds), response);
+        } else {
+            // we return error otherwise
+            sendError(request.getRequestURI(), response);
+        }
+    }
+
+    /**
+     * This method reads request body with configured JSON or binary deserializer, and converts it via InferenceAdapter
+     *
+     * @return MultiDataSet with model inputs, or null if request was rejected
+     */
+    protected MultiDataSet readInput(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        MultiDataSet mds = null;
+        val contentType = request.getContentType();
+        if (contentType.equals(typeJson)) {
+            if (validateRequest(request, response)) {
                 val stream = request.getInputStream();
-                int available = request.getContentLength();
-                if (available <= 0) {
-                    response.sendError(411, "Content length is unavailable");
+                val bufferedReader = new BufferedReader(new InputStreamReader(stream));
+                char[] charBuffer = new char[128];
+                int bytesRead = -1;
+                val buffer = new StringBuilder();
+                while ((bytesRead = bufferedReader.read(charBuffer)) > 0) {
+                    buffer.append(charBuffer, 0, bytesRead);
                 }
-                else {
-                    byte[] data = new byte[available];
-                    stream.read(data, 0, available);
+                val requestString = buffer.toString();
 
-                    mds = inferenceAdapter.apply(binaryDeserializer.deserialize(data));
-                }
+                mds = inferenceAdapter.apply(deserializer.deserialize(requestString));
+            }
+        }
+        else if (contentType.equals(typeBinary)) {
+            val stream = request.getInputStream();
+            int available = request.getContentLength();
+            if (available <= 0) {
+                response.sendError(411, "Content length is unavailable");
+            }
+            else if (available > PAYLOAD_SIZE_LIMIT) {
+                response.sendError(413, "Payload size limit violated!");
+            }
+            else if (binaryDeserializer instanceof StreamingBinaryDeserializer) {
+                // request body goes straight into deserialized object, without intermediate byte array
+                mds = inferenceAdapter.apply(((StreamingBinaryDeserializer<I>) binaryDeserializer).deserialize(stream, available));
             }
-            if (mds == null)
-                log.error("InferenceAdapter failed");
             else {
-                val result = process(mds);
-                if (binarySerializer != null) {
-                    byte[] serialized = binarySerializer.serialize(result);
-                    response.setContentType(typeBinary);
-                    response.setContentLength(serialized.length);
-                    val out = response.getOutputStream();
-                    out.write(serialized);
-                }
-                else {
-                    processorReturned = serializer.serialize(result);
-                    try {
-                        val out = response.getWriter();
-                        out.write(processorReturned);
-                    } catch (IOException e) {
-                        log.error(e.getMessage());
-                    }
+                byte[] data = new byte[available];
+                int offset = 0;
+                while (offset < available) {
+                    int read = stream.read(data, offset, available - offset);
+                    if (read < 0)
+                        throw new IOException("Unexpected end of request: " + offset + " of " + available + " bytes read");
+                    offset += read;
                 }
+
+                mds = inferenceAdapter.apply(binaryDeserializer.deserialize(data));
+            }
+        }
+        return mds;
+    }
+
+    /**
+     * This method writes result to response, with configured JSON or binary serializer
+     */
+    protected void writeOutput(O result, HttpServletResponse response) throws IOException {
+        if (binarySerializer instanceof StreamingBinarySerializer) {
+            val streamingSerializer = (StreamingBinarySerializer<O>) binarySerializer;
+            response.setContentType(typeBinary);
+            response.setContentLengthLong(streamingSerializer.serializedLength(result));
+            streamingSerializer.serialize(result, response.getOutputStream());
+        }
+        else if (binarySerializer != null) {
+            byte[] serialized = binarySerializer.serialize(result);
+            response.setContentType(typeBinary);
+            response.setContentLength(serialized.length);
+            val out = response.getOutputStream();
+            out.write(serialized);
+        }
+        else {
+            String processorReturned = serializer.serialize(result);
+            try {
+                val out = response.getWriter();
+                out.write(processorReturned);
+            } catch (IOException e) {
+                log.error(e.getMessage());
             }
-        } else {
-            // we return error otherwise
-            sendError(request.getRequestURI(), response);
         }
     }
 
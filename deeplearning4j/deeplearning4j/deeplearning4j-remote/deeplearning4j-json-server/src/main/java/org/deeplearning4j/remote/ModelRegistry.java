@@ -0,0 +1,511 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.remote;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.nn.api.Model;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.util.ModelSerializer;
+import org.nd4j.autodiff.samediff.SDVariable;
+import org.nd4j.autodiff.samediff.SameDiff;
+import org.nd4j.autodiff.samediff.VariableType;
+import org.nd4j.base.Preconditions;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class hosts multiple models within single JVM, and loads them on demand.
+ *
+ * Models are registered as files saved via ModelSerializer (MultiLayerNetwork, ComputationGraph) or SameDiff.save(),
+ * and get restored on first request. Loaded models are kept within off-heap memory budget: once budget is exceeded,
+ * least recently used models, that aren't used by any in-flight request, are evicted. Evicted model will be restored
+ * from file on next request.
+ *
+ * All models share the same fixed pool of worker threads, so total number of concurrent inference calls is bounded by
+ * number of workers, and doesn't depend on number of registered models.
+ *
+ * PLEASE NOTE: requests to the same model are executed sequentially, concurrency comes from serving different models at once.
+ * Requests are queued per model, and at most one worker drains each queue, so requests to a busy model never occupy other workers.
+ * PLEASE NOTE: memory estimate covers model parameters (and SameDiff constants) only, activations aren't accounted.
+ */
+@Slf4j
+public class ModelRegistry implements AutoCloseable {
+
+    public enum ModelType {
+        MULTI_LAYER_NETWORK,
+        COMPUTATION_GRAPH,
+        SAMEDIFF,
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class ModelDescriptor {
+        private String id;
+        private File file;
+        private ModelType type;
+
+        // for SameDiff only
+        private String[] orderedInputNodes;
+        private String[] orderedOutputNodes;
+    }
+
+    protected static class LoadedModel {
+        protected final ModelDescriptor descriptor;
+        protected final Object model;
+        protected final long bytes;
+
+        // number of in-flight requests, model can't be evicted while it's positive
+        protected int references;
+
+        protected LoadedModel(ModelDescriptor descriptor, Object model, long bytes) {
+            this.descriptor = descriptor;
+            this.model = model;
+            this.bytes = bytes;
+        }
+    }
+
+    private final long memoryBudget;
+    private final ExecutorService workers;
+
+    private final Map<String, ModelDescriptor> descriptors = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ModelQueue> queues = new ConcurrentHashMap<>();
+
+    // access-ordered, so iteration starts from the least recently used model. guarded by this
+    private final LinkedHashMap<String, LoadedModel> loaded = new LinkedHashMap<>(16, 0.75f, true);
+    private long usedBytes;
+
+    private final AtomicLong loadCount = new AtomicLong(0);
+    private final AtomicLong evictionCount = new AtomicLong(0);
+
+    public ModelRegistry(long memoryBudget) {
+        this(memoryBudget, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param memoryBudget off-heap memory budget for loaded models, in bytes
+     * @param numWorkers number of worker threads, shared by all models
+     */
+    public ModelRegistry(long memoryBudget, int numWorkers) {
+        Preconditions.checkArgument(memoryBudget > 0, "Memory budget should be positive value, got %s instead", memoryBudget);
+        Preconditions.checkArgument(numWorkers >= 1, "Number of workers should be >= 1, got %s instead", numWorkers);
+
+        this.memoryBudget = memoryBudget;
+        this.workers = Executors.newFixedThreadPool(numWorkers, new ThreadFactory() {
+            private final AtomicLong counter = new AtomicLong(0);
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "ModelRegistry worker " + counter.getAndIncrement());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * This method registers MultiLayerNetwork or ComputationGraph saved via ModelSerializer. Model isn't loaded until first request.
+     *
+     * @param id model id, used in requests
+     * @param file model file
+     * @param type model type
+     */
+    public void register(@NonNull String id, @NonNull File file, @NonNull ModelType type) {
+        Preconditions.checkArgument(type != ModelType.SAMEDIFF, "SameDiff models require input and output nodes, use registerSameDiff() instead");
+        register(new ModelDescriptor(id, file, type, null, null));
+    }
+
+    /**
+     * This method registers SameDiff model, saved via SameDiff.save(). Model isn't loaded until first request.
+     *
+     * @param id model id, used in requests
+     * @param file model file
+     * @param orderedInputNodes placeholders, in the same order as request inputs
+     * @param orderedOutputNodes outputs, in the same order as they'll be returned
+     */
+    public void registerSameDiff(@NonNull String id, @NonNull File file, @NonNull String[] orderedInputNodes, @NonNull String[] orderedOutputNodes) {
+        Preconditions.checkArgument(orderedOutputNodes.length > 0, "SameDiff serving requires at least 1 output node");
+        register(new ModelDescriptor(id, file, ModelType.SAMEDIFF, orderedInputNodes, orderedOutputNodes));
+    }
+
+    protected void register(@NonNull ModelDescriptor descriptor) {
+        if (!descriptor.getFile().exists())
+            throw new IllegalStateException("Model file [" + descriptor.getFile().getAbsolutePath() + "] doesn't exist");
+
+        if (descriptors.put(descriptor.getId(), descriptor) != null) {
+            // model was re-registered, so previously loaded copy is stale now
+            synchronized (this) {
+                dropIfIdle(descriptor.getId());
+            }
+        }
+
+        // queue might be in the middle of removal after previous unregister() call, so we retry until live queue is there
+        while (true) {
+            ModelQueue queue = queues.get(descriptor.getId());
+            if (queue == null) {
+                if (queues.putIfAbsent(descriptor.getId(), new ModelQueue(descriptor.getId())) == null)
+                    return;
+            } else if (!queue.isRemoved())
+                return;
+        }
+    }
+
+    /**
+     * This method removes model from registry, and unloads it if it's not used by in-flight requests
+     *
+     * @param id model id
+     */
+    public void unregister(@NonNull String id) {
+        descriptors.remove(id);
+        synchronized (this) {
+            dropIfIdle(id);
+        }
+
+        // busy queue will be removed by its worker, once it's drained
+        ModelQueue queue = queues.get(id);
+        if (queue != null)
+            queue.removeIfIdle();
+    }
+
+    private void dropIfIdle(String id) {
+        LoadedModel m = loaded.get(id);
+        if (m != null && m.references == 0) {
+            loaded.remove(id);
+            usedBytes -= m.bytes;
+        }
+    }
+
+    public boolean isRegistered(@NonNull String id) {
+        return descriptors.containsKey(id);
+    }
+
+    public Set<String> registeredModels() {
+        return Collections.unmodifiableSet(new TreeSet<>(descriptors.keySet()));
+    }
+
+    public synchronized boolean isLoaded(@NonNull String id) {
+        return loaded.containsKey(id);
+    }
+
+    /**
+     * This method returns ids of loaded models, from least recently used to most recently used
+     */
+    public synchronized List<String> loadedModels() {
+        return new ArrayList<>(loaded.keySet());
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public long getLoadCount() {
+        return loadCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * This method executes inference on one of shared worker threads, loading model first if that's required
+     *
+     * @param id model id
+     * @param inputs model inputs
+     * @param masks input masks, optional
+     * @return model outputs
+     */
+    public INDArray[] output(@NonNull final String id, @NonNull final INDArray[] inputs, final INDArray[] masks) {
+        FutureTask<INDArray[]> future = new FutureTask<>(new Callable<INDArray[]>() {
+            @Override
+            public INDArray[] call() throws Exception {
+                LoadedModel m = acquire(id);
+                try {
+                    return execute(m, inputs, masks);
+                } finally {
+                    release(m);
+                }
+            }
+        });
+
+        // removed queue is dropped from the map right away, so this loop ends as soon as we see current queue
+        while (true) {
+            ModelQueue queue = queues.get(id);
+            if (queue == null)
+                throw new IllegalStateException("Model [" + id + "] isn't registered");
+
+            if (queue.offer(future))
+                break;
+        }
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * This method runs inference. Models aren't thread-safe, but requests to the same model come from its queue one by one
+     */
+    protected INDArray[] execute(LoadedModel m, INDArray[] inputs, INDArray[] masks) {
+        switch (m.descriptor.getType()) {
+            case MULTI_LAYER_NETWORK:
+                Preconditions.checkArgument(inputs.length > 0, "Input data for MultilayerNetwork is invalid!");
+                return new INDArray[]{((MultiLayerNetwork) m.model).output(inputs[0], false,
+                        masks != null && masks.length > 0 ? masks[0] : null, null)};
+            case COMPUTATION_GRAPH:
+                return ((ComputationGraph) m.model).output(false, inputs, masks);
+            case SAMEDIFF: {
+                String[] inputNodes = m.descriptor.getOrderedInputNodes();
+                String[] outputNodes = m.descriptor.getOrderedOutputNodes();
+                Preconditions.checkArgument(inputs.length == inputNodes.length, "Number of inputs (%s) doesn't match number of input nodes (%s)", inputs.length, inputNodes.length);
+
+                Map<String, INDArray> placeholders = new HashMap<>();
+                for (int e = 0; e < inputNodes.length; e++)
+                    placeholders.put(inputNodes[e], inputs[e]);
+
+                Map<String, INDArray> out = ((SameDiff) m.model).output(placeholders, outputNodes);
+                INDArray[] result = new INDArray[outputNodes.length];
+                for (int e = 0; e < outputNodes.length; e++)
+                    result[e] = out.get(outputNodes[e]);
+
+                return result;
+            }
+            default:
+                throw new IllegalStateException("Unknown model type: " + m.descriptor.getType());
+        }
+    }
+
+    /**
+     * This method returns loaded model, restoring it from file if required. Returned model is pinned until release() is called.
+     * It's called from the model queue, so the same model is never loaded twice concurrently.
+     */
+    protected LoadedModel acquire(@NonNull String id) throws IOException {
+        ModelDescriptor descriptor = descriptors.get(id);
+        if (descriptor == null)
+            throw new IllegalStateException("Model [" + id + "] isn't registered");
+
+        synchronized (this) {
+            LoadedModel m = loaded.get(id);
+            // loaded copy could be restored from previous registration, and is stale then
+            if (m != null && m.descriptor == descriptor) {
+                m.references++;
+                return m;
+            }
+        }
+
+        Object model = load(descriptor);
+        LoadedModel m = new LoadedModel(descriptor, model, estimateBytes(model));
+        loadCount.incrementAndGet();
+
+        // actual size is known only once model is restored, so eviction happens after loading
+        synchronized (this) {
+            // stale copy, if any, is still pinned by in-flight requests, but it's not served anymore
+            LoadedModel stale = loaded.remove(id);
+            if (stale != null)
+                usedBytes -= stale.bytes;
+
+            evict(m.bytes);
+            if (usedBytes + m.bytes > memoryBudget)
+                log.warn("Memory budget exceeded: all loaded models are in use. Used: {} bytes; model [{}]: {} bytes; budget: {} bytes", usedBytes, id, m.bytes, memoryBudget);
+
+            m.references++;
+            loaded.put(id, m);
+            usedBytes += m.bytes;
+        }
+
+        log.debug("Loaded model [{}] from [{}], {} bytes", id, descriptor.getFile().getAbsolutePath(), m.bytes);
+        return m;
+    }
+
+    protected synchronized void release(@NonNull LoadedModel m) {
+        m.references--;
+
+        // model could have been unregistered or re-registered while it was in use
+        if (m.references == 0 && loaded.get(m.descriptor.getId()) == m && descriptors.get(m.descriptor.getId()) != m.descriptor)
+            dropIfIdle(m.descriptor.getId());
+
+        // budget could have been overcommitted while all models were pinned
+        if (usedBytes > memoryBudget)
+            evict(0);
+    }
+
+    /**
+     * This method evicts least recently used idle models, until requiredBytes fit into memory budget
+     */
+    private void evict(long requiredBytes) {
+        Iterator<Map.Entry<String, LoadedModel>> iterator = loaded.entrySet().iterator();
+        while (usedBytes + requiredBytes > memoryBudget && iterator.hasNext()) {
+            Map.Entry<String, LoadedModel> entry = iterator.next();
+            LoadedModel m = entry.getValue();
+            if (m.references > 0)
+                continue;
+
+            iterator.remove();
+            usedBytes -= m.bytes;
+            evictionCount.incrementAndGet();
+            log.debug("Evicted model [{}], {} bytes", entry.getKey(), m.bytes);
+        }
+    }
+
+    protected Object load(@NonNull ModelDescriptor descriptor) throws IOException {
+        switch (descriptor.getType()) {
+            case MULTI_LAYER_NETWORK:
+                return ModelSerializer.restoreMultiLayerNetwork(descriptor.getFile(), false);
+            case COMPUTATION_GRAPH:
+                return ModelSerializer.restoreComputationGraph(descriptor.getFile(), false);
+            case SAMEDIFF:
+                return SameDiff.load(descriptor.getFile(), false);
+            default:
+                throw new IllegalStateException("Unknown model type: " + descriptor.getType());
+        }
+    }
+
+    /**
+     * This method returns number of off-heap bytes used by model parameters
+     */
+    protected static long estimateBytes(@NonNull Object model) {
+        if (model instanceof Model) {
+            INDArray params = ((Model) model).params();
+            return params == null ? 0 : params.length() * params.dataType().width();
+        } else if (model instanceof SameDiff) {
+            long bytes = 0;
+            for (SDVariable v : ((SameDiff) model).variables()) {
+                if (v.getVariableType() != VariableType.VARIABLE && v.getVariableType() != VariableType.CONSTANT)
+                    continue;
+
+                INDArray arr = v.getArr();
+                if (arr != null)
+                    bytes += arr.length() * arr.dataType().width();
+            }
+            return bytes;
+        }
+        throw new IllegalStateException("Unknown model class: " + model.getClass().getName());
+    }
+
+    /**
+     * This method stops worker threads and drops all loaded models
+     */
+    @Override
+    public void close() {
+        workers.shutdownNow();
+
+        // pending requests won't be executed anymore, so their callers are released
+        for (ModelQueue queue : queues.values())
+            queue.cancel();
+
+        synchronized (this) {
+            loaded.clear();
+            usedBytes = 0;
+        }
+    }
+
+    /**
+     * Requests to a single model. Queue is submitted to shared workers only when it has pending requests,
+     * and it's never drained by more than one worker at once.
+     */
+    private class ModelQueue implements Runnable {
+        // number of requests executed before worker is handed over to other models
+        private static final int MAX_REQUESTS_PER_RUN = 16;
+
+        private final String id;
+
+        // guarded by this
+        private final Queue<FutureTask<INDArray[]>> requests = new ArrayDeque<>();
+        private boolean scheduled;
+        private boolean removed;
+
+        private ModelQueue(String id) {
+            this.id = id;
+        }
+
+        /**
+         * @return false if queue was removed, and request should go to the current queue of the model
+         */
+        private synchronized boolean offer(FutureTask<INDArray[]> request) {
+            if (removed)
+                return false;
+
+            requests.add(request);
+            if (!scheduled) {
+                workers.execute(this);
+                scheduled = true;
+            }
+            return true;
+        }
+
+        private synchronized void cancel() {
+            for (FutureTask<INDArray[]> request : requests)
+                request.cancel(false);
+
+            requests.clear();
+        }
+
+        private synchronized boolean isRemoved() {
+            return removed;
+        }
+
+        private synchronized void removeIfIdle() {
+            if (!scheduled && requests.isEmpty() && !descriptors.containsKey(id)) {
+                removed = true;
+                queues.remove(id, this);
+            }
+        }
+
+        @Override
+        public void run() {
+            for (int e = 0; e < MAX_REQUESTS_PER_RUN; e++) {
+                FutureTask<INDArray[]> request;
+                synchronized (this) {
+                    request = requests.poll();
+                    if (request == null)
+                        break;
+                }
+                request.run();
+            }
+
+            synchronized (this) {
+                if (requests.isEmpty()) {
+                    scheduled = false;
+                    removeIfIdle();
+                } else {
+                    // this model still has pending requests, so it goes back to the end of the workers queue
+                    workers.execute(this);
+                }
+            }
+        }
+    }
+}
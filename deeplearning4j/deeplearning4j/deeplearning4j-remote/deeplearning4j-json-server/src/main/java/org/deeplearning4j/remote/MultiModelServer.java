@@ -0,0 +1,212 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.remote;
+
+import lombok.NonNull;
+import org.nd4j.adapters.InferenceAdapter;
+import org.nd4j.adapters.InputAdapter;
+import org.nd4j.adapters.OutputAdapter;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.MultiDataSet;
+import org.nd4j.remote.SameDiffJsonModelServer;
+import org.nd4j.remote.clients.serde.BinaryDeserializer;
+import org.nd4j.remote.clients.serde.BinarySerializer;
+import org.nd4j.remote.clients.serde.JsonDeserializer;
+import org.nd4j.remote.clients.serde.JsonSerializer;
+
+/**
+ * This class provides model serving for many models within single server, backed by {@link ModelRegistry}:
+ * models are loaded on demand, share worker threads and off-heap memory budget, and least recently used models are evicted.
+ *
+ * Server url will be http://0.0.0.0:{port}>/v1/serving/{modelId}
+ * Server only accepts POST requests
+ *
+ * @param <I> type of the input class, i.e. String
+ * @param <O> type of the output class, i.e. Sentiment
+ */
+public class MultiModelServer<I, O> extends SameDiffJsonModelServer<I, O> {
+
+    protected final ModelRegistry registry;
+
+    protected MultiModelServer(@NonNull ModelRegistry registry, InferenceAdapter<I, O> inferenceAdapter,
+                               JsonSerializer<O> serializer, JsonDeserializer<I> deserializer,
+                               BinarySerializer<O> binarySerializer, BinaryDeserializer<I> binaryDeserializer,
+                               int port) {
+        super(inferenceAdapter, serializer, deserializer, binarySerializer, binaryDeserializer, port);
+        this.registry = registry;
+    }
+
+    public ModelRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * This method starts server
+     * @throws Exception
+     */
+    @Override
+    public void start() throws Exception {
+        servingServlet = new MultiModelServlet<I, O>(registry, inferenceAdapter, serializer, deserializer, binarySerializer, binaryDeserializer);
+        start(port, servingServlet);
+    }
+
+    /**
+     * This method stops server, and shuts down underlying ModelRegistry
+     *
+     * @throws Exception
+     */
+    @Override
+    public void stop() throws Exception {
+        registry.close();
+        super.stop();
+    }
+
+    public static class Builder<I,O> {
+
+        private ModelRegistry registry;
+
+        private InferenceAdapter<I, O> inferenceAdapter;
+        private JsonSerializer<O> serializer;
+        private JsonDeserializer<I> deserializer;
+        private BinarySerializer<O> binarySerializer;
+        private BinaryDeserializer<I> binaryDeserializer;
+
+        private InputAdapter<I> inputAdapter;
+        private OutputAdapter<O> outputAdapter;
+
+        private int port;
+
+        public Builder(@NonNull ModelRegistry registry) {
+            this.registry = registry;
+        }
+
+        /**
+         * This method defines InferenceAdapter implementation, which will be used to convert object of Input type to the set of INDArray(s), and for conversion of resulting INDArray(s) into object of Output type
+         * @param inferenceAdapter
+         * @return
+         */
+        public Builder<I,O> inferenceAdapter(@NonNull InferenceAdapter<I,O> inferenceAdapter) {
+            this.inferenceAdapter = inferenceAdapter;
+            return this;
+        }
+
+        /**
+         * This method allows you to specify InputAdapter to be used for inference
+         *
+         * PLEASE NOTE: This method is optional, and will require OutputAdapter<O> defined
+         * @param inputAdapter
+         * @return
+         */
+        public Builder<I,O> inputAdapter(@NonNull InputAdapter<I> inputAdapter) {
+            this.inputAdapter = inputAdapter;
+            return this;
+        }
+
+        /**
+         * This method allows you to specify OutputAdapter to be used for inference
+         *
+         * PLEASE NOTE: This method is optional, and will require InputAdapter<I> defined
+         * @param outputAdapter
+         * @return
+         */
+        public Builder<I,O> outputAdapter(@NonNull OutputAdapter<O> outputAdapter) {
+            this.outputAdapter = outputAdapter;
+            return this;
+        }
+
+        /**
+         * This method allows you to specify JSON serializer.
+         * Incompatible with {@link #outputBinarySerializer(BinarySerializer)}
+         *
+         * @param serializer
+         * @return
+         */
+        public Builder<I,O> outputSerializer(@NonNull JsonSerializer<O> serializer) {
+            this.serializer = serializer;
+            return this;
+        }
+
+        /**
+         * This method allows you to specify JSON deserializer.
+         * Incompatible with {@link #inputBinaryDeserializer(BinaryDeserializer)}
+         *
+         * @param deserializer
+         * @return
+         */
+        public Builder<I,O> inputDeserializer(@NonNull JsonDeserializer<I> deserializer) {
+            this.deserializer = deserializer;
+            return this;
+        }
+
+        /**
+         * This method allows you to specify binary serializer.
+         * Incompatible with {@link #outputSerializer(JsonSerializer)}
+         *
+         * @param serializer
+         * @return
+         */
+        public Builder<I,O> outputBinarySerializer(@NonNull BinarySerializer<O> serializer) {
+            this.binarySerializer = serializer;
+            return this;
+        }
+
+        /**
+         * This method allows you to specify binary deserializer
+         * Incompatible with {@link #inputDeserializer(JsonDeserializer)}
+         *
+         * @param deserializer
+         * @return
+         */
+        public Builder<I,O> inputBinaryDeserializer(@NonNull BinaryDeserializer<I> deserializer) {
+            this.binaryDeserializer = deserializer;
+            return this;
+        }
+
+        /**
+         * This method allows you to specify http port
+         *
+         * PLEASE NOTE: port must be free and be in range regular TCP/IP ports range
+         * @param port
+         * @return
+         */
+        public Builder<I,O> port(int port) {
+            this.port = port;
+            return this;
+        }
+
+        public MultiModelServer<I,O> build() {
+            if (inferenceAdapter == null) {
+                if (inputAdapter != null && outputAdapter != null) {
+                    inferenceAdapter = new InferenceAdapter<I, O>() {
+                        @Override
+                        public MultiDataSet apply(I input) {
+                            return inputAdapter.apply(input);
+                        }
+
+                        @Override
+                        public O apply(INDArray... outputs) {
+                            return outputAdapter.apply(outputs);
+                        }
+                    };
+                } else
+                    throw new IllegalArgumentException("Either InferenceAdapter<I,O> or InputAdapter<I> + OutputAdapter<O> should be configured");
+            }
+
+            return new MultiModelServer<I, O>(registry, inferenceAdapter, serializer, deserializer, binarySerializer, binaryDeserializer, port);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.remote;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.nd4j.adapters.InferenceAdapter;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.MultiDataSet;
+import org.nd4j.remote.clients.serde.BinaryDeserializer;
+import org.nd4j.remote.clients.serde.BinarySerializer;
+import org.nd4j.remote.clients.serde.JsonDeserializer;
+import org.nd4j.remote.clients.serde.JsonSerializer;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * This servlet serves all models hosted by {@link ModelRegistry}.
+ *
+ * Endpoint is /v1/serving/{modelId}, request and response formats are the same as for {@link DL4jServlet}
+ *
+ * @param <I> type of the input class
+ * @param <O> type of the output class
+ */
+@Slf4j
+public class MultiModelServlet<I,O> extends DL4jServlet<I,O> {
+
+    protected ModelRegistry registry;
+
+    public MultiModelServlet(@NonNull ModelRegistry registry, @NonNull InferenceAdapter<I, O> inferenceAdapter,
+                             JsonSerializer<O> jsonSerializer, JsonDeserializer<I> jsonDeserializer,
+                             BinarySerializer<O> binarySerializer, BinaryDeserializer<I> binaryDeserializer) {
+        this.registry = registry;
+        this.inferenceAdapter = inferenceAdapter;
+        this.serializer = jsonSerializer;
+        this.deserializer = jsonDeserializer;
+        this.binarySerializer = binarySerializer;
+        this.binaryDeserializer = binaryDeserializer;
+        this.parallelEnabled = false;
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String path = request.getPathInfo();
+        String modelId = path != null && path.startsWith(SERVING_ENDPOINT + "/") ? path.substring(SERVING_ENDPOINT.length() + 1) : null;
+        if (modelId == null || modelId.isEmpty() || !registry.isRegistered(modelId)) {
+            sendError(request.getRequestURI(), response);
+            return;
+        }
+
+        MultiDataSet mds = readInput(request, response);
+        if (mds == null) {
+            log.error("InferenceAdapter failed");
+            return;
+        }
+
+        INDArray[] output = registry.output(modelId, mds.getFeatures(), mds.getFeaturesMaskArrays());
+        writeOutput(inferenceAdapter.apply(output), response);
+    }
+}
@@ -11,6 +11,8 @@ import org.junit.Test;
 import org.nd4j.adapters.InferenceAdapter;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.dataset.MultiDataSet;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.api.buffer.DataType;
 import org.nd4j.linalg.io.ClassPathResource;
 import org.nd4j.remote.clients.JsonRemoteInference;
 import org.nd4j.remote.clients.serde.BinaryDeserializer;
@@ -18,12 +20,15 @@ import org.nd4j.remote.clients.serde.BinarySerializer;
 import org.nd4j.remote.clients.serde.JsonDeserializer;
 import org.nd4j.remote.clients.serde.JsonSerializer;
 import org.nd4j.remote.clients.serde.impl.IntegerSerde;
+import org.nd4j.remote.clients.serde.impl.NDArrayBinarySerde;
 import org.nd4j.shade.jackson.databind.ObjectMapper;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.*;
 import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
@@ -249,6 +254,103 @@ public class BinaryModelServerTest {
         }
     }
 
+    @Test
+    public void testNDArrayBinarySerde() throws Exception {
+        val serde = new NDArrayBinarySerde();
+        INDArray[] arrays = new INDArray[]{Nd4j.rand(DataType.FLOAT, 3, 4), Nd4j.linspace(1, 10, 10, DataType.DOUBLE),
+                Nd4j.rand(DataType.FLOAT, 'f', 2, 3), Nd4j.rand(DataType.FLOAT, 4, 5).getColumn(1)};
+
+        byte[] serialized = serde.serialize(arrays);
+        assertEquals(serde.serializedLength(arrays), serialized.length);
+
+        INDArray[] restored = serde.deserialize(new ByteArrayInputStream(serialized), serialized.length);
+        assertEquals(arrays.length, restored.length);
+        for (int i = 0; i < arrays.length; i++) {
+            assertEquals(arrays[i], restored[i]);
+        }
+    }
+
+    @Test
+    public void testNDArrayBinarySerdeValidation() throws Exception {
+        val serde = new NDArrayBinarySerde();
+        INDArray[] arrays = new INDArray[]{Nd4j.rand(DataType.FLOAT, 3, 4)};
+        byte[] serialized = serde.serialize(arrays);
+
+        // declared length shorter than serialized arrays
+        try {
+            serde.deserialize(new ByteArrayInputStream(serialized), serialized.length - 1);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("payload size"));
+        }
+
+        // payload above configured limit is rejected before anything is read
+        try {
+            new NDArrayBinarySerde(16).deserialize(new ByteArrayInputStream(serialized), serialized.length);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("limit"));
+        }
+
+        // corrupt shape: first dimension is huge, so array must not be allocated
+        byte[] corrupt = serialized.clone();
+        ByteBuffer.wrap(corrupt).order(ByteOrder.nativeOrder()).putLong(4 + 8 + 8, Long.MAX_VALUE / 2);
+        try {
+            serde.deserialize(corrupt);
+            fail("Expected exception");
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void testNDArrayIn_NDArrayOut() throws Exception {
+
+        val modelFile = new ClassPathResource("models/mnist/mnist-model.zip").getFile();
+        MultiLayerNetwork net = ModelSerializer.restoreMultiLayerNetwork(modelFile);
+
+        val server = new JsonModelServer.Builder<INDArray[], INDArray[]>(net)
+                .outputBinarySerializer(new NDArrayBinarySerde())
+                .inputBinaryDeserializer(new NDArrayBinarySerde())
+                .inferenceAdapter(new InferenceAdapter<INDArray[], INDArray[]>() {
+                    @Override
+                    public MultiDataSet apply(INDArray[] input) {
+                        return new MultiDataSet(input, null);
+                    }
+
+                    @Override
+                    public INDArray[] apply(INDArray... nnOutput) {
+                        return nnOutput;
+                    }
+                })
+                .port(PORT)
+                .inferenceMode(SEQUENTIAL)
+                .numWorkers(1)
+                .parallelMode(false)
+                .build();
+
+        val client = JsonRemoteInference.<INDArray[], INDArray[]>builder()
+                .endpointAddress("http://localhost:" + PORT + "/v1/serving")
+                .inputBinarySerializer(new NDArrayBinarySerde())
+                .outputBinaryDeserializer(new NDArrayBinarySerde())
+                .build();
+
+        try {
+            server.start();
+            INDArray input = Nd4j.rand(DataType.FLOAT, 4, 784);
+            INDArray expected = net.output(input);
+
+            INDArray[] result = client.predict(new INDArray[]{input});
+            assertEquals(1, result.length);
+            assertEquals(expected, result[0]);
+
+            result = client.predictAsync(new INDArray[]{input}).get();
+            assertEquals(expected, result[0]);
+        } finally {
+            server.stop();
+        }
+    }
+
     private static class BufferedImageSerde implements BinarySerializer<BufferedImage>, BinaryDeserializer<BufferedImage> {
 
         @Override
@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.remote;
+
+import lombok.val;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.weights.WeightInit;
+import org.deeplearning4j.util.ModelSerializer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.learning.config.Adam;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ModelRegistryTest {
+
+    @Rule
+    public TemporaryFolder testDir = new TemporaryFolder();
+
+    private static MultiLayerNetwork createModel(long seed) {
+        val conf = new NeuralNetConfiguration.Builder()
+                .seed(seed)
+                .updater(new Adam(0.119f))
+                .weightInit(WeightInit.XAVIER)
+                .list()
+                    .layer(0, new DenseLayer.Builder().activation(Activation.TANH).nIn(4).nOut(10).build())
+                    .layer(1, new OutputLayer.Builder(LossFunctions.LossFunction.SQUARED_LOSS).activation(Activation.SIGMOID).nIn(10).nOut(1).build())
+                .build();
+
+        val model = new MultiLayerNetwork(conf);
+        model.init();
+        return model;
+    }
+
+    @Test
+    public void testLoadOnDemandAndEviction() throws Exception {
+        val models = new MultiLayerNetwork[3];
+        val ids = new String[]{"a", "b", "c"};
+        long modelBytes = 0;
+
+        // budget fits two models only
+        long budget = 2 * 61 * 4 + 16;
+        try (val registry = new ModelRegistry(budget, 2)) {
+            for (int e = 0; e < models.length; e++) {
+                models[e] = createModel(119 + e);
+                File file = testDir.newFile(ids[e] + ".zip");
+                ModelSerializer.writeModel(models[e], file, false);
+                registry.register(ids[e], file, ModelRegistry.ModelType.MULTI_LAYER_NETWORK);
+                modelBytes = models[e].params().length() * models[e].params().dataType().width();
+            }
+            assertEquals(61 * 4, modelBytes);
+            assertEquals(0, registry.loadedModels().size());
+
+            val input = Nd4j.rand(3, 4);
+            for (int e = 0; e < models.length; e++) {
+                INDArray[] output = registry.output(ids[e], new INDArray[]{input}, null);
+                assertEquals(models[e].output(input), output[0]);
+            }
+
+            // least recently used model was evicted to fit the last one
+            assertEquals(Arrays.asList("b", "c"), registry.loadedModels());
+            assertEquals(2 * modelBytes, registry.getUsedBytes());
+            assertEquals(3, registry.getLoadCount());
+            assertEquals(1, registry.getEvictionCount());
+
+            // touching "b" makes "c" the eviction candidate
+            registry.output("b", new INDArray[]{input}, null);
+            INDArray[] output = registry.output("a", new INDArray[]{input}, null);
+            assertEquals(models[0].output(input), output[0]);
+            assertEquals(Arrays.asList("b", "a"), registry.loadedModels());
+            assertEquals(4, registry.getLoadCount());
+            assertEquals(2, registry.getEvictionCount());
+
+            registry.unregister("a");
+            assertFalse(registry.isRegistered("a"));
+            assertFalse(registry.isLoaded("a"));
+            assertEquals(modelBytes, registry.getUsedBytes());
+        }
+    }
+
+    @Test
+    public void testReRegistration() throws Exception {
+        val first = createModel(119);
+        val second = createModel(120);
+        File firstFile = testDir.newFile("first.zip");
+        File secondFile = testDir.newFile("second.zip");
+        ModelSerializer.writeModel(first, firstFile, false);
+        ModelSerializer.writeModel(second, secondFile, false);
+
+        try (val registry = new ModelRegistry(1024 * 1024, 2)) {
+            val input = Nd4j.rand(3, 4);
+            registry.register("model", firstFile, ModelRegistry.ModelType.MULTI_LAYER_NETWORK);
+            assertEquals(first.output(input), registry.output("model", new INDArray[]{input}, null)[0]);
+
+            // loaded copy of the previous registration must not be served anymore
+            registry.register("model", secondFile, ModelRegistry.ModelType.MULTI_LAYER_NETWORK);
+            assertEquals(second.output(input), registry.output("model", new INDArray[]{input}, null)[0]);
+            assertEquals(2, registry.getLoadCount());
+            assertEquals(second.params().length() * 4, registry.getUsedBytes());
+
+            registry.unregister("model");
+            try {
+                registry.output("model", new INDArray[]{input}, null);
+                fail("Unregistered model shouldn't be served");
+            } catch (IllegalStateException e) {
+                // expected
+            }
+
+            registry.register("model", firstFile, ModelRegistry.ModelType.MULTI_LAYER_NETWORK);
+            assertEquals(first.output(input), registry.output("model", new INDArray[]{input}, null)[0]);
+        }
+    }
+
+    @Test(timeout = 60000L)
+    public void testBusyModelDoesntBlockWorkers() throws Exception {
+        File fileA = testDir.newFile("a.zip");
+        File fileB = testDir.newFile("b.zip");
+        ModelSerializer.writeModel(createModel(119), fileA, false);
+        ModelSerializer.writeModel(createModel(120), fileB, false);
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch unblock = new CountDownLatch(1);
+        final INDArray input = Nd4j.rand(1, 4);
+        ExecutorService callers = Executors.newFixedThreadPool(3);
+
+        // requests to model "a" hang until latch is released
+        try (final ModelRegistry registry = new ModelRegistry(1024 * 1024, 2) {
+            @Override
+            protected INDArray[] execute(LoadedModel m, INDArray[] inputs, INDArray[] masks) {
+                if (m.descriptor.getId().equals("a")) {
+                    started.countDown();
+                    try {
+                        unblock.await();
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+                return super.execute(m, inputs, masks);
+            }
+        }) {
+            registry.register("a", fileA, ModelRegistry.ModelType.MULTI_LAYER_NETWORK);
+            registry.register("b", fileB, ModelRegistry.ModelType.MULTI_LAYER_NETWORK);
+
+            Future<?>[] pending = new Future<?>[2];
+            for (int e = 0; e < pending.length; e++) {
+                pending[e] = callers.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        registry.output("a", new INDArray[]{input}, null);
+                    }
+                });
+            }
+            assertTrue(started.await(30, TimeUnit.SECONDS));
+
+            // second request to "a" waits in the queue of "a", so the other worker is free for "b"
+            assertNotNull(registry.output("b", new INDArray[]{input}, null)[0]);
+
+            unblock.countDown();
+            for (Future<?> f : pending)
+                f.get();
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUnknownModel() {
+        try (val registry = new ModelRegistry(1024 * 1024, 1)) {
+            registry.output("missing", new INDArray[]{Nd4j.rand(1, 4)}, null);
+        }
+    }
+}
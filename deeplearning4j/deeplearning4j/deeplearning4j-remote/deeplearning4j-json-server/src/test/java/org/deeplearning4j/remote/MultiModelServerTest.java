@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+
+package org.deeplearning4j.remote;
+
+import lombok.val;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.weights.WeightInit;
+import org.deeplearning4j.remote.helpers.House;
+import org.deeplearning4j.remote.helpers.HouseToPredictedPriceAdapter;
+import org.deeplearning4j.remote.helpers.PredictedPrice;
+import org.deeplearning4j.util.ModelSerializer;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.learning.config.Adam;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+import org.nd4j.remote.clients.JsonRemoteInference;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class MultiModelServerTest {
+    private final int PORT = 18090;
+
+    @Rule
+    public TemporaryFolder testDir = new TemporaryFolder();
+
+    private static MultiLayerNetwork createModel(long seed) {
+        val conf = new NeuralNetConfiguration.Builder()
+                .seed(seed)
+                .updater(new Adam(0.119f))
+                .weightInit(WeightInit.XAVIER)
+                .list()
+                    .layer(0, new DenseLayer.Builder().activation(Activation.TANH).nIn(4).nOut(10).build())
+                    .layer(1, new OutputLayer.Builder(LossFunctions.LossFunction.SQUARED_LOSS).activation(Activation.SIGMOID).nIn(10).nOut(1).build())
+                .build();
+
+        val model = new MultiLayerNetwork(conf);
+        model.init();
+        return model;
+    }
+
+    private static float expectedPrice(MultiLayerNetwork model, int district) {
+        // same input as HouseToPredictedPriceAdapter creates
+        return model.output(Nd4j.create(DataType.FLOAT, 1, 4).assign(district)).getFloat(0);
+    }
+
+    private JsonRemoteInference<House, PredictedPrice> client(String modelId) {
+        return JsonRemoteInference.<House, PredictedPrice>builder()
+                .inputSerializer(new House.HouseSerializer())
+                .outputDeserializer(new PredictedPrice.PredictedPriceDeserializer())
+                .endpointAddress("http://localhost:" + PORT + "/v1/serving/" + modelId)
+                .build();
+    }
+
+    @After
+    public void pause() throws Exception {
+        // the same port is used by every test, and it's not accessible immediately after server stop
+        TimeUnit.SECONDS.sleep(2);
+    }
+
+    @Test
+    public void testServingMultipleModels() throws Exception {
+        val models = new MultiLayerNetwork[]{createModel(119), createModel(120), createModel(121)};
+        val ids = new String[]{"a", "b", "c"};
+
+        // budget fits two models only
+        val registry = new ModelRegistry(2 * 61 * 4 + 16, 2);
+        for (int e = 0; e < models.length; e++) {
+            File file = testDir.newFile(ids[e] + ".zip");
+            ModelSerializer.writeModel(models[e], file, false);
+            registry.register(ids[e], file, ModelRegistry.ModelType.MULTI_LAYER_NETWORK);
+        }
+
+        val server = new MultiModelServer.Builder<House, PredictedPrice>(registry)
+                .outputSerializer(new PredictedPrice.PredictedPriceSerializer())
+                .inputDeserializer(new House.HouseDeserializer())
+                .inferenceAdapter(new HouseToPredictedPriceAdapter())
+                .port(PORT)
+                .build();
+
+        try {
+            server.start();
+
+            int district = 2;
+            House house = House.builder().area(100).bathrooms(2).bedrooms(3).district(district).build();
+            for (int e = 0; e < models.length; e++) {
+                PredictedPrice price = client(ids[e]).predict(house);
+                assertNotNull(price);
+                assertEquals(expectedPrice(models[e], district), price.getPrice(), 1e-5);
+            }
+
+            // least recently used model was evicted, and it's restored on the next request
+            assertFalse(registry.isLoaded("a"));
+            assertEquals(expectedPrice(models[0], district), client("a").predict(house).getPrice(), 1e-5);
+            assertEquals(4, registry.getLoadCount());
+
+            // re-registered model is served from its new file
+            File replacement = testDir.newFile("replacement.zip");
+            ModelSerializer.writeModel(models[2], replacement, false);
+            registry.register("a", replacement, ModelRegistry.ModelType.MULTI_LAYER_NETWORK);
+            assertEquals(expectedPrice(models[2], district), client("a").predict(house).getPrice(), 1e-5);
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testUnknownModel() throws Exception {
+        File file = testDir.newFile("model.zip");
+        ModelSerializer.writeModel(createModel(119), file, false);
+
+        val registry = new ModelRegistry(1024 * 1024, 1);
+        registry.register("model", file, ModelRegistry.ModelType.MULTI_LAYER_NETWORK);
+
+        val server = new MultiModelServer.Builder<House, PredictedPrice>(registry)
+                .outputSerializer(new PredictedPrice.PredictedPriceSerializer())
+                .inputDeserializer(new House.HouseDeserializer())
+                .inferenceAdapter(new HouseToPredictedPriceAdapter())
+                .port(PORT)
+                .build();
+
+        try {
+            server.start();
+
+            String json = new House.HouseSerializer().serialize(House.builder().area(100).bathrooms(2).bedrooms(3).district(2).build());
+            for (String path : new String[]{"/v1/serving/missing", "/v1/serving/", "/v1/serving"}) {
+                val request = new HttpPost("http://localhost:" + PORT + path);
+                request.setHeader("Content-type", "application/json");
+                request.setEntity(new StringEntity(json));
+                val response = HttpClientBuilder.create().build().execute(request);
+                assertEquals(path, 404, response.getStatusLine().getStatusCode());
+            }
+
+            registry.unregister("model");
+            val request = new HttpPost("http://localhost:" + PORT + "/v1/serving/model");
+            request.setHeader("Content-type", "application/json");
+            request.setEntity(new StringEntity(json));
+            val response = HttpClientBuilder.create().build().execute(request);
+            assertEquals(404, response.getStatusLine().getStatusCode());
+        } finally {
+            server.stop();
+        }
+    }
+}
@@ -26,9 +26,13 @@ import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
 import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
 import org.deeplearning4j.nn.graph.ComputationGraph;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.parallelism.inference.AdaptiveBatchController;
+import org.deeplearning4j.parallelism.inference.BatchingStats;
 import org.deeplearning4j.parallelism.inference.InferenceMode;
 import org.deeplearning4j.parallelism.inference.InferenceObservable;
+import org.deeplearning4j.parallelism.inference.InferencePriority;
 import org.deeplearning4j.parallelism.inference.LoadBalanceMode;
+import org.deeplearning4j.parallelism.inference.PriorityInferenceQueue;
 import org.deeplearning4j.parallelism.inference.observers.BasicInferenceObservable;
 import org.deeplearning4j.parallelism.inference.observers.BasicInferenceObserver;
 import org.deeplearning4j.parallelism.inference.observers.BatchedInferenceObservable;
@@ -42,7 +46,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Observer;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -63,6 +67,7 @@ public class ParallelInference {
     protected InferenceMode inferenceMode;
     protected int queueLimit;
     protected LoadBalanceMode loadBalanceMode = LoadBalanceMode.FIFO;
+    protected long latencyTargetNanos = 0L;
 
     // this queue holds data for inference
     private BlockingQueue<InferenceObservable> observables;
@@ -71,6 +76,7 @@ public class ParallelInference {
 
     private InferenceWorker[] zoo;
     private ObservablesProvider provider;
+    private AdaptiveBatchController batchController;
 
 
 
@@ -120,7 +126,8 @@ public class ParallelInference {
     }
 
     protected void init() {
-        observables = new LinkedBlockingQueue<>(queueLimit);
+        // requests are dequeued in priority order, FIFO within the same priority class
+        observables = new PriorityInferenceQueue(queueLimit);
 
         int numDevices = Nd4j.getAffinityManager().getNumberOfDevices();
         int currentDevice = Nd4j.getAffinityManager().getDeviceForCurrentThread();
@@ -141,10 +148,28 @@ public class ParallelInference {
 
         if (inferenceMode == InferenceMode.BATCHED) {
             log.info("Initializing ObservablesProvider...");
-            provider = new ObservablesProvider(nanos, batchLimit, observables);
+            if (latencyTargetNanos > 0) {
+                log.info("Using adaptive batching with latency target of {} ms", TimeUnit.NANOSECONDS.toMillis(latencyTargetNanos));
+                batchController = new AdaptiveBatchController(latencyTargetNanos, batchLimit);
+            }
+
+            provider = new ObservablesProvider(nanos, batchLimit, observables, batchController);
         }
     }
 
+    /**
+     * This method returns adaptive batching metrics: chosen batch sizes, queue depths and observed latencies
+     * PLEASE NOTE: Metrics are available only in BATCHED mode with latency target set, null is returned otherwise
+     *
+     * @return
+     */
+    public BatchingStats getBatchingStats() {
+        if (batchController == null)
+            return null;
+
+        return batchController.getStats(observables.size());
+    }
+
     protected long getWorkerCounter(int workerIdx) {
         return zoo[workerIdx].getCounterValue();
     }
@@ -230,14 +255,37 @@ public class ParallelInference {
      * @return Output from the network
      */
     public INDArray[] output(INDArray[] input, INDArray[] inputMasks){
+        return output(input, inputMasks, InferencePriority.NORMAL, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Generate predictions/outputs from the network, with given priority and deadline.
+     * Requests with higher priority are passed to the model before queued requests with lower priority.
+     * If request can't reach the model within given timeout, it's dropped and InferenceDeadlineExceededException is thrown.
+     *
+     * @param input      Input to the network
+     * @param inputMasks Input masks for the network. May be null.
+     * @param priority   Priority class of this request
+     * @param timeout    Maximum time request can wait in the queue. 0 means no deadline
+     * @param timeUnit   Time unit for timeout
+     * @return Output from the network
+     */
+    public INDArray[] output(INDArray[] input, INDArray[] inputMasks, @NonNull InferencePriority priority, long timeout, @NonNull TimeUnit timeUnit) {
         Nd4j.getExecutioner().commit(); //Commit before passing input to other thread
 
+        // timeouts too long to be represented as nanoTime difference are treated as no deadline
+        long timeoutNanos = timeUnit.toNanos(timeout);
+        long deadline = timeout > 0 && timeoutNanos < Long.MAX_VALUE / 2 ? System.nanoTime() + timeoutNanos : BasicInferenceObservable.NO_DEADLINE;
+
         // basically, depending on model type we either throw stuff to specific model, or wait for batch
         BasicInferenceObserver observer = new BasicInferenceObserver();
         InferenceObservable observable;
 
         if (inferenceMode == InferenceMode.SEQUENTIAL) {
-            observable = new BasicInferenceObservable(input, inputMasks);
+            val basic = new BasicInferenceObservable(input, inputMasks);
+            basic.setPriority(priority);
+            basic.setDeadline(deadline);
+            observable = basic;
             observable.addObserver(observer);
             try {
                 observables.put(observable);
@@ -246,7 +294,7 @@ public class ParallelInference {
                 throw new RuntimeException(e);
             }
         } else {
-            observable = provider.setInput(observer, input, inputMasks);
+            observable = provider.setInput(observer, input, inputMasks, priority, deadline);
         }
 
         try {
@@ -293,6 +341,7 @@ public class ParallelInference {
         private int batchLimit = DEFAULT_BATCH_LIMIT;
         private InferenceMode inferenceMode = DEFAULT_INFERENCE_MODE;
         private int queueLimit = DEFAULT_QUEUE_LIMIT;
+        private long latencyTargetNanos = 0L;
         protected LoadBalanceMode loadBalanceMode = LoadBalanceMode.FIFO;
 
         public Builder(@NonNull Model model) {
@@ -379,6 +428,25 @@ public class ParallelInference {
             return this;
         }
 
+        /**
+         * This method enables adaptive batching: batch size will be picked dynamically, based on observed
+         * request queue time and model execution time, in order to keep p99 latency within given target.
+         * Value set via batchLimit() is used as upper bound for batch size.
+         *
+         * PLEASE NOTE: This value has effect only in BATCHED inference mode
+         *
+         * @param latencyTarget
+         * @param timeUnit
+         * @return
+         */
+        public Builder latencyTarget(long latencyTarget, @NonNull TimeUnit timeUnit) {
+            if (latencyTarget < 1)
+                throw new IllegalStateException("Latency target should be positive value");
+
+            this.latencyTargetNanos = timeUnit.toNanos(latencyTarget);
+            return this;
+        }
+
         /**
          * This method builds new ParallelInference instance
          *
@@ -403,6 +471,7 @@ public class ParallelInference {
                 inference.model = this.model;
                 inference.workers = this.workers;
                 inference.loadBalanceMode = this.loadBalanceMode;
+                inference.latencyTargetNanos = this.latencyTargetNanos;
 
                 inference.init();
 
@@ -505,6 +574,8 @@ public class ParallelInference {
 
                     if (request != null) {
                         counter.incrementAndGet();
+                        long dispatchTime = System.nanoTime();
+                        int queueDepth = inputQueue.size();
 
                         // FIXME: get rid of instanceof here, model won't change during runtime anyway
                         if (isCG) {
@@ -524,6 +595,7 @@ public class ParallelInference {
 
                                 }
                                 request.setOutputBatches(out);
+                                reportBatch(request, dispatchTime, queueDepth);
                             } catch (Exception e){
                                 request.setOutputException(e);
                             }
@@ -545,6 +617,7 @@ public class ParallelInference {
                                     }
                                 }
                                 request.setOutputBatches(out);
+                                reportBatch(request, dispatchTime, queueDepth);
                             } catch (Exception e){
                                 request.setOutputException(e);
                             }
@@ -565,6 +638,14 @@ public class ParallelInference {
             }
         }
 
+        /**
+         * This method reports timings of executed batch to adaptive batch controller, if any
+         */
+        private void reportBatch(InferenceObservable request, long dispatchTime, int queueDepth) {
+            if (batchController != null && request instanceof BatchedInferenceObservable)
+                batchController.recordBatch(((BatchedInferenceObservable) request).getArrivalTimes(), dispatchTime, System.nanoTime(), queueDepth);
+        }
+
         protected void shutdown() {
             shouldWork.set(false);
             while (!isStopped.get()) {
@@ -578,14 +659,24 @@ public class ParallelInference {
         private BlockingQueue<InferenceObservable> targetQueue;
         private long nanos;
         private int batchLimit;
+        private AdaptiveBatchController batchController;
 
-        private volatile BatchedInferenceObservable currentObservable;
-        private final Object locker = new Object();
+        // each priority class gets its own batch and lock, so bulk producers blocked on a full queue don't block others
+        private final BatchedInferenceObservable[] currentObservables = new BatchedInferenceObservable[InferencePriority.values().length];
+        private final Object[] lockers = new Object[InferencePriority.values().length];
 
         protected ObservablesProvider(long nanos, int batchLimit, @NonNull BlockingQueue<InferenceObservable> queue) {
+            this(nanos, batchLimit, queue, null);
+        }
+
+        protected ObservablesProvider(long nanos, int batchLimit, @NonNull BlockingQueue<InferenceObservable> queue, AdaptiveBatchController batchController) {
             this.targetQueue = queue;
             this.nanos = nanos;
             this.batchLimit = batchLimit;
+            this.batchController = batchController;
+
+            for (int e = 0; e < lockers.length; e++)
+                lockers[e] = new Object();
         }
 
         protected InferenceObservable setInput(@NonNull Observer observer, INDArray input){
@@ -597,15 +688,23 @@ public class ParallelInference {
         }
 
         protected InferenceObservable setInput(@NonNull Observer observer, INDArray[] input, INDArray[] inputMask) {
-            synchronized (locker) {
+            return setInput(observer, input, inputMask, InferencePriority.NORMAL, BasicInferenceObservable.NO_DEADLINE);
+        }
+
+        protected InferenceObservable setInput(@NonNull Observer observer, INDArray[] input, INDArray[] inputMask, @NonNull InferencePriority priority, long deadline) {
+            int p = priority.ordinal();
+            synchronized (lockers[p]) {
                 boolean isNew = false;
-                if (currentObservable == null || currentObservable.getCounter() >= batchLimit
+                int limit = batchController == null ? batchLimit : batchController.getBatchLimit();
+                BatchedInferenceObservable currentObservable = currentObservables[p];
+                if (currentObservable == null || currentObservable.getCounter() >= limit
                                 || currentObservable.isLocked()) {
                     isNew = true;
-                    currentObservable = new BatchedInferenceObservable();
+                    currentObservable = new BatchedInferenceObservable(priority);
+                    currentObservables[p] = currentObservable;
                 }
 
-                currentObservable.addInput(input, inputMask);
+                currentObservable.addInput(input, inputMask, deadline);
                 currentObservable.addObserver(observer);
 
                 try {
@@ -173,6 +173,10 @@ public class ParallelWrapper implements AutoCloseable {
 
     @Override
     public void close() throws Exception {
+        // updates still in flight within encoding pipeline are delivered first, so trainers can apply them before shutdown
+        if (zoo != null && gradientsAccumulator instanceof EncodedGradientsAccumulator)
+            ((EncodedGradientsAccumulator) gradientsAccumulator).flushPipeline();
+
         if (zoo != null) {
             for (int i = 0; i < zoo.length; i++) {
                 if (zoo[i] != null)
@@ -199,6 +203,10 @@ public class ParallelWrapper implements AutoCloseable {
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
+
+        // encoding threads survive between fit() calls, but not beyond shutdown
+        if (gradientsAccumulator instanceof EncodedGradientsAccumulator)
+            ((EncodedGradientsAccumulator) gradientsAccumulator).shutdownPipeline();
     }
 
     /**
@@ -690,6 +698,7 @@ public class ParallelWrapper implements AutoCloseable {
         protected Supplier<INDArray> updaterParamsSupplier;
         protected ThresholdAlgorithm thresholdAlgorithm;
         protected ResidualPostProcessor residualPostProcessor;
+        protected int encodingPipelineDepth = 0;
 
         protected GradientsAccumulator accumulator;
 
@@ -884,6 +893,25 @@ public class ParallelWrapper implements AutoCloseable {
             return this;
         }
 
+        /**
+         * This method enables pipelined gradients encoding for SHARED_GRADIENTS training mode: encoding and sharing of updates
+         * is done by dedicated thread per worker, overlapping with next iterations, instead of training threads.
+         * Updates might be applied with delay of up to depth iterations.
+         *
+         * PLEASE NOTE: This option is ignored if GradientsAccumulator was provided explicitly
+         *
+         * Default value: 0 (no pipelining)
+         * @param depth number of iterations encoding can fall behind training, 1 or 2 are usually enough
+         * @return
+         */
+        public Builder encodingPipelineDepth(int depth) {
+            if (depth < 0)
+                throw new DL4JInvalidConfigException("Encoding pipeline depth can't be negative");
+
+            this.encodingPipelineDepth = depth;
+            return this;
+        }
+
         /**
          * This method returns ParallelWrapper instance
          *
@@ -912,8 +940,22 @@ public class ParallelWrapper implements AutoCloseable {
                     Preconditions.checkState(thresholdAlgorithm != null, "Cannot use SHARED_GRADIENTS training mode without setting a threshold algorithm");
                     this.trainerContext = new SymmetricTrainerContext();
                     if (this.accumulator == null) {
-                        log.info("Creating new GradientsAccumulator instance with threshold of [5e-4");
-                        this.accumulator = new EncodedGradientsAccumulator(workers, thresholdAlgorithm, residualPostProcessor,  false);
+                        if (encodingPipelineDepth > 0) {
+                            log.info("Creating new GradientsAccumulator instance with encoding pipeline of depth [{}]", encodingPipelineDepth);
+                            int queueSize = EncodedGradientsAccumulator.getMinimalQueueSize(workers, encodingPipelineDepth);
+                            long memory = Math.max(EncodedGradientsAccumulator.DEFAULT_INITIAL_MEMORY,
+                                            EncodedGradientsAccumulator.getOptimalBufferSize(model, workers, queueSize));
+
+                            this.accumulator = new EncodedGradientsAccumulator.Builder(workers)
+                                            .thresholdAlgorithm(thresholdAlgorithm)
+                                            .residualPostProcessor(residualPostProcessor)
+                                            .memoryParameters(memory, queueSize)
+                                            .encodingPipelineDepth(encodingPipelineDepth)
+                                            .build();
+                        } else {
+                            log.info("Creating new GradientsAccumulator instance with threshold of [5e-4");
+                            this.accumulator = new EncodedGradientsAccumulator(workers, thresholdAlgorithm, residualPostProcessor,  false);
+                        }
                     }
                 }
                     break;
@@ -0,0 +1,283 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.parallelism.inference;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+
+/**
+ * This class picks batch size for BATCHED inference mode, with respect to latency target.
+ *
+ * For every executed batch, workers report arrival time of each request, dispatch time and completion time.
+ * Based on that, controller keeps:
+ * - sliding window of end-to-end request latencies, used to estimate target percentile (p99 by default)
+ * - exponentially weighted linear model of batch execution time: fixed cost + per-request cost
+ *
+ * Batch limit is then adjusted periodically:
+ * - if workers are backlogged, batch limit grows, since larger batches amortize fixed per-batch cost
+ * - if observed percentile exceeds target, batch limit shrinks
+ * - if observed percentile is well below target, batch limit grows
+ * In all cases batch limit never exceeds the size model predicts to execute within target latency.
+ *
+ * PLEASE NOTE: This class is thread-safe
+ */
+@Slf4j
+public class AdaptiveBatchController {
+    public final static int DEFAULT_WINDOW_SIZE = 1024;
+    public final static int DEFAULT_ADJUSTMENT_INTERVAL = 8;
+    public final static double DEFAULT_PERCENTILE = 0.99;
+
+    // if observed percentile is below target * HEADROOM, we're allowed to grow batches
+    private final static double HEADROOM = 0.8;
+    private final static double DECAY = 0.1;
+
+    private final long targetNanos;
+    private final double percentile;
+    private final int minBatchLimit;
+    private final int maxBatchLimit;
+    private final int adjustmentInterval;
+
+    private volatile int batchLimit;
+
+    // end-to-end and queue latencies of individual requests
+    private final long[] latencies;
+    private final long[] queueTimes;
+    private int windowPosition;
+    private int windowCount;
+
+    // exponentially weighted sums, used to fit execTime = fixed + perRequest * batchSize
+    private double sw, sx, sy, sxx, sxy;
+
+    // stats
+    private long totalBatches;
+    private long totalRequests;
+    private int lastBatchSize;
+    private int lastQueueDepth;
+    private int backloggedBatches;
+    private double averageBatchSize;
+    private double averageQueueDepth;
+    private double averageExecNanos;
+    private long lastPercentileNanos;
+
+    public AdaptiveBatchController(long targetNanos, int maxBatchLimit) {
+        this(targetNanos, DEFAULT_PERCENTILE, 1, maxBatchLimit, DEFAULT_WINDOW_SIZE, DEFAULT_ADJUSTMENT_INTERVAL);
+    }
+
+    public AdaptiveBatchController(long targetNanos, double percentile, int minBatchLimit, int maxBatchLimit, int windowSize, int adjustmentInterval) {
+        if (targetNanos <= 0)
+            throw new IllegalStateException("Latency target should be positive value");
+
+        if (percentile <= 0.0 || percentile > 1.0)
+            throw new IllegalStateException("Percentile should be in range (0, 1]");
+
+        if (minBatchLimit < 1 || maxBatchLimit < minBatchLimit)
+            throw new IllegalStateException("Batch limits should be positive, and min limit can't exceed max limit");
+
+        if (windowSize < 1 || adjustmentInterval < 1)
+            throw new IllegalStateException("Window size and adjustment interval should be positive values");
+
+        this.targetNanos = targetNanos;
+        this.percentile = percentile;
+        this.minBatchLimit = minBatchLimit;
+        this.maxBatchLimit = maxBatchLimit;
+        this.adjustmentInterval = adjustmentInterval;
+        this.latencies = new long[windowSize];
+        this.queueTimes = new long[windowSize];
+
+        // we start from the static limit, and let the controller bring it down if needed
+        this.batchLimit = maxBatchLimit;
+    }
+
+    /**
+     * This method returns number of requests that can be packed into a single batch at this moment
+     *
+     * @return
+     */
+    public int getBatchLimit() {
+        return batchLimit;
+    }
+
+    /**
+     * This method returns latency target, in nanoseconds
+     *
+     * @return
+     */
+    public long getTargetNanos() {
+        return targetNanos;
+    }
+
+    /**
+     * This method should be called by worker once batch is executed
+     *
+     * @param arrivalTimes System.nanoTime() of each request within batch, at the moment it was added to batch
+     * @param dispatchTime System.nanoTime() at the moment worker picked batch from the queue
+     * @param completionTime System.nanoTime() at the moment batch execution was finished
+     * @param queueDepth number of batches left in the queue at dispatch time
+     */
+    public synchronized void recordBatch(@NonNull long[] arrivalTimes, long dispatchTime, long completionTime, int queueDepth) {
+        int batchSize = arrivalTimes.length;
+        if (batchSize == 0)
+            return;
+
+        long execNanos = Math.max(0, completionTime - dispatchTime);
+
+        for (long arrival : arrivalTimes) {
+            latencies[windowPosition] = Math.max(0, completionTime - arrival);
+            queueTimes[windowPosition] = Math.max(0, dispatchTime - arrival);
+            windowPosition = (windowPosition + 1) % latencies.length;
+            if (windowCount < latencies.length)
+                windowCount++;
+        }
+
+        // updating execution time model
+        sw = (1.0 - DECAY) * sw + DECAY;
+        sx = (1.0 - DECAY) * sx + DECAY * batchSize;
+        sy = (1.0 - DECAY) * sy + DECAY * execNanos;
+        sxx = (1.0 - DECAY) * sxx + DECAY * batchSize * batchSize;
+        sxy = (1.0 - DECAY) * sxy + DECAY * batchSize * execNanos;
+
+        if (totalBatches == 0) {
+            averageBatchSize = batchSize;
+            averageQueueDepth = queueDepth;
+            averageExecNanos = execNanos;
+        } else {
+            averageBatchSize = (1.0 - DECAY) * averageBatchSize + DECAY * batchSize;
+            averageQueueDepth = (1.0 - DECAY) * averageQueueDepth + DECAY * queueDepth;
+            averageExecNanos = (1.0 - DECAY) * averageExecNanos + DECAY * execNanos;
+        }
+
+        totalBatches++;
+        totalRequests += batchSize;
+        lastBatchSize = batchSize;
+        lastQueueDepth = queueDepth;
+        if (queueDepth > 0)
+            backloggedBatches++;
+
+        if (totalBatches % adjustmentInterval == 0)
+            adjust();
+    }
+
+    /**
+     * This method updates batch limit, based on stats gathered since last adjustment
+     */
+    protected void adjust() {
+        lastPercentileNanos = percentile(latencies, windowCount, percentile);
+
+        int current = batchLimit;
+        int step = Math.max(1, current / 4);
+        int cap = predictedBatchCap();
+        int next;
+
+        if (backloggedBatches * 2 > adjustmentInterval) {
+            // workers can't keep up, so queueing dominates latency - bigger batches give us more throughput,
+            // but only as long as the batch itself still fits into latency target
+            next = Math.min(cap, current + step);
+        } else if (lastPercentileNanos > targetNanos) {
+            next = Math.min(cap, (current * 3) / 4);
+        } else if (lastPercentileNanos < targetNanos * HEADROOM) {
+            next = Math.min(cap, current + step);
+        } else {
+            next = Math.min(cap, current);
+        }
+
+        next = Math.max(minBatchLimit, Math.min(maxBatchLimit, next));
+        backloggedBatches = 0;
+
+        if (next != current) {
+            log.debug("Adjusting batch limit: {} -> {}; p{} latency: {} ns; target: {} ns", current, next, percentile * 100, lastPercentileNanos, targetNanos);
+            batchLimit = next;
+
+            // latencies observed with previous limit aren't representative anymore
+            windowPosition = 0;
+            windowCount = 0;
+        }
+    }
+
+    /**
+     * This method returns largest batch size, which is expected to be executed within latency target
+     *
+     * @return
+     */
+    protected int predictedBatchCap() {
+        if (sw == 0.0)
+            return maxBatchLimit;
+
+        double meanX = sx / sw;
+        double meanY = sy / sw;
+        double varX = sxx / sw - meanX * meanX;
+        double covXY = sxy / sw - meanX * meanY;
+
+        double fixed;
+        double perRequest;
+        if (varX > 1e-3 && covXY > 0) {
+            perRequest = covXY / varX;
+            fixed = Math.max(0.0, meanY - perRequest * meanX);
+        } else {
+            // all batches had the same size so far, so we can't separate fixed cost. Attributing everything to
+            // per-request cost is pessimistic for larger batches, which is what we want here
+            perRequest = meanY / Math.max(1.0, meanX);
+            fixed = 0.0;
+        }
+
+        if (perRequest <= 0.0)
+            return maxBatchLimit;
+
+        double cap = (targetNanos - fixed) / perRequest;
+        if (cap >= maxBatchLimit)
+            return maxBatchLimit;
+
+        return (int) Math.max(minBatchLimit, Math.floor(cap));
+    }
+
+    /**
+     * This method returns snapshot of current batching stats
+     *
+     * @param currentQueueDepth number of batches waiting in the queue right now
+     * @return
+     */
+    public synchronized BatchingStats getStats(int currentQueueDepth) {
+        return BatchingStats.builder()
+                .batchLimit(batchLimit)
+                .targetLatencyNanos(targetNanos)
+                .latencyPercentile(percentile)
+                .latencyPercentileNanos(percentile(latencies, windowCount, percentile))
+                .medianLatencyNanos(percentile(latencies, windowCount, 0.5))
+                .queueTimePercentileNanos(percentile(queueTimes, windowCount, percentile))
+                .averageExecutionNanos((long) averageExecNanos)
+                .lastBatchSize(lastBatchSize)
+                .averageBatchSize(averageBatchSize)
+                .queueDepth(currentQueueDepth)
+                .lastQueueDepth(lastQueueDepth)
+                .averageQueueDepth(averageQueueDepth)
+                .totalBatches(totalBatches)
+                .totalRequests(totalRequests)
+                .build();
+    }
+
+    protected static long percentile(long[] window, int count, double percentile) {
+        if (count == 0)
+            return 0L;
+
+        long[] sorted = Arrays.copyOf(window, count);
+        Arrays.sort(sorted);
+
+        int idx = (int) Math.ceil(percentile * count) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, idx))];
+    }
+}
@@ -0,0 +1,47 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.parallelism.inference;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Snapshot of adaptive batching metrics, as reported by {@link AdaptiveBatchController}.
+ * All time values are in nanoseconds.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchingStats {
+    private int batchLimit;
+    private long targetLatencyNanos;
+    private double latencyPercentile;
+    private long latencyPercentileNanos;
+    private long medianLatencyNanos;
+    private long queueTimePercentileNanos;
+    private long averageExecutionNanos;
+    private int lastBatchSize;
+    private double averageBatchSize;
+    private int queueDepth;
+    private int lastQueueDepth;
+    private double averageQueueDepth;
+    private long totalBatches;
+    private long totalRequests;
+}
@@ -48,4 +48,11 @@ public interface InferenceObservable {
     void addObserver(Observer observer);
 
     INDArray[] getOutput();
+
+    /**
+     * Get priority class of this request. Requests with higher priority are dequeued by workers first
+     *
+     * @return
+     */
+    InferencePriority getPriority();
 }
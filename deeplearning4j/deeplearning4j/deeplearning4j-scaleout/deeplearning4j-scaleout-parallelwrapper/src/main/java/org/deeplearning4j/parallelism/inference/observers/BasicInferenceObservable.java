@@ -19,8 +19,11 @@ package org.deeplearning4j.parallelism.inference.observers;
 import org.nd4j.shade.guava.base.Preconditions;
 import lombok.Getter;
 import lombok.NonNull;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.parallelism.inference.InferenceDeadlineExceededException;
 import org.deeplearning4j.parallelism.inference.InferenceObservable;
+import org.deeplearning4j.parallelism.inference.InferencePriority;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.primitives.Pair;
 
@@ -40,6 +43,24 @@ public class BasicInferenceObservable extends Observable implements InferenceObs
     private INDArray[] output;
     protected Exception exception;
 
+    @Getter
+    @Setter
+    protected InferencePriority priority = InferencePriority.NORMAL;
+
+    /**
+     * Deadline value for requests without deadline. System.nanoTime() may return any long value, including 0
+     * and negative ones, so we use Long.MIN_VALUE here and never compare it against current time
+     */
+    public static final long NO_DEADLINE = Long.MIN_VALUE;
+
+    /**
+     * System.nanoTime() value after which this request shouldn't be passed to the model. {@link #NO_DEADLINE} means no deadline
+     */
+    @Getter
+    @Setter
+    protected long deadline = NO_DEADLINE;
+    private boolean expired;
+
 
     public BasicInferenceObservable(INDArray... inputs) {
         this(inputs, null);
@@ -64,6 +85,11 @@ public class BasicInferenceObservable extends Observable implements InferenceObs
 
     @Override
     public void setOutputBatches(@NonNull List<INDArray[]> output) {
+        if (expired && output.isEmpty()) {
+            setOutputException(new InferenceDeadlineExceededException("Request deadline passed before it reached the model"));
+            return;
+        }
+
         Preconditions.checkArgument(output.size() == 1, "Expected size 1 output: got size " + output.size());
         this.output = output.get(0);
         this.setChanged();
@@ -72,9 +98,20 @@ public class BasicInferenceObservable extends Observable implements InferenceObs
 
     @Override
     public List<Pair<INDArray[],INDArray[]>> getInputBatches(){
+        // expired request is dropped here, so it never reaches the model
+        if (isExpired(deadline, System.nanoTime())) {
+            expired = true;
+            return Collections.emptyList();
+        }
+
         return Collections.singletonList(new Pair<>(input, inputMasks));
     }
 
+    protected static boolean isExpired(long deadline, long now) {
+        // nanoTime values should be compared via difference only, since they can overflow
+        return deadline != NO_DEADLINE && now - deadline > 0;
+    }
+
     @Override
     public void setOutputException(Exception exception){
         this.exception = exception;
@@ -18,7 +18,10 @@ package org.deeplearning4j.parallelism.inference.observers;
 
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
+import lombok.NonNull;
+import org.deeplearning4j.parallelism.inference.InferenceDeadlineExceededException;
 import org.deeplearning4j.parallelism.inference.InferenceObservable;
+import org.deeplearning4j.parallelism.inference.InferencePriority;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.dataset.api.DataSetUtil;
 import org.nd4j.linalg.exception.ND4JIllegalStateException;
@@ -48,6 +51,11 @@ public class BatchedInferenceObservable extends BasicInferenceObservable impleme
     private AtomicInteger counter = new AtomicInteger(0);
     private ThreadLocal<Integer> position = new ThreadLocal<>();
     private List<int[]> outputBatchInputArrays = new ArrayList<>();
+    private List<Long> arrivalTimes = new ArrayList<>();
+    private List<Long> deadlines = new ArrayList<>();
+
+    // positions of inputs that were actually passed to the model, null means all inputs
+    private List<Integer> activePositions;
 
     private final Object locker = new Object();
 
@@ -59,11 +67,28 @@ public class BatchedInferenceObservable extends BasicInferenceObservable impleme
 
     }
 
+    public BatchedInferenceObservable(@NonNull InferencePriority priority) {
+        this.priority = priority;
+    }
+
     @Override
     public void addInput(INDArray[] input, INDArray[] inputMasks) {
+        addInput(input, inputMasks, NO_DEADLINE);
+    }
+
+    /**
+     * This method adds input to this batch
+     *
+     * @param input
+     * @param inputMasks
+     * @param deadline System.nanoTime() value after which this input won't be passed to the model, {@link #NO_DEADLINE} means no deadline
+     */
+    public void addInput(INDArray[] input, INDArray[] inputMasks, long deadline) {
         synchronized (locker) {
             inputs.add(input);
             this.inputMasks.add(inputMasks);
+            arrivalTimes.add(System.nanoTime());
+            deadlines.add(deadline);
             position.set(counter.getAndIncrement());
 
             if (isReadLocked.get())
@@ -78,19 +103,31 @@ public class BatchedInferenceObservable extends BasicInferenceObservable impleme
 
         outputBatchInputArrays.clear();
 
+        // expired inputs are dropped here, so they never reach the model
+        long now = System.nanoTime();
+        activePositions = new ArrayList<>(inputs.size());
+        for (int i = 0; i < inputs.size(); i++) {
+            if (i >= deadlines.size() || !isExpired(deadlines.get(i), now))
+                activePositions.add(i);
+        }
+
+        if (activePositions.isEmpty()) {
+            realLocker.writeLock().unlock();
+            return Collections.emptyList();
+        }
+
         // this method should pile individual examples into single batch
 
-        if (counter.get() > 1) {
+        if (activePositions.size() > 1) {
 
             int pos = 0;
             List<Pair<INDArray[],INDArray[]>> out = new ArrayList<>();
-            int numArrays = inputs.get(0).length;
-            while(pos < inputs.size()) {
+            while(pos < activePositions.size()) {
 
                 //First: determine which we can actually batch...
                 int lastPossible = pos;
-                for (int i = pos+1; i < inputs.size(); i++) {
-                    if (canBatch(inputs.get(pos), inputs.get(i))) {
+                for (int i = pos+1; i < activePositions.size(); i++) {
+                    if (canBatch(inputs.get(activePositions.get(pos)), inputs.get(activePositions.get(i)))) {
                         lastPossible = i;
                     } else {
                         break;
@@ -102,16 +139,16 @@ public class BatchedInferenceObservable extends BasicInferenceObservable impleme
                 INDArray[][] fMasksToMerge = null;
                 int fPos = 0;
                 for( int i=pos; i<=lastPossible; i++ ){
-                    featuresToMerge[fPos] = inputs.get(i);
+                    featuresToMerge[fPos] = inputs.get(activePositions.get(i));
 
-                    if(inputMasks.get(i) != null) {
+                    if(inputMasks.get(activePositions.get(i)) != null) {
                         if(fMasksToMerge == null){
                             fMasksToMerge = new INDArray[countToMerge][0];
                             for( int j=0; j<countToMerge; j++ ){
                                 fMasksToMerge[j] = null;
                             }
                         }
-                        fMasksToMerge[fPos] = inputMasks.get(i);
+                        fMasksToMerge[fPos] = inputMasks.get(activePositions.get(i));
                     }
                     fPos++;
                 }
@@ -125,9 +162,10 @@ public class BatchedInferenceObservable extends BasicInferenceObservable impleme
             realLocker.writeLock().unlock();
             return out;
         } else {
+            int position = activePositions.get(0);
             outputBatchInputArrays.add(new int[]{0,0});
             realLocker.writeLock().unlock();
-            return Collections.singletonList(new Pair<>(inputs.get(0), inputMasks.get(0)));
+            return Collections.singletonList(new Pair<>(inputs.get(position), inputMasks.get(position)));
         }
     }
 
@@ -149,28 +187,27 @@ public class BatchedInferenceObservable extends BasicInferenceObservable impleme
     @Override
     public void setOutputBatches(List<INDArray[]> output) {
         //this method should split batched output INDArray[] into multiple separate INDArrays
-        int countNumInputBatches = 0;   //Counter for total number of input batches processed
+        //Outputs are indexed by input position, expired inputs keep null output
+        outputs.clear();
+        for (int i = 0; i < inputs.size(); i++) {
+            outputs.add(null);
+        }
+
         for( int outBatchNum=0; outBatchNum<output.size(); outBatchNum++ ){ //Iterate over output batch
             INDArray[] currBatchOutputs = output.get(outBatchNum);
             int[] inputBatchIdxs = outputBatchInputArrays.get(outBatchNum);
             int inputBatchCount = inputBatchIdxs[1] - inputBatchIdxs[0] + 1;
             for (int i = 0; i < inputBatchCount; i++) {
-                outputs.add(new INDArray[currBatchOutputs.length]);
+                outputs.set(toPosition(inputBatchIdxs[0] + i), new INDArray[currBatchOutputs.length]);
             }
 
             // pull back results for individual input batches
-            int firstInputBatch = countNumInputBatches;
             for (int outputNumber = 0; outputNumber < currBatchOutputs.length; outputNumber++) {    //Iterate over net outputs
                 INDArray[] split = splitExamples(currBatchOutputs[outputNumber], inputBatchIdxs[0], inputBatchIdxs[1]);
 
-                int currentInputBatch = firstInputBatch;
                 //Iterate over input batch (examples) - note that each output batch is made up of 1 or more input batches
                 for (int inputInBatch = 0; inputInBatch < inputBatchCount; inputInBatch++) {
-                    outputs.get(currentInputBatch++)[outputNumber] = split[inputInBatch];
-
-                    if(outputNumber == 0){
-                        countNumInputBatches++;
-                    }
+                    outputs.get(toPosition(inputBatchIdxs[0] + inputInBatch))[outputNumber] = split[inputInBatch];
                 }
             }
         }
@@ -192,7 +229,7 @@ public class BatchedInferenceObservable extends BasicInferenceObservable impleme
             }
             int examplesSoFar = 0;
             for( int inNum = 0; inNum < numSplits; inNum++ ){
-                val inSizeEx = inputs.get(firstInputComponent + inNum)[0].size(0);
+                val inSizeEx = inputs.get(toPosition(firstInputComponent + inNum))[0].size(0);
                 indices[0] = NDArrayIndex.interval(examplesSoFar, examplesSoFar+inSizeEx);
                 out[inNum] = netOutput.get(indices);
                 examplesSoFar += inSizeEx;
@@ -201,6 +238,13 @@ public class BatchedInferenceObservable extends BasicInferenceObservable impleme
         }
     }
 
+    /**
+     * This method maps index within batched inputs to position of the original input
+     */
+    private int toPosition(int batchedIndex) {
+        return activePositions == null ? batchedIndex : activePositions.get(batchedIndex);
+    }
+
     /**
      * PLEASE NOTE: This method is for tests only
      *
@@ -222,6 +266,23 @@ public class BatchedInferenceObservable extends BasicInferenceObservable impleme
         return counter.get();
     }
 
+    /**
+     * This method returns System.nanoTime() values, captured at the moment each input was added to this batch
+     *
+     * @return
+     */
+    public long[] getArrivalTimes() {
+        synchronized (locker) {
+            // expired inputs weren't passed to the model, so they're excluded here
+            int size = activePositions == null ? arrivalTimes.size() : activePositions.size();
+            long[] result = new long[size];
+            for (int e = 0; e < result.length; e++)
+                result[e] = arrivalTimes.get(toPosition(e));
+
+            return result;
+        }
+    }
+
 
 
     public boolean isLocked() {
@@ -240,6 +301,10 @@ public class BatchedInferenceObservable extends BasicInferenceObservable impleme
     public INDArray[] getOutput() {
         // basically we should take care of splits here: each client should get its own part of output, wrt order number
         checkOutputException();
-        return outputs.get(position.get());
+        INDArray[] output = outputs.get(position.get());
+        if (output == null)
+            throw new InferenceDeadlineExceededException("Request deadline passed before it reached the model");
+
+        return output;
     }
 }
@@ -268,6 +268,13 @@ public class DefaultTrainer extends Thread implements Trainer {
         }
     }
 
+    /**
+     * This method is called on the trainer thread, once shutdown was requested and training loop is over
+     */
+    protected void preShutdown() {
+        //
+    }
+
     /**
      * This method does post-initialization configuration of Model.
      * Good place to configure listeners and all such a things
@@ -444,6 +451,9 @@ public class DefaultTrainer extends Thread implements Trainer {
                     }
                 }
             }
+
+            // classes that extend DefaultTrainer might finalize something there, on the trainer thread
+            preShutdown();
         } catch (Exception e) {
             this.thrownException = e;
             throw new RuntimeException(e);
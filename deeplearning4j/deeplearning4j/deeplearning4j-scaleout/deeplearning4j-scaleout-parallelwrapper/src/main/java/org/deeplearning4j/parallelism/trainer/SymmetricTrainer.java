@@ -22,8 +22,13 @@ import org.deeplearning4j.nn.api.Model;
 import org.deeplearning4j.nn.conf.WorkspaceMode;
 import org.deeplearning4j.nn.graph.ComputationGraph;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.optimize.api.StepFunction;
 import org.deeplearning4j.optimize.listeners.SharedGradient;
+import org.deeplearning4j.optimize.solvers.BaseOptimizer;
+import org.deeplearning4j.optimize.solvers.StochasticGradientDescent;
+import org.deeplearning4j.optimize.solvers.accumulation.EncodedGradientsAccumulator;
 import org.deeplearning4j.optimize.solvers.accumulation.GradientsAccumulator;
+import org.deeplearning4j.optimize.stepfunctions.StepFunctions;
 import org.deeplearning4j.parallelism.ParallelWrapper;
 
 /**
@@ -81,6 +86,25 @@ public class SymmetricTrainer extends DefaultTrainer implements CommunicativeTra
         accumulator.touch();
     }
 
+    @Override
+    protected void preShutdown() {
+        super.preShutdown();
+
+        /*
+            with encoding pipeline, updates encoded after the last iteration are still sitting in our queue.
+            ParallelWrapper flushes the pipeline before shutting trainers down, so we apply them here instead of losing them on reset
+         */
+        if (accumulator instanceof EncodedGradientsAccumulator && replicatedModel != null) {
+            StepFunction stepFunction = StepFunctions.createStepFunction(replicatedModel.conf().getStepFunction());
+            if (stepFunction == null)
+                stepFunction = BaseOptimizer.getDefaultStepFunctionForOptimizer(StochasticGradientDescent.class);
+
+            int cnt = ((EncodedGradientsAccumulator) accumulator).applyPendingUpdates(stepFunction, replicatedModel.params());
+            if (cnt > 0)
+                log.debug("Trainer [{}] applied {} pending updates before shutdown", threadId, cnt);
+        }
+    }
+
 
 
 }
@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.parallelism.inference;
+
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.parallelism.BaseDL4JTest;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+@Slf4j
+public class AdaptiveBatchControllerTest extends BaseDL4JTest {
+
+    private static long[] arrivals(long time, int count) {
+        long[] result = new long[count];
+        Arrays.fill(result, time);
+        return result;
+    }
+
+    @Test
+    public void testShrinksOnSlowBatches() {
+        // 10 ms target, each request costs 1 ms of execution
+        AdaptiveBatchController controller = new AdaptiveBatchController(10_000_000L, 64);
+        assertEquals(64, controller.getBatchLimit());
+
+        long time = 0;
+        for (int e = 0; e < 64; e++) {
+            int size = controller.getBatchLimit();
+            long exec = size * 1_000_000L;
+            controller.recordBatch(arrivals(time, size), time, time + exec, 0);
+            time += exec;
+        }
+
+        assertTrue(controller.getBatchLimit() <= 10);
+        assertTrue(controller.getBatchLimit() >= 1);
+    }
+
+    @Test
+    public void testGrowsWhenBacklogged() {
+        // 10 ms target, p100
+        AdaptiveBatchController controller = new AdaptiveBatchController(10_000_000L, 1.0, 1, 32, 128, 4);
+
+        // slow batches: 20 ms per batch of 4 requests, so controller shrinks limit to the bottom
+        long time = 0;
+        for (int e = 0; e < 16; e++) {
+            controller.recordBatch(arrivals(time, 4), time, time + 20_000_000L, 0);
+            time += 20_000_000L;
+        }
+
+        assertEquals(1, controller.getBatchLimit());
+
+        // now execution is fast, but requests spend 50 ms in the queue, and queue is never empty.
+        // latency is above target, yet limit has to grow, since queueing dominates
+        int previous = controller.getBatchLimit();
+        for (int e = 0; e < 64; e++) {
+            controller.recordBatch(arrivals(time - 50_000_000L, 4), time, time + 1000, 5);
+            time += 1000;
+
+            assertTrue(controller.getBatchLimit() >= previous);
+            previous = controller.getBatchLimit();
+        }
+
+        assertEquals(32, controller.getBatchLimit());
+
+        BatchingStats stats = controller.getStats(3);
+        assertEquals(3, stats.getQueueDepth());
+        assertEquals(5, stats.getLastQueueDepth());
+        assertEquals(80, stats.getTotalBatches());
+        assertEquals(320, stats.getTotalRequests());
+        assertEquals(4, stats.getLastBatchSize());
+    }
+
+    @Test
+    public void testBackloggedGrowthRespectsCap() {
+        AdaptiveBatchController controller = new AdaptiveBatchController(10_000_000L, 1.0, 1, 32, 128, 4);
+
+        // still backlogged, but each request costs 1 ms now, so batches above 10 requests can't meet target
+        long time = 0;
+        for (int e = 0; e < 64; e++) {
+            controller.recordBatch(arrivals(time - 50_000_000L, 4), time, time + 4_000_000L, 5);
+            time += 4_000_000L;
+        }
+
+        assertTrue(controller.getBatchLimit() <= 10);
+        assertTrue(controller.getBatchLimit() >= 1);
+    }
+
+    @Test
+    public void testPercentile() {
+        long[] window = new long[100];
+        for (int e = 0; e < window.length; e++)
+            window[e] = 100 - e;
+
+        assertEquals(99, AdaptiveBatchController.percentile(window, 100, 0.99));
+        assertEquals(50, AdaptiveBatchController.percentile(window, 100, 0.5));
+        assertEquals(0, AdaptiveBatchController.percentile(window, 0, 0.99));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testInvalidTarget() {
+        new AdaptiveBatchController(0, 16);
+    }
+}
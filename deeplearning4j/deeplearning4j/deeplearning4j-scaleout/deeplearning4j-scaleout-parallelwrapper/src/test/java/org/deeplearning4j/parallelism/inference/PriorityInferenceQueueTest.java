@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.parallelism.inference;
+
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.parallelism.BaseDL4JTest;
+import org.deeplearning4j.parallelism.inference.observers.BasicInferenceObservable;
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+@Slf4j
+public class PriorityInferenceQueueTest extends BaseDL4JTest {
+
+    private static BasicInferenceObservable request(InferencePriority priority) {
+        BasicInferenceObservable observable = new BasicInferenceObservable(Nd4j.create(1, 10));
+        observable.setPriority(priority);
+        return observable;
+    }
+
+    @Test
+    public void testPriorityOrder() throws Exception {
+        PriorityInferenceQueue queue = new PriorityInferenceQueue(4);
+
+        InferenceObservable low1 = request(InferencePriority.LOW);
+        InferenceObservable low2 = request(InferencePriority.LOW);
+        InferenceObservable normal = request(InferencePriority.NORMAL);
+        InferenceObservable high = request(InferencePriority.HIGH);
+
+        queue.put(low1);
+        queue.put(low2);
+        queue.put(normal);
+        queue.put(high);
+
+        assertEquals(4, queue.size());
+        assertEquals(2, queue.size(InferencePriority.LOW));
+
+        assertTrue(high == queue.take());
+        assertTrue(normal == queue.take());
+        assertTrue(low1 == queue.take());
+        assertTrue(low2 == queue.take());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void testSharedCapacity() throws Exception {
+        PriorityInferenceQueue queue = new PriorityInferenceQueue(2);
+
+        assertTrue(queue.offer(request(InferencePriority.LOW)));
+        assertTrue(queue.offer(request(InferencePriority.NORMAL)));
+        assertEquals(0, queue.remainingCapacity());
+
+        // queue limit is total for all lanes
+        assertFalse(queue.offer(request(InferencePriority.LOW)));
+        assertFalse(queue.offer(request(InferencePriority.HIGH)));
+        assertFalse(queue.offer(request(InferencePriority.HIGH), 10, TimeUnit.MILLISECONDS));
+        assertEquals(2, queue.size());
+
+        InferenceObservable high = request(InferencePriority.HIGH);
+        assertEquals(InferencePriority.NORMAL, queue.take().getPriority());
+        assertTrue(queue.offer(high));
+        assertTrue(high == queue.take());
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    public void testExpiredRequestDropped() throws Exception {
+        BasicInferenceObservable observable = request(InferencePriority.HIGH);
+        observable.setDeadline(System.nanoTime() - 1);
+
+        assertTrue(observable.getInputBatches().isEmpty());
+        observable.setOutputBatches(Collections.<INDArray[]>emptyList());
+
+        try {
+            observable.getOutput();
+            fail("Expected InferenceDeadlineExceededException");
+        } catch (InferenceDeadlineExceededException e) {
+            // expected
+        }
+    }
+}
@@ -18,20 +18,26 @@ package org.deeplearning4j.parallelism.inference.observers;
 
 import lombok.extern.slf4j.Slf4j;
 import org.deeplearning4j.parallelism.BaseDL4JTest;
+import org.deeplearning4j.parallelism.inference.InferenceDeadlineExceededException;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.primitives.Pair;
 
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author raver119@gmail.com
@@ -141,4 +147,58 @@ public class BatchedInferenceObservableTest extends BaseDL4JTest {
             assertEquals((float) i, outputs.get(i)[1].meanNumber().floatValue(), 0.001f);
         }
     }
+
+    @Test
+    public void testExpiredInputsDropped() throws Exception {
+        BatchedInferenceObservable observable = new BatchedInferenceObservable();
+
+        long expired = System.nanoTime() - TimeUnit.SECONDS.toNanos(1);
+        long pending = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+        for (int i = 0; i < 4; i++) {
+            // odd inputs: one with deadline far in future, one without deadline at all
+            long deadline = i % 2 == 0 ? expired : (i == 1 ? pending : BasicInferenceObservable.NO_DEADLINE);
+            observable.addInput(new INDArray[]{Nd4j.create(1,10).assign(i)}, null, deadline);
+        }
+
+        List<Pair<INDArray[], INDArray[]>> batches = observable.getInputBatches();
+        assertEquals(1, batches.size());
+
+        INDArray batch = batches.get(0).getFirst()[0];
+        assertArrayEquals(new long[]{2, 10}, batch.shape());
+        assertEquals(1.0f, batch.getRow(0).meanNumber().floatValue(), 0.001f);
+        assertEquals(3.0f, batch.getRow(1).meanNumber().floatValue(), 0.001f);
+        assertEquals(2, observable.getArrivalTimes().length);
+
+        observable.setOutputBatches(Collections.singletonList(new INDArray[]{batch.dup()}));
+
+        observable.setPosition(1);
+        assertEquals(1.0f, observable.getOutput()[0].meanNumber().floatValue(), 0.001f);
+        observable.setPosition(3);
+        assertEquals(3.0f, observable.getOutput()[0].meanNumber().floatValue(), 0.001f);
+
+        observable.setPosition(0);
+        try {
+            observable.getOutput();
+            fail("Expected InferenceDeadlineExceededException");
+        } catch (InferenceDeadlineExceededException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testDeadlineComparison() {
+        // System.nanoTime() origin is arbitrary, so zero and negative values are valid deadlines
+        assertTrue(BasicInferenceObservable.isExpired(0L, 10L));
+        assertFalse(BasicInferenceObservable.isExpired(0L, -10L));
+        assertTrue(BasicInferenceObservable.isExpired(-200L, -100L));
+        assertFalse(BasicInferenceObservable.isExpired(-100L, -200L));
+
+        // deadline past overflow point still works
+        assertTrue(BasicInferenceObservable.isExpired(Long.MAX_VALUE, Long.MAX_VALUE + 10));
+        assertFalse(BasicInferenceObservable.isExpired(Long.MAX_VALUE - 10, Long.MAX_VALUE));
+
+        assertFalse(BasicInferenceObservable.isExpired(BasicInferenceObservable.NO_DEADLINE, 0L));
+        assertFalse(BasicInferenceObservable.isExpired(BasicInferenceObservable.NO_DEADLINE, Long.MAX_VALUE));
+        assertFalse(BasicInferenceObservable.isExpired(BasicInferenceObservable.NO_DEADLINE, Long.MIN_VALUE + 10));
+    }
 }
@@ -40,6 +40,7 @@ import org.deeplearning4j.ui.stats.api.Histogram;
 import org.deeplearning4j.ui.stats.api.StatsInitializationReport;
 import org.deeplearning4j.ui.stats.api.StatsReport;
 import org.deeplearning4j.ui.stats.api.StatsType;
+import org.deeplearning4j.ui.storage.segmented.SegmentedFileStatsStorage;
 import org.deeplearning4j.ui.views.html.training.TrainingModel;
 import org.deeplearning4j.ui.views.html.training.TrainingOverview;
 import org.deeplearning4j.ui.views.html.training.TrainingSystem;
@@ -485,6 +486,39 @@ public class TrainModule implements UIModule {
         }
     }
 
+    /**
+     * Get all updates for the given session and worker, subsampled to approximately maxChartPoints records if necessary.
+     * The final update is always included.
+     */
+    private List<Persistable> getChartUpdates(StatsStorage ss, String sessionId, String wid) {
+        if (ss instanceof SegmentedFileStatsStorage) {
+            //Subsampling is done directly on the storage time index: no need to fetch all update times first
+            return ((SegmentedFileStatsStorage) ss).getUpdatesDownsampled(sessionId, StatsListener.TYPE_ID, wid,
+                            Long.MIN_VALUE, Long.MAX_VALUE, maxChartPoints + 1);
+        }
+
+        long[] allTimes = ss.getAllUpdateTimes(sessionId, StatsListener.TYPE_ID, wid);
+        if (allTimes == null)
+            return null;
+
+        if(allTimes.length > maxChartPoints){
+            int subsamplingFrequency = allTimes.length / maxChartPoints;
+            LongArrayList timesToQuery = new LongArrayList(maxChartPoints+2);
+            int i=0;
+            for(; i<allTimes.length; i+= subsamplingFrequency){
+                timesToQuery.add(allTimes[i]);
+            }
+            if((i-subsamplingFrequency) != allTimes.length-1){
+                //Also add final point
+                timesToQuery.add(allTimes[allTimes.length-1]);
+            }
+            return ss.getUpdates(sessionId, StatsListener.TYPE_ID, wid, timesToQuery.toArray());
+        }
+
+        //Don't subsample
+        return ss.getAllUpdatesAfter(sessionId, StatsListener.TYPE_ID, wid, 0);
+    }
+
     private Result getLastUpdateForSession(String sessionID) {
         Long lastUpdate = lastUpdateForSession.get(sessionID);
         if (lastUpdate != null)
@@ -585,24 +619,7 @@ public class TrainModule implements UIModule {
         result.put("scoresIter", scoresIterCount);
 
         //Get scores info
-        long[] allTimes = (noData ? null : ss.getAllUpdateTimes(sessionId, StatsListener.TYPE_ID, wid));
-        List<Persistable> updates = null;
-        if(allTimes != null && allTimes.length > maxChartPoints){
-            int subsamplingFrequency = allTimes.length / maxChartPoints;
-            LongArrayList timesToQuery = new LongArrayList(maxChartPoints+2);
-            int i=0;
-            for(; i<allTimes.length; i+= subsamplingFrequency){
-                timesToQuery.add(allTimes[i]);
-            }
-            if((i-subsamplingFrequency) != allTimes.length-1){
-                //Also add final point
-                timesToQuery.add(allTimes[allTimes.length-1]);
-            }
-            updates = ss.getUpdates(sessionId, StatsListener.TYPE_ID, wid, timesToQuery.toArray());
-        } else if(allTimes != null) {
-            //Don't subsample
-            updates = ss.getAllUpdatesAfter(sessionId, StatsListener.TYPE_ID, wid, 0);
-        }
+        List<Persistable> updates = (noData ? null : getChartUpdates(ss, sessionId, wid));
         if (updates == null || updates.isEmpty()) {
             noData = true;
         }
@@ -913,27 +930,9 @@ public class TrainModule implements UIModule {
         result.put("layerInfo", layerInfoTable);
 
         //First: get all data, and subsample it if necessary, to avoid returning too many points...
-        long[] allTimes = (noData ? null : ss.getAllUpdateTimes(sessionId, StatsListener.TYPE_ID, wid));
-
-        List<Persistable> updates = null;
+        List<Persistable> updates = (noData ? null : getChartUpdates(ss, sessionId, wid));
         List<Integer> iterationCounts = null;
         boolean needToHandleLegacyIterCounts = false;
-        if(allTimes != null && allTimes.length > maxChartPoints){
-            int subsamplingFrequency = allTimes.length / maxChartPoints;
-            LongArrayList timesToQuery = new LongArrayList(maxChartPoints+2);
-            int i=0;
-            for(; i<allTimes.length; i+= subsamplingFrequency){
-                timesToQuery.add(allTimes[i]);
-            }
-            if((i-subsamplingFrequency) != allTimes.length-1){
-                //Also add final point
-                timesToQuery.add(allTimes[allTimes.length-1]);
-            }
-            updates = ss.getUpdates(sessionId, StatsListener.TYPE_ID, wid, timesToQuery.toArray());
-        } else if(allTimes != null) {
-            //Don't subsample
-            updates = ss.getAllUpdatesAfter(sessionId, StatsListener.TYPE_ID, wid, 0);
-        }
 
         iterationCounts = new ArrayList<>(updates.size());
         int lastIterCount = -1;
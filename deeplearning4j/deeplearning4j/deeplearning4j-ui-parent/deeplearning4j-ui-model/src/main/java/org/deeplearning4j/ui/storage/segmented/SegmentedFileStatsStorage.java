@@ -0,0 +1,988 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.ui.storage.segmented;
+
+import lombok.Data;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.api.storage.*;
+import org.deeplearning4j.ui.storage.BaseCollectionStatsStorage.SessionTypeId;
+import org.deeplearning4j.ui.storage.BaseCollectionStatsStorage.SessionTypeWorkerId;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A file-based {@link StatsStorage} implementation, designed for long training runs.<br>
+ * Records are appended to a sequence of segment files within the storage directory, and are never rewritten.
+ * For each (session, type, worker) triple an in-memory index of timestamps and record positions is maintained,
+ * so time-range reads are O(log n) plus the records actually returned, instead of a scan over all updates.
+ * Payloads are decoded only when requested.<br>
+ * For charts, {@link #getUpdatesDownsampled(String, String, String, long, long, int)} picks evenly spaced records
+ * straight from the index, so refresh cost depends on the number of points shown, not on the length of the run.<br>
+ * <br>
+ * Storage can be reopened later (by passing same directory), index is rebuilt from record headers.
+ * Partially written record at the end of last segment (i.e. after crash) is discarded on reopen.<br>
+ * Storage format is incompatible with {@link org.deeplearning4j.ui.storage.FileStatsStorage}.
+ */
+@Slf4j
+public class SegmentedFileStatsStorage implements StatsStorage {
+    public static final long DEFAULT_SEGMENT_SIZE = 64L * 1024L * 1024L;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".bin";
+
+    private static final int RECORD_MAGIC = 0x53535347;
+    private static final int HEADER_LENGTH = 8;
+
+    private static final byte TYPE_CLASS = 0;
+    private static final byte TYPE_META = 1;
+    private static final byte TYPE_STATIC = 2;
+    private static final byte TYPE_UPDATE = 3;
+
+    // record position is encoded as segment index in the upper bits, and offset within segment in the lower bits
+    private static final int OFFSET_BITS = 40;
+    private static final long OFFSET_MASK = (1L << OFFSET_BITS) - 1;
+
+    private final File directory;
+    private final long segmentSize;
+    private final boolean syncOnWrite;
+
+    private final List<RandomAccessFile> files = new ArrayList<>();
+    private final List<FileChannel> segments = new ArrayList<>();
+    private long writePosition;
+
+    private final Map<String, Integer> classToInteger = new HashMap<>();
+    private final List<String> integerToClass = new ArrayList<>();
+
+    private final Set<String> sessionIDs = new LinkedHashSet<>();
+    private final Set<String> typeIDs = new HashSet<>();
+    private final Set<String> workerIDs = new HashSet<>();
+    private final Map<SessionTypeId, StorageMetaData> storageMetaData = new LinkedHashMap<>();
+    private final Map<SessionTypeWorkerId, Persistable> staticInfo = new LinkedHashMap<>();
+    private final Map<SessionTypeWorkerId, TimeIndex> updates = new LinkedHashMap<>();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<StatsStorageListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile boolean isClosed = false;
+
+    /**
+     * @param directory Storage location for the stats. Will be created if it doesn't exist
+     */
+    public SegmentedFileStatsStorage(@NonNull File directory) {
+        this(new Builder(directory));
+    }
+
+    private SegmentedFileStatsStorage(Builder builder) {
+        if (builder.getDirectory() == null)
+            throw new IllegalStateException("Storage directory must be specified");
+        if (builder.getSegmentSize() <= HEADER_LENGTH || builder.getSegmentSize() > OFFSET_MASK)
+            throw new IllegalStateException("Invalid segment size: " + builder.getSegmentSize());
+
+        this.directory = builder.getDirectory();
+        this.segmentSize = builder.getSegmentSize();
+        this.syncOnWrite = builder.isSyncOnWrite();
+
+        if (!directory.exists() && !directory.mkdirs())
+            throw new IllegalStateException("Unable to create storage directory: " + directory.getAbsolutePath());
+        if (!directory.isDirectory())
+            throw new IllegalStateException("Storage location is not a directory: " + directory.getAbsolutePath());
+
+        try {
+            openSegments();
+        } catch (IOException e) {
+            throw new RuntimeException("Error initializing SegmentedFileStatsStorage instance", e);
+        }
+    }
+
+    // ----- Segments -----
+
+    private File segmentFile(int index) {
+        return new File(directory, String.format("%s%06d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+
+    private void openSegments() throws IOException {
+        int index = 0;
+        while (segmentFile(index).exists()) {
+            File f = segmentFile(index);
+            RandomAccessFile raf = new RandomAccessFile(f, "rw");
+            files.add(raf);
+            segments.add(raf.getChannel());
+
+            long validLength = scanSegment(index, f);
+            if (validLength < f.length()) {
+                log.warn("Discarding {} bytes of incomplete records at the end of segment {}", f.length() - validLength,
+                                f.getAbsolutePath());
+                raf.getChannel().truncate(validLength);
+            }
+            writePosition = validLength;
+            index++;
+        }
+
+        if (segments.isEmpty())
+            newSegment();
+    }
+
+    private void newSegment() throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(segmentFile(segments.size()), "rw");
+        files.add(raf);
+        segments.add(raf.getChannel());
+        writePosition = 0;
+    }
+
+    /**
+     * This method rebuilds in-memory state from records in given segment
+     *
+     * @return length of the valid part of the segment
+     */
+    private long scanSegment(int index, File f) throws IOException {
+        long position = 0;
+        long length = f.length();
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(f), 1 << 16))) {
+            while (position + HEADER_LENGTH <= length) {
+                int magic = dis.readInt();
+                int bodyLength = dis.readInt();
+                if (magic != RECORD_MAGIC || bodyLength <= 0 || position + HEADER_LENGTH + bodyLength > length)
+                    break;
+
+                byte[] body = new byte[bodyLength];
+                dis.readFully(body);
+                applyRecord(body, encodePosition(index, position));
+                position += HEADER_LENGTH + bodyLength;
+            }
+        }
+        return position;
+    }
+
+    private static long encodePosition(int segment, long offset) {
+        return ((long) segment << OFFSET_BITS) | offset;
+    }
+
+    /**
+     * This method applies record to in-memory state. For updates only index is updated, payload isn't decoded
+     */
+    private void applyRecord(byte[] body, long position) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        byte type = in.readByte();
+        int classIdx = in.readInt();
+        if (type == TYPE_CLASS) {
+            String className = in.readUTF();
+            classToInteger.put(className, classIdx);
+            while (integerToClass.size() <= classIdx)
+                integerToClass.add(null);
+            integerToClass.set(classIdx, className);
+            return;
+        }
+
+        String sessionID = in.readUTF();
+        String typeID = in.readUTF();
+        String workerID = in.readUTF();
+        long timestamp = in.readLong();
+
+        switch (type) {
+            case TYPE_META: {
+                StorageMetaData m = (StorageMetaData) decodePayload(classIdx, in);
+                storageMetaData.put(new SessionTypeId(sessionID, typeID), m);
+                typeIDs.add(typeID);
+                break;
+            }
+            case TYPE_STATIC: {
+                Persistable p = decodePayload(classIdx, in);
+                staticInfo.put(new SessionTypeWorkerId(sessionID, typeID, workerID), p);
+                sessionIDs.add(sessionID);
+                typeIDs.add(typeID);
+                workerIDs.add(workerID);
+                break;
+            }
+            case TYPE_UPDATE: {
+                SessionTypeWorkerId id = new SessionTypeWorkerId(sessionID, typeID, workerID);
+                TimeIndex index = updates.get(id);
+                if (index == null) {
+                    index = new TimeIndex();
+                    updates.put(id, index);
+                }
+                index.put(timestamp, position);
+                typeIDs.add(typeID);
+                workerIDs.add(workerID);
+                break;
+            }
+            default:
+                throw new IOException("Unknown record type: " + type);
+        }
+    }
+
+    private Persistable decodePayload(int classIdx, DataInputStream in) throws IOException {
+        String className = classIdx < integerToClass.size() ? integerToClass.get(classIdx) : null;
+        if (className == null)
+            throw new IOException("Unknown class index: " + classIdx); //Should never happen
+
+        Persistable p;
+        try {
+            p = (Persistable) Class.forName(className).newInstance();
+        } catch (ClassNotFoundException | InstantiationException | IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+
+        byte[] payload = new byte[in.readInt()];
+        in.readFully(payload);
+        p.decode(payload);
+        return p;
+    }
+
+    private Persistable readUpdate(long position) {
+        FileChannel channel = segments.get((int) (position >>> OFFSET_BITS));
+        long offset = position & OFFSET_MASK;
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+            readFully(channel, header, offset);
+            header.flip();
+            if (header.getInt() != RECORD_MAGIC)
+                throw new IOException("Corrupt record at offset " + offset);
+
+            ByteBuffer body = ByteBuffer.allocate(header.getInt());
+            readFully(channel, body, offset + HEADER_LENGTH);
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(body.array()));
+            in.readByte();
+            int classIdx = in.readInt();
+            in.readUTF();
+            in.readUTF();
+            in.readUTF();
+            in.readLong();
+            return decodePayload(classIdx, in);
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading update record", e);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0)
+                throw new EOFException("Unexpected end of segment");
+        }
+    }
+
+    /**
+     * This method appends record to the last segment, and returns its position
+     */
+    private long append(byte type, Persistable p) throws IOException {
+        int classIdx = getIntForClass(p.getClass());
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(p.encodingLengthBytes() + 128);
+        DataOutputStream out = new DataOutputStream(baos);
+        out.writeInt(RECORD_MAGIC);
+        out.writeInt(0); //Placeholder for body length
+        out.writeByte(type);
+        out.writeInt(classIdx);
+        out.writeUTF(p.getSessionID());
+        out.writeUTF(p.getTypeID());
+        out.writeUTF(p.getWorkerID() == null ? "" : p.getWorkerID());
+        out.writeLong(p.getTimeStamp());
+        byte[] payload = p.encode();
+        out.writeInt(payload.length);
+        out.write(payload);
+        out.flush();
+
+        return write(baos.toByteArray());
+    }
+
+    private long write(byte[] record) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        buffer.putInt(4, record.length - HEADER_LENGTH);
+
+        if (writePosition > 0 && writePosition + record.length > segmentSize)
+            newSegment();
+
+        FileChannel channel = segments.get(segments.size() - 1);
+        long position = encodePosition(segments.size() - 1, writePosition);
+        long offset = writePosition;
+        while (buffer.hasRemaining())
+            offset += channel.write(buffer, offset);
+
+        if (syncOnWrite)
+            channel.force(false);
+
+        writePosition = offset;
+        return position;
+    }
+
+    private int getIntForClass(Class<?> c) throws IOException {
+        String str = c.getName();
+        Integer idx = classToInteger.get(str);
+        if (idx != null)
+            return idx;
+
+        int newIdx = integerToClass.size();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(baos);
+        out.writeInt(RECORD_MAGIC);
+        out.writeInt(0);
+        out.writeByte(TYPE_CLASS);
+        out.writeInt(newIdx);
+        out.writeUTF(str);
+        out.flush();
+        write(baos.toByteArray());
+
+        classToInteger.put(str, newIdx);
+        integerToClass.add(str);
+        return newIdx;
+    }
+
+    private void checkOpen() {
+        if (isClosed)
+            throw new IllegalStateException("Storage is closed");
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (isClosed)
+                return;
+
+            for (FileChannel channel : segments)
+                channel.force(true);
+            for (RandomAccessFile raf : files)
+                raf.close();
+            isClosed = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return isClosed;
+    }
+
+    // ----- Queries -----
+
+    @Override
+    public List<String> listSessionIDs() {
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(sessionIDs);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean sessionExists(String sessionID) {
+        lock.readLock().lock();
+        try {
+            return sessionIDs.contains(sessionID);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Persistable getStaticInfo(String sessionID, String typeID, String workerID) {
+        lock.readLock().lock();
+        try {
+            return staticInfo.get(new SessionTypeWorkerId(sessionID, typeID, workerID));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Persistable> getAllStaticInfos(String sessionID, String typeID) {
+        lock.readLock().lock();
+        try {
+            List<Persistable> out = new ArrayList<>();
+            for (Map.Entry<SessionTypeWorkerId, Persistable> e : staticInfo.entrySet()) {
+                if (sessionID.equals(e.getKey().getSessionID()) && typeID.equals(e.getKey().getTypeID()))
+                    out.add(e.getValue());
+            }
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<String> listTypeIDsForSession(String sessionID) {
+        lock.readLock().lock();
+        try {
+            Set<String> out = new LinkedHashSet<>();
+            for (SessionTypeId st : storageMetaData.keySet()) {
+                if (sessionID.equals(st.getSessionID()))
+                    out.add(st.getTypeID());
+            }
+            for (SessionTypeWorkerId stw : staticInfo.keySet()) {
+                if (sessionID.equals(stw.getSessionID()))
+                    out.add(stw.getTypeID());
+            }
+            for (SessionTypeWorkerId stw : updates.keySet()) {
+                if (sessionID.equals(stw.getSessionID()))
+                    out.add(stw.getTypeID());
+            }
+            return new ArrayList<>(out);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<String> listWorkerIDsForSession(String sessionID) {
+        lock.readLock().lock();
+        try {
+            List<String> out = new ArrayList<>();
+            for (SessionTypeWorkerId stw : staticInfo.keySet()) {
+                if (sessionID.equals(stw.getSessionID()))
+                    out.add(stw.getWorkerID());
+            }
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<String> listWorkerIDsForSessionAndType(String sessionID, String typeID) {
+        lock.readLock().lock();
+        try {
+            List<String> out = new ArrayList<>();
+            for (SessionTypeWorkerId stw : staticInfo.keySet()) {
+                if (sessionID.equals(stw.getSessionID()) && typeID.equals(stw.getTypeID()))
+                    out.add(stw.getWorkerID());
+            }
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int getNumUpdateRecordsFor(String sessionID) {
+        lock.readLock().lock();
+        try {
+            int count = 0;
+            for (Map.Entry<SessionTypeWorkerId, TimeIndex> e : updates.entrySet()) {
+                if (sessionID.equals(e.getKey().getSessionID()))
+                    count += e.getValue().size;
+            }
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int getNumUpdateRecordsFor(String sessionID, String typeID, String workerID) {
+        lock.readLock().lock();
+        try {
+            TimeIndex index = updates.get(new SessionTypeWorkerId(sessionID, typeID, workerID));
+            return index == null ? 0 : index.size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Persistable getLatestUpdate(String sessionID, String typeID, String workerID) {
+        lock.readLock().lock();
+        try {
+            TimeIndex index = updates.get(new SessionTypeWorkerId(sessionID, typeID, workerID));
+            if (index == null || index.size == 0)
+                return null;
+            return readUpdate(index.positions[index.size - 1]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Persistable getUpdate(String sessionID, String typeID, String workerID, long timestamp) {
+        lock.readLock().lock();
+        try {
+            TimeIndex index = updates.get(new SessionTypeWorkerId(sessionID, typeID, workerID));
+            if (index == null)
+                return null;
+            int idx = index.indexOf(timestamp);
+            return idx < 0 ? null : readUpdate(index.positions[idx]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Persistable> getLatestUpdateAllWorkers(String sessionID, String typeID) {
+        lock.readLock().lock();
+        try {
+            List<Persistable> out = new ArrayList<>();
+            for (Map.Entry<SessionTypeWorkerId, TimeIndex> e : updates.entrySet()) {
+                TimeIndex index = e.getValue();
+                if (sessionID.equals(e.getKey().getSessionID()) && typeID.equals(e.getKey().getTypeID())
+                                && index.size > 0)
+                    out.add(readUpdate(index.positions[index.size - 1]));
+            }
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Persistable> getAllUpdatesAfter(String sessionID, String typeID, String workerID, long timestamp) {
+        lock.readLock().lock();
+        try {
+            TimeIndex index = updates.get(new SessionTypeWorkerId(sessionID, typeID, workerID));
+            if (index == null)
+                return new ArrayList<>();
+
+            int from = index.firstAfter(timestamp);
+            List<Persistable> out = new ArrayList<>(index.size - from);
+            for (int i = from; i < index.size; i++)
+                out.add(readUpdate(index.positions[i]));
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Persistable> getAllUpdatesAfter(String sessionID, String typeID, long timestamp) {
+        lock.readLock().lock();
+        try {
+            // records of each worker are already sorted, so we only need to merge them by timestamp
+            List<long[]> entries = new ArrayList<>();
+            for (Map.Entry<SessionTypeWorkerId, TimeIndex> e : updates.entrySet()) {
+                if (!sessionID.equals(e.getKey().getSessionID()) || !typeID.equals(e.getKey().getTypeID()))
+                    continue;
+
+                TimeIndex index = e.getValue();
+                for (int i = index.firstAfter(timestamp); i < index.size; i++)
+                    entries.add(new long[] {index.timestamps[i], index.positions[i]});
+            }
+
+            Collections.sort(entries, new Comparator<long[]>() {
+                @Override
+                public int compare(long[] o1, long[] o2) {
+                    return Long.compare(o1[0], o2[0]);
+                }
+            });
+
+            List<Persistable> out = new ArrayList<>(entries.size());
+            for (long[] entry : entries)
+                out.add(readUpdate(entry[1]));
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get all updates for the given session, type and worker ID with timestamp in range [fromTimestamp, toTimestamp)
+     *
+     * @param sessionID     Session ID
+     * @param typeID        Type ID
+     * @param workerID      Worker ID
+     * @param fromTimestamp Start of the range, inclusive
+     * @param toTimestamp   End of the range, exclusive
+     * @return List of records, sorted by timestamp
+     */
+    public List<Persistable> getUpdatesInRange(String sessionID, String typeID, String workerID, long fromTimestamp,
+                    long toTimestamp) {
+        lock.readLock().lock();
+        try {
+            TimeIndex index = updates.get(new SessionTypeWorkerId(sessionID, typeID, workerID));
+            if (index == null)
+                return new ArrayList<>();
+
+            int from = index.firstNotBefore(fromTimestamp);
+            int to = index.firstNotBefore(toTimestamp);
+            List<Persistable> out = new ArrayList<>(Math.max(0, to - from));
+            for (int i = from; i < to; i++)
+                out.add(readUpdate(index.positions[i]));
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get at most maxPoints updates for the given session, type and worker ID with timestamp in range
+     * [fromTimestamp, toTimestamp). Records are picked evenly across the range, and the last record of the range is
+     * always included. Useful for charts of long training runs, where only a fixed number of points can be shown.
+     *
+     * @param sessionID     Session ID
+     * @param typeID        Type ID
+     * @param workerID      Worker ID
+     * @param fromTimestamp Start of the range, inclusive
+     * @param toTimestamp   End of the range, exclusive
+     * @param maxPoints     Maximum number of records to return
+     * @return List of records, sorted by timestamp
+     */
+    public List<Persistable> getUpdatesDownsampled(String sessionID, String typeID, String workerID,
+                    long fromTimestamp, long toTimestamp, int maxPoints) {
+        if (maxPoints < 1)
+            throw new IllegalStateException("Number of points should be positive value");
+
+        lock.readLock().lock();
+        try {
+            TimeIndex index = updates.get(new SessionTypeWorkerId(sessionID, typeID, workerID));
+            if (index == null)
+                return new ArrayList<>();
+
+            int from = index.firstNotBefore(fromTimestamp);
+            int to = index.firstNotBefore(toTimestamp);
+            int count = to - from;
+            if (count <= 0)
+                return new ArrayList<>();
+
+            List<Persistable> out = new ArrayList<>(Math.min(count, maxPoints));
+            if (count <= maxPoints) {
+                for (int i = from; i < to; i++)
+                    out.add(readUpdate(index.positions[i]));
+                return out;
+            }
+
+            if (maxPoints == 1) {
+                out.add(readUpdate(index.positions[to - 1]));
+                return out;
+            }
+
+            // count > maxPoints here, so picked indices are distinct, and the last one is always (to - 1)
+            for (int p = 0; p < maxPoints; p++) {
+                int i = from + (int) ((long) p * (count - 1) / (maxPoints - 1));
+                out.add(readUpdate(index.positions[i]));
+            }
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public StorageMetaData getStorageMetaData(String sessionID, String typeID) {
+        lock.readLock().lock();
+        try {
+            return storageMetaData.get(new SessionTypeId(sessionID, typeID));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long[] getAllUpdateTimes(String sessionID, String typeID, String workerID) {
+        lock.readLock().lock();
+        try {
+            TimeIndex index = updates.get(new SessionTypeWorkerId(sessionID, typeID, workerID));
+            if (index == null)
+                return new long[0];
+            return Arrays.copyOf(index.timestamps, index.size);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Persistable> getUpdates(String sessionID, String typeID, String workerID, long[] timestamps) {
+        lock.readLock().lock();
+        try {
+            TimeIndex index = updates.get(new SessionTypeWorkerId(sessionID, typeID, workerID));
+            if (index == null)
+                return Collections.emptyList();
+
+            List<Persistable> out = new ArrayList<>(timestamps.length);
+            for (long l : timestamps) {
+                int idx = index.indexOf(l);
+                if (idx >= 0)
+                    out.add(readUpdate(index.positions[idx]));
+            }
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ----- Store new info -----
+
+    @Override
+    public void putStorageMetaData(StorageMetaData storageMetaData) {
+        List<StatsStorageEvent> sses;
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            sses = checkStorageEvents(storageMetaData);
+            append(TYPE_META, storageMetaData);
+            this.storageMetaData.put(new SessionTypeId(storageMetaData.getSessionID(), storageMetaData.getTypeID()),
+                            storageMetaData);
+            typeIDs.add(storageMetaData.getTypeID());
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing storage metadata", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        notifyListeners(StatsStorageListener.EventType.PostMetaData, storageMetaData, sses);
+    }
+
+    @Override
+    public void putStorageMetaData(Collection<? extends StorageMetaData> storageMetaData) {
+        for (StorageMetaData m : storageMetaData)
+            putStorageMetaData(m);
+    }
+
+    @Override
+    public void putStaticInfo(Persistable staticInfo) {
+        List<StatsStorageEvent> sses;
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            sses = checkStorageEvents(staticInfo);
+            append(TYPE_STATIC, staticInfo);
+            this.staticInfo.put(new SessionTypeWorkerId(staticInfo.getSessionID(), staticInfo.getTypeID(),
+                            staticInfo.getWorkerID()), staticInfo);
+            sessionIDs.add(staticInfo.getSessionID());
+            typeIDs.add(staticInfo.getTypeID());
+            workerIDs.add(staticInfo.getWorkerID());
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing static info", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        notifyListeners(StatsStorageListener.EventType.PostStaticInfo, staticInfo, sses);
+    }
+
+    @Override
+    public void putStaticInfo(Collection<? extends Persistable> staticInfo) {
+        for (Persistable p : staticInfo)
+            putStaticInfo(p);
+    }
+
+    @Override
+    public void putUpdate(Persistable update) {
+        List<StatsStorageEvent> sses;
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            sses = checkStorageEvents(update);
+            long position = append(TYPE_UPDATE, update);
+
+            SessionTypeWorkerId id = new SessionTypeWorkerId(update.getSessionID(), update.getTypeID(),
+                            update.getWorkerID());
+            TimeIndex index = updates.get(id);
+            if (index == null) {
+                index = new TimeIndex();
+                updates.put(id, index);
+            }
+            index.put(update.getTimeStamp(), position);
+            typeIDs.add(update.getTypeID());
+            workerIDs.add(update.getWorkerID());
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing update", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        notifyListeners(StatsStorageListener.EventType.PostUpdate, update, sses);
+    }
+
+    @Override
+    public void putUpdate(Collection<? extends Persistable> updates) {
+        for (Persistable p : updates)
+            putUpdate(p);
+    }
+
+    // ----- Listeners -----
+
+    //Events are collected under lock, but listeners are notified after it's released: otherwise whatever is
+    //receiving the events might try to read data that isn't available yet
+    private List<StatsStorageEvent> checkStorageEvents(Persistable p) {
+        if (listeners.isEmpty())
+            return null;
+
+        List<StatsStorageEvent> sses = new ArrayList<>(3);
+        if (!sessionIDs.contains(p.getSessionID()))
+            sses.add(new StatsStorageEvent(this, StatsStorageListener.EventType.NewSessionID, p.getSessionID(),
+                            p.getTypeID(), p.getWorkerID(), p.getTimeStamp()));
+        if (!typeIDs.contains(p.getTypeID()))
+            sses.add(new StatsStorageEvent(this, StatsStorageListener.EventType.NewTypeID, p.getSessionID(),
+                            p.getTypeID(), p.getWorkerID(), p.getTimeStamp()));
+        if (p.getWorkerID() != null && !workerIDs.contains(p.getWorkerID()))
+            sses.add(new StatsStorageEvent(this, StatsStorageListener.EventType.NewWorkerID, p.getSessionID(),
+                            p.getTypeID(), p.getWorkerID(), p.getTimeStamp()));
+        return sses;
+    }
+
+    private void notifyListeners(StatsStorageListener.EventType type, Persistable p, List<StatsStorageEvent> sses) {
+        if (listeners.isEmpty())
+            return;
+
+        StatsStorageEvent sse = new StatsStorageEvent(this, type, p.getSessionID(), p.getTypeID(), p.getWorkerID(),
+                        p.getTimeStamp());
+        for (StatsStorageListener l : listeners) {
+            l.notify(sse);
+        }
+
+        if (sses != null) {
+            for (StatsStorageListener l : listeners) {
+                for (StatsStorageEvent e : sses) {
+                    l.notify(e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void registerStatsStorageListener(StatsStorageListener listener) {
+        if (!this.listeners.contains(listener)) {
+            this.listeners.add(listener);
+        }
+    }
+
+    @Override
+    public void deregisterStatsStorageListener(StatsStorageListener listener) {
+        this.listeners.remove(listener);
+    }
+
+    @Override
+    public void removeAllListeners() {
+        this.listeners.clear();
+    }
+
+    @Override
+    public List<StatsStorageListener> getListeners() {
+        return new ArrayList<>(listeners);
+    }
+
+    @Override
+    public String toString() {
+        return "SegmentedFileStatsStorage(" + directory.getPath() + ")";
+    }
+
+    /**
+     * Sorted timestamps of a single (session, type, worker) triple, along with positions of the records
+     */
+    private static class TimeIndex {
+        private long[] timestamps = new long[16];
+        private long[] positions = new long[16];
+        private int size;
+
+        private void put(long timestamp, long position) {
+            // updates normally arrive in order, so this is append in almost all cases
+            if (size == 0 || timestamp > timestamps[size - 1]) {
+                ensureCapacity();
+                timestamps[size] = timestamp;
+                positions[size] = position;
+                size++;
+                return;
+            }
+
+            int idx = Arrays.binarySearch(timestamps, 0, size, timestamp);
+            if (idx >= 0) {
+                // same timestamp: latest record wins
+                positions[idx] = position;
+                return;
+            }
+
+            int insertion = -(idx + 1);
+            ensureCapacity();
+            System.arraycopy(timestamps, insertion, timestamps, insertion + 1, size - insertion);
+            System.arraycopy(positions, insertion, positions, insertion + 1, size - insertion);
+            timestamps[insertion] = timestamp;
+            positions[insertion] = position;
+            size++;
+        }
+
+        private void ensureCapacity() {
+            if (size == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+        }
+
+        private int indexOf(long timestamp) {
+            int idx = Arrays.binarySearch(timestamps, 0, size, timestamp);
+            return idx >= 0 ? idx : -1;
+        }
+
+        /**
+         * Returns index of first record with timestamp >= given one
+         */
+        private int firstNotBefore(long timestamp) {
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (timestamps[mid] < timestamp)
+                    lo = mid + 1;
+                else
+                    hi = mid;
+            }
+            return lo;
+        }
+
+        /**
+         * Returns index of first record with timestamp > given one
+         */
+        private int firstAfter(long timestamp) {
+            return timestamp == Long.MAX_VALUE ? size : firstNotBefore(timestamp + 1);
+        }
+    }
+
+    @Data
+    public static class Builder {
+
+        private File directory;
+        private long segmentSize = DEFAULT_SEGMENT_SIZE;
+        private boolean syncOnWrite = false;
+
+        public Builder() {
+            this(null);
+        }
+
+        public Builder(File directory) {
+            this.directory = directory;
+        }
+
+        public Builder directory(File directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        /**
+         * Max size of a single segment file, in bytes. Default: 64MB
+         */
+        public Builder segmentSize(long segmentSize) {
+            this.segmentSize = segmentSize;
+            return this;
+        }
+
+        /**
+         * If true, each record is forced to disk before put method returns. Default: false
+         */
+        public Builder syncOnWrite(boolean syncOnWrite) {
+            this.syncOnWrite = syncOnWrite;
+            return this;
+        }
+
+        public SegmentedFileStatsStorage build() {
+            return new SegmentedFileStatsStorage(this);
+        }
+    }
+}
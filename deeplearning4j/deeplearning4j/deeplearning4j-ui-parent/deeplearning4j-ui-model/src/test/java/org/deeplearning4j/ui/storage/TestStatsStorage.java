@@ -31,6 +31,7 @@ import org.deeplearning4j.ui.stats.impl.SbeStatsReport;
 import org.deeplearning4j.ui.stats.impl.java.JavaStatsInitializationReport;
 import org.deeplearning4j.ui.stats.impl.java.JavaStatsReport;
 import org.deeplearning4j.ui.storage.mapdb.MapDBStatsStorage;
+import org.deeplearning4j.ui.storage.segmented.SegmentedFileStatsStorage;
 import org.deeplearning4j.ui.storage.sqlite.J7FileStatsStorage;
 import org.junit.Ignore;
 import org.junit.Rule;
@@ -358,6 +359,62 @@ public class TestStatsStorage extends BaseDL4JTest {
         }
     }
 
+    @Test
+    public void testSegmentedFileStatsStorage() throws IOException {
+        File dir = testDir.newFolder();
+
+        //Small segments, to force rollover
+        SegmentedFileStatsStorage ss = new SegmentedFileStatsStorage.Builder(dir).segmentSize(2048).build();
+        CountingListener l = new CountingListener();
+        ss.registerStatsStorageListener(l);
+
+        ss.putStaticInfo(getInitReport(0, 0, 0, false));
+        for (int i = 0; i < 100; i++) {
+            ss.putUpdate(getReport(0, 0, 0, 1000 + i, false));
+        }
+        //Out of order update should be inserted at the right place
+        ss.putUpdate(getReport(0, 0, 0, 500, false));
+
+        assertEquals(1, l.countNewSession);
+        assertEquals(1, l.countStaticInfo);
+        assertEquals(101, l.countUpdate);
+        assertTrue(dir.listFiles().length > 1);
+
+        assertEquals(101, ss.getNumUpdateRecordsFor("sid0", "tid0", "wid0"));
+        assertEquals(getReport(0, 0, 0, 1099, false), ss.getLatestUpdate("sid0", "tid0", "wid0"));
+        assertEquals(getReport(0, 0, 0, 500, false), ss.getUpdate("sid0", "tid0", "wid0", 500));
+        assertEquals(100, ss.getAllUpdatesAfter("sid0", "tid0", "wid0", 500).size());
+
+        List<Persistable> range = ss.getUpdatesInRange("sid0", "tid0", "wid0", 1010, 1020);
+        assertEquals(10, range.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(getReport(0, 0, 0, 1010 + i, false), range.get(i));
+        }
+
+        List<Persistable> downsampled = ss.getUpdatesDownsampled("sid0", "tid0", "wid0", Long.MIN_VALUE, Long.MAX_VALUE, 10);
+        assertEquals(10, downsampled.size());
+        assertEquals(getReport(0, 0, 0, 500, false), downsampled.get(0));
+        assertEquals(getReport(0, 0, 0, 1099, false), downsampled.get(9));
+        assertEquals(101, ss.getUpdatesDownsampled("sid0", "tid0", "wid0", Long.MIN_VALUE, Long.MAX_VALUE, 1000).size());
+
+        ss.close();
+        assertTrue(ss.isClosed());
+
+        //Index should be rebuilt from the segment files
+        ss = new SegmentedFileStatsStorage(dir);
+        assertEquals(Collections.singletonList("sid0"), ss.listSessionIDs());
+        assertEquals(getInitReport(0, 0, 0, false), ss.getStaticInfo("sid0", "tid0", "wid0"));
+        assertEquals(101, ss.getNumUpdateRecordsFor("sid0"));
+        assertEquals(getReport(0, 0, 0, 1099, false), ss.getLatestUpdate("sid0", "tid0", "wid0"));
+        assertEquals(range, ss.getUpdatesInRange("sid0", "tid0", "wid0", 1010, 1020));
+
+        //Appending after reopening
+        ss.putUpdate(getReport(0, 0, 1, 2000, false));
+        assertEquals(2, ss.getLatestUpdateAllWorkers("sid0", "tid0").size());
+        assertEquals(getReport(0, 0, 1, 2000, false), ss.getLatestUpdate("sid0", "tid0", "wid1"));
+        ss.close();
+    }
+
     private static StatsInitializationReport getInitReport(int idNumber, int tid, int wid, boolean useJ7Storage) {
         StatsInitializationReport rep;
         if (useJ7Storage) {
@@ -0,0 +1,213 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.nd4j.autodiff.samediff;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.nd4j.autodiff.listeners.At;
+import org.nd4j.autodiff.listeners.Listener;
+import org.nd4j.autodiff.listeners.Operation;
+import org.nd4j.autodiff.samediff.internal.InferenceSession;
+import org.nd4j.base.Preconditions;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ConcurrentInference: thread-safe inference handle for a SameDiff instance.
+ *
+ * A SameDiff instance can't be safely used for inference from multiple threads at once: op instances are
+ * parameterized with the arrays of each execution, and a separate InferenceSession is created (and kept forever) for
+ * every thread that has ever called it. Instead, this class keeps a pool of execution contexts. Each context has its
+ * own copy of the graph structure (ops) and its own InferenceSession, while the VARIABLE and CONSTANT arrays are shared
+ * with the source SameDiff instance, so parameters aren't duplicated per context.
+ *
+ * A context is borrowed for the duration of a single call only, so contexts aren't bound to threads: the number of
+ * contexts is limited by the number of concurrent calls (up to the configured maximum), rather than by the number of
+ * threads that have ever used the model. Calls block when all contexts are busy.
+ *
+ * Arrays returned by {@link #output(Map, String...)} are copies, and remain valid after the context was returned to
+ * the pool.
+ *
+ * PLEASE NOTE: the graph structure is captured when the handle is created - ops added to the source SameDiff
+ * instance afterwards won't be visible. Parameter arrays modified in-place are visible to all contexts, but arrays
+ * replaced via {@link SameDiff#associateArrayWithVariable(INDArray, SDVariable)} etc. are not.
+ */
+@Slf4j
+public class ConcurrentInference {
+    @Getter
+    private final SameDiff sameDiff;
+    @Getter
+    private final int maxContexts;
+
+    private final ByteBuffer graph;         //Graph structure only, without arrays
+    private final LinkedBlockingQueue<ExecutionContext> idle = new LinkedBlockingQueue<>();
+    private final AtomicInteger numContexts = new AtomicInteger(0);
+
+    /**
+     * Execution context: independent copy of the graph structure and the session, used by one call at a time
+     */
+    protected static class ExecutionContext {
+        protected final SameDiff sameDiff;
+        protected final InferenceSession session;
+
+        protected ExecutionContext(SameDiff sameDiff) {
+            this.sameDiff = sameDiff;
+            this.session = new InferenceSession(sameDiff);
+        }
+    }
+
+    /**
+     * @param sameDiff    SameDiff instance to perform inference with
+     * @param maxContexts Maximum number of execution contexts, i.e., maximum number of concurrent calls
+     */
+    public ConcurrentInference(@NonNull SameDiff sameDiff, int maxContexts) {
+        Preconditions.checkArgument(maxContexts > 0, "Maximum number of contexts must be positive, got %s", maxContexts);
+        this.sameDiff = sameDiff;
+        this.maxContexts = maxContexts;
+        this.graph = sameDiff.asFlatBuffers(0, SameDiff.defaultExecutorConfiguration(), false, false);
+
+        //First context is created right away: this also initializes any lazily created parameter arrays of the source
+        // instance, before contexts are created concurrently
+        release(tryCreateContext());
+    }
+
+    /**
+     * @return Number of execution contexts created so far
+     */
+    public int getNumContexts() {
+        return numContexts.get();
+    }
+
+    /**
+     * Do inference for the given variables.
+     *
+     * @param placeholders The values to use for placeholders
+     * @param outputs      The variables to output and return
+     * @return Copies of the output arrays
+     */
+    public Map<String, INDArray> output(Map<String, INDArray> placeholders, @NonNull String... outputs) {
+        return output(placeholders, Arrays.asList(outputs));
+    }
+
+    /**
+     * Do inference for the given variables.
+     *
+     * @param placeholders The values to use for placeholders
+     * @param outputs      The variables to output and return
+     * @return Copies of the output arrays
+     */
+    public Map<String, INDArray> output(Map<String, INDArray> placeholders, @NonNull List<String> outputs) {
+        Preconditions.checkState(!outputs.isEmpty(), "No outputs were specified");
+
+        ExecutionContext context = acquire();
+        try {
+            Map<String, INDArray> out = context.session.output(outputs, placeholders, null, Collections.<String>emptyList(),
+                    Collections.<Listener>emptyList(), At.defaultAt(Operation.INFERENCE));
+
+            //Output arrays are reused by the context for the next call, so they can't be returned directly
+            Map<String, INDArray> ret = new HashMap<>();
+            for (Map.Entry<String, INDArray> e : out.entrySet())
+                ret.put(e.getKey(), e.getValue().dup());
+            return ret;
+        } finally {
+            release(context);
+        }
+    }
+
+    /**
+     * Do inference for a single variable.
+     *
+     * @param placeholders The values to use for placeholders
+     * @param output       The variable to output and return
+     * @return Copy of the output array
+     */
+    public INDArray outputSingle(Map<String, INDArray> placeholders, @NonNull String output) {
+        return output(placeholders, output).get(output);
+    }
+
+    /**
+     * Remove all idle execution contexts. Contexts in use at the moment are kept.
+     */
+    public void clear() {
+        List<ExecutionContext> removed = new ArrayList<>();
+        idle.drainTo(removed);
+        numContexts.addAndGet(-removed.size());
+    }
+
+    protected ExecutionContext acquire() {
+        ExecutionContext context = idle.poll();
+        if (context == null)
+            context = tryCreateContext();
+
+        try {
+            while (context == null) {
+                context = idle.poll(100, TimeUnit.MILLISECONDS);
+                if (context == null) {
+                    //Contexts may have been removed by clear() in the meantime
+                    context = tryCreateContext();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for an execution context", e);
+        }
+        return context;
+    }
+
+    /**
+     * @return New execution context, or null if the maximum number of contexts has been created already
+     */
+    private ExecutionContext tryCreateContext() {
+        while (true) {
+            int n = numContexts.get();
+            if (n >= maxContexts)
+                return null;
+            if (numContexts.compareAndSet(n, n + 1))
+                break;
+        }
+
+        try {
+            return createContext();
+        } catch (RuntimeException e) {
+            numContexts.decrementAndGet();
+            throw e;
+        }
+    }
+
+    protected void release(ExecutionContext context) {
+        idle.offer(context);
+    }
+
+    protected ExecutionContext createContext() {
+        SameDiff sd;
+        try {
+            sd = SameDiff.fromFlatBuffers(graph.duplicate(), false);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        sd.shareArraysWith(sameDiff);
+        log.debug("Created execution context {} of {}", numContexts.get(), maxContexts);
+        return new ExecutionContext(sd);
+    }
+}
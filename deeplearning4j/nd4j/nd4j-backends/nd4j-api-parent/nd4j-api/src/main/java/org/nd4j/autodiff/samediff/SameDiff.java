@@ -41,6 +41,7 @@ import org.nd4j.autodiff.samediff.config.OutputConfig;
 import org.nd4j.autodiff.samediff.internal.*;
 import org.nd4j.autodiff.samediff.ops.*;
 import org.nd4j.autodiff.samediff.serde.FlatBuffersMapper;
+import org.nd4j.autodiff.samediff.transform.GraphOptimizer;
 import org.nd4j.base.Preconditions;
 import org.nd4j.evaluation.IEvaluation;
 import org.nd4j.evaluation.classification.Evaluation;
@@ -306,6 +307,9 @@ public class SameDiff extends SDBaseOps {
     @Setter
     boolean logExecution = true;
 
+    @Getter
+    private boolean inferenceMemoryPlanning = false;
+
     @Getter
     private SameDiff parent;
 
@@ -927,6 +931,32 @@ public class SameDiff extends SDBaseOps {
     }
 
 
+    /**
+     * Remove cached execution plans from all inference sessions.
+     * Should be called after the structure of the graph (ops, or their inputs and outputs) has been modified.
+     */
+    public void invalidateExecutionPlans() {
+        for (InferenceSession s : sessions.values()) {
+            s.clearExecutionPlans();
+        }
+    }
+
+    /**
+     * Enable or disable memory planning for inference: when enabled, intermediate arrays with non-overlapping lifetimes
+     * share the same buffers, and the buffers are reused between calls. This reduces peak memory use, and avoids
+     * allocating new arrays on every call when inference is repeatedly performed with the same input shapes.<br>
+     * Note that when enabled, intermediate arrays (i.e., not requested outputs) may be overwritten during execution.
+     * See {@link InferenceSession#setMemoryPlanningEnabled(boolean)}
+     *
+     * @param inferenceMemoryPlanning If true: enable memory planning for inference
+     */
+    public void setInferenceMemoryPlanning(boolean inferenceMemoryPlanning) {
+        this.inferenceMemoryPlanning = inferenceMemoryPlanning;
+        for (InferenceSession s : sessions.values()) {
+            s.setMemoryPlanningEnabled(inferenceMemoryPlanning);
+        }
+    }
+
     /**
      * Returns true if the given vertex id and {@link INDArray} already exist.
      *
@@ -1382,6 +1412,7 @@ public class SameDiff extends SDBaseOps {
      * @param function Differential function
      */
     public void addOutgoingFor(String[] varNames, DifferentialFunction function) {
+        invalidateExecutionPlans();
 
         if (function.getOwnName() == null)
             throw new ND4JIllegalStateException("Instance id can not be null. Function not initialized properly");
@@ -1500,6 +1531,7 @@ public class SameDiff extends SDBaseOps {
      * @param function  Function
      */
     public void addArgsFor(String[] variables, DifferentialFunction function) {
+        invalidateExecutionPlans();
 
         ArgumentInterceptor interceptor = getArgumentInterceptorToUse();
 
@@ -1563,6 +1595,7 @@ public class SameDiff extends SDBaseOps {
      * Does not use (or remove) ArgumentInterceptor stuff
      */
     public void replaceArgFor(int i, @NonNull SDVariable newArg, @NonNull DifferentialFunction function) {
+        invalidateExecutionPlans();
 
         Preconditions.checkArgument(i < function.args().length, "Index out of range: function " +
                 function.getOwnName() + " only has " + function.args().length + " args but you are trying" +
@@ -1739,6 +1772,57 @@ public class SameDiff extends SDBaseOps {
         }
     }
 
+    /**
+     * Create a copy of this SameDiff instance for inference, that has its own ops and inference sessions, but shares
+     * the VARIABLE and CONSTANT arrays with this instance (i.e., the arrays are not duplicated).<br>
+     * Training configuration, updater state and listeners are not copied.
+     * See also {@link ConcurrentInference} for thread-safe inference backed by a pool of such copies.
+     *
+     * @return Copy of this SameDiff instance, sharing the parameter and constant arrays
+     */
+    public SameDiff dupSharedArrays() {
+        SameDiff sd;
+        try {
+            sd = fromFlatBuffers(asFlatBuffers(0, defaultExecutorConfiguration(), false, false), false);
+        } catch (IOException e){
+            throw new RuntimeException(e);
+        }
+        sd.shareArraysWith(this);
+        return sd;
+    }
+
+    /**
+     * Create a thread-safe inference handle for this SameDiff instance: see {@link ConcurrentInference}
+     *
+     * @param maxContexts Maximum number of concurrent inference calls
+     * @return Inference handle
+     */
+    public ConcurrentInference concurrentInference(int maxContexts) {
+        return new ConcurrentInference(this, maxContexts);
+    }
+
+    /**
+     * Use the same VARIABLE and CONSTANT arrays as the specified instance. Both instances must have the same variables.
+     *
+     * @param other SameDiff instance to share the arrays with
+     */
+    protected void shareArraysWith(@NonNull SameDiff other) {
+        for (Variable v : other.variables.values()) {
+            //VARIABLE arrays may be created lazily: make sure both instances use the same values
+            if (v.getVariable().getVariableType() == VariableType.VARIABLE)
+                other.getArrForVarName(v.getName());
+        }
+        for (Map.Entry<String, DeviceLocalNDArray> e : other.variablesArrays.entrySet()) {
+            Preconditions.checkState(variables.containsKey(e.getKey()), "Cannot share array for variable \"%s\": variable does not exist in this instance", e.getKey());
+            variablesArrays.put(e.getKey(), e.getValue());
+        }
+        for (Map.Entry<String, DeviceLocalNDArray> e : other.constantArrays.entrySet()) {
+            Preconditions.checkState(variables.containsKey(e.getKey()), "Cannot share array for constant \"%s\": variable does not exist in this instance", e.getKey());
+            constantArrays.put(e.getKey(), e.getValue());
+        }
+        this.inferenceMemoryPlanning = other.inferenceMemoryPlanning;
+    }
+
 
     /**
      * Count the number of elements in all arrays, according to {@link SDVariable#getShape()}
@@ -3796,6 +3880,133 @@ public class SameDiff extends SDBaseOps {
         }
     }
 
+    /**
+     * Replace the specified ARRAY type variable with a constant holding the specified value. The variable keeps its name,
+     * but is no longer the output of any op: any ops using it as an input will use the constant value instead.<br>
+     * The op that previously calculated the variable is not removed. This is mainly used for graph optimizations such as
+     * constant folding (see {@link GraphOptimizer}).
+     *
+     * @param varName Name of the ARRAY type variable to replace
+     * @param value   Value for the new constant
+     */
+    public void replaceWithConstant(@NonNull String varName, @NonNull INDArray value) {
+        Preconditions.checkState(variables.containsKey(varName), "Cannot replace variable \"%s\" with constant: no variable with this name exists", varName);
+        Variable v = variables.get(varName);
+        Preconditions.checkState(v.getVariable().getVariableType() == VariableType.ARRAY, "Only ARRAY type variables can be replaced " +
+                "with constants: variable \"%s\" is of type %s", varName, v.getVariable().getVariableType());
+
+        //Remove all sessions in case they have any cached arrays/state
+        sessions.clear();
+        if (sameDiffFunctionInstances != null)
+            sameDiffFunctionInstances.remove(GRAD_FN_KEY);
+
+        v.setOutputOfOp(null);
+        v.setOutputOfOpIdx(0);
+        v.getVariable().setVariableType(VariableType.CONSTANT);
+        v.getVariable().setDataType(value.dataType());
+        constantArrays.put(varName, new DeviceLocalNDArray(value, true));   //DeviceLocal with delayed initialization, in case we don't actually need multiple threads
+    }
+
+    /**
+     * Remove the specified op from the graph. The op is also removed from the inputs and control dependencies of its input
+     * variables.<br>
+     * Any ARRAY type output variables of the op are also removed: these must not be used as inputs or control dependencies
+     * by any other ops or variables. To keep an output, use {@link #replaceWithConstant(String, INDArray)} first.
+     *
+     * @param opName Name of the op to remove
+     */
+    public void removeOp(@NonNull String opName) {
+        Preconditions.checkState(ops.containsKey(opName), "Cannot remove op \"%s\": no op with this name exists", opName);
+        SameDiffOp op = ops.get(opName);
+
+        List<String> outputs = new ArrayList<>();
+        if (op.getOutputsOfOp() != null) {
+            for (String s : op.getOutputsOfOp()) {
+                Variable v = variables.get(s);
+                if (v == null || !opName.equals(v.getOutputOfOp()))
+                    continue;       //Already removed or replaced
+
+                Preconditions.checkState(isNullOrEmpty(v.getInputsForOp()) && isNullOrEmpty(v.getControlDepsForOp()) && isNullOrEmpty(v.getControlDepsForVar()),
+                        "Cannot remove op \"%s\": output variable \"%s\" is still used by other ops or variables", opName, s);
+                outputs.add(s);
+            }
+        }
+
+        invalidateExecutionPlans();
+        if (sameDiffFunctionInstances != null)
+            sameDiffFunctionInstances.remove(GRAD_FN_KEY);
+
+        if (op.getInputsToOp() != null) {
+            for (String s : op.getInputsToOp()) {
+                Variable v = variables.get(s);
+                if (v != null && v.getInputsForOp() != null) {
+                    List<String> l = new ArrayList<>(v.getInputsForOp());
+                    l.removeAll(Collections.singleton(opName));
+                    v.setInputsForOp(l);
+                }
+            }
+        }
+
+        if (op.getControlDeps() != null) {
+            for (String s : op.getControlDeps()) {
+                Variable v = variables.get(s);
+                if (v != null && v.getControlDepsForOp() != null) {
+                    List<String> l = new ArrayList<>(v.getControlDepsForOp());
+                    l.removeAll(Collections.singleton(opName));
+                    v.setControlDepsForOp(l);
+                }
+            }
+        }
+
+        ops.remove(opName);
+        for (String s : outputs) {
+            removeVariable(s);
+        }
+    }
+
+    /**
+     * Remove the specified variable from the graph, along with any array stored for it.<br>
+     * The variable must not be used as an input or control dependency by any ops or variables, and must not be the
+     * output of an op that is still present in the graph (use {@link #removeOp(String)} for that case).
+     *
+     * @param varName Name of the variable to remove
+     */
+    public void removeVariable(@NonNull String varName) {
+        Preconditions.checkState(variables.containsKey(varName), "Cannot remove variable \"%s\": no variable with this name exists", varName);
+        Variable v = variables.get(varName);
+        Preconditions.checkState(isNullOrEmpty(v.getInputsForOp()) && isNullOrEmpty(v.getControlDepsForOp()) && isNullOrEmpty(v.getControlDepsForVar()),
+                "Cannot remove variable \"%s\": variable is still used by other ops or variables", varName);
+        Preconditions.checkState(v.getOutputOfOp() == null || !ops.containsKey(v.getOutputOfOp()),
+                "Cannot remove variable \"%s\": variable is the output of op \"%s\"", varName, v.getOutputOfOp());
+
+        invalidateExecutionPlans();
+
+        //Variable -> variable control dependencies: remove this variable from the reverse mapping
+        if (v.getControlDeps() != null) {
+            for (String s : v.getControlDeps()) {
+                Variable dep = variables.get(s);
+                if (dep != null && dep.getControlDepsForVar() != null) {
+                    List<String> l = new ArrayList<>(dep.getControlDepsForVar());
+                    l.removeAll(Collections.singleton(varName));
+                    dep.setControlDepsForVar(l);
+                }
+            }
+        }
+
+        variables.remove(varName);
+        constantArrays.remove(varName);
+        variablesArrays.remove(varName);
+        for (Map<String, INDArray> m : placeholdersPerThread.values()) {
+            m.remove(varName);
+        }
+        if (updaterMap != null)
+            updaterMap.remove(varName);
+    }
+
+    private static boolean isNullOrEmpty(List<String> l) {
+        return l == null || l.isEmpty();
+    }
+
     /**
      * Convert the datatypes of the specified constants, placeholders and variables.<br>
      * After conversion, the downstream datatypes are changed.
@@ -3880,6 +4091,7 @@ public class SameDiff extends SDBaseOps {
      * @param to   The new name for the variable - no variable with this name must already exist
      */
     public void renameVariable(String from, String to) {
+        invalidateExecutionPlans();
         Preconditions.checkState(variables.containsKey(from), "Cannot rename variable \"%s\": no variable with this name exists", from);
         Preconditions.checkState(!variables.containsKey(to), "Cannot rename variable \"%s\" to name \"%s\": a variable with name \"%s\" already exists", from, to, to);
 
@@ -3999,6 +4211,7 @@ public class SameDiff extends SDBaseOps {
      * @param function the function to remove the argument from
      */
     public void removeArgFromOp(String varName, DifferentialFunction function) {
+        invalidateExecutionPlans();
         val args = function.args();
 
         for (int i = 0; i < args.length; i++) {
@@ -5443,6 +5656,20 @@ public class SameDiff extends SDBaseOps {
      * @return a ByteBuffer holding the exported FlatBuffers representation of the graph
      */
     public ByteBuffer asFlatBuffers(long graphId, @NonNull ExecutorConfiguration configuration, boolean includeUpdaterState) {
+        return asFlatBuffers(graphId, configuration, includeUpdaterState, true);
+    }
+
+    /**
+     * This method exports the current SameDiff instance into FlatBuffers format, returning the array ops and
+     * optionally the VARIABLE, CONSTANT and PLACEHOLDER arrays as a ByteBuffer containing the FlatBuffers format data
+     *
+     * @param configuration       - ExecutorConfiguration to be embedded into serialized graph
+     * @param includeUpdaterState If true: include the updater state (state for updaters such as Adam, Nesterov, AdaGrad etc)
+     * @param includeArrays       If false: only the graph structure is exported, without the variable and constant arrays
+     * @return a ByteBuffer holding the exported FlatBuffers representation of the graph
+     */
+    public ByteBuffer asFlatBuffers(long graphId, @NonNull ExecutorConfiguration configuration, boolean includeUpdaterState,
+                                    boolean includeArrays) {
         Nd4j.getExecutioner().commit();
         val bufferBuilder = new FlatBufferBuilder(1024);
         val idCounter = new AtomicInteger(0);
@@ -5461,7 +5688,7 @@ public class SameDiff extends SDBaseOps {
         val idxForOps = new IdentityHashMap<DifferentialFunction, Integer>();
         List<SDVariable> allVars = variables();
         for (SDVariable variable : allVars) {
-            INDArray arr = variable.getArr();
+            INDArray arr = includeArrays ? variable.getArr() : null;
             log.trace("Exporting variable: [{}]", variable.getVarName());
 
             //If variable is the output of some op - let's use the ONE index for exporting, and properly track the output
@@ -5661,14 +5888,16 @@ public class SameDiff extends SDBaseOps {
      * @return a ByteBuffer holding the exported FlatBuffers representation of the graph
      */
     public ByteBuffer asFlatBuffers(boolean includeUpdaterState) {
-        val configuration = ExecutorConfiguration.builder()
+        return asFlatBuffers(defaultExecutorConfiguration(), includeUpdaterState);
+    }
+
+    protected static ExecutorConfiguration defaultExecutorConfiguration() {
+        return ExecutorConfiguration.builder()
                 .outputMode(OutputMode.VARIABLE_SPACE)
                 .executionMode(org.nd4j.autodiff.execution.conf.ExecutionMode.SEQUENTIAL)
                 .profilingMode(OpExecutioner.ProfilingMode.DISABLED)
                 .gatherTimings(true)
                 .build();
-
-        return asFlatBuffers(configuration, includeUpdaterState);
     }
 
     /**
@@ -6413,6 +6642,35 @@ public class SameDiff extends SDBaseOps {
         return TFGraphMapper.getInstance().importGraph(graph);
     }
 
+    /**
+     * Import a frozen Tensorflow graph to a new SameDiff graph, and optimize it for inference: placeholder shapes are
+     * frozen, anything not required for the specified outputs is removed, Identity ops are removed, constant subgraphs
+     * are evaluated once and replaced by constants, and supported op sequences are fused.<br>
+     * See {@link GraphOptimizer#optimize(SameDiff, Collection, Map)} for details.
+     *
+     * @param graphFile         The text or binary file containing the graph
+     * @param outputs           Names of the outputs that will be requested from the graph. If null: nothing is pruned
+     * @param placeholderShapes Known shapes for the placeholders, used to fix unknown (-1) dimensions. May be null
+     * @return The imported and optimized graph
+     */
+    public static SameDiff importFrozenTF(File graphFile, List<String> outputs, Map<String, long[]> placeholderShapes) {
+        return GraphOptimizer.optimize(importFrozenTF(graphFile), outputs, placeholderShapes);
+    }
+
+    /**
+     * See {@link #importFrozenTF(File, List, Map)}
+     */
+    public static SameDiff importFrozenTF(GraphDef graphDef, List<String> outputs, Map<String, long[]> placeholderShapes) {
+        return GraphOptimizer.optimize(importFrozenTF(graphDef), outputs, placeholderShapes);
+    }
+
+    /**
+     * See {@link #importFrozenTF(File, List, Map)}
+     */
+    public static SameDiff importFrozenTF(InputStream graph, List<String> outputs, Map<String, long[]> placeholderShapes) {
+        return GraphOptimizer.optimize(importFrozenTF(graph), outputs, placeholderShapes);
+    }
+
 
     /**
      * Generate a new, distinct op name of the form &lt;base&gt;_#.
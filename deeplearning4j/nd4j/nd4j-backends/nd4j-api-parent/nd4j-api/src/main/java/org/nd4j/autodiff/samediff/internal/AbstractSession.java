@@ -95,11 +95,83 @@ public abstract class AbstractSession<T, O> {
     @Getter
     protected final Map<String, FrameIter> frameParents = new HashMap<>();
 
+    /**
+     * Maximum number of execution plans kept by a session. Least recently used plans are removed first
+     */
+    public static final int MAX_CACHED_PLANS = 32;
+
+    /**
+     * Execution plans for previously requested outputs.
+     * Key: requested variables, followed by required activations
+     */
+    protected final Map<List<String>, ExecutionPlan> executionPlans = new LinkedHashMap<List<String>, ExecutionPlan>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<String>, ExecutionPlan> eldest) {
+            return size() > MAX_CACHED_PLANS;
+        }
+    };
+
+    /**
+     * If true: cache static execution plans for graphs without control flow, instead of dynamically working out the
+     * execution order on every call
+     */
+    @Getter
+    protected boolean planCacheEnabled = false;
+
+    /**
+     * Index of the execution plan step currently being executed, or -1 if ops are being executed dynamically
+     */
+    protected int currentPlanStep = -1;
+
 
     public AbstractSession(@NonNull SameDiff sameDiff) {
         this.sameDiff = sameDiff;
     }
 
+    /**
+     * @param planCacheEnabled If true: cache and reuse static execution plans for graphs without control flow
+     */
+    public void setPlanCacheEnabled(boolean planCacheEnabled) {
+        this.planCacheEnabled = planCacheEnabled;
+        if (!planCacheEnabled)
+            clearExecutionPlans();
+    }
+
+    /**
+     * Remove all cached execution plans. Should be called after the graph structure has been modified
+     */
+    public void clearExecutionPlans() {
+        synchronized (executionPlans) {
+            executionPlans.clear();
+        }
+    }
+
+    /**
+     * Get the execution plan for the specified outputs, building it if required
+     *
+     * @param variables           Requested output variables
+     * @param requiredActivations Additional required activations
+     * @return Execution plan, or null if the outputs can only be calculated by dynamic execution
+     */
+    protected ExecutionPlan getExecutionPlan(List<String> variables, Collection<String> requiredActivations) {
+        List<String> key = new ArrayList<>(variables.size() + requiredActivations.size());
+        key.addAll(variables);
+        key.addAll(requiredActivations);
+
+        ExecutionPlan plan;
+        synchronized (executionPlans) {
+            plan = executionPlans.get(key);
+        }
+        if (plan == null || !plan.isValidFor(sameDiff)) {
+            plan = ExecutionPlan.build(sameDiff, variables, requiredActivations);
+            log.trace("Built execution plan for {}: {} steps, dynamic={}", key, plan.getSteps().size(), plan.isDynamic());
+            synchronized (executionPlans) {
+                executionPlans.put(key, plan);
+            }
+        }
+        return plan.isDynamic() ? null : plan;
+    }
+
     public boolean contains(String variable, String frame, int iteration, FrameIter parentFrameIter){
         VarId varId = newVarId(variable, frame, iteration, parentFrameIter);
         return nodeOutputs.containsKey(varId);
@@ -179,15 +251,15 @@ public abstract class AbstractSession<T, O> {
 
         placeholderValues = preprocessPlaceholders(placeholderValues);
 
+        //Graphs without control flow: reuse the static plan instead of working out the subgraph and execution order again
+        if (planCacheEnabled) {
+            ExecutionPlan plan = getExecutionPlan(variables, requiredActivations);
+            if (plan != null)
+                return output(plan, variables, placeholderValues, batch, listeners, at);
+        }
+
         //Clear state from past
-        availableForExec.clear();
-        availableForExecSet.clear();
-        subgraph.clear();
-        execInputs.clear();
-        execInputsAllIter.clear();
-        execConstInputs.clear();
-        nodeOutputs.clear();            //TODO eventually we'll have cache here for later execs... main challenge is detecting in-place array modifications and invalidating old results
-        tensorArrays.clear();
+        clearState();
 
         //Step 1: determine subgraph structure we actually need to execute
         //Basic plan: work backwards from the variables we want, based on the graph structure, to work out what
@@ -416,6 +488,111 @@ public abstract class AbstractSession<T, O> {
         return out;
     }
 
+    /**
+     * Perform inference using a static execution plan: ops are executed in the planned order, with pre-resolved inputs
+     *
+     * @param plan              Execution plan for the requested variables
+     * @param variables         Name of the variables we want the arrays/activations for
+     * @param placeholderValues The placeholder values (if any), already preprocessed
+     * @param batch             The batch data, used to call Listener.opExecution
+     * @return The specified variable values
+     */
+    protected Map<String, T> output(@NonNull ExecutionPlan plan, @NonNull List<String> variables, Map<String, T> placeholderValues,
+                                    MultiDataSet batch, List<Listener> listeners, At at) {
+        clearState();
+
+        for (String s : plan.getRequiredPlaceholders()) {
+            if (placeholderValues == null || !placeholderValues.containsKey(s)) {
+                // Some Keras layers (like GRU) do different things depending on whether the model is training.
+                // We provide this value directly.
+                if (s.endsWith("keras_learning_phase")) {
+                    if (placeholderValues == null)
+                        placeholderValues = new HashMap<>();
+                    placeholderValues.put(s, (T) Nd4j.scalar(at.operation().isTrainingPhase()));
+                } else {
+                    throw new IllegalStateException(
+                            "An input placeholder \"" + s + "\" is required to calculate the requested outputs," +
+                                    " but a placeholder value was not provided");
+                }
+            }
+        }
+
+        //Placeholders, constants and variables
+        String[] leaves = plan.getLeafVariables();
+        VarId[] leafIds = plan.getLeafVarIds();
+        boolean[] leafIsPlaceholder = plan.getLeafIsPlaceholder();
+        for (int i = 0; i < leaves.length; i++) {
+            T value;
+            if (leafIsPlaceholder[i]) {
+                value = placeholderValues == null ? null : placeholderValues.get(leaves[i]);
+                if (value == null)
+                    continue;       //Not required: only a control dependency
+            } else {
+                value = getConstantOrVariable(leaves[i]);
+                Preconditions.checkNotNull(value, "Encountered null placeholder array for constant: %s", leafIds[i]);
+            }
+            nodeOutputs.put(leafIds[i], value);
+        }
+
+        //Ops, in topological order
+        FrameIter frameIter = plan.getFrameIter();
+        List<ExecutionPlan.Step> steps = plan.getSteps();
+        beforePlanExecution(plan);
+        try {
+            for (int step = 0; step < steps.size(); step++) {
+                ExecutionPlan.Step s = steps.get(step);
+                log.trace("Beginning planned execution step {}: op {}", step, s.getOpName());
+
+                currentPlanStep = step;
+                O parameterizedOp = getAndParameterizeOp(s.getOpName(), frameIter, s.getInputs(), null, s.getConstAndPhInputs(), placeholderValues);
+                T[] opOutputValues = getOutputs(parameterizedOp, frameIter, s.getInputs(), null, s.getConstAndPhInputs(), listeners, at, batch);
+
+                VarId[] outputs = s.getOutputs();
+                Preconditions.checkState(opOutputValues.length == outputs.length, "Unexpected number of outputs from executed op %s:" +
+                                " got %s outputs when %s outputs were expected (%s)", parameterizedOp.getClass().getSimpleName(), opOutputValues.length,
+                        outputs.length, s.getOutputNames());
+                for (int i = 0; i < outputs.length; i++) {
+                    Preconditions.checkNotNull(opOutputValues[i], "Encountered null output (output %s) for op %s at execution step %s", i, parameterizedOp.getClass().getSimpleName(), step);
+                    nodeOutputs.put(outputs[i], opOutputValues[i]);
+                }
+            }
+        } finally {
+            currentPlanStep = -1;
+        }
+
+        Map<String, T> out = new HashMap<>();
+        for (String s : variables) {
+            VarId vid = newVarId(s, OUTER_FRAME, 0, null);
+            Preconditions.checkState(nodeOutputs.containsKey(vid), "No output was calculated for requested variable %s", s);
+            out.put(s, nodeOutputs.get(vid));
+        }
+        return out;
+    }
+
+    /**
+     * Called before the steps of an execution plan are executed. {@link #currentPlanStep} is set to the index of each
+     * step before {@link #getAndParameterizeOp(String, FrameIter, Set, Set, Set, Map)} is called for it.
+     *
+     * @param plan Execution plan about to be executed
+     */
+    protected void beforePlanExecution(ExecutionPlan plan) {
+        //No op by default
+    }
+
+    /**
+     * Clear all state from past executions
+     */
+    protected void clearState() {
+        availableForExec.clear();
+        availableForExecSet.clear();
+        subgraph.clear();
+        execInputs.clear();
+        execInputsAllIter.clear();
+        execConstInputs.clear();
+        nodeOutputs.clear();            //TODO eventually we'll have cache here for later execs... main challenge is detecting in-place array modifications and invalidating old results
+        tensorArrays.clear();
+    }
+
     protected void initSubgraph(List<String> variables) {
         //Step 1: determine subgraph structure we actually need to execute
         Queue<String> processingQueue = new LinkedList<>(variables);
@@ -0,0 +1,317 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2019 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.nd4j.autodiff.samediff.internal;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.nd4j.autodiff.functions.DifferentialFunction;
+import org.nd4j.autodiff.samediff.SDVariable;
+import org.nd4j.autodiff.samediff.SameDiff;
+import org.nd4j.autodiff.samediff.VariableType;
+import org.nd4j.linalg.api.ops.impl.controlflow.If;
+import org.nd4j.linalg.api.ops.impl.controlflow.While;
+import org.nd4j.linalg.api.ops.impl.controlflow.compat.*;
+import org.nd4j.linalg.api.ops.impl.shape.tensorops.BaseTensorOp;
+
+import java.util.*;
+
+/**
+ * ExecutionPlan: static execution schedule for a fixed set of requested variables of a SameDiff graph.
+ *
+ * The plan contains the ops required to calculate the requested variables in topological order, with the inputs of
+ * each op pre-resolved, so {@link AbstractSession} can execute them one by one without re-deriving the subgraph and
+ * dependency state on every call. The plan also records lifetimes of the intermediate arrays: for every step, the
+ * variables that are not used by any later step.
+ *
+ * Plans are only built for graphs without control flow: if the required subgraph contains Enter/Exit/Switch/Merge etc
+ * ops or TensorArray ops, the plan is marked as dynamic and the session falls back to dynamic execution.
+ *
+ * Plans do not depend on placeholder shapes: output arrays are still validated (and reallocated, if required) against
+ * the calculated output shapes during op parameterization.
+ */
+@Slf4j
+@Getter
+public class ExecutionPlan {
+
+    /**
+     * A single op execution step
+     */
+    @Getter
+    public static class Step {
+        private final String opName;
+        private final Set<AbstractSession.VarId> inputs;        //Array (and VARIABLE type) inputs, null if none
+        private final Set<String> constAndPhInputs;             //Constant and placeholder inputs, null if none
+        private final String[] outputNames;
+        private final AbstractSession.VarId[] outputs;
+        private String[] releasedAfter = new String[0];         //Variables not used after this step
+
+        protected Step(String opName, Set<AbstractSession.VarId> inputs, Set<String> constAndPhInputs,
+                       String[] outputNames, AbstractSession.VarId[] outputs) {
+            this.opName = opName;
+            this.inputs = inputs;
+            this.constAndPhInputs = constAndPhInputs;
+            this.outputNames = outputNames;
+            this.outputs = outputs;
+        }
+    }
+
+    private static final AbstractSession.FrameIter OUTER_FRAME_ITER = new AbstractSession.FrameIter(AbstractSession.OUTER_FRAME, 0, null);
+
+    private final boolean dynamic;
+    private final List<Step> steps;
+    private final String[] leafVariables;                   //Placeholders, constants and VARIABLE type variables used in the plan
+    private final AbstractSession.VarId[] leafVarIds;
+    private final boolean[] leafIsPlaceholder;
+    private final String[] requiredPlaceholders;
+    private final Map<String, Integer> lastUse;             //Step index after which the variable is not used. Requested variables: steps.size()
+    private final int numOps;
+    private final int numVariables;
+
+    private ExecutionPlan(boolean dynamic, List<Step> steps, String[] leafVariables, AbstractSession.VarId[] leafVarIds,
+                          boolean[] leafIsPlaceholder, String[] requiredPlaceholders, Map<String, Integer> lastUse,
+                          int numOps, int numVariables) {
+        this.dynamic = dynamic;
+        this.steps = steps;
+        this.leafVariables = leafVariables;
+        this.leafVarIds = leafVarIds;
+        this.leafIsPlaceholder = leafIsPlaceholder;
+        this.requiredPlaceholders = requiredPlaceholders;
+        this.lastUse = lastUse;
+        this.numOps = numOps;
+        this.numVariables = numVariables;
+    }
+
+    /**
+     * @return Frame and iteration all steps of the plan are executed in
+     */
+    public AbstractSession.FrameIter getFrameIter() {
+        return OUTER_FRAME_ITER;
+    }
+
+    /**
+     * Quick check that the graph was not extended or reduced since the plan was built.
+     * Other structural modifications are reported via {@link AbstractSession#clearExecutionPlans()}
+     *
+     * @param sameDiff SameDiff instance the plan was built for
+     * @return True if the plan can still be used
+     */
+    public boolean isValidFor(@NonNull SameDiff sameDiff) {
+        return sameDiff.getOps().size() == numOps && sameDiff.getVariables().size() == numVariables;
+    }
+
+    protected static ExecutionPlan dynamicPlan(SameDiff sameDiff) {
+        return new ExecutionPlan(true, Collections.<Step>emptyList(), new String[0], new AbstractSession.VarId[0], new boolean[0],
+                new String[0], Collections.<String, Integer>emptyMap(), sameDiff.getOps().size(), sameDiff.getVariables().size());
+    }
+
+    /**
+     * @return True if the op is a control flow or TensorArray op, which can't be executed as part of a static plan
+     */
+    public static boolean requiresDynamicExecution(DifferentialFunction fn) {
+        return fn instanceof Enter || fn instanceof Exit || fn instanceof NextIteration || fn instanceof LoopCond ||
+                fn instanceof Merge || fn instanceof Switch || fn instanceof If || fn instanceof While ||
+                fn instanceof BaseTensorOp;
+    }
+
+    /**
+     * Build the execution plan for the specified variables
+     *
+     * @param sameDiff            SameDiff instance
+     * @param variables           Requested output variables
+     * @param requiredActivations Additional variables that need to be calculated
+     * @return Execution plan. If the graph requires dynamic execution, {@link #isDynamic()} is true for the returned plan
+     */
+    public static ExecutionPlan build(@NonNull SameDiff sameDiff, @NonNull Collection<String> variables,
+                                      @NonNull Collection<String> requiredActivations) {
+        Map<String, Variable> vars = sameDiff.getVariables();
+        Map<String, SameDiffOp> ops = sameDiff.getOps();
+
+        //Step 1: topological sort of the required ops, via iterative depth-first search
+        List<String> order = new ArrayList<>();
+        Set<String> expanded = new HashSet<>();
+        Set<String> done = new HashSet<>();
+        Set<String> leaves = new LinkedHashSet<>();
+        Deque<String> stack = new ArrayDeque<>();
+
+        List<String> allRequired = new ArrayList<>(variables);
+        allRequired.addAll(requiredActivations);
+        for (String s : allRequired) {
+            String opName = vars.get(s).getOutputOfOp();
+            if (opName == null) {
+                leaves.add(s);
+            } else {
+                stack.push(opName);
+            }
+        }
+
+        while (!stack.isEmpty()) {
+            String opName = stack.peek();
+            if (done.contains(opName)) {
+                stack.pop();
+                continue;
+            }
+
+            boolean pushed = false;
+            if (!expanded.contains(opName)) {
+                expanded.add(opName);
+                SameDiffOp op = ops.get(opName);
+                if (requiresDynamicExecution(op.getOp())) {
+                    log.trace("Op {} ({}) requires dynamic execution, execution plan will not be used", opName, op.getOp().getClass().getSimpleName());
+                    return dynamicPlan(sameDiff);
+                }
+
+                for (String dep : dependencies(op, vars)) {
+                    String depOp = vars.get(dep).getOutputOfOp();
+                    if (depOp == null) {
+                        leaves.add(dep);
+                    } else if (!done.contains(depOp)) {
+                        if (expanded.contains(depOp)) {
+                            //Cycle: only possible with control flow
+                            return dynamicPlan(sameDiff);
+                        }
+                        stack.push(depOp);
+                        pushed = true;
+                    }
+                }
+            }
+
+            if (!pushed) {
+                stack.pop();
+                done.add(opName);
+                order.add(opName);
+            }
+        }
+
+        //Step 2: resolve inputs for each op, as they would be resolved by dynamic execution
+        Set<String> requiredPlaceholders = new LinkedHashSet<>();
+        for (String s : variables) {
+            if (vars.get(s).getVariable().isPlaceHolder())
+                requiredPlaceholders.add(s);
+        }
+
+        Map<String, Integer> lastUse = new HashMap<>();
+        List<Step> steps = new ArrayList<>(order.size());
+        for (int i = 0; i < order.size(); i++) {
+            String opName = order.get(i);
+            SameDiffOp op = ops.get(opName);
+
+            Set<AbstractSession.VarId> inputs = null;
+            Set<String> constAndPhInputs = null;
+            if (op.getInputsToOp() != null) {
+                for (String in : op.getInputsToOp()) {
+                    SDVariable v = vars.get(in).getVariable();
+                    if (v.isPlaceHolder() || v.isConstant()) {
+                        if (constAndPhInputs == null)
+                            constAndPhInputs = new HashSet<>();
+                        constAndPhInputs.add(in);
+                        if (v.isPlaceHolder())
+                            requiredPlaceholders.add(in);
+                    } else {
+                        if (inputs == null)
+                            inputs = new HashSet<>();
+                        inputs.add(outerVarId(in));
+                        lastUse.put(in, i);
+                    }
+                }
+            }
+            if (op.getControlDeps() != null) {
+                for (String cd : op.getControlDeps())
+                    lastUse.put(cd, i);
+            }
+
+            List<String> outNames = op.getOutputsOfOp();
+            int numOut = outNames == null ? 0 : outNames.size();
+            String[] outputNames = new String[numOut];
+            AbstractSession.VarId[] outputs = new AbstractSession.VarId[numOut];
+            for (int j = 0; j < numOut; j++) {
+                outputNames[j] = outNames.get(j);
+                outputs[j] = outerVarId(outputNames[j]);
+                List<String> cds = vars.get(outputNames[j]).getControlDeps();
+                if (cds != null) {
+                    for (String cd : cds)
+                        lastUse.put(cd, i);
+                }
+            }
+
+            steps.add(new Step(opName, inputs, constAndPhInputs, outputNames, outputs));
+        }
+
+        //Requested variables are never released
+        for (String s : allRequired)
+            lastUse.put(s, steps.size());
+
+        //Step 3: lifetimes of op outputs
+        Map<Integer, List<String>> released = new HashMap<>();
+        for (int i = 0; i < steps.size(); i++) {
+            for (String out : steps.get(i).getOutputNames()) {
+                //Outputs that are not used by any other op in the plan are released right away
+                int last = lastUse.containsKey(out) ? lastUse.get(out) : i;
+                if (!lastUse.containsKey(out))
+                    lastUse.put(out, i);
+                if (last < steps.size()) {
+                    if (!released.containsKey(last))
+                        released.put(last, new ArrayList<String>());
+                    released.get(last).add(out);
+                }
+            }
+        }
+        for (Map.Entry<Integer, List<String>> e : released.entrySet()) {
+            List<String> l = e.getValue();
+            steps.get(e.getKey()).releasedAfter = l.toArray(new String[l.size()]);
+        }
+
+        String[] leafVariables = leaves.toArray(new String[leaves.size()]);
+        AbstractSession.VarId[] leafVarIds = new AbstractSession.VarId[leafVariables.length];
+        boolean[] leafIsPlaceholder = new boolean[leafVariables.length];
+        for (int i = 0; i < leafVariables.length; i++) {
+            leafVarIds[i] = outerVarId(leafVariables[i]);
+            SDVariable v = vars.get(leafVariables[i]).getVariable();
+            leafIsPlaceholder[i] = v.isPlaceHolder();
+            if (v.getVariableType() == VariableType.ARRAY)
+                return dynamicPlan(sameDiff);       //Array type variable without an op - let dynamic execution report the problem
+        }
+
+        return new ExecutionPlan(false, Collections.unmodifiableList(steps), leafVariables, leafVarIds, leafIsPlaceholder,
+                requiredPlaceholders.toArray(new String[requiredPlaceholders.size()]), Collections.unmodifiableMap(lastUse),
+                ops.size(), vars.size());
+    }
+
+    /**
+     * Variables that must be available before the op can be executed: op inputs, op control dependencies, and
+     * control dependencies of the op outputs
+     */
+    private static List<String> dependencies(SameDiffOp op, Map<String, Variable> vars) {
+        List<String> deps = new ArrayList<>();
+        if (op.getInputsToOp() != null)
+            deps.addAll(op.getInputsToOp());
+        if (op.getControlDeps() != null)
+            deps.addAll(op.getControlDeps());
+        if (op.getOutputsOfOp() != null) {
+            for (String out : op.getOutputsOfOp()) {
+                List<String> cds = vars.get(out).getControlDeps();
+                if (cds != null)
+                    deps.addAll(cds);
+            }
+        }
+        return deps;
+    }
+
+    private static AbstractSession.VarId outerVarId(String variable) {
+        return new AbstractSession.VarId(variable, AbstractSession.OUTER_FRAME, 0, null);
+    }
+}
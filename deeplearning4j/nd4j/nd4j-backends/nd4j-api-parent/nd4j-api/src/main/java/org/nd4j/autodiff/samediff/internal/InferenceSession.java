@@ -16,6 +16,7 @@
 
 package org.nd4j.autodiff.samediff.internal;
 
+import lombok.Getter;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import org.nd4j.autodiff.functions.DifferentialFunction;
@@ -50,6 +51,9 @@ import java.util.*;
 /**
  * InferenceSession: Performs inference (forward pass) on a SameDiff instance to get the outputs of the requested nodes.
  * Dynamically (in AbstractSession) calculates the required subgraph to execute to get the required outputs.
+ * For graphs without control flow, the execution order is calculated once per set of requested outputs and cached
+ * as an {@link ExecutionPlan}. Optionally, the intermediate arrays of execution plans can share buffers, as assigned by
+ * a {@link MemoryPlan} - see {@link #setMemoryPlanningEnabled(boolean)}.
  *
  * @author Alex Black
  */
@@ -58,8 +62,87 @@ public class InferenceSession extends AbstractSession<INDArray,DifferentialFunct
     private static final String SCOPE_PANIC_MSG = "If required, arrays in workspaces can be detached using INDArray.detach() before being passed to the SameDiff instance.\n" +
             "Alternatively, arrays defined in a workspace must be replaced after the workspace has been closed.";
 
+    /**
+     * If true: intermediate arrays of planned executions are allocated from reusable buffers, as per {@link MemoryPlan}
+     */
+    @Getter
+    private boolean memoryPlanningEnabled;
+    private final Map<ExecutionPlan, MemoryPlan> memoryPlans = new IdentityHashMap<>();
+    private MemoryPlan activeMemoryPlan;
+
     public InferenceSession(@NonNull SameDiff sameDiff) {
         super(sameDiff);
+        //Inference is called repeatedly for the same outputs, so it's worth caching the execution order
+        this.planCacheEnabled = true;
+        this.memoryPlanningEnabled = sameDiff.isInferenceMemoryPlanning();
+    }
+
+    /**
+     * Enable or disable memory planning. When enabled, intermediate arrays with non-overlapping lifetimes share the same
+     * buffers, and the buffers are reused between calls - so repeated inference with the same input shapes doesn't
+     * allocate any arrays, except for the requested outputs.<br>
+     * Note that when enabled, intermediate (i.e., not requested) arrays held by the session may be overwritten by later
+     * ops of the same execution. Memory planning is only used when the plan cache is enabled.
+     *
+     * @param memoryPlanningEnabled If true: enable memory planning
+     */
+    public void setMemoryPlanningEnabled(boolean memoryPlanningEnabled) {
+        this.memoryPlanningEnabled = memoryPlanningEnabled;
+        if (!memoryPlanningEnabled)
+            clearMemoryPlans();
+    }
+
+    @Override
+    public void clearExecutionPlans() {
+        super.clearExecutionPlans();
+        clearMemoryPlans();
+    }
+
+    protected void clearMemoryPlans() {
+        synchronized (memoryPlans) {
+            memoryPlans.clear();
+        }
+    }
+
+    /**
+     * @param plan Execution plan
+     * @return Memory plan used for the specified execution plan, or null if none has been built (yet)
+     */
+    public MemoryPlan getMemoryPlan(@NonNull ExecutionPlan plan) {
+        synchronized (memoryPlans) {
+            return memoryPlans.get(plan);
+        }
+    }
+
+    @Override
+    protected void beforePlanExecution(ExecutionPlan plan) {
+        if (!memoryPlanningEnabled) {
+            activeMemoryPlan = null;
+            return;
+        }
+
+        synchronized (memoryPlans) {
+            MemoryPlan mp = memoryPlans.get(plan);
+            if (mp == null) {
+                if (memoryPlans.size() >= MAX_CACHED_PLANS) {
+                    //Remaining entries may belong to execution plans that have already been evicted
+                    memoryPlans.clear();
+                }
+                mp = MemoryPlan.build(sameDiff, plan);
+                memoryPlans.put(plan, mp);
+            }
+            activeMemoryPlan = mp;
+        }
+    }
+
+    /**
+     * @return Output array of the current execution plan step as assigned by the memory plan, or null if the array
+     * should be allocated as usual
+     */
+    protected INDArray plannedOutputArray(int outputIdx, LongShapeDescriptor shape) {
+        if (activeMemoryPlan == null || currentPlanStep < 0)
+            return null;
+        return activeMemoryPlan.getOutputArray(currentPlanStep, outputIdx, shape);
     }
 
     @Override
@@ -76,6 +159,16 @@ public class InferenceSession extends AbstractSession<INDArray,DifferentialFunct
             Preconditions.checkState(sameDiff.hasVariable(e.getKey()), "Invalid placeholder passed for execution: " +
                     "No variable/placeholder with name %s exists", e.getKey());
             INDArray arr = e.getValue();
+
+            //Validate placeholder shapes: ops may depend on the placeholder shape (for example, after Shape ops have
+            // been folded by GraphOptimizer.freezePlaceholderShapes), so arrays with a different shape can't be used
+            SDVariable ph = sameDiff.getVariable(e.getKey());
+            if(ph.isPlaceHolder()){
+                long[] phShape = ph.placeholderShape();
+                Preconditions.checkState(phShape == null || phShape.length == 0 || Shape.shapeMatchesPlaceholder(phShape, arr.shape()),
+                        "Invalid array shape for placeholder \"%s\": array shape %ndShape is wrong rank or does not match placeholder " +
+                                "shape %s on one or more dimensions", e.getKey(), arr, phShape);
+            }
             //First: check workspaces
             if(arr.isAttached()){
                 MemoryWorkspace ws = arr.data() == null ? null : arr.data().getParentWorkspace();
@@ -695,7 +788,12 @@ public class InferenceSession extends AbstractSession<INDArray,DifferentialFunct
                     reqShape = reqShape.asDataType(dt);
                 }
 
-                if(currOutput == null || !currOutput.shapeDescriptor().equals(reqShape) || currOutput.isEmpty() != reqShape.isEmpty() || isLoop){
+                //Views (of memory plan buffers) are never reused outside of the memory plan they were assigned by
+                INDArray planned = plannedOutputArray(i, reqShape);
+                if(planned != null){
+                    if(planned != currOutput)
+                        customOp.setOutputArgument(i, planned);
+                } else if(currOutput == null || currOutput.isView() || !currOutput.shapeDescriptor().equals(reqShape) || currOutput.isEmpty() != reqShape.isEmpty() || isLoop){
                     INDArray out;
                     try(MemoryWorkspace ws = Nd4j.getMemoryManager().scopeOutOfWorkspaces()) {
                         //TODO Proper workspace support will be added to SameDiff later
@@ -759,7 +857,11 @@ public class InferenceSession extends AbstractSession<INDArray,DifferentialFunct
                 List<LongShapeDescriptor> outputShape = ((BaseOp) op).calculateOutputShape();
                 Preconditions.checkState(outputShape != null && outputShape.size() == 1, "Could not calculate output shape for op: %s", op.getClass());
                 INDArray z = op.z();
-                if (z == null || !outputShape.get(0).equals(z.shapeDescriptor()) || isLoop) {
+                INDArray planned = plannedOutputArray(0, outputShape.get(0));
+                if (planned != null) {
+                    if (planned != z)
+                        op.setZ(planned);
+                } else if (z == null || z.isView() || !outputShape.get(0).equals(z.shapeDescriptor()) || isLoop) {
                     if (log.isTraceEnabled()) {
                         log.trace("Existing op result (z) array shape for op {} was {}, allocating new array of shape {}",
                                 op.getClass().getSimpleName(), (z == null ? null : Arrays.toString(z.shape())), outputShape.get(0).toString());
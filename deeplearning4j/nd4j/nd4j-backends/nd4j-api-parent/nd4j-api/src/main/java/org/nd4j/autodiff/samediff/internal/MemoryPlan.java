@@ -0,0 +1,221 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2019 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.nd4j.autodiff.samediff.internal;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.nd4j.autodiff.functions.DifferentialFunction;
+import org.nd4j.autodiff.samediff.SameDiff;
+import org.nd4j.autodiff.samediff.VariableType;
+import org.nd4j.base.Preconditions;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.memory.MemoryWorkspace;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.CustomOp;
+import org.nd4j.linalg.api.ops.DynamicCustomOp;
+import org.nd4j.linalg.api.ops.Op;
+import org.nd4j.linalg.api.ops.impl.transforms.same.Identity;
+import org.nd4j.linalg.api.shape.LongShapeDescriptor;
+import org.nd4j.linalg.api.shape.Shape;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import java.util.*;
+
+/**
+ * MemoryPlan: static assignment of intermediate op outputs of an {@link ExecutionPlan} to a small set of reusable
+ * buffers ("slabs").
+ *
+ * Based on the lifetimes recorded in the execution plan, two intermediate arrays can share the same slab if the first
+ * one is not used anymore when the second one is calculated. Slabs are assigned once, when the plan is built (greedy
+ * interval coloring, per data type); the slab sizes are only known at execution time, so each slab is allocated
+ * lazily and grows to the largest array assigned to it. Output arrays are views of the slabs, and are cached as long
+ * as the shapes don't change - so repeated inference with the same input shapes doesn't allocate any new arrays.
+ *
+ * The following arrays are never assigned to a slab: requested outputs and required activations, outputs of
+ * Identity ops (these are the input arrays), inputs of Identity and in-place ops, and scalars/empty arrays.
+ *
+ * Note that after execution, the values of intermediate arrays assigned to slabs may have been overwritten by
+ * later ops.
+ */
+@Slf4j
+public class MemoryPlan {
+
+    private final int[][] assignments;                  //Slab index for each output of each step, -1 if not pooled
+    @Getter
+    private final DataType[] slabDataTypes;
+    @Getter
+    private final int numPooledOutputs;
+
+    private final INDArray[] slabs;
+    private final int[] slabVersions;                   //Incremented when a slab is reallocated, which invalidates its views
+    private final INDArray[][] views;
+    private final int[][] viewVersions;
+    @Getter
+    private long slabAllocations;
+
+    private MemoryPlan(int[][] assignments, DataType[] slabDataTypes, int numPooledOutputs) {
+        this.assignments = assignments;
+        this.slabDataTypes = slabDataTypes;
+        this.numPooledOutputs = numPooledOutputs;
+        this.slabs = new INDArray[slabDataTypes.length];
+        this.slabVersions = new int[slabDataTypes.length];
+        this.views = new INDArray[assignments.length][];
+        this.viewVersions = new int[assignments.length][];
+        for (int i = 0; i < assignments.length; i++) {
+            views[i] = new INDArray[assignments[i].length];
+            viewVersions[i] = new int[assignments[i].length];
+        }
+    }
+
+    /**
+     * Build the memory plan for the specified (non-dynamic) execution plan
+     *
+     * @param sameDiff SameDiff instance the execution plan was built for
+     * @param plan     Execution plan
+     * @return Memory plan
+     */
+    public static MemoryPlan build(@NonNull SameDiff sameDiff, @NonNull ExecutionPlan plan) {
+        Preconditions.checkState(!plan.isDynamic(), "Memory plans can only be built for static execution plans");
+        List<ExecutionPlan.Step> steps = plan.getSteps();
+        Map<String, Integer> lastUse = plan.getLastUse();
+        int numSteps = steps.size();
+
+        //Arrays that may be referenced by another variable: these must live until the end of the execution
+        Set<String> aliased = new HashSet<>();
+        for (ExecutionPlan.Step s : steps) {
+            DifferentialFunction df = sameDiff.getOpById(s.getOpName());
+            if (df instanceof Identity || (df instanceof DynamicCustomOp && ((DynamicCustomOp) df).isInplaceCall())) {
+                if (s.getInputs() != null) {
+                    for (AbstractSession.VarId in : s.getInputs())
+                        aliased.add(in.getVariable());
+                }
+            }
+        }
+
+        int[][] assignments = new int[numSteps][];
+        List<DataType> slabTypes = new ArrayList<>();
+        List<Integer> busyUntil = new ArrayList<>();        //Last step at which the current occupant of each slab is used
+        int pooled = 0;
+        int numOutputs = 0;
+        for (int i = 0; i < numSteps; i++) {
+            ExecutionPlan.Step s = steps.get(i);
+            String[] outNames = s.getOutputNames();
+            assignments[i] = new int[outNames.length];
+            numOutputs += outNames.length;
+            Arrays.fill(assignments[i], -1);
+
+            DifferentialFunction df = sameDiff.getOpById(s.getOpName());
+            if (df instanceof Identity || !(df instanceof CustomOp || df instanceof Op))
+                continue;
+
+            for (int j = 0; j < outNames.length; j++) {
+                String out = outNames[j];
+                int last = lastUse.containsKey(out) ? lastUse.get(out) : i;
+                if (last >= numSteps || aliased.contains(out) || sameDiff.getVariable(out).getVariableType() != VariableType.ARRAY)
+                    continue;
+
+                DataType dt = sameDiff.getVariable(out).dataType();
+                int slab = -1;
+                for (int k = 0; k < slabTypes.size(); k++) {
+                    //Slab is free only once the last op using the previous occupant has been executed
+                    if (slabTypes.get(k) == dt && busyUntil.get(k) < i) {
+                        slab = k;
+                        break;
+                    }
+                }
+                if (slab < 0) {
+                    slab = slabTypes.size();
+                    slabTypes.add(dt);
+                    busyUntil.add(last);
+                } else {
+                    busyUntil.set(slab, last);
+                }
+                assignments[i][j] = slab;
+                pooled++;
+            }
+        }
+
+        log.trace("Built memory plan: {} of {} op outputs assigned to {} slabs", pooled, numOutputs, slabTypes.size());
+        return new MemoryPlan(assignments, slabTypes.toArray(new DataType[slabTypes.size()]), pooled);
+    }
+
+    /**
+     * @return Number of slabs (buffers shared by intermediate arrays) used by this plan
+     */
+    public int numSlabs() {
+        return slabDataTypes.length;
+    }
+
+    /**
+     * @param step   Execution plan step
+     * @param output Output index of the op
+     * @return Slab index the output is assigned to, or -1 if the output is not assigned to a slab
+     */
+    public int getSlab(int step, int output) {
+        return assignments[step][output];
+    }
+
+    /**
+     * @return Total size of the currently allocated slabs, in bytes
+     */
+    public long getSlabBytes() {
+        long bytes = 0;
+        for (INDArray slab : slabs) {
+            if (slab != null)
+                bytes += slab.length() * slab.dataType().width();
+        }
+        return bytes;
+    }
+
+    /**
+     * Get the output array for the specified op output, as a view of the assigned slab. The slab is (re)allocated if
+     * it isn't large enough.
+     *
+     * @param step   Execution plan step
+     * @param output Output index of the op
+     * @param shape  Required output shape
+     * @return Output array, or null if the output is not assigned to a slab, and should be allocated as usual
+     */
+    public INDArray getOutputArray(int step, int output, @NonNull LongShapeDescriptor shape) {
+        int slab = assignments[step][output];
+        if (slab < 0 || shape.isEmpty() || shape.rank() == 0 || shape.dataType() != slabDataTypes[slab])
+            return null;
+
+        INDArray view = views[step][output];
+        if (view != null && viewVersions[step][output] == slabVersions[slab] && view.ordering() == shape.getOrder() &&
+                Arrays.equals(view.shape(), shape.getShape()))
+            return view;
+
+        long length = Shape.lengthOf(shape.getShape());
+        INDArray slabArr = slabs[slab];
+        if (slabArr == null || slabArr.length() < length) {
+            try (MemoryWorkspace ws = Nd4j.getMemoryManager().scopeOutOfWorkspaces()) {
+                slabArr = Nd4j.createUninitialized(slabDataTypes[slab], length);
+            }
+            slabs[slab] = slabArr;
+            slabVersions[slab]++;
+            slabAllocations++;
+        }
+
+        view = slabArr.get(NDArrayIndex.interval(0, length)).reshape(shape.getOrder(), true, shape.getShape());
+        views[step][output] = view;
+        viewVersions[step][output] = slabVersions[slab];
+        return view;
+    }
+}
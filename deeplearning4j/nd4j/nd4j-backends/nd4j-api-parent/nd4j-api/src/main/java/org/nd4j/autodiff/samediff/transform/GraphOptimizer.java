@@ -0,0 +1,694 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2019 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.nd4j.autodiff.samediff.transform;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.nd4j.autodiff.functions.DifferentialFunction;
+import org.nd4j.autodiff.samediff.SDVariable;
+import org.nd4j.autodiff.samediff.SameDiff;
+import org.nd4j.autodiff.samediff.VariableType;
+import org.nd4j.autodiff.samediff.internal.ExecutionPlan;
+import org.nd4j.autodiff.samediff.internal.SameDiffOp;
+import org.nd4j.autodiff.samediff.internal.Variable;
+import org.nd4j.base.Preconditions;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.BaseScalarOp;
+import org.nd4j.linalg.api.ops.DynamicCustomOp;
+import org.nd4j.linalg.api.ops.NoOp;
+import org.nd4j.linalg.api.ops.RandomOp;
+import org.nd4j.linalg.api.ops.impl.broadcast.BiasAdd;
+import org.nd4j.linalg.api.ops.impl.reduce.Mmul;
+import org.nd4j.linalg.api.ops.impl.scalar.RectifiedLinear;
+import org.nd4j.linalg.api.ops.impl.scalar.ScalarAdd;
+import org.nd4j.linalg.api.ops.impl.scalar.ScalarDivision;
+import org.nd4j.linalg.api.ops.impl.scalar.ScalarMultiplication;
+import org.nd4j.linalg.api.ops.impl.scalar.ScalarSubtraction;
+import org.nd4j.linalg.api.ops.impl.shape.Rank;
+import org.nd4j.linalg.api.ops.impl.shape.Shape;
+import org.nd4j.linalg.api.ops.impl.shape.ShapeN;
+import org.nd4j.linalg.api.ops.impl.shape.Size;
+import org.nd4j.linalg.api.ops.impl.transforms.Assert;
+import org.nd4j.linalg.api.ops.impl.transforms.pairwise.arithmetic.AddOp;
+import org.nd4j.linalg.api.ops.impl.transforms.same.Identity;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.*;
+
+/**
+ * GraphOptimizer provides graph-level optimizations for inference, mainly intended for imported (TensorFlow, ONNX) graphs:<br>
+ * - Placeholder shape freezing: unknown placeholder dimensions (such as minibatch size) are fixed, so that ops depending
+ * only on placeholder shapes can be folded<br>
+ * - Pruning: ops and variables that aren't required to calculate the requested outputs are removed<br>
+ * - Identity removal: Identity ops (and unused NoOps) are removed, and their consumers use the Identity input directly<br>
+ * - Constant folding: ops whose inputs are all constants are executed once, and their outputs are replaced by constants<br>
+ * - Op fusion: common op sequences are replaced by a single fused op, which avoids a separate native op call and an
+ * intermediate array for each op in the sequence. Currently: mmul + bias add (BiasAdd, or Add with a vector) becomes
+ * {@link org.nd4j.linalg.api.ops.impl.transforms.custom.XwPlusB}, mmul + bias add + relu becomes
+ * {@link org.nd4j.linalg.api.ops.impl.transforms.ReluLayer}, and chains of scalar arithmetic ops become a single scalar op<br>
+ * Names of variables that remain in the graph are not changed by the optimizations; intermediate variables that are
+ * folded or fused away are removed.<br>
+ * Note that these optimizations are intended for inference: after optimization, the removed intermediate variables
+ * can no longer be requested as outputs.
+ */
+@Slf4j
+public class GraphOptimizer {
+
+    private GraphOptimizer() {
+    }
+
+    /**
+     * Apply Identity removal, constant folding and op fusion to the specified graph. Nothing is pruned, as no outputs are
+     * specified: see {@link #optimize(SameDiff, Collection, Map)}.<br>
+     * Note that the specified instance is modified in place; op fusion (if any ops are fused) returns a copy.
+     * Always use the returned instance.
+     *
+     * @param sd SameDiff instance to optimize
+     * @return Optimized SameDiff instance
+     */
+    public static SameDiff optimize(@NonNull SameDiff sd) {
+        return optimize(sd, null, null);
+    }
+
+    /**
+     * Apply all optimizations to the specified graph, in the following order: placeholder shape freezing, pruning,
+     * Identity removal, constant folding and op fusion.<br>
+     * Note that the specified instance is modified in place; op fusion (if any ops are fused) returns a copy.
+     * Always use the returned instance.
+     *
+     * @param sd                SameDiff instance to optimize
+     * @param outputs           Names of the outputs that will be requested from the graph. Anything not required to
+     *                          calculate these is removed. If null: nothing is pruned
+     * @param placeholderShapes Shapes for placeholders, see {@link #freezePlaceholderShapes(SameDiff, Map)}. May be null
+     * @return Optimized SameDiff instance
+     */
+    public static SameDiff optimize(@NonNull SameDiff sd, Collection<String> outputs, Map<String, long[]> placeholderShapes) {
+        if (placeholderShapes != null)
+            freezePlaceholderShapes(sd, placeholderShapes);
+        if (outputs != null)
+            prune(sd, outputs);
+        removeIdentities(sd, outputs);
+        foldConstants(sd);
+        return fuseOps(sd);
+    }
+
+    /**
+     * Set the shapes of the specified placeholders. Placeholder shapes usually have unknown (-1) dimensions, such as
+     * the minibatch size; fixing these allows ops that depend only on the placeholder shape (such as Shape, Rank and
+     * Size) to be folded into constants.<br>
+     * The new shape must be compatible with the existing placeholder shape: the same rank (if known), and the same size
+     * for dimensions that are already known. Arrays provided for the placeholders must have the frozen shape: this is
+     * checked when executing the graph, and an exception is thrown for arrays with any other shape.
+     *
+     * @param sd                SameDiff instance to modify
+     * @param placeholderShapes Key: placeholder name. Value: shape for the placeholder
+     */
+    public static void freezePlaceholderShapes(@NonNull SameDiff sd, @NonNull Map<String, long[]> placeholderShapes) {
+        for (Map.Entry<String, long[]> e : placeholderShapes.entrySet()) {
+            String name = e.getKey();
+            long[] shape = e.getValue();
+            Preconditions.checkState(sd.hasVariable(name), "Cannot freeze shape of placeholder \"%s\": no variable with this name exists", name);
+            SDVariable v = sd.getVariable(name);
+            Preconditions.checkState(v.isPlaceHolder(), "Cannot freeze shape of variable \"%s\": variable is not a placeholder (type: %s)", name, v.getVariableType());
+
+            long[] current = v.placeholderShape();
+            if (current != null) {
+                Preconditions.checkState(current.length == shape.length, "Cannot freeze shape of placeholder \"%s\": " +
+                        "shape %s is not compatible with placeholder shape %s", name, shape, current);
+                for (int i = 0; i < shape.length; i++) {
+                    Preconditions.checkState(current[i] < 0 || current[i] == shape[i], "Cannot freeze shape of placeholder \"%s\": " +
+                            "shape %s is not compatible with placeholder shape %s", name, shape, current);
+                }
+            }
+            v.setShape(shape.clone());
+        }
+        sd.invalidateExecutionPlans();
+    }
+
+    /**
+     * Remove all ops and variables that aren't required to calculate the specified outputs: for example, training-only
+     * branches of an imported graph, or unused inputs. Ops and variables are required if the outputs depend on them,
+     * directly or via control dependencies.<br>
+     * The SameDiff instance is modified in place.
+     *
+     * @param sd      SameDiff instance to modify
+     * @param outputs Names of the outputs that are required
+     * @return Number of ops removed
+     */
+    public static int prune(@NonNull SameDiff sd, @NonNull Collection<String> outputs) {
+        Preconditions.checkState(!outputs.isEmpty(), "Cannot prune graph: no outputs were specified");
+        Map<String, SameDiffOp> ops = sd.getOps();
+        Map<String, Variable> vars = sd.getVariables();
+
+        //Work backwards from the outputs
+        Set<String> requiredVars = new HashSet<>();
+        Set<String> requiredOps = new HashSet<>();
+        Deque<String> toProcess = new ArrayDeque<>();
+        for (String s : outputs) {
+            Preconditions.checkState(vars.containsKey(s), "Cannot prune graph: requested output \"%s\" does not exist", s);
+            toProcess.add(s);
+        }
+
+        while (!toProcess.isEmpty()) {
+            String varName = toProcess.remove();
+            if (!requiredVars.add(varName))
+                continue;
+
+            Variable v = vars.get(varName);
+            if (v.getControlDeps() != null)
+                toProcess.addAll(v.getControlDeps());
+
+            String opName = v.getOutputOfOp();
+            if (opName != null && ops.containsKey(opName) && requiredOps.add(opName)) {
+                SameDiffOp op = ops.get(opName);
+                //All outputs of a required op are kept, even unused ones: an op can't exist without its outputs
+                if (op.getOutputsOfOp() != null)
+                    toProcess.addAll(op.getOutputsOfOp());
+                if (op.getInputsToOp() != null)
+                    toProcess.addAll(op.getInputsToOp());
+                if (op.getControlDeps() != null)
+                    toProcess.addAll(op.getControlDeps());
+            }
+        }
+
+        //Anything that refers to a variable that isn't required, isn't required itself - so these references can be
+        // cleared before removal, which allows the ops to be removed in any order (including dead loops)
+        for (Variable v : vars.values()) {
+            if (!requiredVars.contains(v.getName())) {
+                v.setInputsForOp(null);
+                v.setControlDepsForOp(null);
+                v.setControlDepsForVar(null);
+            }
+        }
+
+        List<String> removeOps = new ArrayList<>();
+        for (String opName : ops.keySet()) {
+            if (!requiredOps.contains(opName))
+                removeOps.add(opName);
+        }
+        for (String opName : removeOps) {
+            sd.removeOp(opName);
+        }
+
+        List<String> removeVars = new ArrayList<>();
+        for (String varName : vars.keySet()) {
+            if (!requiredVars.contains(varName))
+                removeVars.add(varName);
+        }
+        for (String varName : removeVars) {
+            sd.removeVariable(varName);
+        }
+
+        log.debug("Pruning: removed {} ops and {} variables not required for outputs {}", removeOps.size(), removeVars.size(), outputs);
+        return removeOps.size();
+    }
+
+    /**
+     * Remove Identity ops: the consumers of the Identity op output use the Identity op input directly instead.
+     * If the Identity output isn't used by any ops (i.e., it's a graph output), the Identity input is renamed instead,
+     * so graph output names don't change. NoOps whose outputs aren't used are also removed.<br>
+     * Identity ops are kept if they are part of control flow (i.e., connected to control flow ops or control dependencies),
+     * or if removing them would remove one of the specified outputs.<br>
+     * The SameDiff instance is modified in place.
+     *
+     * @param sd      SameDiff instance to modify
+     * @param outputs Names of the outputs that must be kept. May be null
+     * @return Number of ops removed
+     */
+    public static int removeIdentities(@NonNull SameDiff sd, Collection<String> outputs) {
+        Map<String, SameDiffOp> ops = sd.getOps();
+        Map<String, Variable> vars = sd.getVariables();
+
+        int count = 0;
+        for (SameDiffOp op : new ArrayList<>(ops.values())) {
+            if (op.getOp() instanceof NoOp) {
+                boolean used = false;
+                if (op.getOutputsOfOp() != null) {
+                    for (String s : op.getOutputsOfOp()) {
+                        Variable v = vars.get(s);
+                        used |= v != null && (!isEmpty(v.getInputsForOp()) || !isEmpty(v.getControlDepsForOp()) || !isEmpty(v.getControlDepsForVar()));
+                    }
+                }
+                if (!used) {
+                    sd.removeOp(op.getName());
+                    count++;
+                }
+                continue;
+            }
+
+            if (!(op.getOp() instanceof Identity) || isEmpty(op.getInputsToOp()) || op.getInputsToOp().size() != 1 ||
+                    isEmpty(op.getOutputsOfOp()) || op.getOutputsOfOp().size() != 1 || !isEmpty(op.getControlDeps()))
+                continue;
+
+            String inName = op.getInputsToOp().get(0);
+            String outName = op.getOutputsOfOp().get(0);
+            Variable in = vars.get(inName);
+            Variable out = vars.get(outName);
+            if (!isEmpty(out.getControlDeps()) || !isEmpty(out.getControlDepsForOp()) || !isEmpty(out.getControlDepsForVar()) ||
+                    (outputs != null && outputs.contains(outName)) || isDynamic(sd, in.getOutputOfOp()))
+                continue;
+
+            if (isEmpty(out.getInputsForOp())) {
+                //Graph output: keep the output name by renaming the input
+                if (in.getVariable().getVariableType() != VariableType.ARRAY || in.getInputsForOp().size() != 1 ||
+                        !isEmpty(in.getControlDepsForOp()) || !isEmpty(in.getControlDepsForVar()) ||
+                        (outputs != null && outputs.contains(inName)))
+                    continue;
+                sd.removeOp(op.getName());
+                sd.renameVariable(inName, outName);
+                count++;
+                continue;
+            }
+
+            boolean dynamicConsumer = false;
+            for (String consumer : out.getInputsForOp()) {
+                dynamicConsumer |= isDynamic(sd, consumer);
+            }
+            if (dynamicConsumer)
+                continue;
+
+            //Rewire consumers: (x -> identity -> y -> op) becomes (x -> op)
+            List<String> inputsForOp = new ArrayList<>(in.getInputsForOp());
+            for (String consumer : out.getInputsForOp()) {
+                SameDiffOp c = ops.get(consumer);
+                List<String> newInputs = new ArrayList<>(c.getInputsToOp());
+                Collections.replaceAll(newInputs, outName, inName);
+                c.setInputsToOp(newInputs);
+                if (!inputsForOp.contains(consumer))
+                    inputsForOp.add(consumer);
+            }
+            in.setInputsForOp(inputsForOp);
+            out.setInputsForOp(null);
+            sd.removeOp(op.getName());
+            count++;
+        }
+
+        if (count > 0)
+            log.debug("Removed {} Identity and NoOp ops", count);
+        return count;
+    }
+
+    /**
+     * Evaluate all ops whose inputs are constants (or outputs of other such ops) once, and replace their outputs with
+     * constants. Folded ops, and constants no longer used by any op, are removed from the graph.<br>
+     * Shape, ShapeN, Rank and Size ops are also folded for placeholders with fully defined shapes (see
+     * {@link #freezePlaceholderShapes(SameDiff, Map)}).<br>
+     * Random ops, control flow and TensorArray ops, assertions and ops with control dependencies are never folded.<br>
+     * The SameDiff instance is modified in place.
+     *
+     * @param sd SameDiff instance to modify
+     * @return Number of ops removed by constant folding
+     */
+    public static int foldConstants(@NonNull SameDiff sd) {
+        Map<String, SameDiffOp> ops = sd.getOps();
+        Map<String, Variable> vars = sd.getVariables();
+
+        //Find ops to fold: iterate until no more ops can be added, as folding one op may make its consumers foldable
+        Set<String> folded = new LinkedHashSet<>();
+        boolean anyAdded = true;
+        while (anyAdded) {
+            anyAdded = false;
+            for (SameDiffOp op : ops.values()) {
+                if (!folded.contains(op.getName()) && canFold(sd, op, folded)) {
+                    folded.add(op.getName());
+                    anyAdded = true;
+                }
+            }
+        }
+
+        if (folded.isEmpty())
+            return 0;
+
+        //Outputs to keep as constants: those used by ops that aren't folded, as control dependencies, or graph outputs
+        List<String> keep = new ArrayList<>();
+        for (String opName : folded) {
+            for (String s : ops.get(opName).getOutputsOfOp()) {
+                Variable v = vars.get(s);
+                boolean used = v.getInputsForOp() != null && !v.getInputsForOp().isEmpty();
+                boolean usedOutside = !used || !isEmpty(v.getControlDepsForOp()) || !isEmpty(v.getControlDepsForVar());
+                if (used) {
+                    for (String consumer : v.getInputsForOp()) {
+                        if (!folded.contains(consumer)) {
+                            usedOutside = true;
+                            break;
+                        }
+                    }
+                }
+                if (usedOutside)
+                    keep.add(s);
+            }
+        }
+
+        //Shape ops on placeholders with fully defined shapes only need arrays of the correct shape
+        Map<String, INDArray> placeholders = new HashMap<>();
+        for (String opName : folded) {
+            for (String s : ops.get(opName).getInputsToOp()) {
+                SDVariable v = vars.get(s).getVariable();
+                if (v.isPlaceHolder() && !placeholders.containsKey(s))
+                    placeholders.put(s, Nd4j.create(v.dataType(), v.placeholderShape()));
+            }
+        }
+
+        Map<String, INDArray> values;
+        try {
+            values = sd.output(placeholders, keep);
+        } catch (Throwable t) {
+            log.warn("Constant folding skipped: error evaluating constant subgraphs", t);
+            return 0;
+        }
+
+        //Collect constants used by the folded ops, so any that are no longer used can be removed
+        Set<String> constInputs = new LinkedHashSet<>();
+        for (String opName : folded) {
+            for (String s : ops.get(opName).getInputsToOp()) {
+                if (vars.get(s).getVariable().getVariableType() == VariableType.CONSTANT)
+                    constInputs.add(s);
+            }
+        }
+
+        for (String s : keep) {
+            sd.replaceWithConstant(s, values.get(s).dup());
+        }
+
+        //Remove ops in reverse order, so that consumers are removed before the ops producing their inputs
+        List<String> toRemove = new ArrayList<>(folded);
+        Collections.reverse(toRemove);
+        for (String opName : toRemove) {
+            sd.removeOp(opName);
+        }
+
+        for (String s : constInputs) {
+            Variable v = vars.get(s);
+            if (isEmpty(v.getInputsForOp()) && isEmpty(v.getControlDepsForOp()) && isEmpty(v.getControlDepsForVar()))
+                sd.removeVariable(s);
+        }
+
+        log.debug("Constant folding: removed {} ops, {} variables replaced by constants", folded.size(), keep.size());
+        return folded.size();
+    }
+
+    /**
+     * Replace supported op sequences with fused ops:<br>
+     * - mmul(x,w) + b, then relu: replaced by {@code reluLayer(x,w,b)}<br>
+     * - mmul(x,w) + b: replaced by {@code linear(x,w,b)} (i.e., xw_plus_b)<br>
+     * - Chains of scalar add/subtract ops, and chains of scalar multiply/divide ops: replaced by a single scalar add or
+     * scalar multiply op, for example {@code ((x + 1) - 3) + 5} becomes {@code x + 3}<br>
+     * Here "+ b" is either a BiasAdd op, or an Add op with a rank 1 constant or variable b. Sequences are fused only when
+     * the intermediate results aren't used elsewhere, the mmul doesn't transpose any arrays, w is a rank 2 constant or
+     * variable, and all arrays have the same floating point datatype.<br>
+     * Note that, as for TensorFlow MatMul, the mmul input x is assumed to be rank 2 when w is rank 2. Scalar chains are
+     * only fused for floating point inputs; the results may differ from the original chain by floating point rounding.<br>
+     * Other elementwise chains (for example, pairwise ops or transforms) are not fused, as there are no corresponding
+     * fused ops.<br>
+     * The output of each fused sequence keeps the name of the original output variable.
+     *
+     * @param sd SameDiff instance to optimize. Not modified
+     * @return SameDiff instance with ops fused, or the original instance if there was nothing to fuse
+     */
+    public static SameDiff fuseOps(@NonNull SameDiff sd) {
+        SubGraphPredicate linear = SubGraphPredicate.withRoot(biasAddPredicate(false))
+                .withInputSubgraph(0, mmulPredicate());
+        SubGraphPredicate reluLayer = SubGraphPredicate.withRoot(reluPredicate()).withInputCount(1)
+                .withInputSubgraph(0, SubGraphPredicate.withRoot(biasAddPredicate(true)).withInputSubgraph(0, mmulPredicate()));
+
+        //Relu layers first: otherwise the mmul + bias part would be replaced by linear ops first
+        sd = fuse(sd, reluLayer, "relu_layer", new FusedOpFactory() {
+            @Override
+            public SDVariable create(SameDiff sd, SubGraph subGraph) {
+                SDVariable[] in = linearInputs(sd, sd.getVariableOutputOp(subGraph.getRootNode().arg().getVarName()));
+                return sd.nn().reluLayer(in[0], in[1], in[2]);
+            }
+        });
+        sd = fuse(sd, linear, "xw_plus_b", new FusedOpFactory() {
+            @Override
+            public SDVariable create(SameDiff sd, SubGraph subGraph) {
+                SDVariable[] in = linearInputs(sd, subGraph.getRootNode());
+                return sd.nn().linear(in[0], in[1], in[2]);
+            }
+        });
+
+        //Each pass merges the first two ops of each chain, so longer chains need multiple passes
+        for (final boolean multiply : new boolean[]{false, true}) {
+            SubGraphPredicate chain = SubGraphPredicate.withRoot(scalarChainPredicate(multiply, false))
+                    .withInputSubgraph(0, scalarChainPredicate(multiply, true));
+            SameDiff prev;
+            do {
+                prev = sd;
+                sd = fuse(sd, chain, multiply ? "scalar multiply" : "scalar add", new FusedOpFactory() {
+                    @Override
+                    public SDVariable create(SameDiff sd, SubGraph subGraph) {
+                        DifferentialFunction root = subGraph.getRootNode();
+                        DifferentialFunction first = sd.getVariableOutputOp(root.arg().getVarName());
+                        SDVariable x = first.arg();
+                        if (multiply)
+                            return x.mul(scalarChainValue(first, true) * scalarChainValue(root, true));
+                        return x.add(scalarChainValue(first, false) + scalarChainValue(root, false));
+                    }
+                });
+            } while (sd != prev);
+        }
+        return sd;
+    }
+
+    /**
+     * Creates the fused op (in the copy of the graph being modified) for a matched subgraph
+     */
+    protected interface FusedOpFactory {
+        SDVariable create(SameDiff sd, SubGraph subGraph);
+    }
+
+    protected static SameDiff fuse(SameDiff sd, SubGraphPredicate predicate, String fusedOpName, final FusedOpFactory factory) {
+        if (GraphTransformUtil.getSubgraphsMatching(sd, predicate).isEmpty())
+            return sd;
+
+        //Key: new (fused) output name; value: original output name
+        final Map<String, String> renames = new LinkedHashMap<>();
+        SameDiff out = GraphTransformUtil.replaceSubgraphsMatching(sd, predicate, new SubGraphProcessor() {
+            @Override
+            public List<SDVariable> processSubgraph(SameDiff copy, SubGraph subGraph) {
+                SDVariable fused = factory.create(copy, subGraph);
+                renames.put(fused.getVarName(), subGraph.getRootNode().outputVariable().getVarName());
+
+                //Note that the subgraph has no outputs if the original output isn't used by any ops
+                if (subGraph.outputs().isEmpty())
+                    return Collections.emptyList();
+                return Collections.singletonList(fused);
+            }
+        });
+
+        for (Map.Entry<String, String> e : renames.entrySet()) {
+            out.renameVariable(e.getKey(), e.getValue());
+        }
+        log.debug("Op fusion: replaced {} subgraphs with {} ops", renames.size(), fusedOpName);
+        return out;
+    }
+
+    protected static boolean canFold(SameDiff sd, SameDiffOp op, Set<String> folded) {
+        DifferentialFunction df = op.getOp();
+        if (df instanceof RandomOp || df.getClass().getName().startsWith("org.nd4j.linalg.api.ops.random.") ||
+                df instanceof Assert || ExecutionPlan.requiresDynamicExecution(df))
+            return false;
+
+        if (isEmpty(op.getInputsToOp()) || isEmpty(op.getOutputsOfOp()) || !isEmpty(op.getControlDeps()))
+            return false;
+
+        Map<String, Variable> vars = sd.getVariables();
+        boolean shapeOp = df instanceof Shape || df instanceof ShapeN || df instanceof Rank || df instanceof Size;
+        for (String s : op.getInputsToOp()) {
+            Variable v = vars.get(s);
+            if (!isEmpty(v.getControlDeps()))
+                return false;
+            if (v.getVariable().getVariableType() == VariableType.CONSTANT)
+                continue;
+            if (shapeOp && v.getVariable().isPlaceHolder() && isFullyDefined(v.getVariable().placeholderShape()))
+                continue;   //Only the shape of the placeholder is used
+            if (v.getOutputOfOp() == null || !folded.contains(v.getOutputOfOp()))
+                return false;
+        }
+
+        for (String s : op.getOutputsOfOp()) {
+            if (!isEmpty(vars.get(s).getControlDeps()))
+                return false;
+        }
+        return true;
+    }
+
+    protected static boolean isDynamic(SameDiff sd, String opName) {
+        if (opName == null || !sd.getOps().containsKey(opName))
+            return false;
+        return ExecutionPlan.requiresDynamicExecution(sd.getOps().get(opName).getOp());
+    }
+
+    protected static boolean isFullyDefined(long[] shape) {
+        if (shape == null)
+            return false;
+        for (long l : shape) {
+            if (l < 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Predicate for scalar add/subtract (or multiply/divide) ops with a floating point input, that can be merged with
+     * other such ops. If first is true, the op must be the first op in the chain (i.e., its input is not calculated by
+     * another such op), and its output must be used only by the next op in the chain.
+     */
+    protected static OpPredicate scalarChainPredicate(final boolean multiply, final boolean first) {
+        return new OpPredicate() {
+            @Override
+            public boolean matches(SameDiff sameDiff, DifferentialFunction function) {
+                if (!isScalarChainOp(function, multiply))
+                    return false;
+                if (first) {
+                    if (!singleUse(sameDiff, function))
+                        return false;
+                    DifferentialFunction prev = sameDiff.getVariableOutputOp(function.arg().getVarName());
+                    return prev == null || !isScalarChainOp(prev, multiply);
+                }
+                return true;
+            }
+        };
+    }
+
+    protected static boolean isScalarChainOp(DifferentialFunction df, boolean multiply) {
+        boolean match = multiply ? (df instanceof ScalarMultiplication || df instanceof ScalarDivision) :
+                (df instanceof ScalarAdd || df instanceof ScalarSubtraction);
+        if (!match)
+            return false;
+        SDVariable[] args = df.args();
+        if (args == null || args.length != 1 || args[0].dataType() == null || !args[0].dataType().isFPType())
+            return false;
+        INDArray scalar = ((BaseScalarOp) df).scalar();
+        if (scalar == null || scalar.length() != 1)
+            return false;
+        return !(df instanceof ScalarDivision) || scalar.getDouble(0) != 0.0;
+    }
+
+    /**
+     * @return The value to add (or multiply by) that is equivalent to the specified scalar op
+     */
+    protected static double scalarChainValue(DifferentialFunction df, boolean multiply) {
+        double d = ((BaseScalarOp) df).scalar().getDouble(0);
+        if (multiply)
+            return df instanceof ScalarDivision ? 1.0 / d : d;
+        return df instanceof ScalarSubtraction ? -d : d;
+    }
+
+    protected static OpPredicate reluPredicate() {
+        return new OpPredicate() {
+            @Override
+            public boolean matches(SameDiff sameDiff, DifferentialFunction function) {
+                if (!(function instanceof RectifiedLinear))
+                    return false;
+                INDArray cutoff = ((RectifiedLinear) function).scalar();
+                return cutoff == null || cutoff.getDouble(0) == 0.0;
+            }
+        };
+    }
+
+    protected static OpPredicate biasAddPredicate(final boolean intermediate) {
+        return new OpPredicate() {
+            @Override
+            public boolean matches(SameDiff sameDiff, DifferentialFunction function) {
+                if (intermediate && !singleUse(sameDiff, function))
+                    return false;
+                return linearInputs(sameDiff, function) != null;
+            }
+        };
+    }
+
+    protected static OpPredicate mmulPredicate() {
+        return new OpPredicate() {
+            @Override
+            public boolean matches(SameDiff sameDiff, DifferentialFunction function) {
+                if (!(function instanceof Mmul) || !singleUse(sameDiff, function))
+                    return false;
+                for (long l : ((DynamicCustomOp) function).iArgs()) {
+                    if (l != 0)
+                        return false;   //Transpose
+                }
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Get the inputs (x, w, b) for a linear layer equivalent to the specified bias add op (BiasAdd, or Add with a vector
+     * argument), where the first input of the bias add op is an Mmul op
+     *
+     * @return Inputs for the linear layer, or null if the ops can't be replaced by a linear layer
+     */
+    protected static SDVariable[] linearInputs(SameDiff sd, DifferentialFunction biasAdd) {
+        if (!(biasAdd instanceof BiasAdd) && !(biasAdd instanceof AddOp))
+            return null;
+        SDVariable[] args = biasAdd.args();
+        if (args == null || args.length != 2)
+            return null;
+
+        DifferentialFunction mmul = sd.getVariableOutputOp(args[0].getVarName());
+        if (!(mmul instanceof Mmul))
+            return null;
+        SDVariable[] mmulArgs = mmul.args();
+        if (mmulArgs == null || mmulArgs.length != 2)
+            return null;
+
+        SDVariable x = mmulArgs[0];
+        SDVariable w = mmulArgs[1];
+        SDVariable b = args[1];
+        INDArray wArr = parameterArray(w);
+        INDArray bArr = parameterArray(b);
+        if (wArr == null || bArr == null || wArr.rank() != 2 || bArr.rank() != 1 || bArr.length() != wArr.size(1))
+            return null;
+
+        DataType dt = wArr.dataType();
+        if (!dt.isFPType() || bArr.dataType() != dt || x.dataType() != dt)
+            return null;
+
+        if (x.getVariableType() == VariableType.PLACEHOLDER) {
+            long[] shape = x.placeholderShape();
+            if (shape != null && shape.length != 2)
+                return null;
+        } else if (x.getVariableType() != VariableType.ARRAY) {
+            INDArray xArr = x.getArr();
+            if (xArr == null || xArr.rank() != 2)
+                return null;
+        }
+
+        return new SDVariable[]{x, w, b};
+    }
+
+    protected static INDArray parameterArray(SDVariable v) {
+        if (v.getVariableType() != VariableType.CONSTANT && v.getVariableType() != VariableType.VARIABLE)
+            return null;
+        return v.getArr();
+    }
+
+    protected static boolean singleUse(SameDiff sd, DifferentialFunction df) {
+        SDVariable[] outputs = df.outputVariables();
+        if (outputs == null || outputs.length != 1)
+            return false;
+        Variable v = sd.getVariables().get(outputs[0].getVarName());
+        return v.getInputsForOp() != null && v.getInputsForOp().size() == 1 && isEmpty(v.getControlDeps()) &&
+                isEmpty(v.getControlDepsForOp()) && isEmpty(v.getControlDepsForVar());
+    }
+
+    protected static boolean isEmpty(List<String> l) {
+        return l == null || l.isEmpty();
+    }
+}
@@ -166,6 +166,9 @@ public class GraphTransformUtil {
             }
         }
 
+        if (!subgraphs.isEmpty())
+            sd.invalidateExecutionPlans();
+
         return sd;
     }
 
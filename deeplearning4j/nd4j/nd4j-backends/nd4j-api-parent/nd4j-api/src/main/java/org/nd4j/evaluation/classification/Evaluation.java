@@ -39,6 +39,7 @@ import org.nd4j.linalg.primitives.Pair;
 import org.nd4j.linalg.primitives.Triple;
 import org.nd4j.serde.jackson.shaded.NDArrayTextDeSerializer;
 import org.nd4j.serde.jackson.shaded.NDArrayTextSerializer;
+import org.nd4j.shade.jackson.annotation.JsonIgnore;
 import org.nd4j.shade.jackson.annotation.JsonIgnoreProperties;
 import org.nd4j.shade.jackson.databind.annotation.JsonDeserialize;
 import org.nd4j.shade.jackson.databind.annotation.JsonSerialize;
@@ -130,6 +131,18 @@ public class Evaluation extends BaseEvaluation<Evaluation> {
 
     protected Map<Pair<Integer, Integer>, List<Object>> confusionMatrixMetaData; //Pair: (Actual,Predicted)
 
+    //Per-minibatch buffers, reused between eval calls: per-class counts, and encoded (actual, predicted) pairs
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @JsonIgnore
+    protected transient int[] batchClassCounts;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @JsonIgnore
+    protected transient long[] batchPairs;
+
     /**
      * For stats(): When classes are excluded from precision/recall, what is the maximum number we should print?
      * If this is set to a high value, the output (potentially thousands of classes) can become unreadable.
@@ -435,18 +448,33 @@ public class Evaluation extends BaseEvaluation<Evaluation> {
 
         final int nCols = labels2d.columns();
         final int nRows = labels2d.rows();
+        int[] actualIdxs = null;
 
         if (nCols == 1) {
-            INDArray binaryGuesses = predictions2d.gt(binaryDecisionThreshold == null ? 0.5 : binaryDecisionThreshold).castTo(predictions.dataType());
-
-            INDArray notLabel = labels2d.rsub(1.0); //Invert entries (assuming 1 and 0)
-            INDArray notGuess = binaryGuesses.rsub(1.0);
-            //tp: predicted = 1, actual = 1
-            int tp = labels2d.mul(binaryGuesses).castTo(DataType.INT).sumNumber().intValue();
-            //fp: predicted = 1, actual = 0
-            int fp = notLabel.mul(binaryGuesses).castTo(DataType.INT).sumNumber().intValue();
-            //fn: predicted = 0, actual = 1
-            int fn = notGuess.mul(labels2d).castTo(DataType.INT).sumNumber().intValue();
+            //Single pass over labels and predictions; same semantics as (label * guess) etc. cast to integer
+            double threshold = (binaryDecisionThreshold == null ? 0.5 : binaryDecisionThreshold);
+            double[] labelValues = labels2d.toDoubleVector();
+            double[] predictionValues = predictions2d.toDoubleVector();
+
+            int tp = 0;
+            int fp = 0;
+            int fn = 0;
+            for (int i = 0; i < nRows; i++) {
+                double label = labelValues[i];
+                boolean guess = predictionValues[i] > threshold;
+                if (guess) {
+                    //tp: predicted = 1, actual = 1; fp: predicted = 1, actual = 0
+                    tp += (int) label;
+                    fp += (int) (1.0 - label);
+                } else {
+                    //fn: predicted = 0, actual = 1
+                    fn += (int) label;
+                }
+
+                if (recordMetaData != null && i < recordMetaData.size()) {
+                    addToMetaConfusionMatrix(label == 0.0 ? 0 : 1, guess ? 1 : 0, recordMetaData.get(i));
+                }
+            }
             int tn = nRows - tp - fp - fn;
 
             confusion().add(1, 1, tp);
@@ -464,16 +492,6 @@ public class Evaluation extends BaseEvaluation<Evaluation> {
             falseNegatives.incrementCount(0, fp);
             trueNegatives.incrementCount(0, tp);
 
-            if (recordMetaData != null) {
-                for (int i = 0; i < binaryGuesses.size(0); i++) {
-                    if (i >= recordMetaData.size())
-                        break;
-                    int actual = labels2d.getDouble(0) == 0.0 ? 0 : 1;
-                    int predicted = binaryGuesses.getDouble(0) == 0.0 ? 0 : 1;
-                    addToMetaConfusionMatrix(actual, predicted, recordMetaData.get(i));
-                }
-            }
-
         } else {
             INDArray guessIndex;
             if (binaryDecisionThreshold != null) {
@@ -484,7 +502,7 @@ public class Evaluation extends BaseEvaluation<Evaluation> {
                 }
 
                 INDArray pClass1 = predictions2d.getColumn(1);
-                guessIndex = pClass1.gt(binaryDecisionThreshold);
+                guessIndex = pClass1.gt(binaryDecisionThreshold).castTo(DataType.INT);
             } else if (costArray != null) {
                 //With a cost array: do argmax(cost * probability) instead of just argmax(probability)
                 guessIndex = Nd4j.argMax(predictions2d.mulRowVector(costArray.castTo(predictions2d.dataType())), 1);
@@ -492,72 +510,29 @@ public class Evaluation extends BaseEvaluation<Evaluation> {
                 //Standard case: argmax
                 guessIndex = Nd4j.argMax(predictions2d, 1);
             }
-            INDArray realOutcomeIndex = Nd4j.argMax(labels2d, 1);
-            val nExamples = guessIndex.length();
-
-            for (int i = 0; i < nExamples; i++) {
-                int actual = (int) realOutcomeIndex.getDouble(i);
-                int predicted = (int) guessIndex.getDouble(i);
-                confusion().add(actual, predicted);
+            actualIdxs = Nd4j.argMax(labels2d, 1).toIntVector();
+            int[] predictedIdxs = guessIndex.toIntVector();
 
-                if (recordMetaData != null && recordMetaData.size() > i) {
-                    Object m = recordMetaData.get(i);
-                    addToMetaConfusionMatrix(actual, predicted, m);
-                }
-
-                // instead of looping through each label for confusion
-                // matrix, instead infer those values by determining if true/false negative/positive,
-                // then just add across matrix
-
-                // if actual == predicted, then it's a true positive, assign true negative to every other label
-                if (actual == predicted) {
-                    truePositives.incrementCount(actual, 1);
-                    for (int col = 0; col < nCols; col++) {
-                        if (col == actual) {
-                            continue;
-                        }
-                        trueNegatives.incrementCount(col, 1); // all cols prior
-                    }
-                } else {
-                    falsePositives.incrementCount(predicted, 1);
-                    falseNegatives.incrementCount(actual, 1);
-
-                    // first determine intervals for adding true negatives
-                    int lesserIndex, greaterIndex;
-                    if (actual < predicted) {
-                        lesserIndex = actual;
-                        greaterIndex = predicted;
-                    } else {
-                        lesserIndex = predicted;
-                        greaterIndex = actual;
-                    }
-
-                    // now loop through intervals
-                    for (int col = 0; col < lesserIndex; col++) {
-                        trueNegatives.incrementCount(col, 1); // all cols prior
-                    }
-                    for (int col = lesserIndex + 1; col < greaterIndex; col++) {
-                        trueNegatives.incrementCount(col, 1); // all cols after
-                    }
-                    for (int col = greaterIndex + 1; col < nCols; col++) {
-                        trueNegatives.incrementCount(col, 1); // all cols after
-                    }
+            if (recordMetaData != null) {
+                for (int i = 0; i < predictedIdxs.length && i < recordMetaData.size(); i++) {
+                    addToMetaConfusionMatrix(actualIdxs[i], predictedIdxs[i], recordMetaData.get(i));
                 }
             }
+
+            addToConfusion(actualIdxs, predictedIdxs, nCols);
         }
 
         if (nCols > 1 && topN > 1) {
-            //Calculate top N accuracy
-            //TODO: this could be more efficient
-            INDArray realOutcomeIndex = Nd4j.argMax(labels2d, 1);
-            val nExamples = realOutcomeIndex.length();
-            for (int i = 0; i < nExamples; i++) {
-                int labelIdx = (int) realOutcomeIndex.getDouble(i);
-                double prob = predictions2d.getDouble(i, labelIdx);
-                INDArray row = predictions2d.getRow(i);
-                int countGreaterThan = (int) Nd4j.getExecutioner()
-                                .exec(new MatchCondition(row, Conditions.greaterThan(prob)))
-                                .getDouble(0);
+            //Calculate top N accuracy: single pass over a copy of the predictions, instead of one op per example
+            double[] probs = predictions2d.dup('c').data().asDouble();
+            for (int i = 0; i < actualIdxs.length; i++) {
+                int rowOffset = i * nCols;
+                double prob = probs[rowOffset + actualIdxs[i]];
+                int countGreaterThan = 0;
+                for (int j = 0; j < nCols; j++) {
+                    if (probs[rowOffset + j] > prob)
+                        countGreaterThan++;
+                }
                 if (countGreaterThan < topN) {
                     //For example, for top 3 accuracy: can have at most 2 other probabilities larger
                     topNCorrectCount++;
@@ -567,6 +542,64 @@ public class Evaluation extends BaseEvaluation<Evaluation> {
         }
     }
 
+    /**
+     * Add a minibatch of (actual, predicted) class pairs to the confusion matrix and per-class counts.<br>
+     * Pairs are encoded as primitive longs and sorted, so the confusion matrix is updated once per distinct pair, and
+     * the true/false positive/negative counters once per class - instead of once per example (and per class).
+     * Buffers are retained between calls.
+     */
+    protected void addToConfusion(int[] actualIdxs, int[] predictedIdxs, int nCols) {
+        int n = actualIdxs.length;
+        if (n == 0)
+            return;
+
+        if (batchPairs == null || batchPairs.length < n)
+            batchPairs = new long[Math.max(n, batchPairs == null ? 0 : 2 * batchPairs.length)];
+        if (batchClassCounts == null || batchClassCounts.length < 3 * nCols)
+            batchClassCounts = new int[3 * nCols];
+
+        //Layout: [0, nCols): true positives; [nCols, 2*nCols): actual totals; [2*nCols, 3*nCols): predicted totals
+        int[] counts = batchClassCounts;
+        long[] pairs = batchPairs;
+        for (int i = 0; i < n; i++) {
+            int actual = actualIdxs[i];
+            int predicted = predictedIdxs[i];
+            pairs[i] = ((long) actual << 32) | predicted;
+            if (actual == predicted)
+                counts[actual]++;
+            counts[nCols + actual]++;
+            counts[2 * nCols + predicted]++;
+        }
+
+        Arrays.sort(pairs, 0, n);
+        int runStart = 0;
+        for (int i = 1; i <= n; i++) {
+            if (i == n || pairs[i] != pairs[runStart]) {
+                long pair = pairs[runStart];
+                confusion().add((int) (pair >>> 32), (int) pair, i - runStart);
+                runStart = i;
+            }
+        }
+
+        //For each class: tp = diagonal; fp = predicted total - tp; fn = actual total - tp; everything else is tn
+        for (int c = 0; c < nCols; c++) {
+            int tp = counts[c];
+            int fp = counts[2 * nCols + c] - tp;
+            int fn = counts[nCols + c] - tp;
+            int tn = n - tp - fp - fn;
+
+            if (tp > 0)
+                truePositives.incrementCount(c, tp);
+            if (fp > 0)
+                falsePositives.incrementCount(c, fp);
+            if (fn > 0)
+                falseNegatives.incrementCount(c, fn);
+            if (tn > 0)
+                trueNegatives.incrementCount(c, tn);
+        }
+        Arrays.fill(counts, 0, 3 * nCols, 0);
+    }
+
     /**
      * Evaluate a single prediction (one prediction at a time)
      *
@@ -0,0 +1,242 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.nd4j.evaluation.classification;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.nd4j.base.Preconditions;
+import org.nd4j.linalg.primitives.Pair;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Mergeable quantile sketch for streaming evaluation, based on a hierarchy of compactors (as used in the KLL and
+ * MRL sketches).<br>
+ * Items are added to level 0. Once a level holds {@code size} items, it is sorted and every other item is promoted
+ * to the next level, with doubled weight. Which half is promoted alternates between compactions, so errors of
+ * consecutive compactions tend to cancel out. Total weight is always equal to the number of items added.
+ * <p>
+ * Memory use is O(size * log2(n / size)) for n items. Rank error is bounded by roughly log2(n / size) / size of n;
+ * in practice it is much smaller than that. Two sketches can be merged, which makes this usable for distributed
+ * evaluation.
+ */
+@Data
+@NoArgsConstructor
+public class QuantileSketch implements Serializable {
+    public static final int DEFAULT_SIZE = 2048;
+
+    private int size;
+    private long count;
+    private double[][] levels = new double[0][];
+    private int[] levelSizes = new int[0];
+    private boolean[] promoteOdd = new boolean[0];
+
+    /**
+     * @param size Max number of items held by a single level before compaction. Larger values give more accurate
+     *             results, at the cost of memory. Must be at least 2
+     */
+    public QuantileSketch(int size) {
+        Preconditions.checkArgument(size >= 2, "Sketch size must be at least 2, got %s", size);
+        this.size = size;
+    }
+
+    /**
+     * Add a single value to the sketch
+     */
+    public void update(double value) {
+        ensureLevel(0, 1);
+        levels[0][levelSizes[0]++] = value;
+        count++;
+        if (levelSizes[0] >= size)
+            compact(0);
+    }
+
+    /**
+     * Add all values to the sketch
+     */
+    public void update(double[] values) {
+        for (double v : values)
+            update(v);
+    }
+
+    /**
+     * Merge other sketch into this one. Other sketch is not modified.
+     * Sketches with different sizes can be merged; the size of this sketch is retained.
+     */
+    public void merge(QuantileSketch other) {
+        if (other == null || other.count == 0)
+            return;
+
+        for (int h = 0; h < other.levels.length; h++) {
+            int n = other.levelSizes[h];
+            if (n == 0)
+                continue;
+
+            ensureLevel(h, n);
+            System.arraycopy(other.levels[h], 0, levels[h], levelSizes[h], n);
+            levelSizes[h] += n;
+        }
+        count += other.count;
+
+        //Compacting bottom up: compaction of level h can only fill up levels above it
+        for (int h = 0; h < levels.length; h++) {
+            if (levelSizes[h] >= size)
+                compact(h);
+        }
+    }
+
+    /**
+     * @return Number of items currently held by the sketch
+     */
+    public int numRetained() {
+        int n = 0;
+        for (int s : levelSizes)
+            n += s;
+        return n;
+    }
+
+    /**
+     * Returns all items held by the sketch, sorted in ascending order, along with their weights.
+     * Sum of weights is equal to the number of items added to the sketch.
+     *
+     * @return Pair of (values, weights)
+     */
+    public Pair<double[], long[]> sortedItems() {
+        int n = numRetained();
+        double[] values = new double[n];
+        long[] weights = new long[n];
+
+        int pos = 0;
+        for (int h = 0; h < levels.length; h++) {
+            int s = levelSizes[h];
+            if (s == 0)
+                continue;
+            System.arraycopy(levels[h], 0, values, pos, s);
+            Arrays.fill(weights, pos, pos + s, 1L << h);
+            pos += s;
+        }
+
+        sortByValue(values, weights);
+        return new Pair<>(values, weights);
+    }
+
+    /**
+     * Estimate the number of items with value less than or equal to the given one
+     */
+    public long rank(double value) {
+        long rank = 0;
+        for (int h = 0; h < levels.length; h++) {
+            long weight = 1L << h;
+            for (int i = 0; i < levelSizes[h]; i++) {
+                if (levels[h][i] <= value)
+                    rank += weight;
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Estimate the value at the given quantile
+     *
+     * @param fraction Quantile, in range [0, 1]
+     */
+    public double quantile(double fraction) {
+        Preconditions.checkArgument(fraction >= 0.0 && fraction <= 1.0, "Quantile must be in range [0, 1], got %s", fraction);
+        Preconditions.checkState(count > 0, "Unable to calculate quantile: sketch is empty");
+
+        Pair<double[], long[]> items = sortedItems();
+        double[] values = items.getFirst();
+        long[] weights = items.getSecond();
+
+        long target = (long) Math.ceil(fraction * count);
+        long cumulative = 0;
+        for (int i = 0; i < values.length; i++) {
+            cumulative += weights[i];
+            if (cumulative >= target)
+                return values[i];
+        }
+        return values[values.length - 1];
+    }
+
+    private void ensureLevel(int level, int extra) {
+        if (level >= levels.length) {
+            int numLevels = level + 1;
+            levels = Arrays.copyOf(levels, numLevels);
+            levelSizes = Arrays.copyOf(levelSizes, numLevels);
+            promoteOdd = Arrays.copyOf(promoteOdd, numLevels);
+        }
+
+        if (levels[level] == null) {
+            levels[level] = new double[Math.max(size, extra)];
+        } else if (levelSizes[level] + extra > levels[level].length) {
+            levels[level] = Arrays.copyOf(levels[level], Math.max(levelSizes[level] + extra, levels[level].length * 2));
+        }
+    }
+
+    private void compact(int level) {
+        double[] items = levels[level];
+        int n = levelSizes[level];
+        Arrays.sort(items, 0, n);
+
+        //For odd number of items, the largest one stays at this level
+        int even = n - (n % 2);
+        int offset = promoteOdd[level] ? 1 : 0;
+        promoteOdd[level] = !promoteOdd[level];
+
+        int promoted = even / 2;
+        ensureLevel(level + 1, promoted);
+        //ensureLevel may reallocate the arrays of levels, but not the level itself
+        double[] next = levels[level + 1];
+        int nextPos = levelSizes[level + 1];
+        for (int i = offset; i < even; i += 2)
+            next[nextPos++] = items[i];
+        levelSizes[level + 1] = nextPos;
+
+        if (n % 2 != 0)
+            items[0] = items[n - 1];
+        levelSizes[level] = n % 2;
+
+        if (levelSizes[level + 1] >= size)
+            compact(level + 1);
+    }
+
+    private static void sortByValue(double[] values, long[] weights) {
+        int n = values.length;
+        Integer[] idx = new Integer[n];
+        for (int i = 0; i < n; i++)
+            idx[i] = i;
+
+        final double[] v = values;
+        Arrays.sort(idx, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return Double.compare(v[o1], v[o2]);
+            }
+        });
+
+        double[] sortedValues = new double[n];
+        long[] sortedWeights = new long[n];
+        for (int i = 0; i < n; i++) {
+            sortedValues[i] = values[idx[i]];
+            sortedWeights[i] = weights[idx[i]];
+        }
+        System.arraycopy(sortedValues, 0, values, 0, n);
+        System.arraycopy(sortedWeights, 0, weights, 0, n);
+    }
+}
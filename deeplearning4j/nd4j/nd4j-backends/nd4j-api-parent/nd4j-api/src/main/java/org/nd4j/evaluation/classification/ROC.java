@@ -54,9 +54,10 @@ import static org.nd4j.linalg.indexing.NDArrayIndex.interval;
 
 /**
  * ROC (Receiver Operating Characteristic) for binary classifiers.<br>
- * ROC has 2 modes of operation:
+ * ROC has 3 modes of operation:
  * (a) Thresholded (less memory)<br>
- * (b) Exact (default; use numSteps == 0 to set. May not scale to very large datasets)
+ * (b) Exact (default; use numSteps == 0 to set. May not scale to very large datasets)<br>
+ * (c) Streaming (bounded memory; use {@link #streaming(int)} to create)
  * <p>
  * <p>
  * Thresholded Is an approximate method, that (for large datasets) may use significantly less memory than exact..
@@ -67,6 +68,11 @@ import static org.nd4j.linalg.indexing.NDArrayIndex.interval;
  * Note that in some cases (very skewed probability predictions, for example) the threshold approach can be inaccurate,
  * often underestimating the true area.
  * <p>
+ * Streaming mode keeps separate {@link QuantileSketch} instances for the predicted probabilities of positive and negative
+ * examples. Thresholds are derived from the data as per exact mode, but memory use grows only logarithmically with the
+ * number of examples, and sketches can be merged - so it's suitable for very large and distributed evaluations.
+ * The error of ROC and P-R curves is bounded by the rank error of the sketches, controlled by the sketch size.
+ * <p>
  * The data is assumed to be binary classification - nColumns == 1 (single binary output variable) or nColumns == 2
  * (probability distribution over 2 classes, with column 1 being values for 'positive' examples)
  *
@@ -115,6 +121,9 @@ public class ROC extends BaseEvaluation<ROC> {
     private int exactAllocBlockSize;
     protected int axis = 1;
 
+    private int sketchSize;
+    private QuantileSketch positiveSketch;
+    private QuantileSketch negativeSketch;
 
 
     public ROC(int thresholdSteps, boolean rocRemoveRedundantPts, int exactAllocBlockSize, int axis) {
@@ -122,6 +131,24 @@ public class ROC extends BaseEvaluation<ROC> {
         this.axis = axis;
     }
 
+    /**
+     * @param thresholdSteps        Number of threshold steps to use for the ROC calculation. If set to 0: use exact calculation
+     * @param rocRemoveRedundantPts Usually set to true. If true,  remove any redundant points from ROC and P-R curves
+     * @param exactAllocBlockSize   if using exact mode, the block size relocation
+     * @param axis                  Axis to use for evaluation - see {@link #setAxis(int)}
+     * @param sketchSize            If > 0: use streaming calculation, with quantile sketches of the given size.
+     *                              thresholdSteps is ignored in this case. See {@link #streaming(int)}
+     */
+    public ROC(int thresholdSteps, boolean rocRemoveRedundantPts, int exactAllocBlockSize, int axis, int sketchSize) {
+        this(sketchSize > 0 ? 0 : thresholdSteps, rocRemoveRedundantPts, exactAllocBlockSize, axis);
+        if (sketchSize > 0) {
+            this.sketchSize = sketchSize;
+            this.isExact = false;
+            this.positiveSketch = new QuantileSketch(sketchSize);
+            this.negativeSketch = new QuantileSketch(sketchSize);
+        }
+    }
+
     public ROC() {
         //Default to exact
         this(0);
@@ -170,6 +197,35 @@ public class ROC extends BaseEvaluation<ROC> {
         this.exactAllocBlockSize = exactAllocBlockSize;
     }
 
+    /**
+     * Create a ROC instance that uses streaming calculation: predicted probabilities are stored in mergeable quantile
+     * sketches instead of in full, so memory use is bounded regardless of the number of examples.
+     *
+     * @param sketchSize Size of each sketch level. Larger values give more accurate curves at the cost of memory.
+     *                   {@link QuantileSketch#DEFAULT_SIZE} is a reasonable default
+     */
+    public static ROC streaming(int sketchSize) {
+        return streaming(sketchSize, true);
+    }
+
+    /**
+     * See {@link #streaming(int)}
+     *
+     * @param sketchSize            Size of each sketch level
+     * @param rocRemoveRedundantPts Usually set to true. If true,  remove any redundant points from ROC and P-R curves
+     */
+    public static ROC streaming(int sketchSize, boolean rocRemoveRedundantPts) {
+        Preconditions.checkArgument(sketchSize > 0, "Sketch size must be positive, got %s", sketchSize);
+        return new ROC(0, rocRemoveRedundantPts, DEFAULT_EXACT_ALLOC_BLOCK_SIZE, 1, sketchSize);
+    }
+
+    /**
+     * @return True if this instance uses streaming (sketch based) calculation
+     */
+    public boolean isStreaming() {
+        return sketchSize > 0;
+    }
+
     public static ROC fromJson(String json) {
         return fromJson(json, ROC.class);
     }
@@ -236,7 +292,37 @@ public class ROC extends BaseEvaluation<ROC> {
 
         Preconditions.checkState(exampleCount > 0, "Unable to get ROC curve: no evaluation has been performed (no examples)");
 
-        if (isExact) {
+        if (isStreaming()) {
+            Triple<double[], long[], long[]> c = getStreamingCounts();
+            double[] thresholds = c.getFirst();
+            long[] tp = c.getSecond();
+            long[] fp = c.getThird();
+            int length = thresholds.length;
+
+            //Same layout as exact mode: thresholds in descending order, with edge points of (0,0) and (1,1)
+            double[] tOut = new double[length + 2];
+            double[] x_fpr_out = new double[length + 2];
+            double[] y_tpr_out = new double[length + 2];
+            tOut[0] = 1.0;
+            for (int i = 0; i < length; i++) {
+                tOut[i + 1] = thresholds[i];
+                x_fpr_out[i + 1] = fp[i] / (double) countActualNegative;
+                y_tpr_out[i + 1] = tp[i] / (double) countActualPositive;
+            }
+            x_fpr_out[length + 1] = 1.0;
+            y_tpr_out[length + 1] = 1.0;
+
+            if (rocRemoveRedundantPts) {
+                Pair<double[][], int[][]> p = removeRedundant(tOut, x_fpr_out, y_tpr_out, null, null, null);
+                double[][] temp = p.getFirst();
+                tOut = temp[0];
+                x_fpr_out = temp[1];
+                y_tpr_out = temp[2];
+            }
+
+            this.rocCurve = new RocCurve(tOut, x_fpr_out, y_tpr_out);
+            return rocCurve;
+        } else if (isExact) {
             //Sort ascending. As we decrease threshold, more are predicted positive.
             //if(prob <= threshold> predict 0, otherwise predict 1
             //So, as we iterate from i=0..length, first 0 to i (inclusive) are predicted class 1, all others are predicted class 0
@@ -303,6 +389,45 @@ public class ROC extends BaseEvaluation<ROC> {
         }
     }
 
+    /**
+     * Combine positive and negative sketches into a set of distinct thresholds, in descending order, along with the
+     * (estimated) number of positive and negative examples with predicted probability >= each threshold
+     *
+     * @return Triple of (thresholds, true positive counts, false positive counts)
+     */
+    protected Triple<double[], long[], long[]> getStreamingCounts() {
+        Pair<double[], long[]> pos = positiveSketch.sortedItems();
+        Pair<double[], long[]> neg = negativeSketch.sortedItems();
+        double[] posValues = pos.getFirst();
+        long[] posWeights = pos.getSecond();
+        double[] negValues = neg.getFirst();
+        long[] negWeights = neg.getSecond();
+
+        double[] thresholds = new double[posValues.length + negValues.length];
+        long[] tp = new long[thresholds.length];
+        long[] fp = new long[thresholds.length];
+
+        int i = posValues.length - 1;
+        int j = negValues.length - 1;
+        int n = 0;
+        long cumTP = 0;
+        long cumFP = 0;
+        while (i >= 0 || j >= 0) {
+            double t = (j < 0 || (i >= 0 && posValues[i] >= negValues[j])) ? posValues[i] : negValues[j];
+            while (i >= 0 && posValues[i] == t)
+                cumTP += posWeights[i--];
+            while (j >= 0 && negValues[j] == t)
+                cumFP += negWeights[j--];
+
+            thresholds[n] = t;
+            tp[n] = cumTP;
+            fp[n] = cumFP;
+            n++;
+        }
+
+        return new Triple<>(Arrays.copyOf(thresholds, n), Arrays.copyOf(tp, n), Arrays.copyOf(fp, n));
+    }
+
     protected INDArray getProbAndLabelUsed() {
         if (probAndLabel == null || exampleCount == 0) {
             return null;
@@ -412,7 +537,57 @@ public class ROC extends BaseEvaluation<ROC> {
         int[] fpCountOut;
         int[] fnCountOut;
 
-        if (isExact) {
+        if (isStreaming()) {
+            Triple<double[], long[], long[]> c = getStreamingCounts();
+            double[] thresholds = c.getFirst();
+            long[] tp = c.getSecond();
+            long[] fp = c.getThird();
+            int length = thresholds.length;
+
+            //Lowest to highest threshold, as per exact mode. Edge cases: all predicted positive (threshold 0.0) at the
+            //start, and all predicted negative (threshold 1.0) at the end
+            thresholdOut = new double[length + 2];
+            precisionOut = new double[length + 2];
+            recallOut = new double[length + 2];
+            tpCountOut = new int[length + 2];
+            fpCountOut = new int[length + 2];
+            fnCountOut = new int[length + 2];
+
+            thresholdOut[0] = 0.0;
+            precisionOut[0] = countActualPositive / (double) (countActualPositive + countActualNegative);
+            recallOut[0] = 1.0;
+            tpCountOut[0] = (int) countActualPositive;
+            fpCountOut[0] = (int) countActualNegative;
+            fnCountOut[0] = 0;
+
+            for (int i = 0; i < length; i++) {
+                int src = length - 1 - i;
+                thresholdOut[i + 1] = thresholds[src];
+                precisionOut[i + 1] = tp[src] / (double) (tp[src] + fp[src]);
+                recallOut[i + 1] = tp[src] / (double) countActualPositive;
+                tpCountOut[i + 1] = (int) tp[src];
+                fpCountOut[i + 1] = (int) fp[src];
+                fnCountOut[i + 1] = (int) (countActualPositive - tp[src]);
+            }
+
+            thresholdOut[length + 1] = 1.0;
+            precisionOut[length + 1] = 1.0;
+            recallOut[length + 1] = 0.0;
+            fnCountOut[length + 1] = (int) countActualPositive;
+
+            if (rocRemoveRedundantPts) {
+                Pair<double[][], int[][]> pair = removeRedundant(thresholdOut, precisionOut, recallOut, tpCountOut,
+                        fpCountOut, fnCountOut);
+                double[][] temp = pair.getFirst();
+                int[][] temp2 = pair.getSecond();
+                thresholdOut = temp[0];
+                precisionOut = temp[1];
+                recallOut = temp[2];
+                tpCountOut = temp2[0];
+                fpCountOut = temp2[1];
+                fnCountOut = temp2[2];
+            }
+        } else if (isExact) {
             INDArray pl = getProbAndLabelUsed();
             INDArray sorted = Nd4j.sortRows(pl, 0, false);
             INDArray isPositive = sorted.getColumn(1,true);
@@ -611,7 +786,30 @@ public class ROC extends BaseEvaluation<ROC> {
         double step = 1.0 / thresholdSteps;
         boolean singleOutput = labels2d.size(1) == 1;
 
-        if (isExact) {
+        if (isStreaming()) {
+            //Streaming approach: add predicted probabilities to the sketch for the actual class
+            INDArray probClass1;
+            INDArray labelClass1;
+            if (singleOutput) {
+                probClass1 = predictions2d;
+                labelClass1 = labels2d;
+            } else {
+                probClass1 = predictions2d.getColumn(1,true);
+                labelClass1 = labels2d.getColumn(1,true);
+            }
+
+            double[] prob = probClass1.dup('c').data().asDouble();
+            double[] label = labelClass1.dup('c').data().asDouble();
+            for (int i = 0; i < prob.length; i++) {
+                if (label[i] >= 0.5) {
+                    positiveSketch.update(prob[i]);
+                    countActualPositive++;
+                } else {
+                    negativeSketch.update(prob[i]);
+                    countActualNegative++;
+                }
+            }
+        } else if (isExact) {
             //Exact approach: simply add them to the storage for later computation/use
 
             if (probAndLabel == null) {
@@ -742,6 +940,9 @@ public class ROC extends BaseEvaluation<ROC> {
                     "Cannot merge ROC instances with different numbers of threshold steps ("
                             + this.thresholdSteps + " vs. " + other.thresholdSteps + ")");
         }
+        if (this.isStreaming() != other.isStreaming()) {
+            throw new UnsupportedOperationException("Cannot merge streaming and non-streaming ROC instances");
+        }
         this.countActualPositive += other.countActualPositive;
         this.countActualNegative += other.countActualNegative;
         this.auc = null;
@@ -750,7 +951,10 @@ public class ROC extends BaseEvaluation<ROC> {
         this.prCurve = null;
 
 
-        if (isExact) {
+        if (isStreaming()) {
+            positiveSketch.merge(other.positiveSketch);
+            negativeSketch.merge(other.negativeSketch);
+        } else if (isExact) {
             if (other.exampleCount == 0) {
                 return;
             }
@@ -791,7 +995,10 @@ public class ROC extends BaseEvaluation<ROC> {
         countActualNegative = 0L;
         counts.clear();
 
-        if (isExact) {
+        if (isStreaming()) {
+            positiveSketch = new QuantileSketch(sketchSize);
+            negativeSketch = new QuantileSketch(sketchSize);
+        } else if (isExact) {
             probAndLabel = null;
         } else {
             double step = 1.0 / thresholdSteps;
@@ -815,7 +1022,11 @@ public class ROC extends BaseEvaluation<ROC> {
         StringBuilder sb = new StringBuilder();
         sb.append("AUC (Area under ROC Curve):                ").append(calculateAUC()).append("\n");
         sb.append("AUPRC (Area under Precision/Recall Curve): ").append(calculateAUCPR());
-        if (!isExact) {
+        if (isStreaming()) {
+            sb.append("\n");
+            sb.append("[Note: Streaming AUC/AUPRC calculation used with sketch size ").append(sketchSize)
+                    .append("; results are approximate]");
+        } else if (!isExact) {
             sb.append("\n");
             sb.append("[Note: Thresholded AUC/AUPRC calculation used with ").append(thresholdSteps)
                     .append(" steps); accuracy may reduced compared to exact mode]");
@@ -849,6 +1060,6 @@ public class ROC extends BaseEvaluation<ROC> {
 
     @Override
     public ROC newInstance() {
-        return new ROC(thresholdSteps, rocRemoveRedundantPts, exactAllocBlockSize, axis);
+        return new ROC(thresholdSteps, rocRemoveRedundantPts, exactAllocBlockSize, axis, sketchSize);
     }
 }
@@ -74,16 +74,33 @@ public class ROCBinary extends BaseEvaluation<ROCBinary> {
 
     private int thresholdSteps;
     private boolean rocRemoveRedundantPts;
+    private int sketchSize;
     private List<String> labels;
 
     @EqualsAndHashCode.Exclude      //Exclude axis: otherwise 2 Evaluation instances could contain identical stats and fail equality
     protected int axis = 1;
 
     protected ROCBinary(int axis, int thresholdSteps, boolean rocRemoveRedundantPts, List<String> labels) {
+        this(axis, thresholdSteps, rocRemoveRedundantPts, labels, 0);
+    }
+
+    protected ROCBinary(int axis, int thresholdSteps, boolean rocRemoveRedundantPts, List<String> labels, int sketchSize) {
         this.thresholdSteps = thresholdSteps;
         this.rocRemoveRedundantPts = rocRemoveRedundantPts;
         this.axis = axis;
         this.labels = labels;
+        this.sketchSize = sketchSize;
+    }
+
+    /**
+     * Create a ROCBinary instance that uses streaming calculation for each underlying ROC - see {@link ROC#streaming(int)}
+     *
+     * @param sketchSize Size of each sketch level. Larger values give more accurate curves at the cost of memory.
+     *                   {@link QuantileSketch#DEFAULT_SIZE} is a reasonable default
+     */
+    public static ROCBinary streaming(int sketchSize) {
+        Preconditions.checkArgument(sketchSize > 0, "Sketch size must be positive, got %s", sketchSize);
+        return new ROCBinary(1, 0, true, null, sketchSize);
     }
 
     public ROCBinary() {
@@ -159,7 +176,8 @@ public class ROCBinary extends BaseEvaluation<ROCBinary> {
         if (underlying == null) {
             underlying = new ROC[n];
             for (int i = 0; i < n; i++) {
-                underlying[i] = new ROC(thresholdSteps, rocRemoveRedundantPts);
+                underlying[i] = sketchSize > 0 ? ROC.streaming(sketchSize, rocRemoveRedundantPts)
+                                : new ROC(thresholdSteps, rocRemoveRedundantPts);
             }
         }
 
@@ -402,7 +420,11 @@ public class ROCBinary extends BaseEvaluation<ROCBinary> {
                                 getCountActualNegative(i)));
             }
 
-            if(thresholdSteps > 0){
+            if(sketchSize > 0){
+                sb.append("\n");
+                sb.append("[Note: Streaming AUC/AUPRC calculation used with sketch size ").append(sketchSize)
+                        .append("; results are approximate]");
+            } else if(thresholdSteps > 0){
                 sb.append("\n");
                 sb.append("[Note: Thresholded AUC/AUPRC calculation used with ").append(thresholdSteps)
                         .append(" steps); accuracy may reduced compared to exact mode]");
@@ -447,6 +469,6 @@ public class ROCBinary extends BaseEvaluation<ROCBinary> {
 
     @Override
     public ROCBinary newInstance() {
-        return new ROCBinary(axis, thresholdSteps, rocRemoveRedundantPts, labels);
+        return new ROCBinary(axis, thresholdSteps, rocRemoveRedundantPts, labels, sketchSize);
     }
 }
@@ -67,6 +67,7 @@ public class ROCMultiClass extends BaseEvaluation<ROCMultiClass> {
 
     private int thresholdSteps;
     private boolean rocRemoveRedundantPts;
+    private int sketchSize;
     @JsonSerialize(using = ROCArraySerializer.class)
     private ROC[] underlying;
     private List<String> labels;
@@ -75,10 +76,26 @@ public class ROCMultiClass extends BaseEvaluation<ROCMultiClass> {
     protected int axis = 1;
 
     protected ROCMultiClass(int axis, int thresholdSteps, boolean rocRemoveRedundantPts, List<String> labels) {
+        this(axis, thresholdSteps, rocRemoveRedundantPts, labels, 0);
+    }
+
+    protected ROCMultiClass(int axis, int thresholdSteps, boolean rocRemoveRedundantPts, List<String> labels, int sketchSize) {
         this.thresholdSteps = thresholdSteps;
         this.rocRemoveRedundantPts = rocRemoveRedundantPts;
         this.axis = axis;
         this.labels = labels;
+        this.sketchSize = sketchSize;
+    }
+
+    /**
+     * Create a ROCMultiClass instance that uses streaming calculation for each underlying ROC - see {@link ROC#streaming(int)}
+     *
+     * @param sketchSize Size of each sketch level. Larger values give more accurate curves at the cost of memory.
+     *                   {@link QuantileSketch#DEFAULT_SIZE} is a reasonable default
+     */
+    public static ROCMultiClass streaming(int sketchSize) {
+        Preconditions.checkArgument(sketchSize > 0, "Sketch size must be positive, got %s", sketchSize);
+        return new ROCMultiClass(1, 0, true, null, sketchSize);
     }
 
     public ROCMultiClass() {
@@ -168,7 +185,11 @@ public class ROCMultiClass extends BaseEvaluation<ROCMultiClass> {
 
             sb.append("Average AUC: ").append(String.format("%-12." + printPrecision + "f", calculateAverageAUC()));
 
-            if(thresholdSteps > 0){
+            if(sketchSize > 0){
+                sb.append("\n");
+                sb.append("[Note: Streaming AUC/AUPRC calculation used with sketch size ").append(sketchSize)
+                        .append("; results are approximate]");
+            } else if(thresholdSteps > 0){
                 sb.append("\n");
                 sb.append("[Note: Thresholded AUC/AUPRC calculation used with ").append(thresholdSteps)
                         .append(" steps); accuracy may reduced compared to exact mode]");
@@ -213,7 +234,8 @@ public class ROCMultiClass extends BaseEvaluation<ROCMultiClass> {
         if (underlying == null) {
             underlying = new ROC[n];
             for (int i = 0; i < n; i++) {
-                underlying[i] = new ROC(thresholdSteps, rocRemoveRedundantPts);
+                underlying[i] = sketchSize > 0 ? ROC.streaming(sketchSize, rocRemoveRedundantPts)
+                                : new ROC(thresholdSteps, rocRemoveRedundantPts);
             }
         }
 
@@ -399,6 +421,6 @@ public class ROCMultiClass extends BaseEvaluation<ROCMultiClass> {
 
     @Override
     public ROCMultiClass newInstance() {
-        return new ROCMultiClass(axis, thresholdSteps, rocRemoveRedundantPts, labels);
+        return new ROCMultiClass(axis, thresholdSteps, rocRemoveRedundantPts, labels, sketchSize);
     }
 }
@@ -54,6 +54,12 @@ public class ROCSerializer extends JsonSerializer<ROC> {
             jsonGenerator.writeObjectField("rocCurve", roc.getRocCurve());
             jsonGenerator.writeObjectField("prCurve", roc.getPrecisionRecallCurve());
         }
+        if (roc.isStreaming()) {
+            //Sketches are small (bounded size), and are required to merge deserialized instances
+            jsonGenerator.writeNumberField("sketchSize", roc.getSketchSize());
+            jsonGenerator.writeObjectField("positiveSketch", roc.getPositiveSketch());
+            jsonGenerator.writeObjectField("negativeSketch", roc.getNegativeSketch());
+        }
         jsonGenerator.writeBooleanField("isExact", roc.isExact());
         jsonGenerator.writeNumberField("exampleCount", roc.getExampleCount());
         jsonGenerator.writeBooleanField("rocRemoveRedundantPts", roc.isRocRemoveRedundantPts());
@@ -27,6 +27,7 @@ import org.nd4j.autodiff.samediff.SameDiff;
 import org.nd4j.autodiff.samediff.VariableType;
 import org.nd4j.autodiff.samediff.internal.SameDiffOp;
 import org.nd4j.autodiff.samediff.internal.Variable;
+import org.nd4j.autodiff.samediff.transform.GraphOptimizer;
 import org.nd4j.base.Preconditions;
 import org.nd4j.imports.NoOpNameFoundException;
 import org.nd4j.imports.descriptors.properties.PropertyMapping;
@@ -360,6 +361,51 @@ public abstract class BaseGraphMapper<GRAPH_TYPE, NODE_TYPE, ATTR_TYPE, TENSOR_T
         return diff;
     }
 
+    /**
+     * Import the graph, and if {@code optimize} is true, optimize it for inference using
+     * {@link GraphOptimizer#optimize(SameDiff)}: Identity ops are removed, constant subgraphs are folded, and supported op
+     * sequences (such as MatMul + BiasAdd + Relu) are replaced by fused ops. Intermediate variables removed by the
+     * optimizations can't be requested as outputs of the imported graph.<br>
+     * To also prune the graph and freeze placeholder shapes, use {@link GraphOptimizer#optimize(SameDiff, Collection, Map)}
+     * on the imported graph.
+     *
+     * @param inputStream Graph to import
+     * @param optimize    Whether the imported graph should be optimized
+     * @return Imported graph
+     */
+    public SameDiff importGraph(InputStream inputStream, boolean optimize) {
+        SameDiff sd = importGraph(inputStream);
+        return optimize ? optimizeImported(sd) : sd;
+    }
+
+    /**
+     * See {@link #importGraph(InputStream, boolean)}
+     */
+    public SameDiff importGraph(File graphFile, boolean optimize) {
+        SameDiff sd = importGraph(graphFile);
+        return optimize ? optimizeImported(sd) : sd;
+    }
+
+    /**
+     * See {@link #importGraph(InputStream, boolean)}
+     */
+    public SameDiff importGraph(GRAPH_TYPE graph, boolean optimize) {
+        SameDiff sd = importGraph(graph);
+        return optimize ? optimizeImported(sd) : sd;
+    }
+
+    /**
+     * Optimize a copy of the imported graph. If optimization fails, the original (unmodified) graph is returned.
+     */
+    protected SameDiff optimizeImported(SameDiff sd) {
+        try {
+            return GraphOptimizer.optimize(sd.dup());
+        } catch (Throwable t) {
+            log.warn("Error optimizing imported graph, returning unoptimized graph", t);
+            return sd;
+        }
+    }
+
     protected void initOutputVariables(SameDiff sd, DifferentialFunction df) {
         String[] outNames = sd.getOutputsForOp(df);
         SDVariable[] outVars;
@@ -20,11 +20,14 @@ import org.junit.Test;
 import org.nd4j.autodiff.samediff.SDVariable;
 import org.nd4j.autodiff.samediff.SameDiff;
 import org.nd4j.autodiff.samediff.internal.AbstractSession;
+import org.nd4j.autodiff.samediff.internal.ExecutionPlan;
 import org.nd4j.autodiff.samediff.internal.InferenceSession;
+import org.nd4j.autodiff.samediff.internal.MemoryPlan;
 import org.nd4j.imports.graphmapper.tf.TFGraphMapper;
 import org.nd4j.linalg.BaseNd4jTest;
 import org.nd4j.linalg.api.buffer.DataType;
 import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.shape.LongShapeDescriptor;
 import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.factory.Nd4jBackend;
 import org.nd4j.linalg.io.ClassPathResource;
@@ -117,6 +120,139 @@ public class TestSessions extends BaseNd4jTest {
         assertEquals(dExp, outMap.get("d"));
     }
 
+    @Test
+    public void testExecutionPlan(){
+        SameDiff sd = SameDiff.create();
+        SDVariable ph1 = sd.placeHolder("x", DataType.FLOAT, -1,3);
+        SDVariable ph2 = sd.placeHolder("y", DataType.FLOAT, 3,3);
+
+        SDVariable a = ph1.add("a", sd.constant("c1", Nd4j.scalar(1.0f)));
+        SDVariable b = ph1.mmul("b", ph2);
+        SDVariable c = ph1.sub("c", ph2);
+        SDVariable d = a.add("d", b);
+
+        ExecutionPlan plan = ExecutionPlan.build(sd, Collections.singletonList("d"), Collections.<String>emptyList());
+        assertFalse(plan.isDynamic());
+        assertEquals(3, plan.getSteps().size());
+        assertEquals(d.getVarName(), plan.getSteps().get(2).getOutputNames()[0]);
+        for(ExecutionPlan.Step s : plan.getSteps()){
+            assertNotEquals(c.getVarName(), s.getOutputNames()[0]);
+        }
+        //"a" and "b" are not required after "d" is calculated
+        assertEquals(2, plan.getLastUse().get("a").intValue());
+        assertEquals(2, plan.getLastUse().get("b").intValue());
+        assertEquals(3, plan.getLastUse().get("d").intValue());
+        assertEquals(2, plan.getSteps().get(2).getReleasedAfter().length);
+        assertArrayEquals(new String[]{"x", "y"}, plan.getRequiredPlaceholders());
+
+        InferenceSession planned = new InferenceSession(sd);
+        InferenceSession dynamic = new InferenceSession(sd);
+        dynamic.setPlanCacheEnabled(false);
+        assertTrue(planned.isPlanCacheEnabled());
+
+        //Plan doesn't depend on placeholder shapes: minibatch size may change between calls
+        for(int minibatch : new int[]{3, 3, 5}) {
+            INDArray x = Nd4j.linspace(1, 3 * minibatch, 3 * minibatch).castTo(DataType.FLOAT).reshape(minibatch, 3);
+            INDArray y = Nd4j.linspace(0.0, 0.9, 9, DataType.DOUBLE).castTo(DataType.FLOAT).reshape(3, 3);
+            INDArray dExp = x.add(1.0).add(x.mmul(y));
+
+            Map<String, INDArray> m = new HashMap<>();
+            m.put("x", x);
+            m.put("y", y);
+
+            Map<String, INDArray> outPlanned = planned.output(Arrays.asList("d", "a"), m, null,
+                    Collections.<String>emptyList(), false, null);
+            Map<String, INDArray> outDynamic = dynamic.output(Arrays.asList("d", "a"), m, null,
+                    Collections.<String>emptyList(), false, null);
+
+            assertEquals(2, outPlanned.size());
+            assertEquals(dExp, outPlanned.get("d"));
+            assertEquals(outDynamic, outPlanned);
+            //Intermediate arrays should still be available from the session, as with dynamic execution
+            assertNotNull(planned.get("b", InferenceSession.OUTER_FRAME, 0, null));
+        }
+
+        //Missing placeholder
+        try {
+            planned.output(Collections.singletonList("d"), Collections.singletonMap("x", Nd4j.create(DataType.FLOAT, 2, 3)), null,
+                    Collections.<String>emptyList(), false, null);
+            fail("Expected exception");
+        } catch (IllegalStateException e){
+            assertTrue(e.getMessage(), e.getMessage().contains("\"y\""));
+        }
+
+        //Adding ops invalidates existing plans
+        assertTrue(plan.isValidFor(sd));
+        d.mul("e", 2.0);
+        assertFalse(plan.isValidFor(sd));
+
+        //Control flow requires dynamic execution
+        SDVariable merge = sd.f().merge(ph2, c);
+        assertTrue(ExecutionPlan.build(sd, Collections.singletonList(merge.getVarName()), Collections.<String>emptyList()).isDynamic());
+    }
+
+    @Test
+    public void testMemoryPlan(){
+        SameDiff sd = SameDiff.create();
+        SDVariable in = sd.placeHolder("in", DataType.FLOAT, -1, 4);
+        SDVariable w = sd.var("w", Nd4j.rand(DataType.FLOAT, 4, 4));
+
+        //Chain: each intermediate is only used by the next op, so 2 slabs are sufficient
+        SDVariable x = in;
+        for( int i=0; i<5; i++ ){
+            x = sd.nn().tanh("h" + i, x.mmul(w));
+        }
+        SDVariable out = x.add("out", 1.0);
+
+        ExecutionPlan plan = ExecutionPlan.build(sd, Collections.singletonList("out"), Collections.<String>emptyList());
+        MemoryPlan mp = MemoryPlan.build(sd, plan);
+        assertEquals(10, mp.getNumPooledOutputs());
+        assertEquals(2, mp.numSlabs());
+        int lastStep = plan.getSteps().size() - 1;
+        assertEquals(-1, mp.getSlab(lastStep, 0));     //Requested output is never pooled
+
+        InferenceSession planned = new InferenceSession(sd);
+        planned.setMemoryPlanningEnabled(true);
+        InferenceSession dynamic = new InferenceSession(sd);
+        dynamic.setPlanCacheEnabled(false);
+
+        INDArray h2 = null;
+        for(int minibatch : new int[]{3, 3, 5, 2}) {
+            INDArray inArr = Nd4j.rand(DataType.FLOAT, minibatch, 4);
+            Map<String,INDArray> ph = Collections.singletonMap("in", inArr);
+
+            //Both sessions share the op instances (and so the output arrays): copy the result before the second call
+            INDArray outPlanned = planned.output(Collections.singletonList("out"), ph, null,
+                    Collections.<String>emptyList(), false, null).get("out");
+            assertFalse(outPlanned.isView());
+            outPlanned = outPlanned.dup();
+            INDArray outDynamic = dynamic.output(Collections.singletonList("out"), ph, null,
+                    Collections.<String>emptyList(), false, null).get("out");
+            assertEquals(outDynamic, outPlanned);
+
+            //Intermediate arrays are views of the slabs. Same shapes: no new arrays
+            INDArray h2Curr = planned.get("h2", InferenceSession.OUTER_FRAME, 0, null);
+            assertTrue(h2Curr.isView());
+            assertArrayEquals(new long[]{minibatch, 4}, h2Curr.shape());
+            if(minibatch == 3 && h2 != null){
+                assertSame(h2, h2Curr);
+            }
+            h2 = h2Curr;
+        }
+
+        //Slabs are only reallocated if a larger array is required
+        INDArray v1 = mp.getOutputArray(0, 0, LongShapeDescriptor.fromShape(new long[]{3, 4}, DataType.FLOAT));
+        assertSame(v1, mp.getOutputArray(0, 0, LongShapeDescriptor.fromShape(new long[]{3, 4}, DataType.FLOAT)));
+        assertEquals(1, mp.getSlabAllocations());
+        mp.getOutputArray(0, 0, LongShapeDescriptor.fromShape(new long[]{2, 4}, DataType.FLOAT));
+        assertEquals(1, mp.getSlabAllocations());
+        mp.getOutputArray(0, 0, LongShapeDescriptor.fromShape(new long[]{5, 4}, DataType.FLOAT));
+        assertEquals(2, mp.getSlabAllocations());
+        assertEquals(20 * 4, mp.getSlabBytes());
+        //Different datatype than the assigned slab: not pooled
+        assertNull(mp.getOutputArray(0, 0, LongShapeDescriptor.fromShape(new long[]{5, 4}, DataType.DOUBLE)));
+    }
+
     @Test
     public void testMergeSimple(){
         //This isn't really a sensible graph, as merge op behaviour is undefined when multiple inputs are available...
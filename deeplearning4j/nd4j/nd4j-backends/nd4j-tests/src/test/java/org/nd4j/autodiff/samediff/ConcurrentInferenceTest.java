@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.nd4j.autodiff.samediff;
+
+import org.junit.Test;
+import org.nd4j.linalg.BaseNd4jTest;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.factory.Nd4jBackend;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentInferenceTest extends BaseNd4jTest {
+
+    public ConcurrentInferenceTest(Nd4jBackend backend) {
+        super(backend);
+    }
+
+    @Override
+    public char ordering() {
+        return 'c';
+    }
+
+    private static SameDiff graph() {
+        SameDiff sd = SameDiff.create();
+        SDVariable in = sd.placeHolder("in", DataType.FLOAT, -1, 4);
+        SDVariable w = sd.var("w", Nd4j.rand(DataType.FLOAT, 4, 3));
+        SDVariable b = sd.var("b", Nd4j.rand(DataType.FLOAT, 3));
+        sd.nn().softmax("out", in.mmul(w).add(b));
+        return sd;
+    }
+
+    @Test
+    public void testDupSharedArrays() {
+        SameDiff sd = graph();
+        SameDiff copy = sd.dupSharedArrays();
+
+        INDArray in = Nd4j.rand(DataType.FLOAT, 5, 4);
+        assertEquals(sd.outputSingle(Collections.singletonMap("in", in), "out"),
+                copy.outputSingle(Collections.singletonMap("in", in), "out"));
+
+        //Parameters are shared, not copied: in-place changes are visible in both instances
+        sd.getArrForVarName("w").muli(2.0);
+        INDArray exp = sd.outputSingle(Collections.singletonMap("in", in), "out").dup();
+        assertEquals(exp, copy.outputSingle(Collections.singletonMap("in", in), "out"));
+        //Ops are not shared
+        assertNotSame(sd.getVariableOutputOp("out"), copy.getVariableOutputOp("out"));
+    }
+
+    @Test
+    public void testConcurrentOutput() throws Exception {
+        SameDiff sd = graph();
+        final ConcurrentInference inference = new ConcurrentInference(sd, 2);
+        assertEquals(1, inference.getNumContexts());
+
+        final List<INDArray> inputs = new ArrayList<>();
+        final List<INDArray> expected = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            INDArray in = Nd4j.rand(DataType.FLOAT, 1 + i % 4, 4);
+            inputs.add(in);
+            expected.add(sd.outputSingle(Collections.singletonMap("in", in), "out").dup());
+        }
+
+        ExecutorService exec = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final int offset = t;
+                futures.add(exec.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        for (int i = 0; i < 50; i++) {
+                            int idx = (offset + i) % inputs.size();
+                            INDArray out = inference.outputSingle(Collections.singletonMap("in", inputs.get(idx)), "out");
+                            if (!expected.get(idx).equals(out))
+                                return false;
+                        }
+                        return true;
+                    }
+                }));
+            }
+
+            for (Future<Boolean> f : futures)
+                assertTrue(f.get());
+        } finally {
+            exec.shutdown();
+        }
+
+        assertTrue(inference.getNumContexts() <= 2);
+        inference.clear();
+        assertEquals(0, inference.getNumContexts());
+
+        //Contexts are recreated on demand
+        assertEquals(expected.get(0), inference.outputSingle(Collections.singletonMap("in", inputs.get(0)), "out"));
+        assertEquals(1, inference.getNumContexts());
+    }
+}
@@ -0,0 +1,267 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2019 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.nd4j.autodiff.samediff;
+
+import org.junit.Test;
+import org.nd4j.autodiff.samediff.transform.GraphOptimizer;
+import org.nd4j.linalg.BaseNd4jTest;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.impl.scalar.RectifiedLinear;
+import org.nd4j.linalg.api.ops.impl.scalar.ScalarAdd;
+import org.nd4j.linalg.api.ops.impl.scalar.ScalarMultiplication;
+import org.nd4j.linalg.api.ops.impl.transforms.ReluLayer;
+import org.nd4j.linalg.api.ops.impl.transforms.custom.XwPlusB;
+import org.nd4j.linalg.api.ops.impl.transforms.pairwise.arithmetic.AddOp;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.factory.Nd4jBackend;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class GraphOptimizerTests extends BaseNd4jTest {
+
+    public GraphOptimizerTests(Nd4jBackend b){
+        super(b);
+    }
+
+    @Override
+    public char ordering(){
+        return 'c';
+    }
+
+    @Test
+    public void testFuseLinearLayers(){
+        Nd4j.getRandom().setSeed(12345);
+        SameDiff sd = SameDiff.create();
+        SDVariable in = sd.placeHolder("in", DataType.FLOAT, -1, 4);
+        SDVariable w1 = sd.var("w1", Nd4j.rand(DataType.FLOAT, 4, 5));
+        SDVariable b1 = sd.var("b1", Nd4j.rand(DataType.FLOAT, 5));
+        SDVariable w2 = sd.var("w2", Nd4j.rand(DataType.FLOAT, 5, 3));
+        SDVariable b2 = sd.var("b2", Nd4j.rand(DataType.FLOAT, 3));
+
+        SDVariable l1 = sd.nn().relu("l1", sd.nn().biasAdd(in.mmul(w1), b1), 0.0);
+        SDVariable out = l1.mmul(w2).add("out", b2);
+
+        INDArray inArr = Nd4j.rand(DataType.FLOAT, 3, 4).subi(0.5);
+        Map<String,INDArray> expected = sd.output(Collections.singletonMap("in", inArr), "l1", "out");
+
+        SameDiff fused = GraphOptimizer.fuseOps(sd);
+        assertTrue(fused.getVariableOutputOp("l1") instanceof ReluLayer);
+        assertTrue(fused.getVariableOutputOp("out") instanceof XwPlusB);
+        assertEquals(2, fused.getOps().size());
+
+        //Original instance should not be modified
+        assertTrue(sd.getVariableOutputOp("l1") instanceof RectifiedLinear);
+        assertTrue(sd.getVariableOutputOp("out") instanceof AddOp);
+
+        Map<String,INDArray> actual = fused.output(Collections.singletonMap("in", inArr), "l1", "out");
+        assertEquals(expected.get("l1"), actual.get("l1"));
+        assertEquals(expected.get("out"), actual.get("out"));
+    }
+
+    @Test
+    public void testFuseScalarChains(){
+        SameDiff sd = SameDiff.create();
+        SDVariable in = sd.placeHolder("in", DataType.FLOAT, -1, 4);
+        SDVariable add = in.add(1.0).sub(3.0).add("add", 5.0);
+        SDVariable mul = add.mul(2.0).div(4.0).mul("mul", 3.0);
+        assertEquals(6, sd.getOps().size());
+
+        INDArray inArr = Nd4j.rand(DataType.FLOAT, 3, 4);
+        Map<String,INDArray> expected = sd.output(Collections.singletonMap("in", inArr), "add", "mul");
+
+        SameDiff fused = GraphOptimizer.fuseOps(sd);
+        assertEquals(2, fused.getOps().size());
+        assertTrue(fused.getVariableOutputOp("add") instanceof ScalarAdd);
+        assertTrue(fused.getVariableOutputOp("mul") instanceof ScalarMultiplication);
+
+        Map<String,INDArray> actual = fused.output(Collections.singletonMap("in", inArr), "add", "mul");
+        assertEquals(expected.get("add"), actual.get("add"));
+        assertEquals(expected.get("mul"), actual.get("mul"));
+    }
+
+    @Test
+    public void testNoFusionIntermediateUsed(){
+        SameDiff sd = SameDiff.create();
+        SDVariable in = sd.placeHolder("in", DataType.FLOAT, -1, 4);
+        SDVariable w = sd.var("w", Nd4j.rand(DataType.FLOAT, 4, 5));
+        SDVariable b = sd.var("b", Nd4j.rand(DataType.FLOAT, 5));
+
+        SDVariable mmul = in.mmul("mmul", w);
+        SDVariable out = sd.nn().biasAdd("out", mmul, b);
+        SDVariable out2 = mmul.mul("out2", 2.0);
+
+        SameDiff optimized = GraphOptimizer.fuseOps(sd);
+        assertSame(sd, optimized);
+    }
+
+    @Test
+    public void testFoldConstants(){
+        SameDiff sd = SameDiff.create();
+        SDVariable in = sd.placeHolder("in", DataType.FLOAT, -1, 3);
+        SDVariable c1 = sd.constant("c1", Nd4j.linspace(DataType.FLOAT, 1, 6, 1).reshape(2, 3));
+        SDVariable c2 = sd.constant("c2", Nd4j.linspace(DataType.FLOAT, 6, 6, -1).reshape(2, 3));
+
+        SDVariable sum = c1.add("sum", c2);
+        SDVariable scaled = sum.mul("scaled", 2.0);
+        SDVariable out = in.add("out", scaled);
+
+        INDArray inArr = Nd4j.rand(DataType.FLOAT, 2, 3);
+        INDArray expected = sd.output(Collections.singletonMap("in", inArr), "out").get("out");
+
+        assertEquals(2, GraphOptimizer.foldConstants(sd));
+        assertEquals(1, sd.getOps().size());
+        assertEquals(VariableType.CONSTANT, sd.getVariable("scaled").getVariableType());
+        assertNull(sd.getVariableOutputOp("scaled"));
+        assertFalse(sd.hasVariable("sum"));
+        assertFalse(sd.hasVariable("c1"));
+        assertFalse(sd.hasVariable("c2"));
+        assertEquals(Nd4j.zeros(DataType.FLOAT, 2, 3).addi(14.0), sd.getArrForVarName("scaled"));
+
+        INDArray actual = sd.output(Collections.singletonMap("in", inArr), "out").get("out");
+        assertEquals(expected, actual);
+
+        //Nothing left to fold
+        assertEquals(0, GraphOptimizer.foldConstants(sd));
+    }
+
+    @Test
+    public void testPrune(){
+        SameDiff sd = SameDiff.create();
+        SDVariable in = sd.placeHolder("in", DataType.FLOAT, -1, 4);
+        SDVariable label = sd.placeHolder("label", DataType.FLOAT, -1, 5);
+        SDVariable w = sd.var("w", Nd4j.rand(DataType.FLOAT, 4, 5));
+        SDVariable out = in.mmul("out", w);
+
+        //Training only branch, and an unrelated branch
+        SDVariable loss = out.sub(label).mul("loss", 2.0);
+        SDVariable other = in.add("other", 1.0);
+
+        assertEquals(3, GraphOptimizer.prune(sd, Collections.singletonList("out")));
+        assertEquals(1, sd.getOps().size());
+        assertEquals(3, sd.getVariables().size());
+        assertTrue(sd.hasVariable("in"));
+        assertTrue(sd.hasVariable("w"));
+        assertTrue(sd.hasVariable("out"));
+        assertTrue(sd.getVariables().get("out").getInputsForOp() == null || sd.getVariables().get("out").getInputsForOp().isEmpty());
+
+        INDArray inArr = Nd4j.rand(DataType.FLOAT, 3, 4);
+        assertEquals(inArr.mmul(w.getArr()), sd.output(Collections.singletonMap("in", inArr), "out").get("out"));
+    }
+
+    @Test
+    public void testPruneMultiOutputOp(){
+        SameDiff sd = SameDiff.create();
+        SDVariable in = sd.placeHolder("in", DataType.FLOAT, 3, 4);
+        SDVariable[] rows = sd.unstack(new String[]{"r0", "r1", "r2"}, in, 0, 3);
+        SDVariable out = rows[0].add("out", 1.0);
+
+        //r1 is only used by a branch that isn't required, r2 isn't used at all
+        SDVariable other = rows[1].mul("other", 2.0);
+
+        assertEquals(1, GraphOptimizer.prune(sd, Collections.singletonList("out")));
+        assertEquals(2, sd.getOps().size());
+        assertFalse(sd.hasVariable("other"));
+        assertTrue(sd.hasVariable("r1"));
+        assertTrue(sd.hasVariable("r2"));
+        assertTrue(sd.getVariables().get("r1").getInputsForOp() == null || sd.getVariables().get("r1").getInputsForOp().isEmpty());
+
+        INDArray inArr = Nd4j.rand(DataType.FLOAT, 3, 4);
+        assertEquals(inArr.getRow(0).add(1.0), sd.output(Collections.singletonMap("in", inArr), "out").get("out"));
+    }
+
+    @Test
+    public void testRemoveIdentities(){
+        SameDiff sd = SameDiff.create();
+        SDVariable in = sd.placeHolder("in", DataType.FLOAT, -1, 4);
+        SDVariable a = in.add("a", 1.0);
+        SDVariable id1 = sd.identity("id1", a);
+        SDVariable b = id1.mul("b", 2.0);
+        SDVariable output = sd.identity("output", b);
+
+        INDArray inArr = Nd4j.rand(DataType.FLOAT, 3, 4);
+        INDArray expected = sd.output(Collections.singletonMap("in", inArr), "output").get("output");
+
+        assertEquals(2, GraphOptimizer.removeIdentities(sd, null));
+        assertEquals(2, sd.getOps().size());
+        assertFalse(sd.hasVariable("id1"));
+        assertFalse(sd.hasVariable("b"));
+        assertEquals(Collections.singletonList("output"), sd.outputs());
+
+        INDArray actual = sd.output(Collections.singletonMap("in", inArr), "output").get("output");
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testRemoveUnusedNoOp(){
+        SameDiff sd = SameDiff.create();
+        SDVariable in = sd.placeHolder("in", DataType.FLOAT, -1, 4);
+        SDVariable out = in.add("out", 1.0);
+        SDVariable noop = sd.f().noop(out);
+        assertEquals(2, sd.getOps().size());
+
+        assertEquals(1, GraphOptimizer.removeIdentities(sd, null));
+        assertEquals(1, sd.getOps().size());
+        assertFalse(sd.hasVariable(noop.getVarName()));
+        assertTrue(sd.getVariables().get("out").getInputsForOp().isEmpty());
+        assertEquals(Collections.singletonList("out"), sd.outputs());
+
+        INDArray inArr = Nd4j.rand(DataType.FLOAT, 3, 4);
+        assertEquals(inArr.add(1.0), sd.output(Collections.singletonMap("in", inArr), "out").get("out"));
+    }
+
+    @Test
+    public void testFreezePlaceholderShapes(){
+        SameDiff sd = SameDiff.create();
+        SDVariable in = sd.placeHolder("in", DataType.FLOAT, -1, 4);
+        SDVariable c = sd.constant("c", Nd4j.linspace(DataType.FLOAT, 1, 12, 1));
+        SDVariable shape = sd.shape("shape", in);
+        SDVariable out = sd.reshape("out", c, shape);
+        SDVariable plus = in.add("plus", 1.0);
+
+        //Shape isn't known yet, so nothing can be folded
+        assertEquals(0, GraphOptimizer.foldConstants(sd));
+
+        try {
+            GraphOptimizer.freezePlaceholderShapes(sd, Collections.singletonMap("in", new long[]{3, 5}));
+            fail("Expected exception");
+        } catch (IllegalStateException e){
+            assertTrue(e.getMessage(), e.getMessage().contains("not compatible"));
+        }
+
+        GraphOptimizer.freezePlaceholderShapes(sd, Collections.singletonMap("in", new long[]{3, 4}));
+        assertArrayEquals(new long[]{3, 4}, in.placeholderShape());
+
+        assertEquals(2, GraphOptimizer.foldConstants(sd));
+        assertEquals(1, sd.getOps().size());
+        assertEquals(VariableType.CONSTANT, sd.getVariable("out").getVariableType());
+        assertEquals(Nd4j.linspace(DataType.FLOAT, 1, 12, 1).reshape(3, 4), sd.getArrForVarName("out"));
+
+        //Arrays with any other shape must be rejected, as results may depend on the frozen shape
+        INDArray inArr = Nd4j.rand(DataType.FLOAT, 3, 4);
+        assertEquals(inArr.add(1.0), sd.output(Collections.singletonMap("in", inArr), "plus").get("plus"));
+        try {
+            sd.output(Collections.singletonMap("in", Nd4j.rand(DataType.FLOAT, 5, 4)), "plus");
+            fail("Expected exception");
+        } catch (IllegalStateException e){
+            assertTrue(e.getMessage(), e.getMessage().contains("placeholder"));
+        }
+    }
+}
@@ -1090,4 +1090,39 @@ public class EvalTest extends BaseNd4jTest {
         assertTrue(stats2, stats2.contains(preS));
         assertTrue(stats2, stats2.contains(f1S));
     }
+
+    @Test
+    public void testEvalBatchedVsSingle(){
+        //Batched eval (accumulated per minibatch) should give exactly the same counts as one example at a time
+        Nd4j.getRandom().setSeed(12345);
+        int nClasses = 7;
+        Evaluation batched = new Evaluation(nClasses);
+        Evaluation single = new Evaluation(nClasses);
+
+        for (int batch = 0; batch < 5; batch++) {
+            int nExamples = 20 + 10 * batch;
+            INDArray predictions = Nd4j.rand(DataType.DOUBLE, nExamples, nClasses);
+            INDArray labels = Nd4j.zeros(DataType.DOUBLE, nExamples, nClasses);
+            int[] actual = Nd4j.argMax(Nd4j.rand(DataType.DOUBLE, nExamples, nClasses), 1).toIntVector();
+            int[] predicted = Nd4j.argMax(predictions, 1).toIntVector();
+            for (int i = 0; i < nExamples; i++) {
+                labels.putScalar(i, actual[i], 1.0);
+                single.eval(predicted[i], actual[i]);
+            }
+            batched.eval(labels, predictions);
+        }
+
+        assertEquals(single.getNumRowCounter(), batched.getNumRowCounter());
+        assertEquals(single.truePositives(), batched.truePositives());
+        assertEquals(single.falsePositives(), batched.falsePositives());
+        assertEquals(single.trueNegatives(), batched.trueNegatives());
+        assertEquals(single.falseNegatives(), batched.falseNegatives());
+        for (int i = 0; i < nClasses; i++) {
+            for (int j = 0; j < nClasses; j++) {
+                assertEquals(single.getConfusionMatrix().getCount(i, j), batched.getConfusionMatrix().getCount(i, j));
+            }
+        }
+        assertEquals(single.accuracy(), batched.accuracy(), 1e-10);
+        assertEquals(single.f1(), batched.f1(), 1e-10);
+    }
 }
@@ -17,6 +17,7 @@
 package org.nd4j.evaluation;
 
 import org.junit.Test;
+import org.nd4j.evaluation.classification.QuantileSketch;
 import org.nd4j.evaluation.classification.ROC;
 import org.nd4j.evaluation.classification.ROCBinary;
 import org.nd4j.evaluation.classification.ROCMultiClass;
@@ -1181,4 +1182,96 @@ public class ROCTest extends BaseNd4jTest {
             }
         }
     }
+
+    @Test
+    public void testRocStreamingVsExact() {
+        Nd4j.getRandom().setSeed(12345);
+
+        //Small number of examples: sketches don't need to compact, so results should match exact mode
+        INDArray labels = Nd4j.getExecutioner().exec(new BernoulliDistribution(Nd4j.createUninitialized(DataType.DOUBLE, 500, 1), 0.5));
+        INDArray predictions = Nd4j.rand(DataType.DOUBLE, 500, 1).muli(0.5).addi(labels.mul(0.25));
+
+        ROC exact = new ROC(0);
+        ROC streaming = ROC.streaming(QuantileSketch.DEFAULT_SIZE);
+        exact.eval(labels, predictions);
+        streaming.eval(labels, predictions);
+
+        assertTrue(streaming.isStreaming());
+        assertEquals(exact.getCountActualPositive(), streaming.getCountActualPositive());
+        assertEquals(exact.getCountActualNegative(), streaming.getCountActualNegative());
+        assertEquals(exact.calculateAUC(), streaming.calculateAUC(), 1e-10);
+        assertEquals(exact.calculateAUCPR(), streaming.calculateAUCPR(), 1e-10);
+
+        //Large number of examples, split across merged instances, and a small sketch: results should be close
+        exact = new ROC(0);
+        streaming = ROC.streaming(128);
+        for (int i = 0; i < 10; i++) {
+            labels = Nd4j.getExecutioner().exec(new BernoulliDistribution(Nd4j.createUninitialized(DataType.DOUBLE, 2000, 1), 0.3));
+            predictions = Nd4j.rand(DataType.DOUBLE, 2000, 1).muli(0.5).addi(labels.mul(0.25));
+
+            ROC part = ROC.streaming(128);
+            part.eval(labels, predictions);
+            streaming.merge(part);
+            exact.eval(labels, predictions);
+        }
+
+        assertEquals(exact.getCountActualPositive(), streaming.getCountActualPositive());
+        assertEquals(20000, streaming.getExampleCount());
+        assertTrue(streaming.getPositiveSketch().numRetained() < 2000);
+        assertEquals(exact.calculateAUC(), streaming.calculateAUC(), 0.01);
+        assertEquals(exact.calculateAUCPR(), streaming.calculateAUCPR(), 0.01);
+
+        //JSON round trip should retain the sketches, so deserialized instance can still be merged
+        ROC fromJson = ROC.fromJson(streaming.toJson());
+        assertEquals(streaming.calculateAUC(), fromJson.calculateAUC(), 1e-10);
+        assertEquals(streaming.getPositiveSketch(), fromJson.getPositiveSketch());
+    }
+
+    @Test
+    public void testRocMultiClassStreaming() {
+        Nd4j.getRandom().setSeed(12345);
+        INDArray predictions = Nd4j.rand(DataType.DOUBLE, 300, 3);
+        predictions.diviColumnVector(predictions.sum(1));
+        INDArray labels = Nd4j.zeros(DataType.DOUBLE, 300, 3);
+        Random r = new Random(12345);
+        for (int i = 0; i < 300; i++) {
+            labels.putScalar(i, r.nextInt(3), 1.0);
+        }
+
+        ROCMultiClass exact = new ROCMultiClass();
+        ROCMultiClass streaming = ROCMultiClass.streaming(QuantileSketch.DEFAULT_SIZE);
+        exact.eval(labels, predictions);
+        streaming.eval(labels, predictions);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(exact.calculateAUC(i), streaming.calculateAUC(i), 1e-10);
+            assertEquals(exact.calculateAUCPR(i), streaming.calculateAUCPR(i), 1e-10);
+        }
+    }
+
+    @Test
+    public void testQuantileSketch() {
+        Random r = new Random(12345);
+        QuantileSketch a = new QuantileSketch(256);
+        QuantileSketch b = new QuantileSketch(256);
+        for (int i = 0; i < 50000; i++) {
+            a.update(r.nextDouble());
+            b.update(r.nextDouble());
+        }
+        a.merge(b);
+
+        assertEquals(100000, a.getCount());
+        assertTrue(a.numRetained() < 256 * 10);
+
+        long sumWeights = 0;
+        for (long w : a.sortedItems().getSecond()) {
+            sumWeights += w;
+        }
+        assertEquals(100000, sumWeights);
+
+        for (double q : new double[]{0.01, 0.25, 0.5, 0.75, 0.99}) {
+            assertEquals(q, a.quantile(q), 0.03);
+            assertEquals(q, a.rank(q) / 100000.0, 0.03);
+        }
+    }
 }
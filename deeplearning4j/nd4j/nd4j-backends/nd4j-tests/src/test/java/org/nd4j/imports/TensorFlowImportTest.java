@@ -721,6 +721,54 @@ public class TensorFlowImportTest extends BaseNd4jTest {
     }
 
 
+    @Test
+    public void testImportGraphOptimized() throws Exception {
+        SameDiff original = TFGraphMapper.getInstance().importGraph(new ClassPathResource("tf_graphs/examples/bias_add/frozen_model.pb").getInputStream(), false);
+        SameDiff optimized = TFGraphMapper.getInstance().importGraph(new ClassPathResource("tf_graphs/examples/bias_add/frozen_model.pb").getInputStream(), true);
+        assertNotSame(original, optimized);
+        assertEquals(original.outputs(), optimized.outputs());
+        assertTrue(optimized.getOps().size() <= original.getOps().size());
+
+        String outName = original.outputs().get(0);
+        INDArray input = Nd4j.linspace(1,40,40, DataType.FLOAT).reshape(10,4);
+        INDArray expected = original.outputSingle(Collections.singletonMap("input", input), outName);
+        assertEquals(expected, optimized.outputSingle(Collections.singletonMap("input", input), outName));
+
+        //Optimization is per call: other imports are not affected
+        SameDiff plain = TFGraphMapper.getInstance().importGraph(new ClassPathResource("tf_graphs/examples/bias_add/frozen_model.pb").getInputStream());
+        assertEquals(original.getOps().size(), plain.getOps().size());
+        assertEquals(original.getVariables().keySet(), plain.getVariables().keySet());
+    }
+
+    @Test
+    public void testImportFrozenTFOptimized() throws Exception {
+        SameDiff original = TFGraphMapper.getInstance().importGraph(new ClassPathResource("tf_graphs/examples/bias_add/frozen_model.pb").getInputStream());
+        String outName = original.outputs().get(0);
+        INDArray input = Nd4j.linspace(1,40,40, DataType.FLOAT).reshape(10,4);
+        INDArray expected = original.outputSingle(Collections.singletonMap("input", input), outName);
+
+        SameDiff optimized = SameDiff.importFrozenTF(new ClassPathResource("tf_graphs/examples/bias_add/frozen_model.pb").getInputStream(),
+                Collections.singletonList(outName), Collections.singletonMap("input", new long[]{10, 4}));
+        assertArrayEquals(new long[]{10, 4}, optimized.getVariable("input").placeholderShape());
+        assertTrue(optimized.getOps().size() <= original.getOps().size());
+        assertTrue(optimized.getVariables().size() <= original.getVariables().size());
+        assertEquals(Collections.singletonList(outName), optimized.outputs());
+
+        INDArray actual = optimized.outputSingle(Collections.singletonMap("input", input), outName);
+        assertEquals(expected, actual);
+
+        try {
+            optimized.outputSingle(Collections.singletonMap("input", Nd4j.rand(DataType.FLOAT, 5, 4)), outName);
+            fail("Expected exception for input with shape other than the frozen shape");
+        } catch (IllegalStateException e){
+            assertTrue(e.getMessage(), e.getMessage().contains("placeholder"));
+        }
+
+        //Serialized graph should be usable directly
+        SameDiff restored = SameDiff.fromFlatBuffers(optimized.asFlatBuffers(true));
+        assertEquals(expected, restored.outputSingle(Collections.singletonMap("input", input), outName));
+    }
+
     @Test
     public void testImportMapping1() throws Exception {
         Nd4j.create(1);
@@ -97,10 +97,26 @@ public class JsonRemoteInference<I, O> {
             throw new IOException("Content-Length is required for binary data");
         }
 
-        String strLength = values.get(0);
-        byte[] bytes = new byte[Integer.parseInt(strLength)];
-        response.getBody().read(bytes);
-        O result = binaryDeserializer.deserialize(bytes);
+        int length = Integer.parseInt(values.get(0));
+        O result;
+        if (binaryDeserializer instanceof StreamingBinaryDeserializer) {
+            // data is read straight from the response stream, without intermediate byte array
+            try (InputStream stream = response.getBody()) {
+                result = ((StreamingBinaryDeserializer<O>) binaryDeserializer).deserialize(stream, length);
+            }
+        } else {
+            byte[] bytes = new byte[length];
+            try (InputStream stream = response.getBody()) {
+                int offset = 0;
+                while (offset < length) {
+                    int read = stream.read(bytes, offset, length - offset);
+                    if (read < 0)
+                        throw new IOException("Unexpected end of response: " + offset + " of " + length + " bytes read");
+                    offset += read;
+                }
+            }
+            result = binaryDeserializer.deserialize(bytes);
+        }
 
         if (result == null) {
             throw new IOException("Deserialization failed!");
@@ -153,6 +169,15 @@ public class JsonRemoteInference<I, O> {
      */
     public Future<O> predictAsync(I input) {
 
+        if (binarySerializer != null && binaryDeserializer != null) {
+            Future<HttpResponse<InputStream>> response = Unirest.post(endpointAddress)
+                    .header("Content-Type", APPLICATION_OCTET_STREAM)
+                    .header("Accept", APPLICATION_OCTET_STREAM)
+                    .body(binarySerializer.serialize(input)).asBinaryAsync();
+
+            return new BinaryInferenceFuture(response);
+        }
+
         Future<HttpResponse<String>> response = binarySerializer != null ?
                 Unirest.post(endpointAddress)
                 .header("Content-Type", "application/octet-stream")
@@ -167,6 +192,54 @@ public class JsonRemoteInference<I, O> {
         return new InferenceFuture(response);
     }
 
+    /**
+     * This class holds a Future of the object returned by remote inference server in binary form
+     */
+    private class BinaryInferenceFuture implements Future<O> {
+        private Future<HttpResponse<InputStream>> unirestFuture;
+
+        private BinaryInferenceFuture(@NonNull Future<HttpResponse<InputStream>> future) {
+            this.unirestFuture = future;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return unirestFuture.cancel(mayInterruptIfRunning);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return unirestFuture.isCancelled();
+        }
+
+        @Override
+        public boolean isDone() {
+            return unirestFuture.isDone();
+        }
+
+        @Override
+        public O get() throws InterruptedException, ExecutionException {
+            val binaryResult = unirestFuture.get();
+
+            try {
+                return processResponseBinary(binaryResult);
+            } catch (IOException e) {
+                throw new ExecutionException(e);
+            }
+        }
+
+        @Override
+        public O get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            val binaryResult = unirestFuture.get(timeout, unit);
+
+            try {
+                return processResponseBinary(binaryResult);
+            } catch (IOException e) {
+                throw new ExecutionException(e);
+            }
+        }
+    }
+
     /**
      * This class holds a Future of the object returned by remote inference server
      */
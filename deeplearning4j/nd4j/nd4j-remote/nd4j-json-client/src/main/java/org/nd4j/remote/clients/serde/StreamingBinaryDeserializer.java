@@ -0,0 +1,38 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.nd4j.remote.clients.serde;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * This interface describes binary deserializer, which is able to read object straight from input stream,
+ * without building intermediate byte array
+ * @param <T> type of the deserializable class
+ */
+public interface StreamingBinaryDeserializer<T> extends BinaryDeserializer<T> {
+
+    /**
+     * This method deserializes object from input stream
+     *
+     * @param stream input stream
+     * @param length number of bytes available in the stream
+     * @return deserialized object
+     * @throws IOException
+     */
+    T deserialize(InputStream stream, int length) throws IOException;
+}
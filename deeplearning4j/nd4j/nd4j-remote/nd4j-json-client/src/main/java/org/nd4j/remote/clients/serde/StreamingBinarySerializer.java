@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.nd4j.remote.clients.serde;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * This interface describes binary serializer, which is able to write serialized object straight into output stream,
+ * without building intermediate byte array
+ * @param <T> type of the serializable class
+ */
+public interface StreamingBinarySerializer<T> extends BinarySerializer<T> {
+
+    /**
+     * This method returns number of bytes given object will take once serialized
+     *
+     * @param o object to be serialized
+     * @return
+     */
+    long serializedLength(T o);
+
+    /**
+     * This method serializes given object into output stream
+     *
+     * @param o object to be serialized
+     * @param stream output stream
+     * @throws IOException
+     */
+    void serialize(T o, OutputStream stream) throws IOException;
+}
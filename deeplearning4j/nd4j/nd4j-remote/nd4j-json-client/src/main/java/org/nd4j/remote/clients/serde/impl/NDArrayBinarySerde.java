@@ -0,0 +1,254 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.nd4j.remote.clients.serde.impl;
+
+import lombok.NonNull;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.concurrency.AffinityManager;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.shape.Shape;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.remote.clients.serde.StreamingBinaryDeserializer;
+import org.nd4j.remote.clients.serde.StreamingBinarySerializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ * This class provides binary ser/de for INDArray[], suitable for both model inputs and model outputs.
+ *
+ * Format is: number of arrays, followed by each array in BinarySerde layout:
+ * rank, data type, shape info buffer, data buffer. All values are in native byte order.
+ *
+ * Streaming methods copy array data straight between HTTP stream and array buffers,
+ * so no intermediate String, byte[] or double[] representations are created.
+ *
+ * Use it with JsonRemoteInference as inputBinarySerializer/outputBinaryDeserializer,
+ * and with JsonModelServer as inputBinaryDeserializer/outputBinarySerializer.
+ *
+ * Before any array is allocated, its declared size is validated against the number of bytes available
+ * in the stream and against payload size limit, so corrupt or hostile headers can't trigger huge allocations.
+ *
+ * PLEASE NOTE: nd4j-api (and backend) should be available in classpath to use this class
+ */
+public class NDArrayBinarySerde implements StreamingBinarySerializer<INDArray[]>, StreamingBinaryDeserializer<INDArray[]> {
+    public final static long DEFAULT_PAYLOAD_SIZE_LIMIT = Integer.MAX_VALUE;
+
+    // max rank supported by libnd4j
+    protected final static int MAX_RANK = 32;
+
+    protected final long payloadSizeLimit;
+
+    public NDArrayBinarySerde() {
+        this(DEFAULT_PAYLOAD_SIZE_LIMIT);
+    }
+
+    /**
+     * @param payloadSizeLimit maximal number of bytes accepted by deserialize methods
+     */
+    public NDArrayBinarySerde(long payloadSizeLimit) {
+        if (payloadSizeLimit <= 0)
+            throw new IllegalArgumentException("Payload size limit should be positive value");
+
+        this.payloadSizeLimit = payloadSizeLimit;
+    }
+
+    @Override
+    public byte[] serialize(@NonNull INDArray[] arrays) {
+        long length = serializedLength(arrays);
+        if (length > Integer.MAX_VALUE)
+            throw new IllegalStateException("Arrays are too large to be serialized into byte array: " + length + " bytes");
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream((int) length);
+        try {
+            serialize(arrays, stream);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return stream.toByteArray();
+    }
+
+    @Override
+    public long serializedLength(@NonNull INDArray[] arrays) {
+        long length = 4;
+        for (INDArray array : arrays) {
+            // contiguous copy has the same rank, length and data type, so we don't have to create it here
+            INDArray arr = array.isCompressed() ? Nd4j.getCompressor().decompress(array) : array;
+            // rank + data type, shape info, data
+            length += 8 + Shape.shapeInfoLength(arr.rank()) * 8L + arr.length() * arr.dataType().width();
+        }
+        return length;
+    }
+
+    @Override
+    public void serialize(@NonNull INDArray[] arrays, @NonNull OutputStream stream) throws IOException {
+        // PLEASE NOTE: channel isn't closed here, since that would close underlying stream
+        WritableByteChannel channel = Channels.newChannel(stream);
+
+        ByteBuffer header = ByteBuffer.allocate(8).order(ByteOrder.nativeOrder());
+        header.putInt(arrays.length);
+        header.flip();
+        writeFully(channel, header);
+
+        Nd4j.getExecutioner().commit();
+        for (INDArray array : arrays) {
+            INDArray arr = prepare(array);
+            Nd4j.getAffinityManager().ensureLocation(arr, AffinityManager.Location.HOST);
+
+            header.clear();
+            header.putInt(arr.rank());
+            header.putInt(arr.dataType().ordinal());
+            header.flip();
+            writeFully(channel, header);
+
+            long[] shapeInfo = arr.shapeInfoJava();
+            ByteBuffer shapeBuffer = ByteBuffer.allocate(shapeInfo.length * 8).order(ByteOrder.nativeOrder());
+            shapeBuffer.asLongBuffer().put(shapeInfo);
+            writeFully(channel, shapeBuffer);
+
+            if (arr.length() > 0)
+                writeFully(channel, arr.data().pointer().asByteBuffer().order(ByteOrder.nativeOrder()));
+        }
+        stream.flush();
+    }
+
+    @Override
+    public INDArray[] deserialize(@NonNull byte[] buffer) {
+        try {
+            return deserialize(new ByteArrayInputStream(buffer), buffer.length);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public INDArray[] deserialize(@NonNull InputStream stream, int length) throws IOException {
+        if (length < 4)
+            throw new IOException("Payload is too small: " + length + " bytes");
+
+        if (length > payloadSizeLimit)
+            throw new IOException("Payload size limit violated: " + length + " bytes, limit is " + payloadSizeLimit + " bytes");
+
+        ReadableByteChannel channel = Channels.newChannel(stream);
+
+        ByteBuffer header = ByteBuffer.allocate(8).order(ByteOrder.nativeOrder());
+        header.limit(4);
+        readFully(channel, header);
+        header.flip();
+        int numArrays = header.getInt();
+        long remaining = length - 4L;
+        if (numArrays < 0 || numArrays * 8L > remaining)
+            throw new IOException("Found invalid number of arrays: " + numArrays + ". Corrupt serialization?");
+
+        INDArray[] result = new INDArray[numArrays];
+        for (int e = 0; e < numArrays; e++) {
+            remaining = consume(remaining, 8);
+            header.clear();
+            readFully(channel, header);
+            header.flip();
+
+            int rank = header.getInt();
+            int typeIdx = header.getInt();
+            if (rank < 0 || rank > MAX_RANK || typeIdx < 0 || typeIdx >= DataType.values().length)
+                throw new IOException("Found invalid rank or data type. Corrupt serialization?");
+
+            DataType dataType = DataType.values()[typeIdx];
+            if (!dataType.isNumerical())
+                throw new IOException("Data type " + dataType + " isn't supported");
+
+            int shapeInfoLength = Shape.shapeInfoLength(rank);
+            remaining = consume(remaining, shapeInfoLength * 8L);
+            ByteBuffer shapeBuffer = ByteBuffer.allocate(shapeInfoLength * 8).order(ByteOrder.nativeOrder());
+            readFully(channel, shapeBuffer);
+            shapeBuffer.flip();
+            long[] shapeInfo = new long[shapeInfoLength];
+            shapeBuffer.asLongBuffer().get(shapeInfo);
+
+            long[] shape = Shape.shape(shapeInfo);
+            char order = Shape.order(shapeInfo);
+            if (order != 'c' && order != 'f')
+                throw new IOException("Found invalid array order. Corrupt serialization?");
+
+            // array size is validated before allocation: it must fit into what's left of the payload
+            long numElements = 1;
+            for (long dim : shape) {
+                if (dim < 0)
+                    throw new IOException("Found negative array dimension. Corrupt serialization?");
+                if (dim > 0 && numElements > remaining / dim)
+                    throw new IOException("Array of shape " + Arrays.toString(shape) + " exceeds payload size: " + length + " bytes");
+                numElements *= dim;
+            }
+            long dataLength = numElements * dataType.width();
+            remaining = consume(remaining, dataLength);
+
+            // data goes straight into the array buffer
+            INDArray arr = Nd4j.createUninitialized(dataType, shape, order);
+            if (dataLength > 0) {
+                ByteBuffer data = arr.data().pointer().asByteBuffer().order(ByteOrder.nativeOrder());
+                data.clear();
+                data.limit((int) dataLength);
+                readFully(channel, data);
+                Nd4j.getAffinityManager().tagLocation(arr, AffinityManager.Location.HOST);
+            }
+
+            result[e] = arr;
+        }
+
+        return result;
+    }
+
+    protected static long consume(long remaining, long bytes) throws IOException {
+        if (bytes > remaining)
+            throw new IOException("Serialized arrays exceed payload size: " + bytes + " bytes required, " + remaining + " bytes left");
+
+        return remaining - bytes;
+    }
+
+    protected static INDArray prepare(@NonNull INDArray array) {
+        INDArray arr = array;
+        if (arr.isCompressed())
+            arr = Nd4j.getCompressor().decompress(arr);
+
+        // views and arrays with non-standard strides are serialized as contiguous copies
+        if (arr.isView() || arr.data().length() != arr.length())
+            arr = arr.dup(arr.ordering());
+
+        return arr;
+    }
+
+    protected static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+
+    protected static void readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0)
+                throw new EOFException("Unexpected end of stream, " + buffer.remaining() + " bytes missing");
+        }
+    }
+}
@@ -22,6 +22,7 @@ import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.nd4j.adapters.InputAdapter;
 import org.nd4j.adapters.OutputAdapter;
+import org.nd4j.autodiff.samediff.ConcurrentInference;
 import org.nd4j.autodiff.samediff.SameDiff;
 import org.nd4j.base.Preconditions;
 import org.nd4j.linalg.api.ndarray.INDArray;
@@ -68,6 +69,9 @@ public class SameDiffJsonModelServer<I, O> {
     protected String[] orderedInputNodes;
     protected String[] orderedOutputNodes;
 
+    // number of execution contexts, i.e. max number of requests processed concurrently
+    protected int inferenceContexts = Runtime.getRuntime().availableProcessors();
+
     protected SameDiffJsonModelServer(@NonNull InferenceAdapter<I, O> inferenceAdapter,
                                       JsonSerializer<O> serializer, JsonDeserializer<I> deserializer,
                                       BinarySerializer<O> binarySerializer, BinaryDeserializer<I> binaryDeserializer,
@@ -123,6 +127,7 @@ public class SameDiffJsonModelServer<I, O> {
 
         servingServlet = SameDiffServlet.<I, O>builder()
                 .sdModel(sdModel)
+                .inference(new ConcurrentInference(sdModel, inferenceContexts))
                 .serializer(serializer)
                 .deserializer(deserializer)
                 .inferenceAdapter(inferenceAdapter)
@@ -154,6 +159,7 @@ public class SameDiffJsonModelServer<I, O> {
         private JsonSerializer<O> serializer;
         private JsonDeserializer<I> deserializer;
         private int port;
+        private int inferenceContexts = Runtime.getRuntime().availableProcessors();
 
         private InputAdapter<I> inputAdapter;
         private OutputAdapter<O> outputAdapter;
@@ -277,6 +283,20 @@ public class SameDiffJsonModelServer<I, O> {
             return this;
         }
 
+        /**
+         * This method defines max number of requests served concurrently.
+         * Each concurrent request uses its own execution context, while model parameters are shared between all of them.
+         *
+         * Default value: number of available processors
+         * @param inferenceContexts
+         * @return
+         */
+        public Builder<I,O> inferenceContexts(int inferenceContexts) {
+            Preconditions.checkArgument(inferenceContexts > 0, "Number of inference contexts should be positive");
+            this.inferenceContexts = inferenceContexts;
+            return this;
+        }
+
         /**
          * This method builds SameDiffJsonModelServer instance
          * @return
@@ -298,7 +318,9 @@ public class SameDiffJsonModelServer<I, O> {
                 } else
                     throw new IllegalArgumentException("Either InferenceAdapter<I,O> or InputAdapter<I> + OutputAdapter<O> should be configured");
             }
-            return new SameDiffJsonModelServer<I,O>(sameDiff, inferenceAdapter, serializer, deserializer, null, null, port, orderedInputNodes, orderedOutputNodes);
+            val server = new SameDiffJsonModelServer<I,O>(sameDiff, inferenceAdapter, serializer, deserializer, null, null, port, orderedInputNodes, orderedOutputNodes);
+            server.inferenceContexts = inferenceContexts;
+            return server;
         }
     }
 }
@@ -19,6 +19,7 @@ package org.nd4j.remote.serving;
 import lombok.*;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.nd4j.autodiff.samediff.ConcurrentInference;
 import org.nd4j.autodiff.samediff.SameDiff;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.remote.clients.serde.BinaryDeserializer;
@@ -57,6 +58,8 @@ public class SameDiffServlet<I, O> implements ModelServingServlet<I, O> {
     protected static final String typeBinary = APPLICATION_OCTET_STREAM;
 
     protected SameDiff sdModel;
+    // optional: if defined, requests are served concurrently via this handle, instead of sdModel directly
+    protected ConcurrentInference inference;
     protected JsonSerializer<O> serializer;
     protected JsonDeserializer<I> deserializer;
     protected BinarySerializer<O> binarySerializer;
@@ -200,7 +203,7 @@ public class SameDiffServlet<I, O> implements ModelServingServlet<I, O> {
                         map.put(n, mds.getFeatures(cnt++));
                 }
 
-                val output = sdModel.exec(map, orderedOutputNodes);
+                val output = inference != null ? inference.output(map, orderedOutputNodes) : sdModel.exec(map, orderedOutputNodes);
                 val arrays = new INDArray[output.size()];
 
                 // now we need to get ordered output arrays, as specified in server constructor
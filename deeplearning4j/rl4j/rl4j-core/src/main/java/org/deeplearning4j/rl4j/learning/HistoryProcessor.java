@@ -54,9 +54,13 @@ public class HistoryProcessor implements IHistoryProcessor {
     }
 
 
+    /**
+     * Frames are cast to the default data type once, when added, so consecutive getHistory() calls share
+     * INDArray instances of common frames. PrioritizedExpReplay relies on that to store every frame only once.
+     */
     public void add(INDArray obs) {
         INDArray processed = transform(obs);
-        history.add(processed);
+        history.add(processed.castTo(Nd4j.dataType()));
     }
 
     public void startMonitor(String filename, int[] shape) {
@@ -108,7 +112,7 @@ public class HistoryProcessor implements IHistoryProcessor {
     public INDArray[] getHistory() {
         INDArray[] array = new INDArray[getConf().getHistoryLength()];
         for (int i = 0; i < conf.getHistoryLength(); i++) {
-            array[i] = history.get(i).castTo(Nd4j.dataType());
+            array[i] = history.get(i);
         }
         return array;
     }
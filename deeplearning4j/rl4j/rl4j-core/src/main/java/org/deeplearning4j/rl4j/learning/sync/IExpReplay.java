@@ -23,9 +23,8 @@ import java.util.ArrayList;
  *
  * Common Interface for Experience replays
  *
- * A prioritized Exp Replay could be implemented by changing the interface
- * and integrating the TD-error in the transition for ranking
- * Not a high priority feature right now
+ * See {@link PrioritizedExpReplay} for a prioritized implementation,
+ * which gets TD-errors reported back by the learner
  *
  * The memory is optimised by using array of INDArray in the transitions
  * such that two same INDArrays are not allocated twice
@@ -0,0 +1,421 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.rl4j.learning.sync;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Prioritized Exp Replay (Schaul et al., 2015) backed by a preallocated ring of frames.
+ *
+ * Instead of keeping Transition objects around, every stored frame is copied once into a single
+ * [frameCapacity, frameLength] INDArray, and transitions keep only indices of their frames.
+ * Consecutive transitions produced with a HistoryProcessor share all but one frame, and HistoryProcessor
+ * returns the same INDArray instances for them, so shared frames are detected by reference
+ * and stored only once. Frames can be kept in a narrower data type (i.e. UINT8 for Atari screens)
+ * than the one used for training.
+ *
+ * Transitions are sampled proportionally to priority^alpha using a {@link SumTree}. New transitions get
+ * the highest priority seen so far, and learners report TD-errors back via updatePriorities().
+ * Importance sampling weights (normalized by their maximum) are reported together with each batch.
+ *
+ * sampleBatch() assembles observations with a single pullRows() call into preallocated arrays,
+ * so no per-transition arrays are created.
+ *
+ * PLEASE NOTE: arrays of the {@link ReplayBatch} are reused, their content is only valid until next sampleBatch() call.
+ * PLEASE NOTE: if frameCapacity is too small to hold frames of maxSize transitions, oldest transitions are dropped early.
+ */
+@Slf4j
+public class PrioritizedExpReplay implements IExpReplay<Integer> {
+    public final static double DEFAULT_ALPHA = 0.6;
+    public final static double DEFAULT_BETA = 0.4;
+    public final static double PRIORITY_EPSILON = 1e-6;
+
+    final private int maxSize;
+    final private int batchSize;
+    final private Random random;
+    @Getter
+    final private double alpha;
+    @Getter
+    @Setter
+    private double beta;
+    final private int frameCapacity;
+    final private DataType frameDataType;
+
+    // frame ring, allocated on first store() call, once frame shape is known
+    private INDArray frames;
+    private long[] frameShape;
+    private int frameLength;
+    private int historyLength;
+    private long nextFrameSeq;
+
+    // per-transition ring
+    private int[] obsFrames;
+    private int[] nextFrames;
+    private long[] minFrameSeq;
+    private int[] actions;
+    private double[] rewards;
+    private boolean[] terminal;
+    private int head;
+    private int size;
+
+    private final SumTree tree;
+    private double maxPriority = 1.0;
+
+    // frames of the previously stored transition, used for deduplication
+    private INDArray[] recentFrames;
+    private long[] recentSeqs;
+    private long[] pendingSeqs;
+
+    private ReplayBatch batch;
+    private INDArray staging;
+    private int[] obsRows;
+    private int[] nextRows;
+
+    public PrioritizedExpReplay(int maxSize, int batchSize, int seed) {
+        this(maxSize, batchSize, seed, DEFAULT_ALPHA, DEFAULT_BETA, 0, null);
+    }
+
+    /**
+     * @param maxSize max number of transitions
+     * @param batchSize default batch size
+     * @param seed random seed
+     * @param alpha priority exponent, 0.0 means uniform sampling
+     * @param beta importance sampling exponent, 1.0 fully compensates non-uniform sampling
+     * @param frameCapacity number of frames in the ring, 0 means maxSize + maxSize / 8 + 2 * historyLength + 2
+     * @param frameDataType data type of stored frames, null means data type of the first stored frame
+     */
+    public PrioritizedExpReplay(int maxSize, int batchSize, int seed, double alpha, double beta, int frameCapacity,
+                    DataType frameDataType) {
+        if (maxSize < 1 || batchSize < 1)
+            throw new IllegalArgumentException("Max size and batch size should be positive values");
+        if (alpha < 0.0 || beta < 0.0)
+            throw new IllegalArgumentException("Alpha and beta should be non-negative values");
+        if (frameCapacity < 0)
+            throw new IllegalArgumentException("Frame capacity should be non-negative value");
+
+        this.maxSize = maxSize;
+        this.batchSize = batchSize;
+        this.random = new Random(seed);
+        this.alpha = alpha;
+        this.beta = beta;
+        this.frameCapacity = frameCapacity;
+        this.frameDataType = frameDataType;
+        this.tree = new SumTree(maxSize);
+    }
+
+    /**
+     * @return number of transitions currently stored
+     */
+    public int size() {
+        return size;
+    }
+
+    public void store(Transition<Integer> transition) {
+        INDArray[] observation = transition.getObservation();
+        if (frames == null)
+            init(observation, transition.getNextObservation());
+
+        if (observation.length != historyLength)
+            throw new IllegalArgumentException("Expected history of length " + historyLength + ", got " + observation.length);
+
+        if (size == maxSize)
+            evictOldest();
+
+        // frame writes below may drop old transitions from the head, but that doesn't move the tail
+        int slot = (head + size) % maxSize;
+        int offset = slot * historyLength;
+        long minSeq = Long.MAX_VALUE;
+        for (int j = 0; j < historyLength; j++) {
+            pendingSeqs[j] = frameSeq(observation[j], observation, j);
+            obsFrames[offset + j] = frameSlot(pendingSeqs[j]);
+            minSeq = Math.min(minSeq, pendingSeqs[j]);
+        }
+        long nextSeq = frameSeq(transition.getNextObservation(), observation, historyLength);
+        nextFrames[slot] = frameSlot(nextSeq);
+        minSeq = Math.min(minSeq, nextSeq);
+
+        minFrameSeq[slot] = minSeq;
+        actions[slot] = transition.getAction();
+        rewards[slot] = transition.getReward();
+        terminal[slot] = transition.isTerminal();
+        tree.set(slot, Math.pow(maxPriority, alpha));
+        size++;
+
+        // frames of this transition are candidates for reuse by the next one
+        System.arraycopy(observation, 0, recentFrames, 0, historyLength);
+        System.arraycopy(pendingSeqs, 0, recentSeqs, 0, historyLength);
+        recentFrames[historyLength] = transition.getNextObservation();
+        recentSeqs[historyLength] = nextSeq;
+    }
+
+    /**
+     * @return a batch of transitions, sampled proportionally to their priorities
+     */
+    public ArrayList<Transition<Integer>> getBatch() {
+        return getBatch(batchSize);
+    }
+
+    /**
+     * This method returns sampled transitions as standalone Transition objects, for compatibility with
+     * IExpReplay consumers. Use sampleBatch() to avoid per-transition allocations.
+     *
+     * @param size number of transitions to sample
+     * @return a batch of transitions, sampled proportionally to their priorities
+     */
+    public ArrayList<Transition<Integer>> getBatch(int size) {
+        int actualBatchSize = Math.min(this.size, size);
+        ArrayList<Transition<Integer>> result = new ArrayList<>(actualBatchSize);
+        if (actualBatchSize == 0)
+            return result;
+
+        int[] indices = new int[actualBatchSize];
+        sampleIndices(indices, null, actualBatchSize);
+        for (int i = 0; i < actualBatchSize; i++) {
+            int slot = indices[i];
+            INDArray[] observation = new INDArray[historyLength];
+            for (int j = 0; j < historyLength; j++)
+                observation[j] = frame(obsFrames[slot * historyLength + j]);
+
+            result.add(new Transition<>(observation, actions[slot], rewards[slot], terminal[slot],
+                            frame(nextFrames[slot])));
+        }
+
+        return result;
+    }
+
+    /**
+     * This method samples a batch of default size
+     *
+     * @return reused batch holder, or null if replay is empty
+     */
+    public ReplayBatch sampleBatch() {
+        int actualBatchSize = Math.min(size, batchSize);
+        if (actualBatchSize == 0)
+            return null;
+
+        // batch arrays are preallocated for full batch size, smaller batches may only happen during warmup
+        ReplayBatch b = actualBatchSize == batchSize ? batch : new ReplayBatch(actualBatchSize, historyLength, frameLength);
+        sampleIndices(b.indices, b.weights, actualBatchSize);
+
+        int[] oRows = actualBatchSize == batchSize ? obsRows : new int[actualBatchSize * historyLength];
+        int[] nRows = actualBatchSize == batchSize ? nextRows : new int[actualBatchSize * historyLength];
+        for (int i = 0; i < actualBatchSize; i++) {
+            int slot = b.indices[i];
+            int src = slot * historyLength;
+            int dst = i * historyLength;
+            System.arraycopy(obsFrames, src, oRows, dst, historyLength);
+
+            // next observation is the new frame followed by all but the last frame of the observation
+            nRows[dst] = nextFrames[slot];
+            System.arraycopy(obsFrames, src, nRows, dst + 1, historyLength - 1);
+
+            b.actions[i] = actions[slot];
+            b.rewards[i] = rewards[slot];
+            b.terminal[i] = terminal[slot];
+        }
+
+        gather(oRows, b.observations);
+        gather(nRows, b.nextObservations);
+
+        return b;
+    }
+
+    /**
+     * This method updates priorities of transitions, sampled by the last sampleBatch() call
+     *
+     * @param batch batch with TD-errors filled in
+     */
+    public void updatePriorities(ReplayBatch batch) {
+        updatePriorities(batch.indices, batch.tdErrors, batch.size);
+    }
+
+    /**
+     * This method updates priorities of sampled transitions
+     *
+     * @param indices indices of transitions, as reported by ReplayBatch
+     * @param tdErrors TD-errors of transitions
+     * @param count number of transitions to update
+     */
+    public void updatePriorities(int[] indices, double[] tdErrors, int count) {
+        for (int i = 0; i < count; i++) {
+            int slot = indices[i];
+            // transition might be evicted since it was sampled
+            if (tree.get(slot) == 0.0)
+                continue;
+
+            double priority = Math.abs(tdErrors[i]) + PRIORITY_EPSILON;
+            maxPriority = Math.max(maxPriority, priority);
+            tree.set(slot, Math.pow(priority, alpha));
+        }
+    }
+
+    protected void init(INDArray[] observation, INDArray nextObservation) {
+        historyLength = observation.length;
+        if (historyLength < 1)
+            throw new IllegalArgumentException("Observation history should contain at least one frame");
+
+        INDArray first = observation[0];
+        frameShape = first.shape();
+        frameLength = (int) first.length();
+        if (nextObservation.length() != frameLength)
+            throw new IllegalArgumentException("Next observation length " + nextObservation.length()
+                            + " doesn't match frame length " + frameLength);
+
+        int capacity = frameCapacity > 0 ? frameCapacity : maxSize + maxSize / 8 + 2 * historyLength + 2;
+        if (capacity < 2 * (historyLength + 1))
+            throw new IllegalArgumentException("Frame capacity should be at least " + 2 * (historyLength + 1));
+
+        DataType dataType = frameDataType != null ? frameDataType : first.dataType();
+        log.info("Allocating frame ring: {} frames of shape {}, data type {}", capacity, Arrays.toString(frameShape), dataType);
+        frames = Nd4j.createUninitialized(dataType, capacity, frameLength);
+
+        obsFrames = new int[maxSize * historyLength];
+        nextFrames = new int[maxSize];
+        minFrameSeq = new long[maxSize];
+        actions = new int[maxSize];
+        rewards = new double[maxSize];
+        terminal = new boolean[maxSize];
+
+        recentFrames = new INDArray[historyLength + 1];
+        recentSeqs = new long[historyLength + 1];
+        pendingSeqs = new long[historyLength];
+
+        batch = new ReplayBatch(batchSize, historyLength, frameLength);
+        obsRows = new int[batchSize * historyLength];
+        nextRows = new int[batchSize * historyLength];
+        if (dataType != batch.observations.dataType())
+            staging = Nd4j.createUninitialized(dataType, batchSize * historyLength, frameLength);
+    }
+
+    /**
+     * This method returns sequence number of the frame, writing it into the ring if it isn't stored yet.
+     * Frames are matched by reference against frames of the previous transition, and first frames of the current one.
+     */
+    private long frameSeq(INDArray frame, INDArray[] current, int currentCount) {
+        if (frame.length() != frameLength)
+            throw new IllegalArgumentException("Frame length " + frame.length() + " doesn't match frame length " + frameLength);
+
+        for (int j = 0; j < currentCount; j++) {
+            if (current[j] == frame)
+                return pendingSeqs[j];
+        }
+
+        // reused frame should survive all writes of the current transition
+        long oldest = nextFrameSeq + historyLength + 1 - frames.rows();
+        for (int j = 0; j < recentFrames.length; j++) {
+            if (recentFrames[j] == frame && recentSeqs[j] >= oldest)
+                return recentSeqs[j];
+        }
+
+        long seq = nextFrameSeq++;
+
+        // transitions referencing the slot we're about to overwrite can't be sampled anymore
+        long invalid = seq - frames.rows();
+        while (size > 0 && minFrameSeq[head] <= invalid)
+            evictOldest();
+
+        frames.getRow(frameSlot(seq)).reshape('c', frame.shape()).assign(frame);
+        return seq;
+    }
+
+    private int frameSlot(long seq) {
+        return (int) (seq % frames.rows());
+    }
+
+    private void evictOldest() {
+        tree.set(head, 0.0);
+        head = (head + 1) % maxSize;
+        size--;
+    }
+
+    private INDArray frame(int slot) {
+        INDArray frame = frames.getRow(slot).reshape('c', frameShape);
+        return frame.dataType() == Nd4j.dataType() ? frame.dup() : frame.castTo(Nd4j.dataType());
+    }
+
+    private void sampleIndices(int[] indices, double[] weights, int count) {
+        double total = tree.total();
+        double segment = total / count;
+
+        double maxWeight = 0.0;
+        if (weights != null)
+            maxWeight = Math.pow(size * tree.min() / total, -beta);
+
+        for (int i = 0; i < count; i++) {
+            // stratified sampling: one transition per equal-mass segment
+            double value = (i + random.nextDouble()) * segment;
+            int slot = tree.find(Math.min(value, Math.nextDown(total)));
+            if (tree.get(slot) == 0.0)
+                slot = (head + random.nextInt(size)) % maxSize;
+
+            indices[i] = slot;
+            if (weights != null)
+                weights[i] = Math.pow(size * tree.get(slot) / total, -beta) / maxWeight;
+        }
+    }
+
+    private void gather(int[] rows, INDArray target) {
+        INDArray rowView = target.reshape('c', rows.length, frameLength);
+        if (staging == null) {
+            Nd4j.pullRows(frames, rowView, 1, rows);
+        } else {
+            INDArray stage = rows.length == staging.rows() ? staging
+                            : Nd4j.createUninitialized(frames.dataType(), rows.length, frameLength);
+            Nd4j.pullRows(frames, stage, 1, rows);
+            rowView.assign(stage);
+        }
+    }
+
+    /**
+     * Batch of sampled transitions. Observations are flattened to [size, historyLength * frameLength],
+     * and should be reshaped to the network input shape by the learner.
+     */
+    @Getter
+    public static class ReplayBatch {
+        final private int size;
+        final private INDArray observations;
+        final private INDArray nextObservations;
+        final private int[] actions;
+        final private double[] rewards;
+        final private boolean[] terminal;
+        final private int[] indices;
+        final private double[] weights;
+        // filled in by the learner, and passed back via updatePriorities()
+        final private double[] tdErrors;
+
+        public ReplayBatch(int size, int historyLength, int frameLength) {
+            this.size = size;
+            this.observations = Nd4j.create(Nd4j.dataType(), size, (long) historyLength * frameLength);
+            this.nextObservations = Nd4j.create(Nd4j.dataType(), size, (long) historyLength * frameLength);
+            this.actions = new int[size];
+            this.rewards = new double[size];
+            this.terminal = new boolean[size];
+            this.indices = new int[size];
+            this.weights = new double[size];
+            this.tdErrors = new double[size];
+        }
+    }
+}
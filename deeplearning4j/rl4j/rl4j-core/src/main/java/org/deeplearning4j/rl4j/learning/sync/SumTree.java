@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright (c) 2015-2018 Skymind, Inc.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ******************************************************************************/
+
+package org.deeplearning4j.rl4j.learning.sync;
+
+import java.util.Arrays;
+
+/**
+ * Binary sum-tree over a fixed number of non-negative priorities, used by {@link PrioritizedExpReplay}.
+ *
+ * Updates and proportional lookups are O(log n). Minimal non-zero priority is tracked
+ * in a parallel min-tree, so importance sampling weights can be normalized without a full scan.
+ *
+ * Priorities are kept in plain double arrays, so the tree creates no garbage after construction.
+ */
+public class SumTree {
+
+    private final int capacity;
+    private final int leaves;
+    private final double[] sums;
+    private final double[] mins;
+
+    public SumTree(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity should be positive value");
+
+        this.capacity = capacity;
+
+        int l = 1;
+        while (l < capacity)
+            l <<= 1;
+        this.leaves = l;
+
+        // 1-based heap layout: root at index 1, leaves at [leaves, 2 * leaves)
+        this.sums = new double[2 * leaves];
+        this.mins = new double[2 * leaves];
+        Arrays.fill(mins, Double.POSITIVE_INFINITY);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @param idx leaf index
+     * @param priority new priority of the leaf, 0.0 removes the leaf from sampling
+     */
+    public void set(int idx, double priority) {
+        if (idx < 0 || idx >= capacity)
+            throw new IndexOutOfBoundsException("Index " + idx + " is out of bounds [0, " + capacity + ")");
+        if (priority < 0.0 || Double.isNaN(priority))
+            throw new IllegalArgumentException("Priority should be non-negative value, got " + priority);
+
+        int node = idx + leaves;
+        sums[node] = priority;
+        mins[node] = priority > 0.0 ? priority : Double.POSITIVE_INFINITY;
+
+        node >>= 1;
+        while (node >= 1) {
+            int left = node << 1;
+            sums[node] = sums[left] + sums[left + 1];
+            mins[node] = Math.min(mins[left], mins[left + 1]);
+            node >>= 1;
+        }
+    }
+
+    /**
+     * @param idx leaf index
+     * @return priority of the leaf
+     */
+    public double get(int idx) {
+        return sums[idx + leaves];
+    }
+
+    /**
+     * @return sum of all priorities
+     */
+    public double total() {
+        return sums[1];
+    }
+
+    /**
+     * @return smallest non-zero priority, or 0.0 if tree is empty
+     */
+    public double min() {
+        return mins[1] == Double.POSITIVE_INFINITY ? 0.0 : mins[1];
+    }
+
+    /**
+     * This method finds leaf, for which cumulative sum of priorities up to and including that leaf exceeds given value
+     *
+     * @param value value in range [0, total())
+     * @return leaf index
+     */
+    public int find(double value) {
+        int node = 1;
+        while (node < leaves) {
+            int left = node << 1;
+            if (value < sums[left] || sums[left + 1] == 0.0) {
+                node = left;
+            } else {
+                value -= sums[left];
+                node = left + 1;
+            }
+        }
+
+        return Math.min(node - leaves, capacity - 1);
+    }
+
+    /**
+     * This method resets all priorities to 0.0
+     */
+    public void clear() {
+        Arrays.fill(sums, 0.0);
+        Arrays.fill(mins, Double.POSITIVE_INFINITY);
+    }
+}
@@ -42,6 +42,10 @@ public class Transition<A> {
      * @return the multi-channel INDArray
      */
     public static INDArray concat(INDArray[] history) {
+        // concat() returns single array as is, but history frames are shared and callers scale the result in place
+        if (history.length == 1)
+            return history[0].dup();
+
         INDArray arr = Nd4j.concat(0, history);
         return arr;
     }
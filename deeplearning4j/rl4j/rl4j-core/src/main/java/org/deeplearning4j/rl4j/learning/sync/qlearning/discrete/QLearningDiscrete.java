@@ -20,6 +20,7 @@ import lombok.Getter;
 import lombok.Setter;
 import org.deeplearning4j.gym.StepReply;
 import org.deeplearning4j.rl4j.learning.Learning;
+import org.deeplearning4j.rl4j.learning.sync.PrioritizedExpReplay;
 import org.deeplearning4j.rl4j.learning.sync.Transition;
 import org.deeplearning4j.rl4j.learning.sync.qlearning.QLearning;
 import org.deeplearning4j.rl4j.mdp.MDP;
@@ -173,8 +174,16 @@ public abstract class QLearningDiscrete<O extends Encodable> extends QLearning<O
             getExpReplay().store(trans);
 
             if (getStepCounter() > updateStart) {
-                Pair<INDArray, INDArray> targets = setTarget(getExpReplay().getBatch());
-                getCurrentDQN().fit(targets.getFirst(), targets.getSecond());
+                if (getExpReplay() instanceof PrioritizedExpReplay) {
+                    PrioritizedExpReplay replay = (PrioritizedExpReplay) getExpReplay();
+                    PrioritizedExpReplay.ReplayBatch batch = replay.sampleBatch();
+                    Pair<INDArray, INDArray> targets = setTarget(batch);
+                    getCurrentDQN().fit(targets.getFirst(), targets.getSecond());
+                    replay.updatePriorities(batch);
+                } else {
+                    Pair<INDArray, INDArray> targets = setTarget(getExpReplay().getBatch());
+                    getCurrentDQN().fit(targets.getFirst(), targets.getSecond());
+                }
             }
 
             history = nhistory;
@@ -199,12 +208,14 @@ public abstract class QLearningDiscrete<O extends Encodable> extends QLearning<O
         INDArray obs = Nd4j.create(nshape);
         INDArray nextObs = Nd4j.create(nshape);
         int[] actions = new int[size];
+        double[] rewards = new double[size];
         boolean[] areTerminal = new boolean[size];
 
         for (int i = 0; i < size; i++) {
             Transition<Integer> trans = transitions.get(i);
             areTerminal[i] = trans.isTerminal();
             actions[i] = trans.getAction();
+            rewards[i] = trans.getReward();
 
             INDArray[] obsArray = trans.getObservation();
             if (obs.rank() == 2) {
@@ -224,6 +235,36 @@ public abstract class QLearningDiscrete<O extends Encodable> extends QLearning<O
                 }
             }
         }
+
+        return setTarget(obs, nextObs, actions, rewards, areTerminal, null, null);
+    }
+
+    /**
+     * This method computes targets for a batch sampled from {@link PrioritizedExpReplay}.
+     * TD-errors are written back into the batch, so priorities can be updated after fitting.
+     *
+     * @param batch sampled batch
+     * @return inputs and targets
+     */
+    protected Pair<INDArray, INDArray> setTarget(PrioritizedExpReplay.ReplayBatch batch) {
+        if (batch == null || batch.getSize() == 0)
+            throw new IllegalArgumentException("too few transitions");
+
+        int[] shape = getHistoryProcessor() == null ? getMdp().getObservationSpace().getShape()
+                        : getHistoryProcessor().getConf().getShape();
+        long[] nshape = ArrayUtil.toLongArray(makeShape(batch.getSize(), shape));
+
+        // batch arrays are flat, so reshape gives us views in network input shape
+        INDArray obs = batch.getObservations().reshape(nshape);
+        INDArray nextObs = batch.getNextObservations().reshape(nshape);
+
+        return setTarget(obs, nextObs, batch.getActions(), batch.getRewards(), batch.getTerminal(), batch.getWeights(),
+                        batch.getTdErrors());
+    }
+
+    private Pair<INDArray, INDArray> setTarget(INDArray obs, INDArray nextObs, int[] actions, double[] rewards,
+                    boolean[] areTerminal, double[] weights, double[] tdErrors) {
+        int size = actions.length;
         if (getHistoryProcessor() != null) {
             obs.muli(1.0 / getHistoryProcessor().getScale());
             nextObs.muli(1.0 / getHistoryProcessor().getScale());
@@ -245,7 +286,7 @@ public abstract class QLearningDiscrete<O extends Encodable> extends QLearning<O
 
 
         for (int i = 0; i < size; i++) {
-            double yTar = transitions.get(i).getReward();
+            double yTar = rewards[i];
             if (!areTerminal[i]) {
                 double q = 0;
                 if (getConfiguration().isDoubleDQN()) {
@@ -264,6 +305,13 @@ public abstract class QLearningDiscrete<O extends Encodable> extends QLearning<O
             double highB = previousV + getConfiguration().getErrorClamp();
             double clamped = Math.min(highB, Math.max(yTar, lowB));
 
+            if (tdErrors != null)
+                tdErrors[i] = yTar - previousV;
+
+            // with squared error loss, scaling the error is equivalent to importance sampling weight of the sample
+            if (weights != null)
+                clamped = previousV + weights[i] * (clamped - previousV);
+
             dqnOutputAr.putScalar(i, actions[i], clamped);
         }
 
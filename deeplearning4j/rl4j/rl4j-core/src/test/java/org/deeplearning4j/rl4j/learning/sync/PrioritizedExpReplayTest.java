@@ -0,0 +1,161 @@
+package org.deeplearning4j.rl4j.learning.sync;
+
+import org.deeplearning4j.rl4j.learning.HistoryProcessor;
+import org.deeplearning4j.rl4j.learning.IHistoryProcessor;
+import org.junit.Test;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+public class PrioritizedExpReplayTest {
+
+    private static INDArray frame(double value) {
+        return Nd4j.valueArrayOf(new long[] {2, 3}, value);
+    }
+
+    // stores a single episode the same way QLearningDiscrete does with a HistoryProcessor of length 2
+    private static void storeEpisode(PrioritizedExpReplay sut, int steps) {
+        INDArray[] history = new INDArray[] {frame(0), frame(1)};
+        for (int i = 0; i < steps; i++) {
+            INDArray next = frame(i + 2);
+            INDArray[] nhistory = new INDArray[] {history[1], next};
+            sut.store(new Transition<>(history, i % 3, i, false, next));
+            history = nhistory;
+        }
+    }
+
+    @Test
+    public void when_sumTreeIsQueried_expect_proportionalLookup() {
+        SumTree tree = new SumTree(5);
+        tree.set(0, 1.0);
+        tree.set(2, 2.0);
+        tree.set(4, 3.0);
+
+        assertEquals(6.0, tree.total(), 1e-9);
+        assertEquals(1.0, tree.min(), 1e-9);
+        assertEquals(0, tree.find(0.5));
+        assertEquals(2, tree.find(1.5));
+        assertEquals(4, tree.find(3.5));
+        assertEquals(4, tree.find(5.999));
+
+        tree.set(0, 0.0);
+        assertEquals(5.0, tree.total(), 1e-9);
+        assertEquals(2.0, tree.min(), 1e-9);
+        assertEquals(2, tree.find(0.0));
+    }
+
+    @Test
+    public void when_framesAreShared_expect_batchMatchesTransitions() {
+        PrioritizedExpReplay sut = new PrioritizedExpReplay(100, 4, 123);
+        storeEpisode(sut, 10);
+        assertEquals(10, sut.size());
+
+        PrioritizedExpReplay.ReplayBatch batch = sut.sampleBatch();
+        assertEquals(4, batch.getSize());
+        assertArrayEquals(new long[] {4, 12}, batch.getObservations().shape());
+
+        for (int i = 0; i < batch.getSize(); i++) {
+            int step = (int) batch.getRewards()[i];
+            assertEquals(step % 3, batch.getActions()[i]);
+            assertEquals(1.0, batch.getWeights()[i], 1e-9);
+
+            // observation: [step, step + 1], next observation: [step + 2, step] - see Transition.append()
+            INDArray obs = batch.getObservations().getRow(i);
+            INDArray nextObs = batch.getNextObservations().getRow(i);
+            for (int j = 0; j < 6; j++) {
+                assertEquals(step, obs.getDouble(j), 1e-6);
+                assertEquals(step + 1, obs.getDouble(6 + j), 1e-6);
+                assertEquals(step + 2, nextObs.getDouble(j), 1e-6);
+                assertEquals(step, nextObs.getDouble(6 + j), 1e-6);
+            }
+        }
+
+        ArrayList<Transition<Integer>> transitions = sut.getBatch();
+        assertEquals(4, transitions.size());
+        for (Transition<Integer> t : transitions) {
+            int step = (int) t.getReward();
+            assertArrayEquals(new long[] {2, 3}, t.getNextObservation().shape());
+            assertEquals(step, t.getObservation()[0].getDouble(0), 1e-6);
+            assertEquals(step + 2, t.getNextObservation().getDouble(0), 1e-6);
+        }
+    }
+
+    @Test
+    public void when_historyProcessorFramesAreStored_expect_sharedFramesStoredOnce() {
+        IHistoryProcessor.Configuration conf = IHistoryProcessor.Configuration.builder().historyLength(4)
+                        .croppingHeight(2).croppingWidth(2).rescaledHeight(2).rescaledWidth(2).build();
+        HistoryProcessor hp = new HistoryProcessor(conf);
+        for (int i = 0; i < 4; i++)
+            hp.add(Nd4j.zeros(DataType.FLOAT, 2, 2, 3).addi(0.01 * i));
+
+        // 10 transitions need 13 frames when shared frames are stored once, and 50 otherwise
+        PrioritizedExpReplay sut = new PrioritizedExpReplay(100, 4, 123, 0.6, 0.4, 16, DataType.UINT8);
+        INDArray[] history = hp.getHistory();
+        for (int i = 0; i < 10; i++) {
+            hp.add(Nd4j.zeros(DataType.FLOAT, 2, 2, 3).addi(0.01 * (i + 4)));
+            INDArray[] nhistory = hp.getHistory();
+            assertSame(history[1], nhistory[0]);
+
+            // same as QLearningDiscrete.trainStep()
+            sut.store(new Transition<>(history, 0, i, false, nhistory[0]));
+            history = nhistory;
+        }
+
+        assertEquals(10, sut.size());
+
+        PrioritizedExpReplay.ReplayBatch batch = sut.sampleBatch();
+        for (int i = 0; i < batch.getSize(); i++) {
+            int step = (int) batch.getRewards()[i];
+            // oldest frame of the observation was filled with 0.01 * step, and scaled by 255
+            assertEquals(2.55 * step, batch.getObservations().getDouble(i, 0), 1.0);
+        }
+    }
+
+    @Test
+    public void when_frameRingIsFull_expect_oldestTransitionsDropped() {
+        // 10 transitions of a single episode need 12 frames, so only 6 transitions fit into 8 frames
+        PrioritizedExpReplay sut = new PrioritizedExpReplay(100, 6, 123, 0.6, 0.4, 8, DataType.UINT8);
+        storeEpisode(sut, 10);
+        assertEquals(6, sut.size());
+
+        PrioritizedExpReplay.ReplayBatch batch = sut.sampleBatch();
+        for (int i = 0; i < batch.getSize(); i++) {
+            int step = (int) batch.getRewards()[i];
+            assertTrue(step >= 4);
+            assertEquals(step, batch.getObservations().getDouble(i, 0), 1e-6);
+            assertEquals(step + 2, batch.getNextObservations().getDouble(i, 0), 1e-6);
+        }
+    }
+
+    @Test
+    public void when_prioritiesAreUpdated_expect_highPriorityTransitionsSampledMore() {
+        PrioritizedExpReplay sut = new PrioritizedExpReplay(100, 8, 123, 1.0, 1.0, 0, null);
+        storeEpisode(sut, 8);
+
+        int[] indices = new int[8];
+        double[] errors = new double[8];
+        for (int i = 0; i < 8; i++) {
+            indices[i] = i;
+            errors[i] = i == 5 ? 100.0 : 0.01;
+        }
+        sut.updatePriorities(indices, errors, 8);
+
+        int hits = 0;
+        for (int e = 0; e < 10; e++) {
+            PrioritizedExpReplay.ReplayBatch batch = sut.sampleBatch();
+            for (int i = 0; i < batch.getSize(); i++) {
+                if (batch.getIndices()[i] == 5) {
+                    hits++;
+                    assertEquals(5.0, batch.getRewards()[i], 1e-9);
+                    assertTrue(batch.getWeights()[i] < 1.0);
+                }
+            }
+        }
+
+        assertTrue("Expected most samples from high priority transition, got " + hits, hits > 70);
+    }
+}
@@ -2,6 +2,7 @@ package org.deeplearning4j.rl4j.learning.sync.qlearning.discrete;
 
 import org.deeplearning4j.rl4j.learning.IHistoryProcessor;
 import org.deeplearning4j.rl4j.learning.sync.IExpReplay;
+import org.deeplearning4j.rl4j.learning.sync.PrioritizedExpReplay;
 import org.deeplearning4j.rl4j.learning.sync.Transition;
 import org.deeplearning4j.rl4j.learning.sync.qlearning.QLearning;
 import org.deeplearning4j.rl4j.mdp.MDP;
@@ -10,6 +11,7 @@ import org.deeplearning4j.rl4j.space.DiscreteSpace;
 import org.deeplearning4j.rl4j.support.*;
 import org.deeplearning4j.rl4j.util.IDataManager;
 import org.junit.Test;
+import org.nd4j.linalg.api.buffer.DataType;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.primitives.Pair;
@@ -129,6 +131,34 @@ public class QLearningDiscreteTest {
         }
     }
 
+    @Test
+    public void when_prioritizedExpReplayIsUsed_expect_historyFramesStoredOnce() {
+        MockObservationSpace observationSpace = new MockObservationSpace();
+        MockMDP mdp = new MockMDP(observationSpace);
+        MockDQN dqn = new MockDQN();
+        QLearning.QLConfiguration conf = new QLearning.QLConfiguration(0, 0, 0, 5, 1, 0,
+                0, 1.0, 0, 0, 0, 0, true);
+        MockDataManager dataManager = new MockDataManager(false);
+        TestQLearningDiscrete sut = new TestQLearningDiscrete(mdp, dqn, conf, dataManager, 10);
+        IHistoryProcessor.Configuration hpConf = new IHistoryProcessor.Configuration(5, 4, 4, 4, 4, 0, 0, 2);
+        sut.setHistoryProcessor(new MockHistoryProcessor(hpConf));
+
+        // 6 transitions need 10 frames when frames shared by histories are stored once, and 36 otherwise
+        PrioritizedExpReplay expReplay = new PrioritizedExpReplay(100, 1, 123, 0.6, 0.4, 12, DataType.UINT8);
+        sut.setExpReplay(expReplay);
+        MockEncodable obs = new MockEncodable(1);
+
+        // training starts after step 12, so only transitions are stored here
+        sut.initMdp();
+        for(int step = 0; step < 12; ++step) {
+            sut.trainStep(obs);
+            sut.incrementStep();
+        }
+
+        assertEquals(6, expReplay.size());
+        assertEquals(0, dqn.fitParams.size());
+    }
+
     public static class TestQLearningDiscrete extends QLearningDiscrete<MockEncodable> {
         public TestQLearningDiscrete(MDP<MockEncodable, Integer, DiscreteSpace> mdp,IDQN dqn,
                                      QLConfiguration conf, IDataManager dataManager, int epsilonNbStep) {
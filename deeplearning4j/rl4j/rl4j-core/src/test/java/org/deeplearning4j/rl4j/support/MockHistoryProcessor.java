@@ -30,7 +30,7 @@ public class MockHistoryProcessor implements IHistoryProcessor {
     public INDArray[] getHistory() {
         INDArray[] array = new INDArray[getConf().getHistoryLength()];
         for (int i = 0; i < config.getHistoryLength(); i++) {
-            array[i] = history.get(i).castTo(Nd4j.dataType());
+            array[i] = history.get(i);
         }
         return array;
     }
@@ -43,7 +43,7 @@ public class MockHistoryProcessor implements IHistoryProcessor {
     @Override
     public void add(INDArray image) {
         ++addCallCount;
-        history.add(image);
+        history.add(image.castTo(Nd4j.dataType()));
     }
 
     @Override